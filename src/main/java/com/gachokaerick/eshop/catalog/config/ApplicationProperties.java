@@ -1,5 +1,11 @@
 package com.gachokaerick.eshop.catalog.config;
 
+import com.hazelcast.config.InMemoryFormat;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
 /**
@@ -9,4 +15,1001 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
  * See {@link tech.jhipster.config.JHipsterProperties} for a good example.
  */
 @ConfigurationProperties(prefix = "application", ignoreUnknownFields = false)
-public class ApplicationProperties {}
+public class ApplicationProperties {
+
+    private final StockHold stockHold = new StockHold();
+
+    private final OptimisticRetry optimisticRetry = new OptimisticRetry();
+
+    private final Idempotency idempotency = new Idempotency();
+
+    private final StockJournal stockJournal = new StockJournal();
+
+    private final StockQueue stockQueue = new StockQueue();
+
+    private final Search search = new Search();
+
+    private final ResponseCache responseCache = new ResponseCache();
+
+    private final NearCache nearCache = new NearCache();
+
+    private final ReadModel readModel = new ReadModel();
+
+    private final Facets facets = new Facets();
+
+    private final Outbox outbox = new Outbox();
+
+    private final StockCommands stockCommands = new StockCommands();
+
+    private final KafkaSse kafkaSse = new KafkaSse();
+
+    private final RestockAlerts restockAlerts = new RestockAlerts();
+
+    private final ChangeEvents changeEvents = new ChangeEvents();
+
+    private final Export export = new Export();
+
+    public StockHold getStockHold() {
+        return stockHold;
+    }
+
+    public OptimisticRetry getOptimisticRetry() {
+        return optimisticRetry;
+    }
+
+    public Idempotency getIdempotency() {
+        return idempotency;
+    }
+
+    public StockJournal getStockJournal() {
+        return stockJournal;
+    }
+
+    public StockQueue getStockQueue() {
+        return stockQueue;
+    }
+
+    public Search getSearch() {
+        return search;
+    }
+
+    public ResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    public NearCache getNearCache() {
+        return nearCache;
+    }
+
+    public ReadModel getReadModel() {
+        return readModel;
+    }
+
+    public Facets getFacets() {
+        return facets;
+    }
+
+    public Outbox getOutbox() {
+        return outbox;
+    }
+
+    public StockCommands getStockCommands() {
+        return stockCommands;
+    }
+
+    public KafkaSse getKafkaSse() {
+        return kafkaSse;
+    }
+
+    public RestockAlerts getRestockAlerts() {
+        return restockAlerts;
+    }
+
+    public ChangeEvents getChangeEvents() {
+        return changeEvents;
+    }
+
+    public Export getExport() {
+        return export;
+    }
+
+    public static class StockHold {
+
+        /**
+         * How long a hold lasts when the client does not ask for a specific duration.
+         */
+        private Duration defaultTtl = Duration.ofMinutes(15);
+
+        /**
+         * Longest hold a client may ask for.
+         */
+        private Duration maxTtl = Duration.ofHours(2);
+
+        /**
+         * Resolution of the expiry wheel: holds expire at most this late.
+         */
+        private Duration tickDuration = Duration.ofSeconds(1);
+
+        /**
+         * Number of buckets of the expiry wheel.
+         */
+        private int wheelSize = 512;
+
+        public Duration getDefaultTtl() {
+            return defaultTtl;
+        }
+
+        public void setDefaultTtl(Duration defaultTtl) {
+            this.defaultTtl = defaultTtl;
+        }
+
+        public Duration getMaxTtl() {
+            return maxTtl;
+        }
+
+        public void setMaxTtl(Duration maxTtl) {
+            this.maxTtl = maxTtl;
+        }
+
+        public Duration getTickDuration() {
+            return tickDuration;
+        }
+
+        public void setTickDuration(Duration tickDuration) {
+            this.tickDuration = tickDuration;
+        }
+
+        public int getWheelSize() {
+            return wheelSize;
+        }
+
+        public void setWheelSize(int wheelSize) {
+            this.wheelSize = wheelSize;
+        }
+    }
+
+    public static class OptimisticRetry {
+
+        /**
+         * Number of attempts, including the first one, before a conflicting update is given up.
+         */
+        private int maxAttempts = 4;
+
+        /**
+         * Upper bound of the backoff before the first retry, doubled on every retry.
+         */
+        private Duration initialBackoff = Duration.ofMillis(10);
+
+        /**
+         * Upper bound of the backoff between two attempts.
+         */
+        private Duration maxBackoff = Duration.ofMillis(200);
+
+        public int getMaxAttempts() {
+            return maxAttempts;
+        }
+
+        public void setMaxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+        }
+
+        public Duration getInitialBackoff() {
+            return initialBackoff;
+        }
+
+        public void setInitialBackoff(Duration initialBackoff) {
+            this.initialBackoff = initialBackoff;
+        }
+
+        public Duration getMaxBackoff() {
+            return maxBackoff;
+        }
+
+        public void setMaxBackoff(Duration maxBackoff) {
+            this.maxBackoff = maxBackoff;
+        }
+    }
+
+    public static class Idempotency {
+
+        /**
+         * How long the response to a request is kept for replay.
+         */
+        private Duration ttl = Duration.ofHours(24);
+
+        /**
+         * How long a key stays claimed by a request that has not completed, in case the instance dies while processing it.
+         */
+        private Duration inFlightTtl = Duration.ofMinutes(1);
+
+        /**
+         * Maximum number of keys kept, per instance; the oldest are evicted first.
+         */
+        private int maxEntries = 100_000;
+
+        public Duration getTtl() {
+            return ttl;
+        }
+
+        public void setTtl(Duration ttl) {
+            this.ttl = ttl;
+        }
+
+        public Duration getInFlightTtl() {
+            return inFlightTtl;
+        }
+
+        public void setInFlightTtl(Duration inFlightTtl) {
+            this.inFlightTtl = inFlightTtl;
+        }
+
+        public int getMaxEntries() {
+            return maxEntries;
+        }
+
+        public void setMaxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+    }
+
+    public static class StockJournal {
+
+        /**
+         * Whether stock changes are appended to the journal instead of overwriting the available stock of the item.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Delay between two compactions of the journal into the available stock of the items.
+         */
+        private Duration compactionInterval = Duration.ofMinutes(1);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Duration getCompactionInterval() {
+            return compactionInterval;
+        }
+
+        public void setCompactionInterval(Duration compactionInterval) {
+            this.compactionInterval = compactionInterval;
+        }
+    }
+
+    public static class StockQueue {
+
+        /**
+         * Whether stock changes of a contended item are queued and applied in batches by a single writer.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Number of concurrent stock changes of the same item above which they are queued.
+         */
+        private int contentionThreshold = 4;
+
+        /**
+         * Maximum number of queued stock changes applied in a single write.
+         */
+        private int maxBatchSize = 100;
+
+        /**
+         * Number of threads writing the queued stock changes, each item being written by one thread at a time.
+         */
+        private int writerThreads = 4;
+
+        /**
+         * Maximum time a caller waits for its queued stock change to be taken by a writer, and then to be written.
+         */
+        private Duration timeout = Duration.ofSeconds(5);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getContentionThreshold() {
+            return contentionThreshold;
+        }
+
+        public void setContentionThreshold(int contentionThreshold) {
+            this.contentionThreshold = contentionThreshold;
+        }
+
+        public int getMaxBatchSize() {
+            return maxBatchSize;
+        }
+
+        public void setMaxBatchSize(int maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+        }
+
+        public int getWriterThreads() {
+            return writerThreads;
+        }
+
+        public void setWriterThreads(int writerThreads) {
+            this.writerThreads = writerThreads;
+        }
+
+        public Duration getTimeout() {
+            return timeout;
+        }
+
+        public void setTimeout(Duration timeout) {
+            this.timeout = timeout;
+        }
+    }
+
+    public static class Search {
+
+        /**
+         * Maximum number of catalogItems a search may return.
+         */
+        private int maxResults = 100;
+
+        /**
+         * Maximum number of indexed tokens a search term expands to by prefix or typo.
+         */
+        private int maxExpansions = 64;
+
+        /**
+         * Minimum length of a search term to match indexed tokens with a typo.
+         */
+        private int fuzzyMinLength = 4;
+
+        /**
+         * Number of catalogItems read per query when building the index at startup.
+         */
+        private int buildBatchSize = 10000;
+
+        /**
+         * Number of names changed after which the sorted names suggested while typing are rebuilt.
+         */
+        private int suggestMaxPending = 4096;
+
+        public int getMaxResults() {
+            return maxResults;
+        }
+
+        public void setMaxResults(int maxResults) {
+            this.maxResults = maxResults;
+        }
+
+        public int getMaxExpansions() {
+            return maxExpansions;
+        }
+
+        public void setMaxExpansions(int maxExpansions) {
+            this.maxExpansions = maxExpansions;
+        }
+
+        public int getFuzzyMinLength() {
+            return fuzzyMinLength;
+        }
+
+        public void setFuzzyMinLength(int fuzzyMinLength) {
+            this.fuzzyMinLength = fuzzyMinLength;
+        }
+
+        public int getBuildBatchSize() {
+            return buildBatchSize;
+        }
+
+        public void setBuildBatchSize(int buildBatchSize) {
+            this.buildBatchSize = buildBatchSize;
+        }
+
+        public int getSuggestMaxPending() {
+            return suggestMaxPending;
+        }
+
+        public void setSuggestMaxPending(int suggestMaxPending) {
+            this.suggestMaxPending = suggestMaxPending;
+        }
+    }
+
+    public static class ResponseCache {
+
+        /**
+         * Whether the responses of the first pages of catalogItems and of the brands and types are cached serialized.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Number of pages from the first one whose responses are cached.
+         */
+        private int maxPages = 5;
+
+        /**
+         * Maximum number of responses cached.
+         */
+        private int maxEntries = 1000;
+
+        /**
+         * Maximum size of the bodies of all the responses cached, in bytes.
+         */
+        private long maxBytes = 64L * 1024 * 1024;
+
+        /**
+         * Maximum size of the body of a response cached, in bytes.
+         */
+        private int maxEntryBytes = 1024 * 1024;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMaxPages() {
+            return maxPages;
+        }
+
+        public void setMaxPages(int maxPages) {
+            this.maxPages = maxPages;
+        }
+
+        public int getMaxEntries() {
+            return maxEntries;
+        }
+
+        public void setMaxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        public long getMaxBytes() {
+            return maxBytes;
+        }
+
+        public void setMaxBytes(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        public int getMaxEntryBytes() {
+            return maxEntryBytes;
+        }
+
+        public void setMaxEntryBytes(int maxEntryBytes) {
+            this.maxEntryBytes = maxEntryBytes;
+        }
+    }
+
+    public static class NearCache {
+
+        /**
+         * Near caches of the Hazelcast maps backing the second-level cache regions, by region name.
+         */
+        private final Map<String, Region> regions = new LinkedHashMap<>();
+
+        public Map<String, Region> getRegions() {
+            return regions;
+        }
+
+        public static class Region {
+
+            /**
+             * Maximum number of entries kept in the near cache, the least recently used ones being evicted.
+             */
+            private int maxSize = 10000;
+
+            /**
+             * Time an entry stays in the near cache, zero to keep it until it is evicted or invalidated.
+             */
+            private Duration timeToLive = Duration.ZERO;
+
+            /**
+             * Time an entry not read stays in the near cache, zero to keep it until it is evicted or invalidated.
+             */
+            private Duration maxIdle = Duration.ZERO;
+
+            /**
+             * Format of the entries in the near cache: {@code OBJECT} to read them without deserializing them,
+             * {@code BINARY} to deserialize them on every read.
+             */
+            private InMemoryFormat inMemoryFormat = InMemoryFormat.BINARY;
+
+            /**
+             * Whether entries are invalidated when they change in the map.
+             */
+            private boolean invalidateOnChange = true;
+
+            public int getMaxSize() {
+                return maxSize;
+            }
+
+            public void setMaxSize(int maxSize) {
+                this.maxSize = maxSize;
+            }
+
+            public Duration getTimeToLive() {
+                return timeToLive;
+            }
+
+            public void setTimeToLive(Duration timeToLive) {
+                this.timeToLive = timeToLive;
+            }
+
+            public Duration getMaxIdle() {
+                return maxIdle;
+            }
+
+            public void setMaxIdle(Duration maxIdle) {
+                this.maxIdle = maxIdle;
+            }
+
+            public InMemoryFormat getInMemoryFormat() {
+                return inMemoryFormat;
+            }
+
+            public void setInMemoryFormat(InMemoryFormat inMemoryFormat) {
+                this.inMemoryFormat = inMemoryFormat;
+            }
+
+            public boolean isInvalidateOnChange() {
+                return invalidateOnChange;
+            }
+
+            public void setInvalidateOnChange(boolean invalidateOnChange) {
+                this.invalidateOnChange = invalidateOnChange;
+            }
+        }
+    }
+
+    public static class ReadModel {
+
+        /**
+         * Whether each instance holds the whole catalog in memory and serves the reads of catalogItems from it.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Delay between two comparisons of the catalog held in memory with the database.
+         */
+        private Duration checkInterval = Duration.ofMinutes(10);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Duration getCheckInterval() {
+            return checkInterval;
+        }
+
+        public void setCheckInterval(Duration checkInterval) {
+            this.checkInterval = checkInterval;
+        }
+    }
+
+    public static class Facets {
+
+        /**
+         * Whether the facets are counted on the catalog held in memory by the read model, loaded for them even when the
+         * read model is disabled, at the cost of holding the whole catalog on every instance; otherwise they are
+         * counted with grouped queries.
+         */
+        private boolean inMemory;
+
+        /**
+         * Bounds between the price buckets counted when the client does not give its own.
+         */
+        private List<BigDecimal> priceBuckets = List.of(
+            BigDecimal.TEN,
+            BigDecimal.valueOf(25),
+            BigDecimal.valueOf(50),
+            BigDecimal.valueOf(100)
+        );
+
+        /**
+         * Number of catalogItems from which the facets held in memory are counted in parallel.
+         */
+        private int parallelThreshold = 100_000;
+
+        public boolean isInMemory() {
+            return inMemory;
+        }
+
+        public void setInMemory(boolean inMemory) {
+            this.inMemory = inMemory;
+        }
+
+        public List<BigDecimal> getPriceBuckets() {
+            return priceBuckets;
+        }
+
+        public void setPriceBuckets(List<BigDecimal> priceBuckets) {
+            this.priceBuckets = priceBuckets;
+        }
+
+        public int getParallelThreshold() {
+            return parallelThreshold;
+        }
+
+        public void setParallelThreshold(int parallelThreshold) {
+            this.parallelThreshold = parallelThreshold;
+        }
+    }
+
+    public static class Outbox {
+
+        /**
+         * Whether this instance publishes the events of the outbox to Kafka.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Delay between two runs of the relay, once the outbox is drained.
+         */
+        private Duration relayInterval = Duration.ofSeconds(1);
+
+        /**
+         * Maximum number of events published and deleted in one transaction.
+         */
+        private int batchSize = 500;
+
+        /**
+         * How long the producer waits for more events to batch them together.
+         */
+        private Duration linger = Duration.ofMillis(20);
+
+        /**
+         * Compression of the batches sent by the producer.
+         */
+        private String compressionType = "lz4";
+
+        /**
+         * How long the relay waits for the broker to acknowledge a batch before retrying it on its next run.
+         */
+        private Duration sendTimeout = Duration.ofSeconds(30);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Duration getRelayInterval() {
+            return relayInterval;
+        }
+
+        public void setRelayInterval(Duration relayInterval) {
+            this.relayInterval = relayInterval;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public Duration getLinger() {
+            return linger;
+        }
+
+        public void setLinger(Duration linger) {
+            this.linger = linger;
+        }
+
+        public String getCompressionType() {
+            return compressionType;
+        }
+
+        public void setCompressionType(String compressionType) {
+            this.compressionType = compressionType;
+        }
+
+        public Duration getSendTimeout() {
+            return sendTimeout;
+        }
+
+        public void setSendTimeout(Duration sendTimeout) {
+            this.sendTimeout = sendTimeout;
+        }
+    }
+
+    public static class StockCommands {
+
+        /**
+         * Whether this instance consumes the stock commands from Kafka.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Topic of the stock commands, keyed by item id.
+         */
+        private String topic = "stock-commands";
+
+        /**
+         * Topic the commands rejected by the stock rules, or that cannot be read, are published to.
+         */
+        private String deadLetterTopic = "stock-commands.DLT";
+
+        /**
+         * Consumer group of the instances applying the stock commands.
+         */
+        private String groupId = "catalog-stock-commands";
+
+        /**
+         * Number of consumers of this instance, each assigned its own partitions.
+         */
+        private int concurrency = 1;
+
+        /**
+         * Maximum number of commands polled and applied in one transaction.
+         */
+        private int batchSize = 500;
+
+        /**
+         * How long a poll waits for commands.
+         */
+        private Duration pollTimeout = Duration.ofSeconds(1);
+
+        /**
+         * Delay before a batch that could not be applied is polled again.
+         */
+        private Duration retryBackoff = Duration.ofSeconds(1);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getTopic() {
+            return topic;
+        }
+
+        public void setTopic(String topic) {
+            this.topic = topic;
+        }
+
+        public String getDeadLetterTopic() {
+            return deadLetterTopic;
+        }
+
+        public void setDeadLetterTopic(String deadLetterTopic) {
+            this.deadLetterTopic = deadLetterTopic;
+        }
+
+        public String getGroupId() {
+            return groupId;
+        }
+
+        public void setGroupId(String groupId) {
+            this.groupId = groupId;
+        }
+
+        public int getConcurrency() {
+            return concurrency;
+        }
+
+        public void setConcurrency(int concurrency) {
+            this.concurrency = concurrency;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public Duration getPollTimeout() {
+            return pollTimeout;
+        }
+
+        public void setPollTimeout(Duration pollTimeout) {
+            this.pollTimeout = pollTimeout;
+        }
+
+        public Duration getRetryBackoff() {
+            return retryBackoff;
+        }
+
+        public void setRetryBackoff(Duration retryBackoff) {
+            this.retryBackoff = retryBackoff;
+        }
+    }
+
+    public static class KafkaSse {
+
+        public enum SlowSubscriberPolicy {
+            /**
+             * Complete its stream: the client reconnects and gets the records from then on.
+             */
+            DROP,
+            /**
+             * Skip the records it missed and go on from the newest half of the buffer.
+             */
+            SAMPLE,
+        }
+
+        /**
+         * Maximum number of distinct topic sets consumed at the same time, each by one consumer thread.
+         */
+        private int maxConsumers = 16;
+
+        /**
+         * Number of threads sending the records to the subscribers.
+         */
+        private int senderThreads = 4;
+
+        /**
+         * Number of records of a topic set kept in memory for the subscribers that are behind.
+         */
+        private int bufferSize = 1024;
+
+        /**
+         * How long a poll waits for records, a heartbeat is sent to the subscribers after each empty poll.
+         */
+        private Duration pollTimeout = Duration.ofSeconds(5);
+
+        /**
+         * What to do with a subscriber that falls further behind than the buffer.
+         */
+        private SlowSubscriberPolicy slowSubscriberPolicy = SlowSubscriberPolicy.SAMPLE;
+
+        public int getMaxConsumers() {
+            return maxConsumers;
+        }
+
+        public void setMaxConsumers(int maxConsumers) {
+            this.maxConsumers = maxConsumers;
+        }
+
+        public int getSenderThreads() {
+            return senderThreads;
+        }
+
+        public void setSenderThreads(int senderThreads) {
+            this.senderThreads = senderThreads;
+        }
+
+        public int getBufferSize() {
+            return bufferSize;
+        }
+
+        public void setBufferSize(int bufferSize) {
+            this.bufferSize = bufferSize;
+        }
+
+        public Duration getPollTimeout() {
+            return pollTimeout;
+        }
+
+        public void setPollTimeout(Duration pollTimeout) {
+            this.pollTimeout = pollTimeout;
+        }
+
+        public SlowSubscriberPolicy getSlowSubscriberPolicy() {
+            return slowSubscriberPolicy;
+        }
+
+        public void setSlowSubscriberPolicy(SlowSubscriberPolicy slowSubscriberPolicy) {
+            this.slowSubscriberPolicy = slowSubscriberPolicy;
+        }
+    }
+
+    public static class RestockAlerts {
+
+        /**
+         * Period of the restock messages, each listing the items that crossed their restock threshold during it. An
+         * item is listed at most once per window.
+         */
+        private Duration window = Duration.ofMinutes(1);
+
+        public Duration getWindow() {
+            return window;
+        }
+
+        public void setWindow(Duration window) {
+            this.window = window;
+        }
+    }
+
+    public static class ChangeEvents {
+
+        /**
+         * Whether the changes of the catalogItems are published to the change-event topic.
+         */
+        private boolean enabled = true;
+
+        /**
+         * The log-compacted topic of the change events, keyed by catalogItem id.
+         */
+        private String topic = "catalog-item-changes";
+
+        /**
+         * Number of partitions of the topic, when this instance creates it.
+         */
+        private int partitions = 6;
+
+        /**
+         * Replication factor of the topic, when this instance creates it.
+         */
+        private short replicationFactor = 1;
+
+        /**
+         * Number of catalogItems written to the outbox in one transaction by a snapshot.
+         */
+        private int snapshotPageSize = 500;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getTopic() {
+            return topic;
+        }
+
+        public void setTopic(String topic) {
+            this.topic = topic;
+        }
+
+        public int getPartitions() {
+            return partitions;
+        }
+
+        public void setPartitions(int partitions) {
+            this.partitions = partitions;
+        }
+
+        public short getReplicationFactor() {
+            return replicationFactor;
+        }
+
+        public void setReplicationFactor(short replicationFactor) {
+            this.replicationFactor = replicationFactor;
+        }
+
+        public int getSnapshotPageSize() {
+            return snapshotPageSize;
+        }
+
+        public void setSnapshotPageSize(int snapshotPageSize) {
+            this.snapshotPageSize = snapshotPageSize;
+        }
+    }
+
+    public static class Export {
+
+        /**
+         * How far before the start of an export the next one resumes. Rows are dated when they are written, not when
+         * their transaction commits, so this must exceed the longest write transaction.
+         */
+        private Duration modifiedSinceOverlap = Duration.ofMinutes(5);
+
+        public Duration getModifiedSinceOverlap() {
+            return modifiedSinceOverlap;
+        }
+
+        public void setModifiedSinceOverlap(Duration modifiedSinceOverlap) {
+            this.modifiedSinceOverlap = modifiedSinceOverlap;
+        }
+    }
+}
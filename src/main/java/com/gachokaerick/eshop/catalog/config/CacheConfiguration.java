@@ -1,8 +1,16 @@
 package com.gachokaerick.eshop.catalog.config;
 
+import com.gachokaerick.eshop.catalog.service.IdempotencyService;
+import com.gachokaerick.eshop.catalog.service.StockHoldService;
 import com.hazelcast.config.*;
 import com.hazelcast.core.Hazelcast;
 import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.map.IMap;
+import com.hazelcast.nearcache.NearCacheStats;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import javax.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -64,7 +72,7 @@ public class CacheConfiguration {
     }
 
     @Bean
-    public HazelcastInstance hazelcastInstance(JHipsterProperties jHipsterProperties) {
+    public HazelcastInstance hazelcastInstance(JHipsterProperties jHipsterProperties, ApplicationProperties applicationProperties) {
         log.debug("Configuring Hazelcast");
         HazelcastInstance hazelCastInstance = Hazelcast.getHazelcastInstanceByName("catalog");
         if (hazelCastInstance != null) {
@@ -107,6 +115,14 @@ public class CacheConfiguration {
         config.setManagementCenterConfig(new ManagementCenterConfig());
         config.addMapConfig(initializeDefaultMapConfig(jHipsterProperties));
         config.addMapConfig(initializeDomainMapConfig(jHipsterProperties));
+        config.addMapConfig(initializeIdempotencyMapConfig(jHipsterProperties, applicationProperties));
+        config.addMapConfig(initializeStockHoldMapConfig(StockHoldService.HOLDS_MAP_NAME, jHipsterProperties));
+        config.addMapConfig(initializeStockHoldMapConfig(StockHoldService.HELD_MAP_NAME, jHipsterProperties));
+        // the maps of the second-level cache regions keep the configuration they match, with a near cache added
+        applicationProperties
+            .getNearCache()
+            .getRegions()
+            .forEach((region, properties) -> config.getMapConfig(region).setNearCacheConfig(initializeNearCacheConfig(region, properties)));
         return Hazelcast.newHazelcastInstance(config);
     }
 
@@ -146,6 +162,86 @@ public class CacheConfiguration {
         return mapConfig;
     }
 
+    private MapConfig initializeIdempotencyMapConfig(JHipsterProperties jHipsterProperties, ApplicationProperties applicationProperties) {
+        MapConfig mapConfig = new MapConfig(IdempotencyService.MAP_NAME);
+        mapConfig.setBackupCount(jHipsterProperties.getCache().getHazelcast().getBackupCount());
+        mapConfig.setTimeToLiveSeconds((int) applicationProperties.getIdempotency().getTtl().toSeconds());
+        mapConfig.getEvictionConfig().setEvictionPolicy(EvictionPolicy.LRU);
+        mapConfig.getEvictionConfig().setMaxSizePolicy(MaxSizePolicy.PER_NODE);
+        mapConfig.getEvictionConfig().setSize(applicationProperties.getIdempotency().getMaxEntries());
+        return mapConfig;
+    }
+
+    private MapConfig initializeStockHoldMapConfig(String name, JHipsterProperties jHipsterProperties) {
+        // a hold only leaves the map once committed, released or expired, never to make room
+        MapConfig mapConfig = new MapConfig(name);
+        mapConfig.setBackupCount(jHipsterProperties.getCache().getHazelcast().getBackupCount());
+        mapConfig.getEvictionConfig().setEvictionPolicy(EvictionPolicy.NONE);
+        return mapConfig;
+    }
+
+    private NearCacheConfig initializeNearCacheConfig(String region, ApplicationProperties.NearCache.Region properties) {
+        log.debug("Configuring the near cache of the region {}", region);
+        NearCacheConfig nearCacheConfig = new NearCacheConfig(region);
+        nearCacheConfig.setInMemoryFormat(properties.getInMemoryFormat());
+        nearCacheConfig.setInvalidateOnChange(properties.isInvalidateOnChange());
+        nearCacheConfig.setTimeToLiveSeconds((int) properties.getTimeToLive().toSeconds());
+        nearCacheConfig.setMaxIdleSeconds((int) properties.getMaxIdle().toSeconds());
+        // also cache the entries owned by this member, which are otherwise deserialized on every read
+        nearCacheConfig.setCacheLocalEntries(true);
+        nearCacheConfig
+            .getEvictionConfig()
+            .setEvictionPolicy(EvictionPolicy.LRU)
+            .setMaxSizePolicy(MaxSizePolicy.ENTRY_COUNT)
+            .setSize(properties.getMaxSize());
+        return nearCacheConfig;
+    }
+
+    /**
+     * Hits, misses and hit ratio of the near caches of the second-level cache regions.
+     */
+    @Bean
+    public MeterBinder nearCacheMetrics(HazelcastInstance hazelcastInstance, ApplicationProperties applicationProperties) {
+        return registry ->
+            applicationProperties
+                .getNearCache()
+                .getRegions()
+                .keySet()
+                .forEach(region -> {
+                    IMap<Object, Object> map = hazelcastInstance.getMap(region);
+                    Tags tags = Tags.of("region", region);
+                    FunctionCounter
+                        .builder("catalog.near.cache.hits", map, m -> nearCacheStats(m).getHits())
+                        .tags(tags)
+                        .register(registry);
+                    FunctionCounter
+                        .builder("catalog.near.cache.misses", map, m -> nearCacheStats(m).getMisses())
+                        .tags(tags)
+                        .register(registry);
+                    Gauge
+                        .builder("catalog.near.cache.hit.ratio", map, m -> hitRatio(nearCacheStats(m)))
+                        .tags(tags)
+                        .register(registry);
+                    Gauge
+                        .builder("catalog.near.cache.entries", map, m -> nearCacheStats(m).getOwnedEntryCount())
+                        .tags(tags)
+                        .register(registry);
+                });
+    }
+
+    private static NearCacheStats nearCacheStats(IMap<?, ?> map) {
+        return map.getLocalMapStats().getNearCacheStats();
+    }
+
+    /**
+     * Share of the reads served by a near cache, {@code NaN} until it is read. Unlike {@link NearCacheStats#getRatio()},
+     * which is the number of hits per hundred misses.
+     */
+    private static double hitRatio(NearCacheStats stats) {
+        long reads = stats.getHits() + stats.getMisses();
+        return reads == 0 ? Double.NaN : (double) stats.getHits() / reads;
+    }
+
     @Autowired(required = false)
     public void setGitProperties(GitProperties gitProperties) {
         this.gitProperties = gitProperties;
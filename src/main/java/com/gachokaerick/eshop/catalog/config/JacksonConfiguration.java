@@ -1,8 +1,14 @@
 package com.gachokaerick.eshop.catalog.config;
 
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
 import com.fasterxml.jackson.datatype.hibernate5.Hibernate5Module;
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.gachokaerick.eshop.catalog.service.dto.CatalogItemDTO;
+import com.gachokaerick.eshop.catalog.service.dto.CatalogItemFields;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.zalando.problem.jackson.ProblemModule;
@@ -48,4 +54,19 @@ public class JacksonConfiguration {
     public ConstraintViolationProblemModule constraintViolationProblemModule() {
         return new ConstraintViolationProblemModule();
     }
+
+    /*
+     * Sparse fieldsets of the catalogItems: every property is written, unless a response sets the filter of the
+     * requested CatalogItemFields.
+     */
+    @Bean
+    public Jackson2ObjectMapperBuilderCustomizer catalogItemFieldsCustomizer() {
+        return builder ->
+            builder
+                .mixIn(CatalogItemDTO.class, CatalogItemFieldsMixIn.class)
+                .filters(new SimpleFilterProvider().setDefaultFilter(SimpleBeanPropertyFilter.serializeAll()));
+    }
+
+    @JsonFilter(CatalogItemFields.FILTER)
+    private abstract static class CatalogItemFieldsMixIn {}
 }
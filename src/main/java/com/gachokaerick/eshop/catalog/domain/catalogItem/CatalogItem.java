@@ -4,10 +4,13 @@ import com.gachokaerick.eshop.catalog.model.CatalogBrand;
 import com.gachokaerick.eshop.catalog.model.CatalogType;
 import java.io.Serializable;
 import java.math.BigDecimal;
+import java.time.Instant;
 import javax.persistence.*;
 import javax.validation.constraints.*;
 import org.hibernate.annotations.Cache;
 import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 /**
  * @author Erick Gachoka
@@ -15,6 +18,7 @@ import org.hibernate.annotations.CacheConcurrencyStrategy;
 @Entity
 @Table(name = "catalog_item")
 @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@EntityListeners(AuditingEntityListener.class)
 public class CatalogItem implements Serializable {
 
     // remains public for testUtil equals verifier access
@@ -66,6 +70,17 @@ public class CatalogItem implements Serializable {
     @Column(name = "on_reorder")
     private Boolean onReorder;
 
+    @Version
+    @Column(name = "version", nullable = false)
+    private Integer version;
+
+    /**
+     * Date of the last update, used to export the changes since a date
+     */
+    @LastModifiedDate
+    @Column(name = "last_modified_date", nullable = false)
+    private Instant lastModifiedDate;
+
     @OneToOne(optional = false)
     @NotNull
     @JoinColumn(unique = true)
@@ -208,6 +223,22 @@ public class CatalogItem implements Serializable {
         this.onReorder = onReorder;
     }
 
+    public Integer getVersion() {
+        return this.version;
+    }
+
+    void setVersion(Integer version) {
+        this.version = version;
+    }
+
+    public Instant getLastModifiedDate() {
+        return this.lastModifiedDate;
+    }
+
+    void setLastModifiedDate(Instant lastModifiedDate) {
+        this.lastModifiedDate = lastModifiedDate;
+    }
+
     public CatalogBrand getCatalogBrand() {
         return this.catalogBrand;
     }
@@ -267,6 +298,8 @@ public class CatalogItem implements Serializable {
             ", restockThreshold=" + getRestockThreshold() +
             ", maxStockThreshold=" + getMaxStockThreshold() +
             ", onReorder='" + getOnReorder() + "'" +
+            ", version=" + getVersion() +
+            ", lastModifiedDate='" + getLastModifiedDate() + "'" +
             "}";
     }
 }
@@ -34,14 +34,28 @@ public class CatalogItemDomain {
      * @return the number actually removed from stock
      */
     public int removeStock(int quantityDesired) {
-        if (catalogItemDTO.getAvailableStock() == 0) {
+        return removeStock(quantityDesired, 0);
+    }
+
+    /**
+     * Decrements the quantity of a particular item in inventory, leaving the stock held for carts untouched.
+     * Behaves as {@link #removeStock(int)} on the stock that is not held: the item is sold out once all of its stock
+     * is held.
+     *
+     * @param quantityDesired quantity to deduct from stock
+     * @param held            quantity of stock held, which cannot be removed
+     * @return the number actually removed from stock
+     */
+    public int removeStock(int quantityDesired, int held) {
+        int availableToSell = catalogItemDTO.getAvailableStock() - held;
+        if (availableToSell <= 0) {
             throw DomainException.throwDomainException(domainName, "Empty stock. Product " + catalogItemDTO.getName() + " is sold out");
         }
         if (quantityDesired <= 0) {
             throw DomainException.throwDomainException(domainName, "Units to remove should be greater than zero");
         }
 
-        int removed = Math.min(quantityDesired, catalogItemDTO.getAvailableStock());
+        int removed = Math.min(quantityDesired, availableToSell);
         catalogItemDTO.setAvailableStock(catalogItemDTO.getAvailableStock() - removed);
         return removed;
     }
@@ -65,6 +79,23 @@ public class CatalogItemDomain {
         return catalogItemDTO.getAvailableStock() - original;
     }
 
+    /**
+     * Puts the item on reorder if a change of stock took it from above its restockThreshold down to the threshold or
+     * below it. Checking the crossing rather than the stock being equal to the threshold catches the removals that
+     * jump past it, and leaves out those made once the stock is already below it.
+     *
+     * @param stockBefore the available stock before the change
+     * @return {@code true} if the change crossed the restockThreshold
+     */
+    public boolean reorderIfRestockThresholdCrossed(int stockBefore) {
+        int restockThreshold = catalogItemDTO.getRestockThreshold();
+        if (stockBefore <= restockThreshold || catalogItemDTO.getAvailableStock() > restockThreshold) {
+            return false;
+        }
+        catalogItemDTO.setOnReorder(true);
+        return true;
+    }
+
     public CatalogItem getCatalogItem() {
         CatalogItem catalogItem = new CatalogItem();
         CatalogBrandMapper catalogBrandMapper = new CatalogBrandMapperImpl();
@@ -80,6 +111,7 @@ public class CatalogItemDomain {
         catalogItem.setRestockThreshold(catalogItemDTO.getRestockThreshold());
         catalogItem.setMaxStockThreshold(catalogItemDTO.getMaxStockThreshold());
         catalogItem.setOnReorder(catalogItemDTO.getOnReorder());
+        catalogItem.setVersion(catalogItemDTO.getVersion());
         catalogItem.setCatalogBrand(catalogBrandMapper.toEntity(catalogItemDTO.getCatalogBrand()));
         catalogItem.setCatalogType(catalogTypeMapper.toEntity(catalogItemDTO.getCatalogType()));
         return catalogItem;
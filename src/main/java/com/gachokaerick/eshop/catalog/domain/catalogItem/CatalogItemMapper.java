@@ -13,6 +13,7 @@ import org.mapstruct.Mapping;
 public interface CatalogItemMapper extends EntityMapper<CatalogItemDTO, CatalogItem> {
     @Mapping(target = "catalogBrand", source = "catalogBrand", qualifiedByName = "brand")
     @Mapping(target = "catalogType", source = "catalogType", qualifiedByName = "type")
+    @Mapping(target = "availableToSell", ignore = true)
     CatalogItemDTO toDto(CatalogItem s);
 
     default void partialUpdate(CatalogItem entity, CatalogItemDTO dto) {
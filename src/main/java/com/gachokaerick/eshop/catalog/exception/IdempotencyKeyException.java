@@ -0,0 +1,28 @@
+package com.gachokaerick.eshop.catalog.exception;
+
+/**
+ * Thrown when an {@code Idempotency-Key} cannot be honored: the request holding it is still being processed, or the
+ * key was already used for a different request.
+ */
+public final class IdempotencyKeyException extends RuntimeException {
+
+    public enum Reason {
+        IN_PROGRESS,
+        REUSED,
+    }
+
+    private final Reason reason;
+
+    public IdempotencyKeyException(String key, Reason reason) {
+        super(
+            reason == Reason.IN_PROGRESS
+                ? "A request with Idempotency-Key " + key + " is still being processed"
+                : "Idempotency-Key " + key + " was already used for a different request"
+        );
+        this.reason = reason;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+}
@@ -0,0 +1,28 @@
+package com.gachokaerick.eshop.catalog.exception;
+
+/**
+ * Thrown when a queued stock change is not written in time: either it was withdrawn from the queue before any writer
+ * took it, and nothing was changed, or it is still being written and may yet be applied.
+ */
+public final class StockQueueTimeoutException extends RuntimeException {
+
+    private final boolean mayBeApplied;
+
+    public StockQueueTimeoutException(Long catalogItemId, boolean mayBeApplied) {
+        super(
+            mayBeApplied
+                ? "Stock change of CatalogItem " + catalogItemId + " is still being written and may yet be applied"
+                : "Stock change of CatalogItem " + catalogItemId + " was not written in time and was withdrawn"
+        );
+        this.mayBeApplied = mayBeApplied;
+    }
+
+    /**
+     * Whether the stock change may yet be applied.
+     *
+     * @return {@code false} if the stock change was withdrawn, and nothing was changed.
+     */
+    public boolean mayBeApplied() {
+        return mayBeApplied;
+    }
+}
@@ -0,0 +1,77 @@
+package com.gachokaerick.eshop.catalog.model;
+
+import java.io.Serializable;
+import java.time.Instant;
+import javax.persistence.*;
+import javax.validation.constraints.*;
+
+/**
+ * The deletion of a catalogItem, written in the same transaction as the deletion, so that an export of the catalogItems
+ * modified since a date also lists the ones deleted since then.
+ */
+@Entity
+@Table(name = "catalog_item_deletion")
+public class CatalogItemDeletion implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @Column(name = "catalog_item_id")
+    private Long catalogItemId;
+
+    @NotNull
+    @Column(name = "deleted_date", nullable = false, updatable = false)
+    private Instant deletedDate;
+
+    public Long getCatalogItemId() {
+        return this.catalogItemId;
+    }
+
+    public CatalogItemDeletion catalogItemId(Long catalogItemId) {
+        this.setCatalogItemId(catalogItemId);
+        return this;
+    }
+
+    public void setCatalogItemId(Long catalogItemId) {
+        this.catalogItemId = catalogItemId;
+    }
+
+    public Instant getDeletedDate() {
+        return this.deletedDate;
+    }
+
+    public CatalogItemDeletion deletedDate(Instant deletedDate) {
+        this.setDeletedDate(deletedDate);
+        return this;
+    }
+
+    public void setDeletedDate(Instant deletedDate) {
+        this.deletedDate = deletedDate;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CatalogItemDeletion)) {
+            return false;
+        }
+        return catalogItemId != null && catalogItemId.equals(((CatalogItemDeletion) o).catalogItemId);
+    }
+
+    @Override
+    public int hashCode() {
+        // see https://vladmihalcea.com/how-to-implement-equals-and-hashcode-using-the-jpa-entity-identifier/
+        return getClass().hashCode();
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "CatalogItemDeletion{" +
+            "catalogItemId=" + getCatalogItemId() +
+            ", deletedDate='" + getDeletedDate() + "'" +
+            "}";
+    }
+}
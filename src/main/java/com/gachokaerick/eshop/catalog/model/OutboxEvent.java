@@ -0,0 +1,138 @@
+package com.gachokaerick.eshop.catalog.model;
+
+import java.io.Serializable;
+import java.time.Instant;
+import javax.persistence.*;
+import javax.validation.constraints.*;
+
+/**
+ * A message to publish to Kafka, written in the same transaction as the change it announces.
+ * <p>
+ * Events are deleted once the broker acknowledged them, so the table only holds the events not yet published.
+ */
+@Entity
+@Table(name = "outbox_event")
+public class OutboxEvent implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final int MAX_PAYLOAD_LENGTH = 4000;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sequenceGenerator")
+    @SequenceGenerator(name = "sequenceGenerator")
+    @Column(name = "id")
+    private Long id;
+
+    @NotNull
+    @Column(name = "topic", nullable = false, updatable = false)
+    private String topic;
+
+    @Column(name = "message_key", updatable = false)
+    private String messageKey;
+
+    /**
+     * The message, {@code null} for a tombstone
+     */
+    @Size(max = MAX_PAYLOAD_LENGTH)
+    @Column(name = "payload", length = MAX_PAYLOAD_LENGTH, updatable = false)
+    private String payload;
+
+    @NotNull
+    @Column(name = "created_date", nullable = false, updatable = false)
+    private Instant createdDate;
+
+    public Long getId() {
+        return this.id;
+    }
+
+    public OutboxEvent id(Long id) {
+        this.setId(id);
+        return this;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getTopic() {
+        return this.topic;
+    }
+
+    public OutboxEvent topic(String topic) {
+        this.setTopic(topic);
+        return this;
+    }
+
+    public void setTopic(String topic) {
+        this.topic = topic;
+    }
+
+    public String getMessageKey() {
+        return this.messageKey;
+    }
+
+    public OutboxEvent messageKey(String messageKey) {
+        this.setMessageKey(messageKey);
+        return this;
+    }
+
+    public void setMessageKey(String messageKey) {
+        this.messageKey = messageKey;
+    }
+
+    public String getPayload() {
+        return this.payload;
+    }
+
+    public OutboxEvent payload(String payload) {
+        this.setPayload(payload);
+        return this;
+    }
+
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
+
+    public Instant getCreatedDate() {
+        return this.createdDate;
+    }
+
+    public OutboxEvent createdDate(Instant createdDate) {
+        this.setCreatedDate(createdDate);
+        return this;
+    }
+
+    public void setCreatedDate(Instant createdDate) {
+        this.createdDate = createdDate;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof OutboxEvent)) {
+            return false;
+        }
+        return id != null && id.equals(((OutboxEvent) o).id);
+    }
+
+    @Override
+    public int hashCode() {
+        // see https://vladmihalcea.com/how-to-implement-equals-and-hashcode-using-the-jpa-entity-identifier/
+        return getClass().hashCode();
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "OutboxEvent{" +
+            "id=" + getId() +
+            ", topic='" + getTopic() + "'" +
+            ", messageKey='" + getMessageKey() + "'" +
+            ", payload='" + getPayload() + "'" +
+            ", createdDate='" + getCreatedDate() + "'" +
+            "}";
+    }
+}
@@ -0,0 +1,173 @@
+package com.gachokaerick.eshop.catalog.model;
+
+import java.io.Serializable;
+import java.time.Instant;
+import javax.persistence.*;
+import javax.validation.constraints.*;
+
+/**
+ * A restock alert not yet published: the latest crossing of the restock threshold of a catalogItem, written in the
+ * same transaction as the crossing, so that it survives a restart and is published by one instance only.
+ */
+@Entity
+@Table(name = "restock_alert")
+public class RestockAlert implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @Column(name = "catalog_item_id")
+    private Long catalogItemId;
+
+    @NotNull
+    @Column(name = "name", nullable = false)
+    private String name;
+
+    @NotNull
+    @Column(name = "available_stock", nullable = false)
+    private Integer availableStock;
+
+    @NotNull
+    @Column(name = "restock_threshold", nullable = false)
+    private Integer restockThreshold;
+
+    @NotNull
+    @Column(name = "max_stock_threshold", nullable = false)
+    private Integer maxStockThreshold;
+
+    /**
+     * When the stock last crossed the restock threshold.
+     */
+    @NotNull
+    @Column(name = "crossed_date", nullable = false)
+    private Instant crossedDate;
+
+    /**
+     * When the stock first crossed the restock threshold since the alert was last published.
+     */
+    @NotNull
+    @Column(name = "pending_since", nullable = false, updatable = false)
+    private Instant pendingSince;
+
+    public Long getCatalogItemId() {
+        return this.catalogItemId;
+    }
+
+    public RestockAlert catalogItemId(Long catalogItemId) {
+        this.setCatalogItemId(catalogItemId);
+        return this;
+    }
+
+    public void setCatalogItemId(Long catalogItemId) {
+        this.catalogItemId = catalogItemId;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public RestockAlert name(String name) {
+        this.setName(name);
+        return this;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public Integer getAvailableStock() {
+        return this.availableStock;
+    }
+
+    public RestockAlert availableStock(Integer availableStock) {
+        this.setAvailableStock(availableStock);
+        return this;
+    }
+
+    public void setAvailableStock(Integer availableStock) {
+        this.availableStock = availableStock;
+    }
+
+    public Integer getRestockThreshold() {
+        return this.restockThreshold;
+    }
+
+    public RestockAlert restockThreshold(Integer restockThreshold) {
+        this.setRestockThreshold(restockThreshold);
+        return this;
+    }
+
+    public void setRestockThreshold(Integer restockThreshold) {
+        this.restockThreshold = restockThreshold;
+    }
+
+    public Integer getMaxStockThreshold() {
+        return this.maxStockThreshold;
+    }
+
+    public RestockAlert maxStockThreshold(Integer maxStockThreshold) {
+        this.setMaxStockThreshold(maxStockThreshold);
+        return this;
+    }
+
+    public void setMaxStockThreshold(Integer maxStockThreshold) {
+        this.maxStockThreshold = maxStockThreshold;
+    }
+
+    public Instant getCrossedDate() {
+        return this.crossedDate;
+    }
+
+    public RestockAlert crossedDate(Instant crossedDate) {
+        this.setCrossedDate(crossedDate);
+        return this;
+    }
+
+    public void setCrossedDate(Instant crossedDate) {
+        this.crossedDate = crossedDate;
+    }
+
+    public Instant getPendingSince() {
+        return this.pendingSince;
+    }
+
+    public RestockAlert pendingSince(Instant pendingSince) {
+        this.setPendingSince(pendingSince);
+        return this;
+    }
+
+    public void setPendingSince(Instant pendingSince) {
+        this.pendingSince = pendingSince;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof RestockAlert)) {
+            return false;
+        }
+        return catalogItemId != null && catalogItemId.equals(((RestockAlert) o).catalogItemId);
+    }
+
+    @Override
+    public int hashCode() {
+        // see https://vladmihalcea.com/how-to-implement-equals-and-hashcode-using-the-jpa-entity-identifier/
+        return getClass().hashCode();
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "RestockAlert{" +
+            "catalogItemId=" + getCatalogItemId() +
+            ", name='" + getName() + "'" +
+            ", availableStock=" + getAvailableStock() +
+            ", restockThreshold=" + getRestockThreshold() +
+            ", maxStockThreshold=" + getMaxStockThreshold() +
+            ", crossedDate='" + getCrossedDate() + "'" +
+            ", pendingSince='" + getPendingSince() + "'" +
+            "}";
+    }
+}
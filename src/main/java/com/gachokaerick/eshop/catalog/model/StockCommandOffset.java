@@ -0,0 +1,80 @@
+package com.gachokaerick.eshop.catalog.model;
+
+import java.io.Serializable;
+import javax.persistence.*;
+import javax.validation.constraints.*;
+
+/**
+ * The offset of the next stock command to apply from a partition, written in the same transaction as the commands
+ * applied, so that the commands polled again after a crash or a rebalance are not applied twice.
+ */
+@Entity
+@Table(name = "stock_command_offset")
+public class StockCommandOffset implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The consumer group, topic and partition, as {@code group/topic-partition}.
+     */
+    @Id
+    @Size(max = 255)
+    @Column(name = "consumer_partition", length = 255)
+    private String consumerPartition;
+
+    @NotNull
+    @Column(name = "next_offset", nullable = false)
+    private Long nextOffset;
+
+    public String getConsumerPartition() {
+        return this.consumerPartition;
+    }
+
+    public StockCommandOffset consumerPartition(String consumerPartition) {
+        this.setConsumerPartition(consumerPartition);
+        return this;
+    }
+
+    public void setConsumerPartition(String consumerPartition) {
+        this.consumerPartition = consumerPartition;
+    }
+
+    public Long getNextOffset() {
+        return this.nextOffset;
+    }
+
+    public StockCommandOffset nextOffset(Long nextOffset) {
+        this.setNextOffset(nextOffset);
+        return this;
+    }
+
+    public void setNextOffset(Long nextOffset) {
+        this.nextOffset = nextOffset;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof StockCommandOffset)) {
+            return false;
+        }
+        return consumerPartition != null && consumerPartition.equals(((StockCommandOffset) o).consumerPartition);
+    }
+
+    @Override
+    public int hashCode() {
+        // see https://vladmihalcea.com/how-to-implement-equals-and-hashcode-using-the-jpa-entity-identifier/
+        return getClass().hashCode();
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "StockCommandOffset{" +
+            "consumerPartition='" + getConsumerPartition() + "'" +
+            ", nextOffset=" + getNextOffset() +
+            "}";
+    }
+}
@@ -0,0 +1,172 @@
+package com.gachokaerick.eshop.catalog.model;
+
+import com.gachokaerick.eshop.catalog.model.enumeration.StockMovementReason;
+import java.io.Serializable;
+import java.time.Instant;
+import javax.persistence.*;
+import javax.validation.constraints.*;
+
+/**
+ * A change of the stock of a catalogItem, appended to the stock journal.
+ * <p>
+ * Movements are never updated, except to mark them as compacted once their delta has been folded into
+ * {@code catalog_item.available_stock}.
+ */
+@Entity
+@Table(name = "stock_movement")
+public class StockMovement implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sequenceGenerator")
+    @SequenceGenerator(name = "sequenceGenerator")
+    @Column(name = "id")
+    private Long id;
+
+    @NotNull
+    @Column(name = "catalog_item_id", nullable = false, updatable = false)
+    private Long catalogItemId;
+
+    @NotNull
+    @Column(name = "delta", nullable = false, updatable = false)
+    private Integer delta;
+
+    @NotNull
+    @Enumerated(EnumType.STRING)
+    @Column(name = "reason", nullable = false, updatable = false)
+    private StockMovementReason reason;
+
+    @Column(name = "correlation_id", updatable = false)
+    private String correlationId;
+
+    @NotNull
+    @Column(name = "created_date", nullable = false, updatable = false)
+    private Instant createdDate;
+
+    @NotNull
+    @Column(name = "compacted", nullable = false)
+    private Boolean compacted = false;
+
+    public Long getId() {
+        return this.id;
+    }
+
+    public StockMovement id(Long id) {
+        this.setId(id);
+        return this;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getCatalogItemId() {
+        return this.catalogItemId;
+    }
+
+    public StockMovement catalogItemId(Long catalogItemId) {
+        this.setCatalogItemId(catalogItemId);
+        return this;
+    }
+
+    public void setCatalogItemId(Long catalogItemId) {
+        this.catalogItemId = catalogItemId;
+    }
+
+    public Integer getDelta() {
+        return this.delta;
+    }
+
+    public StockMovement delta(Integer delta) {
+        this.setDelta(delta);
+        return this;
+    }
+
+    public void setDelta(Integer delta) {
+        this.delta = delta;
+    }
+
+    public StockMovementReason getReason() {
+        return this.reason;
+    }
+
+    public StockMovement reason(StockMovementReason reason) {
+        this.setReason(reason);
+        return this;
+    }
+
+    public void setReason(StockMovementReason reason) {
+        this.reason = reason;
+    }
+
+    public String getCorrelationId() {
+        return this.correlationId;
+    }
+
+    public StockMovement correlationId(String correlationId) {
+        this.setCorrelationId(correlationId);
+        return this;
+    }
+
+    public void setCorrelationId(String correlationId) {
+        this.correlationId = correlationId;
+    }
+
+    public Instant getCreatedDate() {
+        return this.createdDate;
+    }
+
+    public StockMovement createdDate(Instant createdDate) {
+        this.setCreatedDate(createdDate);
+        return this;
+    }
+
+    public void setCreatedDate(Instant createdDate) {
+        this.createdDate = createdDate;
+    }
+
+    public Boolean getCompacted() {
+        return this.compacted;
+    }
+
+    public StockMovement compacted(Boolean compacted) {
+        this.setCompacted(compacted);
+        return this;
+    }
+
+    public void setCompacted(Boolean compacted) {
+        this.compacted = compacted;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof StockMovement)) {
+            return false;
+        }
+        return id != null && id.equals(((StockMovement) o).id);
+    }
+
+    @Override
+    public int hashCode() {
+        // see https://vladmihalcea.com/how-to-implement-equals-and-hashcode-using-the-jpa-entity-identifier/
+        return getClass().hashCode();
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "StockMovement{" +
+            "id=" + getId() +
+            ", catalogItemId=" + getCatalogItemId() +
+            ", delta=" + getDelta() +
+            ", reason='" + getReason() + "'" +
+            ", correlationId='" + getCorrelationId() + "'" +
+            ", createdDate='" + getCreatedDate() + "'" +
+            ", compacted='" + getCompacted() + "'" +
+            "}";
+    }
+}
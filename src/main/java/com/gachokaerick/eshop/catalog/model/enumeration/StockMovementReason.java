@@ -0,0 +1,10 @@
+package com.gachokaerick.eshop.catalog.model.enumeration;
+
+/**
+ * The StockMovementReason enumeration.
+ */
+public enum StockMovementReason {
+    ADD_STOCK,
+    REMOVE_STOCK,
+    ADJUSTMENT,
+}
@@ -0,0 +1,28 @@
+package com.gachokaerick.eshop.catalog.repository;
+
+import com.gachokaerick.eshop.catalog.model.CatalogItemDeletion;
+import java.time.Instant;
+import java.util.stream.Stream;
+import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Spring Data SQL repository for the CatalogItemDeletion entity.
+ */
+@SuppressWarnings("unused")
+@Repository
+public interface CatalogItemDeletionRepository extends JpaRepository<CatalogItemDeletion, Long> {
+    /**
+     * Stream the ids of the catalogItems deleted since a date, ordered by id. Must be consumed and closed within a
+     * transaction.
+     *
+     * @param deletedSince the earliest deletion date, inclusive.
+     * @return the stream of ids.
+     */
+    @Query(
+        "select catalogItemDeletion.catalogItemId from CatalogItemDeletion catalogItemDeletion " +
+        "where catalogItemDeletion.deletedDate >= :deletedSince order by catalogItemDeletion.catalogItemId"
+    )
+    Stream<Long> streamCatalogItemIdsDeletedSince(@Param("deletedSince") Instant deletedSince);
+}
@@ -1,7 +1,19 @@
 package com.gachokaerick.eshop.catalog.repository;
 
 import com.gachokaerick.eshop.catalog.domain.catalogItem.CatalogItem;
+import com.gachokaerick.eshop.catalog.service.dto.CatalogItemDTO;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 /**
@@ -9,4 +21,195 @@ import org.springframework.stereotype.Repository;
  */
 @SuppressWarnings("unused")
 @Repository
-public interface CatalogItemRepository extends JpaRepository<CatalogItem, Long> {}
+public interface CatalogItemRepository extends JpaRepository<CatalogItem, Long>, JpaSpecificationExecutor<CatalogItem> {
+    /**
+     * Rows fetched per round trip by the export cursors.
+     */
+    String EXPORT_FETCH_SIZE = "500";
+
+    /**
+     * Selects the catalogItems as DTOs, with their brand and type, without loading the entities.
+     */
+    String PROJECTION =
+        "select new com.gachokaerick.eshop.catalog.service.dto.CatalogItemDTO(catalogItem.id, catalogItem.name, " +
+        "catalogItem.description, catalogItem.price, catalogItem.pictureFileName, catalogItem.pictureUrl, catalogItem.availableStock, " +
+        "catalogItem.restockThreshold, catalogItem.maxStockThreshold, catalogItem.onReorder, catalogItem.version, " +
+        "catalogBrand.id, catalogBrand.brand, catalogType.id, catalogType.type) " +
+        "from CatalogItem catalogItem join catalogItem.catalogBrand catalogBrand join catalogItem.catalogType catalogType";
+
+    /**
+     * Get a page of catalogItems as DTOs, selected with their brand and type in one query without loading the entities.
+     *
+     * @param pageable the pagination information.
+     * @return the page of DTOs.
+     */
+    @Query(value = PROJECTION, countQuery = "select count(catalogItem) from CatalogItem catalogItem")
+    Page<CatalogItemDTO> findAllProjectedBy(Pageable pageable);
+
+    /**
+     * Get catalogItems by id as DTOs, selected with their brand and type in one query without loading the entities.
+     *
+     * @param ids the ids of the catalogItems.
+     * @return the DTOs of the catalogItems found, in no particular order.
+     */
+    @Query(PROJECTION + " where catalogItem.id in :ids")
+    List<CatalogItemDTO> findAllProjectedByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Stream all the catalogItems as DTOs, ordered by id, through a forward-only cursor reading
+     * {@value #EXPORT_FETCH_SIZE} rows per round trip. Must be consumed and closed within a transaction.
+     *
+     * @return the stream of DTOs.
+     */
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = EXPORT_FETCH_SIZE))
+    @Query(PROJECTION + " order by catalogItem.id")
+    Stream<CatalogItemDTO> streamAllProjectedBy();
+
+    /**
+     * Stream the catalogItems modified since a date as DTOs, ordered by id, through a forward-only cursor reading
+     * {@value #EXPORT_FETCH_SIZE} rows per round trip. Must be consumed and closed within a transaction.
+     *
+     * @param modifiedSince the earliest last modified date of the catalogItems, inclusive.
+     * @return the stream of DTOs.
+     */
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = EXPORT_FETCH_SIZE))
+    @Query(PROJECTION + " where catalogItem.lastModifiedDate >= :modifiedSince order by catalogItem.id")
+    Stream<CatalogItemDTO> streamAllProjectedByModifiedSince(@Param("modifiedSince") Instant modifiedSince);
+
+    /**
+     * Get the first catalogItems, without counting them.
+     *
+     * @param pageable the size and sort of the slice.
+     * @return the slice of entities.
+     */
+    Slice<CatalogItem> findAllBy(Pageable pageable);
+
+    /**
+     * Get the catalogItems following an id, without counting them. Seeks on the primary key.
+     *
+     * @param id       the id of the last catalogItem of the previous slice.
+     * @param pageable the size of the slice, sorted by id.
+     * @return the slice of entities.
+     */
+    Slice<CatalogItem> findAllByIdGreaterThan(Long id, Pageable pageable);
+
+    /**
+     * Get the catalogItems following a name and id, without counting them. Seeks on the {@code (name, id)} index.
+     *
+     * @param name     the name of the last catalogItem of the previous slice.
+     * @param id       the id of the last catalogItem of the previous slice.
+     * @param pageable the size of the slice, sorted by name then id.
+     * @return the slice of entities.
+     */
+    @Query(
+        "select catalogItem from CatalogItem catalogItem " +
+        "where catalogItem.name > :name or (catalogItem.name = :name and catalogItem.id > :id)"
+    )
+    Slice<CatalogItem> findAllAfterName(@Param("name") String name, @Param("id") Long id, Pageable pageable);
+
+    /**
+     * Get the text and stock of the catalogItems following an id, without loading the entities.
+     *
+     * @param id       the id of the last catalogItem of the previous slice.
+     * @param pageable the size of the slice.
+     * @return the text of the catalogItems, ordered by id.
+     */
+    @Query(
+        "select catalogItem.id as id, catalogItem.name as name, catalogItem.description as description, " +
+        "catalogItem.availableStock as availableStock " +
+        "from CatalogItem catalogItem where catalogItem.id > :id order by catalogItem.id"
+    )
+    List<Text> findTextByIdGreaterThan(@Param("id") Long id, Pageable pageable);
+
+    /**
+     * Load a catalogItem and hold a row lock on it until the end of the current transaction.
+     *
+     * @param id the id of the entity.
+     * @return the locked entity.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select catalogItem from CatalogItem catalogItem where catalogItem.id = :id")
+    Optional<CatalogItem> findByIdForUpdate(@Param("id") Long id);
+
+    /**
+     * Load several catalogItems and hold row locks on them until the end of the current transaction.
+     * Rows are locked in ascending id order so that concurrent callers cannot deadlock.
+     *
+     * @param ids the ids of the entities.
+     * @return the locked entities, ordered by id.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select catalogItem from CatalogItem catalogItem where catalogItem.id in :ids order by catalogItem.id")
+    List<CatalogItem> findAllByIdForUpdate(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Load the catalogItems following an id and hold row locks on them until the end of the current transaction.
+     *
+     * @param id       the id of the last catalogItem of the previous page.
+     * @param pageable the size of the page.
+     * @return the locked entities, ordered by id.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select catalogItem from CatalogItem catalogItem where catalogItem.id > :id order by catalogItem.id")
+    List<CatalogItem> findAllByIdGreaterThanForUpdate(@Param("id") Long id, Pageable pageable);
+
+    /**
+     * Get the available stock of a catalogItem as stored in {@code catalog_item}, from the database rather than the
+     * second-level cache.
+     *
+     * @param id the id of the entity.
+     * @return the available stock, or empty if the entity does not exist.
+     */
+    @Query("select catalogItem.availableStock from CatalogItem catalogItem where catalogItem.id = :id")
+    Optional<Integer> findAvailableStockById(@Param("id") Long id);
+
+    /**
+     * Remove up to {@code quantity} units from stock in a single statement (PostgreSQL only).
+     * Mirrors {@code CatalogItemDomain.removeStock}: the removal is clamped to the available stock that is not held.
+     *
+     * @param id       the id of the entity.
+     * @param quantity the quantity desired, must be greater than zero.
+     * @param held     the quantity held, which cannot be removed.
+     * @return the quantity actually removed, or empty if the item does not exist or is sold out.
+     */
+    @Query(
+        value = "with prev as (select id, available_stock from catalog_item where id = :id for update) " +
+        "update catalog_item c set available_stock = c.available_stock - least(:quantity, prev.available_stock - :held), " +
+        "version = c.version + 1, last_modified_date = current_timestamp " +
+        "from prev where c.id = prev.id and prev.available_stock > :held " +
+        "returning prev.available_stock - c.available_stock",
+        nativeQuery = true
+    )
+    Optional<Integer> removeStockReturning(@Param("id") Long id, @Param("quantity") int quantity, @Param("held") int held);
+
+    /**
+     * Add up to {@code quantity} units to stock in a single statement (PostgreSQL only).
+     * Mirrors {@code CatalogItemDomain.addStock}: the stock is capped at the maximum stock threshold.
+     *
+     * @param id       the id of the entity.
+     * @param quantity the quantity to add, must be greater than zero.
+     * @return the quantity actually added, or empty if the item does not exist.
+     */
+    @Query(
+        value = "with prev as (select id, available_stock from catalog_item where id = :id for update) " +
+        "update catalog_item c set available_stock = least(c.available_stock + :quantity, c.max_stock_threshold), on_reorder = false, " +
+        "version = c.version + 1, last_modified_date = current_timestamp " +
+        "from prev where c.id = prev.id " +
+        "returning c.available_stock - prev.available_stock",
+        nativeQuery = true
+    )
+    Optional<Integer> addStockReturning(@Param("id") Long id, @Param("quantity") int quantity);
+
+    /**
+     * Searchable text and stock of a catalogItem.
+     */
+    interface Text {
+        Long getId();
+
+        String getName();
+
+        String getDescription();
+
+        Integer getAvailableStock();
+    }
+}
@@ -0,0 +1,40 @@
+package com.gachokaerick.eshop.catalog.repository;
+
+import com.gachokaerick.eshop.catalog.model.OutboxEvent;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import javax.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Spring Data SQL repository for the OutboxEvent entity.
+ */
+@SuppressWarnings("unused")
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+    /**
+     * Lock the oldest events, so that the relays of other instances wait instead of publishing them again.
+     *
+     * @param pageable the maximum number of events.
+     * @return the events, in the order they were written.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select outboxEvent from OutboxEvent outboxEvent order by outboxEvent.id")
+    List<OutboxEvent> findOldestForUpdate(Pageable pageable);
+
+    Optional<OutboxEvent> findFirstByOrderByIdAsc();
+
+    /**
+     * Delete published events.
+     *
+     * @param ids the ids of the events.
+     * @return the number of events deleted.
+     */
+    @Modifying
+    @Query("delete from OutboxEvent outboxEvent where outboxEvent.id in :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+}
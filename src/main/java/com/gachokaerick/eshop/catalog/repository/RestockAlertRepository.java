@@ -0,0 +1,37 @@
+package com.gachokaerick.eshop.catalog.repository;
+
+import com.gachokaerick.eshop.catalog.model.RestockAlert;
+import java.util.List;
+import java.util.Optional;
+import javax.persistence.LockModeType;
+import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Spring Data SQL repository for the RestockAlert entity.
+ */
+@SuppressWarnings("unused")
+@Repository
+public interface RestockAlertRepository extends JpaRepository<RestockAlert, Long> {
+    /**
+     * Get the pending alert of a catalogItem and lock it until the end of the current transaction, waiting for a
+     * publication in progress to delete it.
+     *
+     * @param catalogItemId the id of the catalogItem.
+     * @return the pending alert, or empty if there is none.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select restockAlert from RestockAlert restockAlert where restockAlert.catalogItemId = :catalogItemId")
+    Optional<RestockAlert> findByIdForUpdate(@Param("catalogItemId") Long catalogItemId);
+
+    /**
+     * Get all the pending alerts and lock them until the end of the current transaction, so that only one instance
+     * publishes them.
+     *
+     * @return the pending alerts, ordered by catalogItem id.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select restockAlert from RestockAlert restockAlert order by restockAlert.catalogItemId")
+    List<RestockAlert> findAllForUpdate();
+}
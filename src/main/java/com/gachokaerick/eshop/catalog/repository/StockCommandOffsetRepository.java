@@ -0,0 +1,30 @@
+package com.gachokaerick.eshop.catalog.repository;
+
+import com.gachokaerick.eshop.catalog.model.StockCommandOffset;
+import java.util.Collection;
+import java.util.List;
+import javax.persistence.LockModeType;
+import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Spring Data SQL repository for the StockCommandOffset entity.
+ */
+@SuppressWarnings("unused")
+@Repository
+public interface StockCommandOffsetRepository extends JpaRepository<StockCommandOffset, String> {
+    /**
+     * Get the offsets of partitions and lock them until the end of the current transaction, so that the consumers
+     * applying the same partition during a rebalance apply each command once.
+     *
+     * @param consumerPartitions the consumer groups, topics and partitions.
+     * @return the offsets found.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query(
+        "select stockCommandOffset from StockCommandOffset stockCommandOffset " +
+        "where stockCommandOffset.consumerPartition in :consumerPartitions order by stockCommandOffset.consumerPartition"
+    )
+    List<StockCommandOffset> findAllByIdForUpdate(@Param("consumerPartitions") Collection<String> consumerPartitions);
+}
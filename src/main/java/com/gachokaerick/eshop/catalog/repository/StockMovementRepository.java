@@ -0,0 +1,60 @@
+package com.gachokaerick.eshop.catalog.repository;
+
+import com.gachokaerick.eshop.catalog.model.StockMovement;
+import java.util.List;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Spring Data SQL repository for the StockMovement entity.
+ */
+@SuppressWarnings("unused")
+@Repository
+public interface StockMovementRepository extends JpaRepository<StockMovement, Long> {
+    /**
+     * Sum of the movements of a catalogItem not yet folded into its available stock.
+     *
+     * @param catalogItemId the id of the catalogItem.
+     * @return the sum of the deltas, {@code 0} if there is none.
+     */
+    @Query(
+        "select coalesce(sum(stockMovement.delta), 0) from StockMovement stockMovement " +
+        "where stockMovement.catalogItemId = :catalogItemId and stockMovement.compacted = false"
+    )
+    long sumUncompacted(@Param("catalogItemId") Long catalogItemId);
+
+    /**
+     * Whether stock was added to a catalogItem since its last compaction.
+     *
+     * @param catalogItemId the id of the catalogItem.
+     * @param delta         {@code 0}.
+     * @return {@code true} if an uncompacted movement has a positive delta.
+     */
+    boolean existsByCatalogItemIdAndCompactedFalseAndDeltaGreaterThan(Long catalogItemId, Integer delta);
+
+    /**
+     * Ids of the catalogItems with movements not yet folded into their available stock.
+     *
+     * @return the ids.
+     */
+    @Query("select distinct stockMovement.catalogItemId from StockMovement stockMovement where stockMovement.compacted = false")
+    List<Long> findUncompactedCatalogItemIds();
+
+    /**
+     * Mark the movements of a catalogItem as folded into its available stock.
+     *
+     * @param catalogItemId the id of the catalogItem.
+     * @return the number of movements marked.
+     */
+    @Modifying
+    @Query(
+        "update StockMovement stockMovement set stockMovement.compacted = true " +
+        "where stockMovement.catalogItemId = :catalogItemId and stockMovement.compacted = false"
+    )
+    int markCompacted(@Param("catalogItemId") Long catalogItemId);
+
+    Page<StockMovement> findAllByCatalogItemIdOrderByIdDesc(Long catalogItemId, Pageable pageable);
+}
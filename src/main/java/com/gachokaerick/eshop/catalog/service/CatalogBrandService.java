@@ -25,9 +25,20 @@ public class CatalogBrandService {
 
     private final CatalogBrandMapper catalogBrandMapper;
 
-    public CatalogBrandService(CatalogBrandRepository catalogBrandRepository, CatalogBrandMapper catalogBrandMapper) {
+    private final CollectionVersionService collectionVersionService;
+
+    private final CatalogReadModel catalogReadModel;
+
+    public CatalogBrandService(
+        CatalogBrandRepository catalogBrandRepository,
+        CatalogBrandMapper catalogBrandMapper,
+        CollectionVersionService collectionVersionService,
+        CatalogReadModel catalogReadModel
+    ) {
         this.catalogBrandRepository = catalogBrandRepository;
         this.catalogBrandMapper = catalogBrandMapper;
+        this.collectionVersionService = collectionVersionService;
+        this.catalogReadModel = catalogReadModel;
     }
 
     /**
@@ -40,6 +51,7 @@ public class CatalogBrandService {
         log.debug("Request to save CatalogBrand : {}", catalogBrandDTO);
         CatalogBrand catalogBrand = catalogBrandMapper.toEntity(catalogBrandDTO);
         catalogBrand = catalogBrandRepository.save(catalogBrand);
+        changed(catalogBrand.getId());
         return catalogBrandMapper.toDto(catalogBrand);
     }
 
@@ -60,7 +72,10 @@ public class CatalogBrandService {
                 return existingCatalogBrand;
             })
             .map(catalogBrandRepository::save)
-            .map(catalogBrandMapper::toDto);
+            .map(catalogBrand -> {
+                changed(catalogBrand.getId());
+                return catalogBrandMapper.toDto(catalogBrand);
+            });
     }
 
     /**
@@ -95,5 +110,14 @@ public class CatalogBrandService {
     public void delete(Long id) {
         log.debug("Request to delete CatalogBrand : {}", id);
         catalogBrandRepository.deleteById(id);
+        changed(id);
+    }
+
+    /**
+     * The catalogItems embed their catalogBrand, so they change with it.
+     */
+    private void changed(Long id) {
+        collectionVersionService.changed(CollectionVersionService.CatalogCollection.BRANDS, CollectionVersionService.CatalogCollection.ITEMS);
+        catalogReadModel.brandChanged(id);
     }
 }
@@ -0,0 +1,310 @@
+package com.gachokaerick.eshop.catalog.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gachokaerick.eshop.catalog.config.ApplicationProperties;
+import com.gachokaerick.eshop.catalog.config.KafkaProperties;
+import com.gachokaerick.eshop.catalog.domain.catalogItem.CatalogItem;
+import com.gachokaerick.eshop.catalog.domain.catalogItem.CatalogItemMapper;
+import com.gachokaerick.eshop.catalog.repository.CatalogItemRepository;
+import com.gachokaerick.eshop.catalog.service.dto.CatalogBrandDTO;
+import com.gachokaerick.eshop.catalog.service.dto.CatalogItemChangeEventDTO;
+import com.gachokaerick.eshop.catalog.service.dto.CatalogItemDTO;
+import com.gachokaerick.eshop.catalog.service.dto.CatalogTypeDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.admin.Config;
+import org.apache.kafka.clients.admin.ConfigEntry;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.config.ConfigResource;
+import org.apache.kafka.common.config.TopicConfig;
+import org.apache.kafka.common.errors.TopicExistsException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Publishes the changes of the {@link CatalogItem}s to a log-compacted Kafka topic, so that other services keep their
+ * own copy of the catalog instead of polling it.
+ * <p>
+ * Each change is written as a {@link CatalogItemChangeEventDTO} keyed by catalogItem id, carrying the whole catalogItem,
+ * to the outbox of {@link OutboxService}: in the transaction of the change when there is one, so the event is published
+ * if and only if the change commits, in the order the changes were made. Compaction keeps the latest event of each
+ * item; a deletion is followed by a tombstone, so compaction eventually drops the item.
+ * <p>
+ * A new consumer rebuilds its copy by reading the topic from the start. {@link #snapshot()} writes every catalogItem
+ * to it, for a topic that does not hold the whole catalog yet. The number of events is published in the
+ * {@code catalog.change.events} counter, by type.
+ */
+@Service
+public class CatalogChangeEventService {
+
+    private final Logger log = LoggerFactory.getLogger(CatalogChangeEventService.class);
+
+    private final OutboxService outboxService;
+    private final CatalogItemRepository catalogItemRepository;
+    private final CatalogItemMapper catalogItemMapper;
+    private final StockJournalService stockJournalService;
+    private final KafkaProperties kafkaProperties;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final ApplicationProperties.ChangeEvents properties;
+    private final ApplicationProperties.Outbox outboxProperties;
+    private final TransactionTemplate transactionTemplate;
+
+    public CatalogChangeEventService(
+        OutboxService outboxService,
+        CatalogItemRepository catalogItemRepository,
+        CatalogItemMapper catalogItemMapper,
+        StockJournalService stockJournalService,
+        KafkaProperties kafkaProperties,
+        ObjectMapper objectMapper,
+        PlatformTransactionManager transactionManager,
+        MeterRegistry meterRegistry,
+        ApplicationProperties applicationProperties
+    ) {
+        this.outboxService = outboxService;
+        this.catalogItemRepository = catalogItemRepository;
+        this.catalogItemMapper = catalogItemMapper;
+        this.stockJournalService = stockJournalService;
+        this.kafkaProperties = kafkaProperties;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.properties = applicationProperties.getChangeEvents();
+        this.outboxProperties = applicationProperties.getOutbox();
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Create the compacted topic if it does not exist, once the application is ready.
+     * <p>
+     * The admin client is configured as the producers, with their security settings. An existing topic which is not
+     * compacted fails the startup: its consumers could not rebuild the catalog from it. A broker that cannot be reached
+     * is only logged, the outbox publishing the events once it is back.
+     *
+     * @throws IllegalStateException if the topic exists without the {@code compact} cleanup policy.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void createTopic() {
+        if (!properties.isEnabled() || !outboxProperties.isEnabled()) {
+            return;
+        }
+        NewTopic topic = new NewTopic(properties.getTopic(), properties.getPartitions(), properties.getReplicationFactor())
+            .configs(Map.of(TopicConfig.CLEANUP_POLICY_CONFIG, TopicConfig.CLEANUP_POLICY_COMPACT));
+        Duration timeout = outboxProperties.getSendTimeout();
+        Admin admin = null;
+        try {
+            admin = Admin.create(adminProps(timeout));
+            if (admin.listTopics().names().get(timeout.toMillis(), TimeUnit.MILLISECONDS).contains(properties.getTopic())) {
+                checkCompacted(admin, timeout);
+            } else {
+                admin.createTopics(List.of(topic)).all().get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+                log.info("Created the compacted topic {}", properties.getTopic());
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TopicExistsException) {
+                log.debug("The topic {} was created by another instance", properties.getTopic());
+            } else {
+                log.warn("Could not create the topic {}: {}", properties.getTopic(), e.getCause().getMessage());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (TimeoutException | KafkaException e) {
+            log.warn("Could not create the topic {}: {}", properties.getTopic(), e.getMessage());
+        } finally {
+            if (admin != null) {
+                admin.close(Duration.ZERO);
+            }
+        }
+    }
+
+    /**
+     * Check that the existing topic is compacted, so that it keeps the latest event of every catalogItem.
+     */
+    private void checkCompacted(Admin admin, Duration timeout) throws ExecutionException, InterruptedException, TimeoutException {
+        ConfigResource resource = new ConfigResource(ConfigResource.Type.TOPIC, properties.getTopic());
+        Config config = admin.describeConfigs(List.of(resource)).all().get(timeout.toMillis(), TimeUnit.MILLISECONDS).get(resource);
+        ConfigEntry cleanupPolicy = config.get(TopicConfig.CLEANUP_POLICY_CONFIG);
+        String value = cleanupPolicy != null ? cleanupPolicy.value() : null;
+        if (value == null || Arrays.stream(value.split(",")).map(String::trim).noneMatch(TopicConfig.CLEANUP_POLICY_COMPACT::equals)) {
+            throw new IllegalStateException(
+                "The topic " + properties.getTopic() + " has the cleanup policy " + value + ": set it to compact, or change the topic"
+            );
+        }
+    }
+
+    /**
+     * The settings of the admin client: those of the producers it knows of, such as the brokers and the security
+     * settings.
+     */
+    private Map<String, Object> adminProps(Duration timeout) {
+        Map<String, Object> adminProps = kafkaProperties.getProducerProps();
+        adminProps.keySet().retainAll(AdminClientConfig.configNames());
+        adminProps.put(AdminClientConfig.DEFAULT_API_TIMEOUT_MS_CONFIG, (int) timeout.toMillis());
+        return adminProps;
+    }
+
+    /**
+     * Publish the creation of a catalogItem.
+     *
+     * @param catalogItemDTO the catalogItem, as created.
+     */
+    public void created(CatalogItemDTO catalogItemDTO) {
+        publish(CatalogItemChangeEventDTO.Type.CREATED, catalogItemDTO.getId(), catalogItemDTO);
+    }
+
+    /**
+     * Publish an update of a catalogItem, typed by what it changed: {@code updated} if it changed the description of
+     * the item, otherwise {@code priceChanged} or {@code stockChanged}.
+     *
+     * @param before the catalogItem before the update.
+     * @param after  the catalogItem, as updated.
+     */
+    public void updated(CatalogItemDTO before, CatalogItemDTO after) {
+        publish(typeOf(before, after), after.getId(), after);
+    }
+
+    /**
+     * Publish a change of the stock of a catalogItem.
+     *
+     * @param catalogItemDTO the catalogItem, with its new stock.
+     */
+    public void stockChanged(CatalogItemDTO catalogItemDTO) {
+        publish(CatalogItemChangeEventDTO.Type.STOCK_CHANGED, catalogItemDTO.getId(), catalogItemDTO);
+    }
+
+    /**
+     * Publish the deletion of a catalogItem, followed by its tombstone.
+     *
+     * @param id the id of the catalogItem.
+     */
+    public void deleted(Long id) {
+        publish(CatalogItemChangeEventDTO.Type.DELETED, id, null);
+        if (properties.isEnabled()) {
+            transactionTemplate.executeWithoutResult(status -> outboxService.enqueue(properties.getTopic(), String.valueOf(id), null));
+        }
+    }
+
+    /**
+     * Write every catalogItem to the topic, as a {@code snapshot} event.
+     * <p>
+     * The catalogItems are written by pages of {@code application.change-events.snapshot-page-size}, each in its own
+     * transaction holding the locks on its items: a change made during the snapshot is written either before the item
+     * is read or after its snapshot event. Nothing is written if the change events are disabled.
+     *
+     * @return the number of catalogItems written.
+     */
+    public long snapshot() {
+        log.debug("Request to write a snapshot of the CatalogItems to {}", properties.getTopic());
+        if (!properties.isEnabled()) {
+            log.warn("Did not write a snapshot of the CatalogItems: the change events are disabled");
+            return 0;
+        }
+        int pageSize = Math.max(properties.getSnapshotPageSize(), 1);
+        long count = 0;
+        long after = Long.MIN_VALUE;
+        List<Long> written;
+        do {
+            long from = after;
+            written = transactionTemplate.execute(status -> writeSnapshotPage(from, pageSize));
+            count += written.size();
+            if (!written.isEmpty()) {
+                after = written.get(written.size() - 1);
+            }
+        } while (written.size() == pageSize);
+        log.info("Wrote a snapshot of {} CatalogItem(s) to {}", count, properties.getTopic());
+        return count;
+    }
+
+    private List<Long> writeSnapshotPage(long after, int pageSize) {
+        List<CatalogItem> catalogItems = catalogItemRepository.findAllByIdGreaterThanForUpdate(after, PageRequest.of(0, pageSize));
+        List<Long> written = new ArrayList<>(catalogItems.size());
+        for (CatalogItem catalogItem : catalogItems) {
+            CatalogItemDTO catalogItemDTO = catalogItemMapper.toDto(catalogItem);
+            // hold the running total as the rows, so journaled changes wait for the page too
+            catalogItemDTO.setAvailableStock(
+                stockJournalService.isEnabled() ? stockJournalService.lock(catalogItem) : catalogItem.getAvailableStock()
+            );
+            enqueue(CatalogItemChangeEventDTO.Type.SNAPSHOT, catalogItem.getId(), catalogItemDTO);
+            written.add(catalogItem.getId());
+        }
+        return written;
+    }
+
+    /**
+     * Write an event to the outbox, in the current transaction or in its own one.
+     */
+    private void publish(CatalogItemChangeEventDTO.Type type, Long id, CatalogItemDTO catalogItemDTO) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> enqueue(type, id, catalogItemDTO));
+    }
+
+    private void enqueue(CatalogItemChangeEventDTO.Type type, Long id, CatalogItemDTO catalogItemDTO) {
+        CatalogItemChangeEventDTO event = new CatalogItemChangeEventDTO(type, id, catalogItemDTO, Instant.now());
+        String payload;
+        try {
+            payload = objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not write the change event of CatalogItem " + id, e);
+        }
+        outboxService.enqueue(properties.getTopic(), String.valueOf(id), payload);
+        Counter.builder("catalog.change.events").tag("type", type.name()).register(meterRegistry).increment();
+    }
+
+    private static CatalogItemChangeEventDTO.Type typeOf(CatalogItemDTO before, CatalogItemDTO after) {
+        if (before == null) {
+            return CatalogItemChangeEventDTO.Type.CREATED;
+        }
+        boolean described =
+            Objects.equals(before.getName(), after.getName()) &&
+            Objects.equals(before.getDescription(), after.getDescription()) &&
+            Objects.equals(before.getPictureFileName(), after.getPictureFileName()) &&
+            Objects.equals(before.getPictureUrl(), after.getPictureUrl()) &&
+            Objects.equals(before.getRestockThreshold(), after.getRestockThreshold()) &&
+            Objects.equals(before.getMaxStockThreshold(), after.getMaxStockThreshold()) &&
+            Objects.equals(brandId(before), brandId(after)) &&
+            Objects.equals(typeId(before), typeId(after));
+        if (!described) {
+            return CatalogItemChangeEventDTO.Type.UPDATED;
+        }
+        if (Comparator.nullsFirst(Comparator.<BigDecimal>naturalOrder()).compare(before.getPrice(), after.getPrice()) != 0) {
+            return CatalogItemChangeEventDTO.Type.PRICE_CHANGED;
+        }
+        if (!Objects.equals(before.getAvailableStock(), after.getAvailableStock())) {
+            return CatalogItemChangeEventDTO.Type.STOCK_CHANGED;
+        }
+        return CatalogItemChangeEventDTO.Type.UPDATED;
+    }
+
+    private static Long brandId(CatalogItemDTO catalogItemDTO) {
+        CatalogBrandDTO catalogBrand = catalogItemDTO.getCatalogBrand();
+        return catalogBrand != null ? catalogBrand.getId() : null;
+    }
+
+    private static Long typeId(CatalogItemDTO catalogItemDTO) {
+        CatalogTypeDTO catalogType = catalogItemDTO.getCatalogType();
+        return catalogType != null ? catalogType.getId() : null;
+    }
+}
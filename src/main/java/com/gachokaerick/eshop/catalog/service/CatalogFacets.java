@@ -0,0 +1,508 @@
+package com.gachokaerick.eshop.catalog.service;
+
+import com.gachokaerick.eshop.catalog.service.criteria.CatalogItemCriteria;
+import com.gachokaerick.eshop.catalog.service.dto.CatalogItemDTO;
+import com.gachokaerick.eshop.catalog.service.dto.CatalogItemFacetsDTO;
+import com.gachokaerick.eshop.catalog.service.dto.CatalogItemFacetsDTO.FacetValue;
+import com.gachokaerick.eshop.catalog.service.dto.CatalogItemFacetsDTO.PriceBucket;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+import java.util.function.LongPredicate;
+import java.util.stream.IntStream;
+import tech.jhipster.service.filter.BigDecimalFilter;
+import tech.jhipster.service.filter.Filter;
+import tech.jhipster.service.filter.IntegerFilter;
+import tech.jhipster.service.filter.LongFilter;
+
+/**
+ * Columns of a {@link CatalogSnapshot} counted by the facets: the brand, type, price in cents and available stock of
+ * the catalogItem in each slot of the snapshot, in primitive arrays, with a bitset of the slots of each brand and type.
+ * <p>
+ * The columns are changed in place by the snapshot, under its write lock: changing a catalogItem writes its own slot and
+ * moves it between the bitsets of its old and new brand and type only. A free slot belongs to no brand nor type. Counting
+ * a large catalog is split in chunks of slots counted in parallel.
+ */
+final class CatalogFacets {
+
+    /**
+     * Order of the values of a facet: most catalogItems first, then by name.
+     */
+    static final Comparator<FacetValue> ORDER = Comparator
+        .comparingLong(FacetValue::getCount)
+        .reversed()
+        .thenComparing(FacetValue::getName, Comparator.nullsLast(Comparator.naturalOrder()));
+
+    private static final long NO_PRICE = Long.MIN_VALUE;
+    private static final int NO_STOCK = Integer.MIN_VALUE;
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    private final Dimension brands = new Dimension();
+    private final Dimension types = new Dimension();
+    private long[] prices = new long[0];
+    private int[] stocks = new int[0];
+
+    /**
+     * Number of slots, free or not.
+     */
+    private int size;
+
+    static CatalogFacets of(CatalogItemDTO[] items) {
+        CatalogFacets facets = new CatalogFacets();
+        for (int slot = 0; slot < items.length; slot++) {
+            facets.set(slot, items[slot]);
+        }
+        return facets;
+    }
+
+    /**
+     * Write the columns of the catalogItem in a slot, growing the columns if the slot is past their end.
+     *
+     * @param slot        the slot.
+     * @param catalogItem the catalogItem.
+     */
+    void set(int slot, CatalogItemDTO catalogItem) {
+        if (slot >= prices.length) {
+            int capacity = Math.max(slot + 1, prices.length * 2);
+            prices = Arrays.copyOf(prices, capacity);
+            stocks = Arrays.copyOf(stocks, capacity);
+            brands.grow(capacity);
+            types.grow(capacity);
+        }
+        size = Math.max(size, slot + 1);
+        prices[slot] = cents(catalogItem.getPrice());
+        stocks[slot] = stock(catalogItem.getAvailableStock());
+        brands.set(slot, catalogBrandId(catalogItem), catalogBrand(catalogItem));
+        types.set(slot, catalogTypeId(catalogItem), catalogType(catalogItem));
+    }
+
+    /**
+     * Free a slot, which then matches no criteria.
+     *
+     * @param slot the slot.
+     */
+    void clear(int slot) {
+        prices[slot] = NO_PRICE;
+        stocks[slot] = NO_STOCK;
+        brands.clear(slot);
+        types.clear(slot);
+    }
+
+    /**
+     * Slots of the catalogItems of the brands and types filtered by {@code equals} or {@code in}.
+     *
+     * @param criteria the criteria, may be {@code null}.
+     * @return the slots, or {@code null} if the criteria filter on neither brands nor types.
+     */
+    BitSet candidates(CatalogItemCriteria criteria) {
+        if (criteria == null) {
+            return null;
+        }
+        BitSet byBrand = brands.slots(criteria.getCatalogBrandId());
+        BitSet byType = types.slots(criteria.getCatalogTypeId());
+        if (byBrand != null && byType != null) {
+            byBrand.and(byType);
+        }
+        return byBrand != null ? byBrand : byType;
+    }
+
+    /**
+     * Predicate on the slots of the catalogItems matching criteria among the {@link #candidates}, reading the columns
+     * only.
+     *
+     * @param criteria the criteria, may be {@code null}.
+     * @return the predicate, or {@code null} if the criteria filter on something else than the columns.
+     */
+    IntPredicate filter(CatalogItemCriteria criteria) {
+        IntPredicate filter = slot -> true;
+        if (criteria == null) {
+            return filter;
+        }
+        if (
+            criteria.getId() != null ||
+            criteria.getName() != null ||
+            criteria.getOnReorder() != null ||
+            !Dimension.isEqualsOrIn(criteria.getCatalogBrandId()) ||
+            !Dimension.isEqualsOrIn(criteria.getCatalogTypeId())
+        ) {
+            return null;
+        }
+        if (criteria.getPrice() != null) {
+            LongPredicate price = price(criteria.getPrice());
+            if (price == null) {
+                return null;
+            }
+            filter = filter.and(slot -> prices[slot] != NO_PRICE && price.test(prices[slot]));
+        }
+        if (criteria.getAvailableStock() != null) {
+            IntPredicate stock = stock(criteria.getAvailableStock());
+            if (stock == null) {
+                return null;
+            }
+            filter = filter.and(slot -> stocks[slot] != NO_STOCK && stock.test(stocks[slot]));
+        }
+        return filter;
+    }
+
+    /**
+     * Count the catalogItems matching criteria per brand, type and price bucket.
+     * <p>
+     * Each facet is counted without the criterion on its own dimension: filtering on a brand still counts the catalogItems
+     * of the other brands, which the client may add to its selection. The total counts the catalogItems matching all
+     * the criteria.
+     *
+     * @param criteria          the criteria, may be {@code null}.
+     * @param fallback          the predicate on the slots of the catalogItems matching criteria the columns cannot
+     *                          filter on, only called for slots which are not free.
+     * @param bounds            the bounds between the price buckets, in ascending order.
+     * @param parallelThreshold the number of catalogItems from which to count in parallel.
+     * @return the counts.
+     */
+    CatalogItemFacetsDTO count(
+        CatalogItemCriteria criteria,
+        Function<CatalogItemCriteria, IntPredicate> fallback,
+        List<BigDecimal> bounds,
+        int parallelThreshold
+    ) {
+        CatalogItemCriteria others = criteria == null ? new CatalogItemCriteria() : criteria.copy();
+        others.setCatalogBrandId(null);
+        others.setCatalogTypeId(null);
+        others.setPrice(null);
+        CatalogItemCriteria byBrand = new CatalogItemCriteria();
+        CatalogItemCriteria byType = new CatalogItemCriteria();
+        CatalogItemCriteria byPrice = new CatalogItemCriteria();
+        if (criteria != null) {
+            byBrand.setCatalogBrandId(criteria.getCatalogBrandId());
+            byType.setCatalogTypeId(criteria.getCatalogTypeId());
+            byPrice.setPrice(criteria.getPrice());
+        }
+        Filters filters = new Filters(
+            predicate(others, fallback),
+            predicate(byBrand, fallback),
+            predicate(byType, fallback),
+            predicate(byPrice, fallback)
+        );
+
+        long[] boundCents = bounds.stream().mapToLong(bound -> bound(bound, RoundingMode.CEILING)).toArray();
+        int size = this.size;
+        Counts counts;
+        if (size < parallelThreshold || size <= CHUNK_SIZE) {
+            counts = count(filters, boundCents, 0, size);
+        } else {
+            counts =
+                IntStream
+                    .range(0, (size + CHUNK_SIZE - 1) / CHUNK_SIZE)
+                    .parallel()
+                    .mapToObj(chunk -> count(filters, boundCents, chunk * CHUNK_SIZE, Math.min(size, (chunk + 1) * CHUNK_SIZE)))
+                    .reduce(Counts::add)
+                    .orElseThrow();
+        }
+
+        CatalogItemFacetsDTO facets = new CatalogItemFacetsDTO();
+        facets.setTotal(counts.total);
+        facets.setCatalogBrands(brands.values(counts.brands));
+        facets.setCatalogTypes(types.values(counts.types));
+        List<PriceBucket> prices = new ArrayList<>(counts.buckets.length);
+        for (int bucket = 0; bucket < counts.buckets.length; bucket++) {
+            prices.add(
+                new PriceBucket(
+                    bucket == 0 ? null : bounds.get(bucket - 1),
+                    bucket == bounds.size() ? null : bounds.get(bucket),
+                    counts.buckets[bucket]
+                )
+            );
+        }
+        facets.setPrices(prices);
+        return facets;
+    }
+
+    /**
+     * Predicate on the slots of the catalogItems matching criteria, reading the columns when they can filter on the
+     * criteria.
+     */
+    private IntPredicate predicate(CatalogItemCriteria criteria, Function<CatalogItemCriteria, IntPredicate> fallback) {
+        IntPredicate filter = filter(criteria);
+        if (filter == null) {
+            filter = fallback.apply(criteria);
+        }
+        BitSet candidates = candidates(criteria);
+        if (candidates == null) {
+            return filter;
+        }
+        IntPredicate isCandidate = candidates::get;
+        return isCandidate.and(filter);
+    }
+
+    private Counts count(Filters filters, long[] boundCents, int from, int to) {
+        Counts counts = new Counts(brands.ids.size(), types.ids.size(), boundCents.length + 1);
+        for (int slot = from; slot < to; slot++) {
+            int brandOrdinal = brands.ordinals[slot];
+            if (brandOrdinal == Dimension.FREE || !filters.others.test(slot)) {
+                continue;
+            }
+            boolean brand = filters.brand.test(slot);
+            boolean type = filters.type.test(slot);
+            boolean price = filters.price.test(slot);
+            if (type && price) {
+                counts.brands[brandOrdinal]++;
+            }
+            if (brand && price) {
+                counts.types[types.ordinals[slot]]++;
+            }
+            if (brand && type) {
+                if (price) {
+                    counts.total++;
+                }
+                if (prices[slot] != NO_PRICE) {
+                    // number of bounds lower than or equal to the price
+                    int bucket = Arrays.binarySearch(boundCents, prices[slot]);
+                    counts.buckets[bucket < 0 ? -bucket - 1 : bucket + 1]++;
+                }
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Predicate on the prices in cents, the same as the filter on the prices, or {@code null} if it uses an operator
+     * which is not supported.
+     */
+    private static LongPredicate price(BigDecimalFilter filter) {
+        if (filter.getEquals() != null) {
+            return equalCents(filter.getEquals());
+        } else if (filter.getIn() != null) {
+            return filter.getIn().stream().map(CatalogFacets::equalCents).reduce(LongPredicate::or).orElse(price -> false);
+        } else if (filter.getSpecified() != null || filter.getNotEquals() != null || filter.getNotIn() != null) {
+            return null;
+        }
+        // prices are whole numbers of cents: price > bound if price > floor(bound), price >= bound if price >= ceil(bound)
+        LongPredicate price = cents -> true;
+        if (filter.getGreaterThan() != null) {
+            long bound = bound(filter.getGreaterThan(), RoundingMode.FLOOR);
+            price = price.and(cents -> cents > bound);
+        }
+        if (filter.getGreaterThanOrEqual() != null) {
+            long bound = bound(filter.getGreaterThanOrEqual(), RoundingMode.CEILING);
+            price = price.and(cents -> cents >= bound);
+        }
+        if (filter.getLessThan() != null) {
+            long bound = bound(filter.getLessThan(), RoundingMode.CEILING);
+            price = price.and(cents -> cents < bound);
+        }
+        if (filter.getLessThanOrEqual() != null) {
+            long bound = bound(filter.getLessThanOrEqual(), RoundingMode.FLOOR);
+            price = price.and(cents -> cents <= bound);
+        }
+        return price;
+    }
+
+    private static LongPredicate equalCents(BigDecimal price) {
+        BigDecimal cents = price.movePointRight(2);
+        if (cents.stripTrailingZeros().scale() > 0) {
+            return value -> false;
+        }
+        long expected = cents.longValueExact();
+        return value -> value == expected;
+    }
+
+    private static long bound(BigDecimal price, RoundingMode roundingMode) {
+        return price.movePointRight(2).setScale(0, roundingMode).longValueExact();
+    }
+
+    /**
+     * Predicate on the stocks, the same as the filter on the stocks, or {@code null} if it uses an operator which is not
+     * supported.
+     */
+    private static IntPredicate stock(IntegerFilter filter) {
+        if (filter.getEquals() != null) {
+            int expected = filter.getEquals();
+            return stock -> stock == expected;
+        } else if (filter.getIn() != null) {
+            int[] expected = filter.getIn().stream().mapToInt(Integer::intValue).toArray();
+            return stock -> Arrays.stream(expected).anyMatch(value -> value == stock);
+        } else if (filter.getSpecified() != null || filter.getNotEquals() != null || filter.getNotIn() != null) {
+            return null;
+        }
+        IntPredicate stock = value -> true;
+        if (filter.getGreaterThan() != null) {
+            int bound = filter.getGreaterThan();
+            stock = stock.and(value -> value > bound);
+        }
+        if (filter.getGreaterThanOrEqual() != null) {
+            int bound = filter.getGreaterThanOrEqual();
+            stock = stock.and(value -> value >= bound);
+        }
+        if (filter.getLessThan() != null) {
+            int bound = filter.getLessThan();
+            stock = stock.and(value -> value < bound);
+        }
+        if (filter.getLessThanOrEqual() != null) {
+            int bound = filter.getLessThanOrEqual();
+            stock = stock.and(value -> value <= bound);
+        }
+        return stock;
+    }
+
+    private static long cents(BigDecimal price) {
+        return price == null ? NO_PRICE : price.movePointRight(2).setScale(0, RoundingMode.HALF_EVEN).longValueExact();
+    }
+
+    private static int stock(Integer availableStock) {
+        return availableStock == null ? NO_STOCK : availableStock;
+    }
+
+    private static long catalogBrandId(CatalogItemDTO catalogItem) {
+        return catalogItem.getCatalogBrand().getId();
+    }
+
+    private static String catalogBrand(CatalogItemDTO catalogItem) {
+        return catalogItem.getCatalogBrand().getBrand();
+    }
+
+    private static long catalogTypeId(CatalogItemDTO catalogItem) {
+        return catalogItem.getCatalogType().getId();
+    }
+
+    private static String catalogType(CatalogItemDTO catalogItem) {
+        return catalogItem.getCatalogType().getType();
+    }
+
+    /**
+     * Brands or types: the id and name of each value, the value of the catalogItem in each slot as an index in
+     * {@code ids}, and the slots of the catalogItems of each value.
+     */
+    private static final class Dimension {
+
+        private static final int FREE = -1;
+
+        private final List<Long> ids = new ArrayList<>();
+        private final List<String> names = new ArrayList<>();
+        private final List<BitSet> slots = new ArrayList<>();
+        private final Map<Long, Integer> ordinalsById = new HashMap<>();
+        private int[] ordinals = new int[0];
+
+        private void grow(int capacity) {
+            int length = ordinals.length;
+            ordinals = Arrays.copyOf(ordinals, capacity);
+            Arrays.fill(ordinals, length, capacity, FREE);
+        }
+
+        /**
+         * Move a slot to the value of a catalogItem, which takes the name of the catalogItem.
+         */
+        private void set(int slot, long id, String name) {
+            Integer ordinal = ordinalsById.get(id);
+            if (ordinal == null) {
+                ordinal = ids.size();
+                ordinalsById.put(id, ordinal);
+                ids.add(id);
+                names.add(name);
+                slots.add(new BitSet());
+            } else {
+                names.set(ordinal, name);
+            }
+            if (ordinals[slot] != ordinal) {
+                clear(slot);
+                ordinals[slot] = ordinal;
+                slots.get(ordinal).set(slot);
+            }
+        }
+
+        private void clear(int slot) {
+            if (ordinals[slot] != FREE) {
+                slots.get(ordinals[slot]).clear(slot);
+                ordinals[slot] = FREE;
+            }
+        }
+
+        private static boolean isEqualsOrIn(Filter<?> filter) {
+            return filter == null || filter.getEquals() != null || filter.getIn() != null || isEmpty(filter);
+        }
+
+        private static boolean isEmpty(Filter<?> filter) {
+            return filter.getNotEquals() == null && filter.getNotIn() == null && filter.getSpecified() == null;
+        }
+
+        /**
+         * Slots of the catalogItems with the values filtered by {@code equals} or {@code in}, or {@code null} if the
+         * filter does not use them.
+         */
+        private BitSet slots(LongFilter filter) {
+            if (filter == null || (filter.getEquals() == null && filter.getIn() == null)) {
+                return null;
+            }
+            List<Long> values = filter.getEquals() != null ? List.of(filter.getEquals()) : filter.getIn();
+            BitSet matching = new BitSet();
+            for (Long value : values) {
+                Integer ordinal = ordinalsById.get(value);
+                if (ordinal != null) {
+                    matching.or(slots.get(ordinal));
+                }
+            }
+            return matching;
+        }
+
+        private List<FacetValue> values(long[] counts) {
+            List<FacetValue> values = new ArrayList<>();
+            for (int ordinal = 0; ordinal < counts.length; ordinal++) {
+                if (counts[ordinal] > 0) {
+                    values.add(new FacetValue(ids.get(ordinal), names.get(ordinal), counts[ordinal]));
+                }
+            }
+            values.sort(ORDER);
+            return values;
+        }
+    }
+
+    /**
+     * Predicates on the slots of the catalogItems matching the criteria on the brand, on the type, on the price,
+     * and on everything else.
+     */
+    private static final class Filters {
+
+        private final IntPredicate others;
+        private final IntPredicate brand;
+        private final IntPredicate type;
+        private final IntPredicate price;
+
+        private Filters(IntPredicate others, IntPredicate brand, IntPredicate type, IntPredicate price) {
+            this.others = others;
+            this.brand = brand;
+            this.type = type;
+            this.price = price;
+        }
+    }
+
+    /**
+     * Counts of a chunk of slots.
+     */
+    private static final class Counts {
+
+        private long total;
+        private final long[] brands;
+        private final long[] types;
+        private final long[] buckets;
+
+        private Counts(int brands, int types, int buckets) {
+            this.brands = new long[brands];
+            this.types = new long[types];
+            this.buckets = new long[buckets];
+        }
+
+        private Counts add(Counts other) {
+            total += other.total;
+            Arrays.setAll(brands, i -> brands[i] + other.brands[i]);
+            Arrays.setAll(types, i -> types[i] + other.types[i]);
+            Arrays.setAll(buckets, i -> buckets[i] + other.buckets[i]);
+            return this;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.gachokaerick.eshop.catalog.service;
+
+import com.gachokaerick.eshop.catalog.service.criteria.CatalogItemCriteria;
+import com.gachokaerick.eshop.catalog.service.dto.CatalogItemDTO;
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+import org.springframework.data.domain.Sort;
+import tech.jhipster.service.filter.Filter;
+import tech.jhipster.service.filter.RangeFilter;
+import tech.jhipster.service.filter.StringFilter;
+
+/**
+ * {@link CatalogItemCriteria} and {@link Sort} applied to {@link CatalogItemDTO}s in memory, with the semantics of the
+ * specifications built by {@link CatalogItemQueryService}: a catalogItem without a value matches no condition but
+ * {@code specified=false}, and {@code contains} ignores the case while {@code startsWith} does not.
+ */
+final class CatalogItemMatcher {
+
+    private static final Map<String, Comparator<CatalogItemDTO>> ORDERS = Map.of(
+        "id",
+        Comparator.comparing(CatalogItemDTO::getId),
+        "name",
+        nullsLast(CatalogItemDTO::getName),
+        "description",
+        nullsLast(CatalogItemDTO::getDescription),
+        "price",
+        nullsLast(CatalogItemDTO::getPrice),
+        "availableStock",
+        nullsLast(CatalogItemDTO::getAvailableStock),
+        "restockThreshold",
+        nullsLast(CatalogItemDTO::getRestockThreshold),
+        "maxStockThreshold",
+        nullsLast(CatalogItemDTO::getMaxStockThreshold),
+        "onReorder",
+        nullsLast(CatalogItemDTO::getOnReorder),
+        "version",
+        nullsLast(CatalogItemDTO::getVersion)
+    );
+
+    private CatalogItemMatcher() {}
+
+    /**
+     * Predicate matching the catalogItems which match all the filters of the criteria.
+     *
+     * @param criteria the criteria, may be {@code null}.
+     * @return the predicate.
+     */
+    static Predicate<CatalogItemDTO> filter(CatalogItemCriteria criteria) {
+        Predicate<CatalogItemDTO> filter = catalogItem -> true;
+        if (criteria == null) {
+            return filter;
+        }
+        if (criteria.getId() != null) {
+            filter = filter.and(matches(criteria.getId(), CatalogItemDTO::getId));
+        }
+        if (criteria.getName() != null) {
+            filter = filter.and(matches(criteria.getName(), CatalogItemDTO::getName));
+            String prefix = criteria.getName().getStartsWith();
+            if (prefix != null) {
+                filter = filter.and(catalogItem -> catalogItem.getName() != null && catalogItem.getName().startsWith(prefix));
+            }
+        }
+        if (criteria.getPrice() != null) {
+            filter = filter.and(matches(criteria.getPrice(), CatalogItemDTO::getPrice));
+        }
+        if (criteria.getAvailableStock() != null) {
+            filter = filter.and(matches(criteria.getAvailableStock(), CatalogItemDTO::getAvailableStock));
+        }
+        if (criteria.getOnReorder() != null) {
+            filter = filter.and(matches(criteria.getOnReorder(), CatalogItemDTO::getOnReorder));
+        }
+        if (criteria.getCatalogBrandId() != null) {
+            filter = filter.and(matches((Filter<Long>) criteria.getCatalogBrandId(), CatalogItemMatcher::catalogBrandId));
+        }
+        if (criteria.getCatalogTypeId() != null) {
+            filter = filter.and(matches((Filter<Long>) criteria.getCatalogTypeId(), CatalogItemMatcher::catalogTypeId));
+        }
+        return filter;
+    }
+
+    /**
+     * Comparator of the catalogItems in the order of a sort, then by id.
+     *
+     * @param sort the sort.
+     * @return the comparator, or {@code null} if the sort has a property or option which is only supported by the database.
+     */
+    static Comparator<CatalogItemDTO> order(Sort sort) {
+        Comparator<CatalogItemDTO> order = null;
+        for (Sort.Order property : sort) {
+            Comparator<CatalogItemDTO> comparator = ORDERS.get(property.getProperty());
+            if (comparator == null || property.isIgnoreCase() || property.getNullHandling() != Sort.NullHandling.NATIVE) {
+                return null;
+            }
+            comparator = property.isAscending() ? comparator : comparator.reversed();
+            order = order == null ? comparator : order.thenComparing(comparator);
+        }
+        Comparator<CatalogItemDTO> byId = ORDERS.get("id");
+        return order == null ? byId : order.thenComparing(byId);
+    }
+
+    private static <X> Predicate<CatalogItemDTO> matches(Filter<X> filter, Function<CatalogItemDTO, X> field) {
+        if (filter.getEquals() != null) {
+            return catalogItem -> same(field.apply(catalogItem), filter.getEquals());
+        } else if (filter.getIn() != null) {
+            return catalogItem -> in(field.apply(catalogItem), filter.getIn());
+        } else if (filter.getNotIn() != null) {
+            return catalogItem -> notIn(field.apply(catalogItem), filter.getNotIn());
+        } else if (filter.getNotEquals() != null) {
+            return catalogItem -> notSame(field.apply(catalogItem), filter.getNotEquals());
+        } else if (filter.getSpecified() != null) {
+            return catalogItem -> (field.apply(catalogItem) != null) == filter.getSpecified();
+        }
+        return catalogItem -> true;
+    }
+
+    private static Predicate<CatalogItemDTO> matches(StringFilter filter, Function<CatalogItemDTO, String> field) {
+        if (filter.getEquals() != null || filter.getIn() != null || filter.getNotIn() != null) {
+            return matches((Filter<String>) filter, field);
+        } else if (filter.getContains() != null) {
+            String contained = filter.getContains().toUpperCase(Locale.ROOT);
+            return catalogItem -> field.apply(catalogItem) != null && contains(field.apply(catalogItem), contained);
+        } else if (filter.getDoesNotContain() != null) {
+            String contained = filter.getDoesNotContain().toUpperCase(Locale.ROOT);
+            return catalogItem -> field.apply(catalogItem) != null && !contains(field.apply(catalogItem), contained);
+        }
+        return matches((Filter<String>) filter, field);
+    }
+
+    private static <X extends Comparable<? super X>> Predicate<CatalogItemDTO> matches(
+        RangeFilter<X> filter,
+        Function<CatalogItemDTO, X> field
+    ) {
+        if (filter.getEquals() != null) {
+            return catalogItem -> same(field.apply(catalogItem), filter.getEquals());
+        } else if (filter.getIn() != null) {
+            return catalogItem -> in(field.apply(catalogItem), filter.getIn());
+        }
+        Predicate<CatalogItemDTO> matches = catalogItem -> true;
+        if (filter.getSpecified() != null) {
+            matches = matches.and(catalogItem -> (field.apply(catalogItem) != null) == filter.getSpecified());
+        }
+        if (filter.getNotEquals() != null) {
+            matches = matches.and(catalogItem -> notSame(field.apply(catalogItem), filter.getNotEquals()));
+        }
+        if (filter.getNotIn() != null) {
+            matches = matches.and(catalogItem -> notIn(field.apply(catalogItem), filter.getNotIn()));
+        }
+        if (filter.getGreaterThan() != null) {
+            matches = matches.and(compares(field, filter.getGreaterThan(), comparison -> comparison > 0));
+        }
+        if (filter.getGreaterThanOrEqual() != null) {
+            matches = matches.and(compares(field, filter.getGreaterThanOrEqual(), comparison -> comparison >= 0));
+        }
+        if (filter.getLessThan() != null) {
+            matches = matches.and(compares(field, filter.getLessThan(), comparison -> comparison < 0));
+        }
+        if (filter.getLessThanOrEqual() != null) {
+            matches = matches.and(compares(field, filter.getLessThanOrEqual(), comparison -> comparison <= 0));
+        }
+        return matches;
+    }
+
+    private static <X extends Comparable<? super X>> Predicate<CatalogItemDTO> compares(
+        Function<CatalogItemDTO, X> field,
+        X bound,
+        IntPredicate comparison
+    ) {
+        return catalogItem -> {
+            X value = field.apply(catalogItem);
+            return value != null && comparison.test(value.compareTo(bound));
+        };
+    }
+
+    private static boolean contains(String value, String upperCased) {
+        return value.toUpperCase(Locale.ROOT).contains(upperCased);
+    }
+
+    private static boolean same(Object value, Object expected) {
+        if (value instanceof BigDecimal && expected instanceof BigDecimal) {
+            return ((BigDecimal) value).compareTo((BigDecimal) expected) == 0;
+        }
+        return value != null && value.equals(expected);
+    }
+
+    private static boolean notSame(Object value, Object expected) {
+        return value != null && !same(value, expected);
+    }
+
+    private static boolean in(Object value, Collection<?> values) {
+        return value != null && values.stream().anyMatch(expected -> same(value, expected));
+    }
+
+    private static boolean notIn(Object value, Collection<?> values) {
+        return value != null && values.stream().noneMatch(expected -> same(value, expected));
+    }
+
+    private static Long catalogBrandId(CatalogItemDTO catalogItem) {
+        return catalogItem.getCatalogBrand() == null ? null : catalogItem.getCatalogBrand().getId();
+    }
+
+    private static Long catalogTypeId(CatalogItemDTO catalogItem) {
+        return catalogItem.getCatalogType() == null ? null : catalogItem.getCatalogType().getId();
+    }
+
+    private static <X extends Comparable<? super X>> Comparator<CatalogItemDTO> nullsLast(Function<CatalogItemDTO, X> field) {
+        return Comparator.comparing(field, Comparator.nullsLast(Comparator.naturalOrder()));
+    }
+}
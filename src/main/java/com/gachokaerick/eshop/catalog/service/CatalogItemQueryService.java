@@ -0,0 +1,464 @@
+package com.gachokaerick.eshop.catalog.service;
+
+import com.gachokaerick.eshop.catalog.config.ApplicationProperties;
+import com.gachokaerick.eshop.catalog.domain.catalogItem.CatalogItem;
+import com.gachokaerick.eshop.catalog.domain.catalogItem.CatalogItem_;
+import com.gachokaerick.eshop.catalog.model.CatalogBrand;
+import com.gachokaerick.eshop.catalog.model.CatalogBrand_;
+import com.gachokaerick.eshop.catalog.model.CatalogType;
+import com.gachokaerick.eshop.catalog.model.CatalogType_;
+import com.gachokaerick.eshop.catalog.repository.CatalogItemRepository;
+import com.gachokaerick.eshop.catalog.service.criteria.CatalogItemCriteria;
+import com.gachokaerick.eshop.catalog.service.criteria.PrefixStringFilter;
+import com.gachokaerick.eshop.catalog.service.dto.CatalogBrandDTO;
+import com.gachokaerick.eshop.catalog.service.dto.CatalogItemDTO;
+import com.gachokaerick.eshop.catalog.service.dto.CatalogItemFacetsDTO;
+import com.gachokaerick.eshop.catalog.service.dto.CatalogItemFacetsDTO.FacetValue;
+import com.gachokaerick.eshop.catalog.service.dto.CatalogItemFacetsDTO.PriceBucket;
+import com.gachokaerick.eshop.catalog.service.dto.CatalogItemFields;
+import com.gachokaerick.eshop.catalog.service.dto.CatalogTypeDTO;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+import javax.persistence.Tuple;
+import javax.persistence.TupleElement;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Join;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+import javax.persistence.metamodel.SingularAttribute;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import tech.jhipster.service.QueryService;
+
+/**
+ * Service for executing complex queries for {@link CatalogItem} entities in the database.
+ * The main input is a {@link CatalogItemCriteria} which gets converted to {@link Specification},
+ * in a way that all the filters must apply.
+ * It returns a {@link List} of {@link CatalogItemDTO} or a {@link Page} of {@link CatalogItemDTO} which fulfills the criteria.
+ * <p>
+ * Brands and types are filtered on the foreign key columns of {@code catalog_item}, without joining their tables. The
+ * stock is filtered on the snapshot in {@code catalog_item.available_stock}, which does not include the changes not yet
+ * compacted by {@link StockJournalService}.
+ * <p>
+ * The DTOs are selected with a constructor expression joining the brand and type: no entity is loaded and MapStruct
+ * is not involved, so a page costs one query plus its count.
+ * <p>
+ * When {@link CatalogReadModel} is loaded, the criteria are matched in memory instead, unless the page is sorted on a
+ * property the read model cannot sort on. The stock is then filtered on the available stock as read by the clients.
+ */
+@Service
+@Transactional(readOnly = true)
+public class CatalogItemQueryService extends QueryService<CatalogItem> {
+
+    private final Logger log = LoggerFactory.getLogger(CatalogItemQueryService.class);
+
+    private final CatalogItemRepository catalogItemRepository;
+
+    private final StockJournalService stockJournalService;
+
+    private final CatalogReadModel catalogReadModel;
+
+    private final EntityManager entityManager;
+
+    private final ApplicationProperties.Facets facetsProperties;
+
+    public CatalogItemQueryService(
+        CatalogItemRepository catalogItemRepository,
+        StockJournalService stockJournalService,
+        CatalogReadModel catalogReadModel,
+        EntityManager entityManager,
+        ApplicationProperties applicationProperties
+    ) {
+        this.catalogItemRepository = catalogItemRepository;
+        this.stockJournalService = stockJournalService;
+        this.catalogReadModel = catalogReadModel;
+        this.entityManager = entityManager;
+        this.facetsProperties = applicationProperties.getFacets();
+    }
+
+    /**
+     * Return a {@link List} of {@link CatalogItemDTO} which matches the criteria from the database.
+     * @param criteria The object which holds all the filters, which the entities should match.
+     * @return the matching entities.
+     */
+    public List<CatalogItemDTO> findByCriteria(CatalogItemCriteria criteria) {
+        log.debug("find by criteria : {}", criteria);
+        if (catalogReadModel.isLoaded()) {
+            return catalogReadModel.findAll(criteria, Sort.unsorted());
+        }
+        final Specification<CatalogItem> specification = createSpecification(criteria);
+        return select(specification, Sort.unsorted()).getResultList().stream().map(this::withAvailableStock).collect(Collectors.toList());
+    }
+
+    /**
+     * Return a {@link Page} of {@link CatalogItemDTO} which matches the criteria from the database.
+     * @param criteria The object which holds all the filters, which the entities should match.
+     * @param page The page, which should be returned.
+     * @return the matching entities.
+     */
+    public Page<CatalogItemDTO> findByCriteria(CatalogItemCriteria criteria, Pageable page) {
+        return findByCriteria(criteria, page, CatalogItemFields.ALL);
+    }
+
+    /**
+     * Return a {@link Page} of {@link CatalogItemDTO} which matches the criteria from the database, with some of their
+     * properties only.
+     * <p>
+     * Only the columns of the fields are selected, and the brand and type are only joined when requested. The DTOs of
+     * {@link CatalogReadModel} are already in memory, so they are returned whole.
+     *
+     * @param criteria The object which holds all the filters, which the entities should match.
+     * @param page The page, which should be returned.
+     * @param fields The properties to read, the others may be {@code null}.
+     * @return the matching entities.
+     */
+    public Page<CatalogItemDTO> findByCriteria(CatalogItemCriteria criteria, Pageable page, CatalogItemFields fields) {
+        log.debug("find by criteria : {}, page: {}, fields: {}", criteria, page, fields);
+        if (catalogReadModel.isLoaded() && catalogReadModel.supports(page.getSort())) {
+            return catalogReadModel.findAll(criteria, page);
+        }
+        final Specification<CatalogItem> specification = createSpecification(criteria);
+        List<CatalogItemDTO> content;
+        if (fields.isAll()) {
+            content = paged(select(specification, page.getSort()), page).getResultList();
+        } else {
+            content =
+                paged(select(specification, page.getSort(), fields), page)
+                    .getResultStream()
+                    .map(CatalogItemQueryService::toDto)
+                    .collect(Collectors.toList());
+        }
+        if (fields.contains(CatalogItemFields.AVAILABLE_STOCK)) {
+            content.forEach(this::withAvailableStock);
+        }
+        return PageableExecutionUtils.getPage(content, page, () -> catalogItemRepository.count(specification));
+    }
+
+    /**
+     * Return the number of matching entities in the database.
+     * @param criteria The object which holds all the filters, which the entities should match.
+     * @return the number of matching entities.
+     */
+    public long countByCriteria(CatalogItemCriteria criteria) {
+        log.debug("count by criteria : {}", criteria);
+        if (catalogReadModel.isLoaded()) {
+            return catalogReadModel.count(criteria);
+        }
+        final Specification<CatalogItem> specification = createSpecification(criteria);
+        return catalogItemRepository.count(specification);
+    }
+
+    /**
+     * Count the matching entities per brand, type and price bucket, each facet without the criterion on its own
+     * dimension so that the client can select other values of it.
+     * <p>
+     * When {@link CatalogReadModel} holds the catalog in memory, the counts are read from its columns; otherwise they
+     * take one grouped query per brand and type, one query summing the price buckets, and one counting the total if
+     * the criteria filter on the price.
+     *
+     * @param criteria     The object which holds all the filters, which the entities should match.
+     * @param priceBuckets The bounds between the price buckets, the configured ones if {@code null} or empty.
+     * @return the counts.
+     */
+    public CatalogItemFacetsDTO facetsByCriteria(CatalogItemCriteria criteria, List<BigDecimal> priceBuckets) {
+        log.debug("facets by criteria : {}, price buckets: {}", criteria, priceBuckets);
+        List<BigDecimal> bounds = new ArrayList<>(
+            new TreeSet<>(priceBuckets == null || priceBuckets.isEmpty() ? facetsProperties.getPriceBuckets() : priceBuckets)
+        );
+        if (catalogReadModel.hasFacets()) {
+            return catalogReadModel.facets(criteria, bounds, facetsProperties.getParallelThreshold());
+        }
+        CatalogItemCriteria withoutBrand = criteria == null ? null : criteria.copy();
+        CatalogItemCriteria withoutType = criteria == null ? null : criteria.copy();
+        CatalogItemCriteria withoutPrice = criteria == null ? null : criteria.copy();
+        if (criteria != null) {
+            withoutBrand.setCatalogBrandId(null);
+            withoutType.setCatalogTypeId(null);
+            withoutPrice.setPrice(null);
+        }
+        CatalogItemFacetsDTO facets = countByPriceBucket(createSpecification(withoutPrice), bounds);
+        if (criteria != null && criteria.getPrice() != null) {
+            facets.setTotal(catalogItemRepository.count(createSpecification(criteria)));
+        }
+        facets.setCatalogBrands(
+            countBy(createSpecification(withoutBrand), CatalogItem_.catalogBrand, CatalogBrand_.id, CatalogBrand_.brand)
+        );
+        facets.setCatalogTypes(countBy(createSpecification(withoutType), CatalogItem_.catalogType, CatalogType_.id, CatalogType_.type));
+        return facets;
+    }
+
+    /**
+     * Function to convert {@link CatalogItemCriteria} to a {@link Specification}
+     * @param criteria The object which holds all the filters, which the entities should match.
+     * @return the matching {@link Specification} of the entity.
+     */
+    protected Specification<CatalogItem> createSpecification(CatalogItemCriteria criteria) {
+        Specification<CatalogItem> specification = Specification.where(null);
+        if (criteria != null) {
+            // This has to be called first, because the distinct method returns null
+            if (criteria.getDistinct() != null) {
+                specification = specification.and(distinct(criteria.getDistinct()));
+            }
+            if (criteria.getId() != null) {
+                specification = specification.and(buildRangeSpecification(criteria.getId(), CatalogItem_.id));
+            }
+            if (criteria.getName() != null) {
+                specification = specification.and(buildStringSpecification(criteria.getName(), CatalogItem_.name));
+                if (criteria.getName().getStartsWith() != null) {
+                    specification = specification.and(startsWith(criteria.getName()));
+                }
+            }
+            if (criteria.getPrice() != null) {
+                specification = specification.and(buildRangeSpecification(criteria.getPrice(), CatalogItem_.price));
+            }
+            if (criteria.getAvailableStock() != null) {
+                specification = specification.and(buildRangeSpecification(criteria.getAvailableStock(), CatalogItem_.availableStock));
+            }
+            if (criteria.getOnReorder() != null) {
+                specification = specification.and(buildSpecification(criteria.getOnReorder(), CatalogItem_.onReorder));
+            }
+            if (criteria.getCatalogBrandId() != null) {
+                specification =
+                    specification.and(
+                        buildSpecification(criteria.getCatalogBrandId(), root -> root.get(CatalogItem_.catalogBrand).get(CatalogBrand_.id))
+                    );
+            }
+            if (criteria.getCatalogTypeId() != null) {
+                specification =
+                    specification.and(
+                        buildSpecification(criteria.getCatalogTypeId(), root -> root.get(CatalogItem_.catalogType).get(CatalogType_.id))
+                    );
+            }
+        }
+        return specification;
+    }
+
+    private Specification<CatalogItem> startsWith(PrefixStringFilter filter) {
+        String prefix = filter.getStartsWith().replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+        return (root, query, builder) -> builder.like(root.get(CatalogItem_.name), prefix + "%", '\\');
+    }
+
+    /**
+     * Count the catalogItems matching a specification per value of their brand or type.
+     */
+    private <X> List<FacetValue> countBy(
+        Specification<CatalogItem> specification,
+        SingularAttribute<CatalogItem, X> attribute,
+        SingularAttribute<? super X, Long> id,
+        SingularAttribute<? super X, String> name
+    ) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = builder.createTupleQuery();
+        Root<CatalogItem> root = query.from(CatalogItem.class);
+        Join<CatalogItem, X> value = root.join(attribute);
+        query.multiselect(value.get(id), value.get(name), builder.count(root));
+        where(query, root, builder, specification);
+        query.groupBy(value.get(id), value.get(name));
+        return entityManager
+            .createQuery(query)
+            .getResultStream()
+            .map(tuple -> new FacetValue(tuple.get(0, Long.class), tuple.get(1, String.class), tuple.get(2, Long.class)))
+            .sorted(CatalogFacets.ORDER)
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Count the catalogItems matching a specification in total and per price bucket, in one query summing whether each
+     * catalogItem is in each bucket.
+     */
+    private CatalogItemFacetsDTO countByPriceBucket(Specification<CatalogItem> specification, List<BigDecimal> bounds) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = builder.createTupleQuery();
+        Root<CatalogItem> root = query.from(CatalogItem.class);
+        List<Selection<?>> selections = new ArrayList<>();
+        selections.add(builder.count(root));
+        for (int bucket = 0; bucket <= bounds.size(); bucket++) {
+            Path<BigDecimal> price = root.get(CatalogItem_.price);
+            Predicate inBucket = builder.and(
+                bucket == 0 ? builder.isNotNull(price) : builder.greaterThanOrEqualTo(price, bounds.get(bucket - 1)),
+                bucket == bounds.size() ? builder.isNotNull(price) : builder.lessThan(price, bounds.get(bucket))
+            );
+            selections.add(builder.sum(builder.<Integer>selectCase().when(inBucket, 1).otherwise(0)));
+        }
+        query.multiselect(selections);
+        where(query, root, builder, specification);
+        Tuple counts = entityManager.createQuery(query).getSingleResult();
+
+        CatalogItemFacetsDTO facets = new CatalogItemFacetsDTO();
+        facets.setTotal(((Number) counts.get(0)).longValue());
+        List<PriceBucket> prices = new ArrayList<>();
+        for (int bucket = 0; bucket <= bounds.size(); bucket++) {
+            Number count = (Number) counts.get(bucket + 1);
+            prices.add(
+                new PriceBucket(
+                    bucket == 0 ? null : bounds.get(bucket - 1),
+                    bucket == bounds.size() ? null : bounds.get(bucket),
+                    count == null ? 0 : count.longValue()
+                )
+            );
+        }
+        facets.setPrices(prices);
+        return facets;
+    }
+
+    private static void where(
+        CriteriaQuery<?> query,
+        Root<CatalogItem> root,
+        CriteriaBuilder builder,
+        Specification<CatalogItem> specification
+    ) {
+        Predicate predicate = specification.toPredicate(root, query, builder);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+    }
+
+    /**
+     * Query selecting the DTOs of the catalogItems matching a specification, with their brand and type.
+     */
+    private TypedQuery<CatalogItemDTO> select(Specification<CatalogItem> specification, Sort sort) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<CatalogItemDTO> query = builder.createQuery(CatalogItemDTO.class);
+        Root<CatalogItem> root = query.from(CatalogItem.class);
+        Join<CatalogItem, CatalogBrand> catalogBrand = root.join(CatalogItem_.catalogBrand);
+        Join<CatalogItem, CatalogType> catalogType = root.join(CatalogItem_.catalogType);
+        query.select(
+            builder.construct(
+                CatalogItemDTO.class,
+                root.get(CatalogItem_.id),
+                root.get(CatalogItem_.name),
+                root.get(CatalogItem_.description),
+                root.get(CatalogItem_.price),
+                root.get(CatalogItem_.pictureFileName),
+                root.get(CatalogItem_.pictureUrl),
+                root.get(CatalogItem_.availableStock),
+                root.get(CatalogItem_.restockThreshold),
+                root.get(CatalogItem_.maxStockThreshold),
+                root.get(CatalogItem_.onReorder),
+                root.get(CatalogItem_.version),
+                catalogBrand.get(CatalogBrand_.id),
+                catalogBrand.get(CatalogBrand_.brand),
+                catalogType.get(CatalogType_.id),
+                catalogType.get(CatalogType_.type)
+            )
+        );
+        where(query, root, builder, specification);
+        query.orderBy(QueryUtils.toOrders(sort, root, builder));
+        return entityManager.createQuery(query);
+    }
+
+    /**
+     * Query selecting the columns of some fields of the catalogItems matching a specification, each aliased with the
+     * name of its field; the names of the brand and type are aliased {@code catalogBrandName} and
+     * {@code catalogTypeName}.
+     */
+    private TypedQuery<Tuple> select(Specification<CatalogItem> specification, Sort sort, CatalogItemFields fields) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = builder.createTupleQuery();
+        Root<CatalogItem> root = query.from(CatalogItem.class);
+        List<Selection<?>> selections = new ArrayList<>();
+        for (String field : fields.getNames()) {
+            switch (field) {
+                case CatalogItemFields.CATALOG_BRAND:
+                    Join<CatalogItem, CatalogBrand> catalogBrand = root.join(CatalogItem_.catalogBrand);
+                    selections.add(catalogBrand.get(CatalogBrand_.id).alias(field));
+                    selections.add(catalogBrand.get(CatalogBrand_.brand).alias("catalogBrandName"));
+                    break;
+                case CatalogItemFields.CATALOG_TYPE:
+                    Join<CatalogItem, CatalogType> catalogType = root.join(CatalogItem_.catalogType);
+                    selections.add(catalogType.get(CatalogType_.id).alias(field));
+                    selections.add(catalogType.get(CatalogType_.type).alias("catalogTypeName"));
+                    break;
+                case CatalogItemFields.AVAILABLE_TO_SELL:
+                    // computed for a single catalogItem only
+                    break;
+                default:
+                    selections.add(root.get(field).alias(field));
+            }
+        }
+        query.multiselect(selections);
+        where(query, root, builder, specification);
+        query.orderBy(QueryUtils.toOrders(sort, root, builder));
+        return entityManager.createQuery(query);
+    }
+
+    private static CatalogItemDTO toDto(Tuple tuple) {
+        CatalogItemDTO catalogItemDTO = new CatalogItemDTO();
+        for (TupleElement<?> element : tuple.getElements()) {
+            Object value = tuple.get(element);
+            switch (element.getAlias()) {
+                case CatalogItemFields.ID:
+                    catalogItemDTO.setId((Long) value);
+                    break;
+                case CatalogItemFields.NAME:
+                    catalogItemDTO.setName((String) value);
+                    break;
+                case CatalogItemFields.DESCRIPTION:
+                    catalogItemDTO.setDescription((String) value);
+                    break;
+                case CatalogItemFields.PRICE:
+                    catalogItemDTO.setPrice((BigDecimal) value);
+                    break;
+                case CatalogItemFields.PICTURE_FILE_NAME:
+                    catalogItemDTO.setPictureFileName((String) value);
+                    break;
+                case CatalogItemFields.PICTURE_URL:
+                    catalogItemDTO.setPictureUrl((String) value);
+                    break;
+                case CatalogItemFields.AVAILABLE_STOCK:
+                    catalogItemDTO.setAvailableStock((Integer) value);
+                    break;
+                case CatalogItemFields.RESTOCK_THRESHOLD:
+                    catalogItemDTO.setRestockThreshold((Integer) value);
+                    break;
+                case CatalogItemFields.MAX_STOCK_THRESHOLD:
+                    catalogItemDTO.setMaxStockThreshold((Integer) value);
+                    break;
+                case CatalogItemFields.ON_REORDER:
+                    catalogItemDTO.setOnReorder((Boolean) value);
+                    break;
+                case CatalogItemFields.VERSION:
+                    catalogItemDTO.setVersion((Integer) value);
+                    break;
+                case CatalogItemFields.CATALOG_BRAND:
+                    catalogItemDTO.setCatalogBrand(new CatalogBrandDTO((Long) value, tuple.get("catalogBrandName", String.class)));
+                    break;
+                case CatalogItemFields.CATALOG_TYPE:
+                    catalogItemDTO.setCatalogType(new CatalogTypeDTO((Long) value, tuple.get("catalogTypeName", String.class)));
+                    break;
+                default:
+                    // the name of the brand or type, read with its id
+            }
+        }
+        return catalogItemDTO;
+    }
+
+    private static <T> TypedQuery<T> paged(TypedQuery<T> query, Pageable page) {
+        if (page.isPaged()) {
+            query.setFirstResult((int) page.getOffset());
+            query.setMaxResults(page.getPageSize());
+        }
+        return query;
+    }
+
+    private CatalogItemDTO withAvailableStock(CatalogItemDTO catalogItemDTO) {
+        catalogItemDTO.setAvailableStock(stockJournalService.availableStock(catalogItemDTO.getId(), catalogItemDTO.getAvailableStock()));
+        return catalogItemDTO;
+    }
+}
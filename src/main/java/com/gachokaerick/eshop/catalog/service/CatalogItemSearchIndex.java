@@ -0,0 +1,189 @@
+package com.gachokaerick.eshop.catalog.service;
+
+import com.gachokaerick.eshop.catalog.config.ApplicationProperties;
+import com.gachokaerick.eshop.catalog.repository.CatalogItemRepository;
+import com.gachokaerick.eshop.catalog.service.dto.CatalogItemDTO;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.topic.ITopic;
+import com.hazelcast.topic.Message;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+/**
+ * Full-text index of the name and description of the catalogItems, and names suggested while typing, held in memory by
+ * each instance.
+ * <p>
+ * Suggestions are ranked by available stock and answered from memory only. The amount of memory they take is
+ * published in the {@code catalog.search.suggest.bytes} gauge.
+ * <p>
+ * The index is built from the database once the application is ready, then kept up to date by
+ * {@link CatalogItemService}. Each change is also published on the Hazelcast topic {@value #TOPIC_NAME}, so that the
+ * other members of the cluster apply it to their own index.
+ * <p>
+ * Searches only give ids: callers read the catalogItems from the database, so an id left behind by a rolled back
+ * change is never returned.
+ */
+@Service
+public class CatalogItemSearchIndex {
+
+    public static final String TOPIC_NAME = "catalog-item-search";
+
+    private final Logger log = LoggerFactory.getLogger(CatalogItemSearchIndex.class);
+
+    private final CatalogItemRepository catalogItemRepository;
+    private final ApplicationProperties.Search properties;
+    private final InvertedIndex index;
+    private final NameSuggester suggester;
+    private final ITopic<Change> topic;
+    private final UUID listener;
+
+    public CatalogItemSearchIndex(
+        CatalogItemRepository catalogItemRepository,
+        HazelcastInstance hazelcastInstance,
+        ApplicationProperties applicationProperties,
+        MeterRegistry meterRegistry
+    ) {
+        this.catalogItemRepository = catalogItemRepository;
+        this.properties = applicationProperties.getSearch();
+        this.index = new InvertedIndex(properties.getMaxExpansions(), properties.getFuzzyMinLength());
+        this.suggester = new NameSuggester(properties.getSuggestMaxPending());
+        Gauge.builder("catalog.search.suggest.bytes", suggester, NameSuggester::footprint).register(meterRegistry);
+        this.topic = hazelcastInstance.getTopic(TOPIC_NAME);
+        this.listener = topic.addMessageListener(this::onMessage);
+    }
+
+    @PreDestroy
+    public void stop() {
+        topic.removeMessageListener(listener);
+    }
+
+    /**
+     * Index all the catalogItems.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        long start = System.currentTimeMillis();
+        long lastId = Long.MIN_VALUE;
+        List<CatalogItemRepository.Text> batch;
+        List<NameSuggester.Suggestion> suggestions = new ArrayList<>();
+        do {
+            batch = catalogItemRepository.findTextByIdGreaterThan(lastId, PageRequest.of(0, properties.getBuildBatchSize()));
+            Map<Long, String[]> texts = new HashMap<>(batch.size() * 2);
+            for (CatalogItemRepository.Text text : batch) {
+                texts.put(text.getId(), new String[] { text.getName(), text.getDescription() });
+                suggestions.add(new NameSuggester.Suggestion(text.getId(), text.getName(), text.getAvailableStock()));
+                lastId = text.getId();
+            }
+            index.putAll(texts);
+        } while (batch.size() == properties.getBuildBatchSize());
+        suggester.putAll(suggestions);
+        log.info(
+            "Indexed {} CatalogItems ({} tokens, {} KB of suggestions) for search in {} ms",
+            index.size(),
+            index.tokens(),
+            suggester.footprint() / 1024,
+            System.currentTimeMillis() - start
+        );
+    }
+
+    /**
+     * Search the catalogItems by name and description.
+     *
+     * @param query the words to look for, the last ones may be incomplete or misspelled.
+     * @param limit the maximum number of ids.
+     * @return the ids of the matching catalogItems, best match first.
+     */
+    public List<Long> search(String query, int limit) {
+        return index.search(query, limit);
+    }
+
+    /**
+     * Suggest the names of catalogItems starting with a prefix, most available first.
+     *
+     * @param prefix the beginning of the name, compared lower-cased and without accents.
+     * @param limit  the maximum number of names.
+     * @return the suggested names.
+     */
+    public List<NameSuggester.Suggestion> suggest(String prefix, int limit) {
+        return suggester.suggest(prefix, limit);
+    }
+
+    /**
+     * Index a catalogItem created or updated by this instance, including a change of its stock.
+     *
+     * @param catalogItemDTO the catalogItem.
+     */
+    public void indexed(CatalogItemDTO catalogItemDTO) {
+        Change change = new Change(
+            catalogItemDTO.getId(),
+            catalogItemDTO.getName(),
+            catalogItemDTO.getDescription(),
+            catalogItemDTO.getAvailableStock(),
+            false
+        );
+        apply(change);
+        topic.publish(change);
+    }
+
+    /**
+     * Remove a catalogItem deleted by this instance.
+     *
+     * @param id the id of the catalogItem.
+     */
+    public void removed(Long id) {
+        Change change = new Change(id, null, null, null, true);
+        apply(change);
+        topic.publish(change);
+    }
+
+    private void onMessage(Message<Change> message) {
+        if (message.getPublishingMember() == null || !message.getPublishingMember().localMember()) {
+            apply(message.getMessageObject());
+        }
+    }
+
+    private void apply(Change change) {
+        if (change.deleted) {
+            index.remove(change.id);
+            suggester.remove(change.id);
+        } else {
+            index.put(change.id, change.name, change.description);
+            suggester.put(change.id, change.name, change.availableStock == null ? 0 : change.availableStock);
+        }
+    }
+
+    /**
+     * Change of the searchable text or stock of a catalogItem.
+     */
+    static final class Change implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long id;
+        private final String name;
+        private final String description;
+        private final Integer availableStock;
+        private final boolean deleted;
+
+        Change(long id, String name, String description, Integer availableStock, boolean deleted) {
+            this.id = id;
+            this.name = name;
+            this.description = description;
+            this.availableStock = availableStock;
+            this.deleted = deleted;
+        }
+    }
+}
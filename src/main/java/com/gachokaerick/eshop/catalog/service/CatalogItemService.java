@@ -3,17 +3,59 @@ package com.gachokaerick.eshop.catalog.service;
 import com.gachokaerick.eshop.catalog.domain.catalogItem.CatalogItem;
 import com.gachokaerick.eshop.catalog.domain.catalogItem.CatalogItemDomain;
 import com.gachokaerick.eshop.catalog.domain.catalogItem.CatalogItemMapper;
+import com.gachokaerick.eshop.catalog.model.CatalogItemDeletion;
+import com.gachokaerick.eshop.catalog.repository.CatalogItemDeletionRepository;
 import com.gachokaerick.eshop.catalog.repository.CatalogItemRepository;
+import com.gachokaerick.eshop.catalog.service.dto.CatalogItemCursor;
 import com.gachokaerick.eshop.catalog.service.dto.CatalogItemDTO;
+import com.gachokaerick.eshop.catalog.service.dto.CatalogItemSuggestionDTO;
+import com.gachokaerick.eshop.catalog.service.dto.StockLineDTO;
+import com.gachokaerick.eshop.catalog.service.dto.StockMovementDTO;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.persistence.EntityManager;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 /**
  * Service Implementation for managing CatalogItems.
+ * <p>
+ * Updates are checked against the version of the entity. An update made against a version given by the client fails
+ * if the entity changed since; other updates and stock changes are retried by {@link OptimisticLockRetry}. Stock
+ * changes of a single item go through {@link StockWriteQueue}, which batches them when the item is contended.
+ * <p>
+ * The available stock read includes the stock changes not yet compacted by {@link StockJournalService}.
+ * <p>
+ * When {@link CatalogReadModel} is loaded, catalogItems are read by id, in pages sorted on their own columns and after an
+ * id cursor from memory; the changes made here are swapped into it once committed.
+ * <p>
+ * An update that takes the stock of an item from above its restock threshold down to it or below it puts the item on
+ * reorder and is alerted to {@link RestockAlertService}; stock changes are in {@link StockMutationService}.
+ * <p>
+ * Every write is published by {@link CatalogChangeEventService}, in the same transaction.
  */
 @Service
 public class CatalogItemService {
@@ -21,11 +63,53 @@ public class CatalogItemService {
     private final Logger log = LoggerFactory.getLogger(CatalogItemService.class);
 
     private final CatalogItemRepository catalogItemRepository;
+    private final CatalogItemDeletionRepository catalogItemDeletionRepository;
     private final CatalogItemMapper catalogItemMapper;
+    private final StockMutationService stockMutationService;
+    private final StockWriteQueue stockWriteQueue;
+    private final StockHoldService stockHoldService;
+    private final StockJournalService stockJournalService;
+    private final RestockAlertService restockAlertService;
+    private final CatalogChangeEventService catalogChangeEventService;
+    private final OptimisticLockRetry optimisticLockRetry;
+    private final CatalogItemSearchIndex catalogItemSearchIndex;
+    private final CollectionVersionService collectionVersionService;
+    private final CatalogReadModel catalogReadModel;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
 
-    public CatalogItemService(CatalogItemRepository catalogItemRepository, CatalogItemMapper catalogItemMapper) {
+    public CatalogItemService(
+        CatalogItemRepository catalogItemRepository,
+        CatalogItemDeletionRepository catalogItemDeletionRepository,
+        CatalogItemMapper catalogItemMapper,
+        StockMutationService stockMutationService,
+        StockWriteQueue stockWriteQueue,
+        StockHoldService stockHoldService,
+        StockJournalService stockJournalService,
+        RestockAlertService restockAlertService,
+        CatalogChangeEventService catalogChangeEventService,
+        OptimisticLockRetry optimisticLockRetry,
+        CatalogItemSearchIndex catalogItemSearchIndex,
+        CollectionVersionService collectionVersionService,
+        CatalogReadModel catalogReadModel,
+        EntityManager entityManager,
+        PlatformTransactionManager transactionManager
+    ) {
         this.catalogItemRepository = catalogItemRepository;
+        this.catalogItemDeletionRepository = catalogItemDeletionRepository;
         this.catalogItemMapper = catalogItemMapper;
+        this.stockMutationService = stockMutationService;
+        this.stockWriteQueue = stockWriteQueue;
+        this.stockHoldService = stockHoldService;
+        this.stockJournalService = stockJournalService;
+        this.restockAlertService = restockAlertService;
+        this.catalogChangeEventService = catalogChangeEventService;
+        this.optimisticLockRetry = optimisticLockRetry;
+        this.catalogItemSearchIndex = catalogItemSearchIndex;
+        this.collectionVersionService = collectionVersionService;
+        this.catalogReadModel = catalogReadModel;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
     /**
@@ -38,57 +122,283 @@ public class CatalogItemService {
         log.debug("Request to create a CatalogItem : {}", catalogItemDTO);
         CatalogItemDomain catalogItemDomain = new CatalogItemDomain.CatalogItemBuilder().withCatalogItemDTO(catalogItemDTO).build();
 
-        CatalogItem catalogItem = catalogItemDomain.getCatalogItem();
-        catalogItem = catalogItemRepository.save(catalogItem);
-        return catalogItemMapper.toDto(catalogItem);
+        CatalogItemDTO result = transactionTemplate.execute(status -> {
+            CatalogItem catalogItem = catalogItemRepository.saveAndFlush(catalogItemDomain.getCatalogItem());
+            CatalogItemDTO created = catalogItemMapper.toDto(catalogItem);
+            catalogChangeEventService.created(created);
+            return created;
+        });
+        indexed(result);
+        return result;
     }
 
+    /**
+     * Update a catalogItem.
+     *
+     * @param catalogItemDTO the entity to update, if its version is set the update fails unless it is the current one.
+     * @return the persisted entity.
+     * @throws org.springframework.dao.OptimisticLockingFailureException if the entity was updated concurrently.
+     */
     public CatalogItemDTO update(CatalogItemDTO catalogItemDTO) {
         log.debug("Request to update a CatalogItem : {}", catalogItemDTO);
+        CatalogItemDTO result = applyUpdate(catalogItemDTO);
+        indexed(result);
+        return result;
+    }
+
+    private CatalogItemDTO applyUpdate(CatalogItemDTO catalogItemDTO) {
+        if (catalogItemDTO.getVersion() != null) {
+            return optimisticLockRetry.executeOnce(
+                "update",
+                () -> stockJournalService.overwrite(catalogItemDTO.getId(), () -> save(catalogItemDTO))
+            );
+        }
+
+        // no expected version: overwrite the current one
+        return optimisticLockRetry.execute(
+            "update",
+            () ->
+                stockJournalService.overwrite(
+                    catalogItemDTO.getId(),
+                    () -> {
+                        catalogItemRepository
+                            .findById(catalogItemDTO.getId())
+                            .map(CatalogItem::getVersion)
+                            .ifPresent(catalogItemDTO::setVersion);
+                        return save(catalogItemDTO);
+                    }
+                )
+        );
+    }
+
+    private CatalogItemDTO save(CatalogItemDTO catalogItemDTO) {
+        Optional<CatalogItemDTO> before = catalogItemRepository.findById(catalogItemDTO.getId()).map(this::withAvailableStock);
         CatalogItemDomain catalogItemDomain = new CatalogItemDomain.CatalogItemBuilder().withCatalogItemDTO(catalogItemDTO).build();
+        boolean crossed = before
+            .map(CatalogItemDTO::getAvailableStock)
+            .map(catalogItemDomain::reorderIfRestockThresholdCrossed)
+            .orElse(false);
 
         CatalogItem catalogItem = catalogItemDomain.getCatalogItem();
-        catalogItem = catalogItemRepository.save(catalogItem);
-        return catalogItemMapper.toDto(catalogItem);
+        catalogItem = catalogItemRepository.saveAndFlush(catalogItem);
+        CatalogItemDTO result = catalogItemMapper.toDto(catalogItem);
+        if (crossed) {
+            restockAlertService.alert(result);
+        }
+        catalogChangeEventService.updated(before.orElse(null), result);
+        return result;
     }
 
     /**
      * Partially update a catalogItem.
      *
-     * @param catalogItemDTO the entity to update partially.
+     * @param catalogItemDTO the entity to update partially, if its version is set the update fails unless it is the current one.
      * @return the persisted entity.
+     * @throws org.springframework.dao.OptimisticLockingFailureException if the entity was updated concurrently.
      */
     public Optional<CatalogItemDTO> partialUpdate(CatalogItemDTO catalogItemDTO) {
         log.debug("Request to partially update CatalogItem : {}", catalogItemDTO);
+        Optional<CatalogItemDTO> result = catalogItemDTO.getVersion() != null
+            ? optimisticLockRetry.executeOnce("partialUpdate", () -> applyPartialUpdate(catalogItemDTO))
+            : optimisticLockRetry.execute("partialUpdate", () -> applyPartialUpdate(catalogItemDTO));
+        result.ifPresent(this::indexed);
+        return result;
+    }
 
+    private Optional<CatalogItemDTO> applyPartialUpdate(CatalogItemDTO catalogItemDTO) {
+        if (catalogItemDTO.getAvailableStock() == null) {
+            return transactionTemplate.execute(status -> savePartialUpdate(catalogItemDTO)).map(this::withAvailableStock);
+        }
+        return Optional.ofNullable(
+            stockJournalService.overwrite(
+                catalogItemDTO.getId(),
+                () -> savePartialUpdate(catalogItemDTO).map(catalogItemMapper::toDto).orElse(null)
+            )
+        );
+    }
+
+    private Optional<CatalogItem> savePartialUpdate(CatalogItemDTO catalogItemDTO) {
         return catalogItemRepository
             .findById(catalogItemDTO.getId())
             .map(existingCatalogItem -> {
+                if (catalogItemDTO.getVersion() != null && !catalogItemDTO.getVersion().equals(existingCatalogItem.getVersion())) {
+                    throw new ObjectOptimisticLockingFailureException(CatalogItem.class, existingCatalogItem.getId());
+                }
+                CatalogItemDTO before = withAvailableStock(existingCatalogItem);
                 catalogItemMapper.partialUpdate(existingCatalogItem, catalogItemDTO);
 
                 // ensure updates made are acceptable
                 CatalogItemDTO dto = catalogItemMapper.toDto(existingCatalogItem);
-                new CatalogItemDomain.CatalogItemBuilder().withCatalogItemDTO(dto).build();
+                CatalogItemDomain catalogItemDomain = new CatalogItemDomain.CatalogItemBuilder().withCatalogItemDTO(dto).build();
 
-                return existingCatalogItem;
-            })
-            .map(catalogItemRepository::save)
-            .map(catalogItemMapper::toDto);
+                boolean crossed =
+                    catalogItemDTO.getAvailableStock() != null &&
+                    catalogItemDomain.reorderIfRestockThresholdCrossed(before.getAvailableStock());
+                if (crossed) {
+                    CatalogItemDTO reorder = new CatalogItemDTO();
+                    reorder.setOnReorder(true);
+                    catalogItemMapper.partialUpdate(existingCatalogItem, reorder);
+                }
+                CatalogItem result = catalogItemRepository.saveAndFlush(existingCatalogItem);
+
+                CatalogItemDTO after = catalogItemMapper.toDto(result);
+                if (catalogItemDTO.getAvailableStock() == null) {
+                    // the stock is left as it was, with the changes not yet compacted
+                    after.setAvailableStock(before.getAvailableStock());
+                }
+                if (crossed) {
+                    restockAlertService.alert(after);
+                }
+                catalogChangeEventService.updated(before, after);
+                return result;
+            });
     }
 
     /**
      * Get all the catalogItems.
+     * <p>
+     * The DTOs are selected with their brand and type in one read-only query: no entity is loaded, so nothing is kept in
+     * the persistence context for dirty checking.
      *
      * @param pageable the pagination information.
      * @return the list of entities.
      */
+    @Transactional(readOnly = true)
     public Page<CatalogItemDTO> findAll(Pageable pageable) {
         log.debug("Request to get all CatalogItems");
-        return catalogItemRepository.findAll(pageable).map(catalogItemMapper::toDto);
+        if (catalogReadModel.isLoaded() && catalogReadModel.supports(pageable.getSort())) {
+            return catalogReadModel.findAll(null, pageable);
+        }
+        return catalogItemRepository.findAllProjectedBy(pageable).map(this::withAvailableStock);
+    }
+
+    /**
+     * Export the catalogItems one at a time, ordered by id, then the ids of the catalogItems deleted since
+     * {@code modifiedSince}, ordered by id.
+     * <p>
+     * The rows are read through a forward-only cursor and handed to {@code consumer} as soon as they are read: no entity
+     * is loaded and no row is kept once consumed, so the memory used does not depend on the number of catalogItems.
+     *
+     * @param modifiedSince the earliest last modified date of the catalogItems, inclusive, or {@code null} for all.
+     * @param consumer      called with each catalogItem, within the read-only transaction.
+     * @param deleted       called with the id of each catalogItem deleted since {@code modifiedSince}, within the
+     *                      read-only transaction. Not called when exporting all the catalogItems.
+     * @return the number of catalogItems and deletions exported.
+     */
+    @Transactional(readOnly = true)
+    public long export(Instant modifiedSince, Consumer<CatalogItemDTO> consumer, LongConsumer deleted) {
+        log.debug("Request to export CatalogItems modified since : {}", modifiedSince);
+        long count = 0;
+        try (
+            Stream<CatalogItemDTO> catalogItems = modifiedSince == null
+                ? catalogItemRepository.streamAllProjectedBy()
+                : catalogItemRepository.streamAllProjectedByModifiedSince(modifiedSince)
+        ) {
+            for (CatalogItemDTO catalogItemDTO : (Iterable<CatalogItemDTO>) catalogItems::iterator) {
+                consumer.accept(withAvailableStock(catalogItemDTO));
+                count++;
+            }
+        }
+        if (modifiedSince == null) {
+            return count;
+        }
+        try (Stream<Long> ids = catalogItemDeletionRepository.streamCatalogItemIdsDeletedSince(modifiedSince)) {
+            for (Long id : (Iterable<Long>) ids::iterator) {
+                deleted.accept(id);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Get several catalogItems by id at once.
+     * <p>
+     * Hibernate looks each id up in the persistence context then in the second-level cache, and loads all the misses
+     * with a single {@code in} query.
+     *
+     * @param ids the ids of the entities.
+     * @return the entities found, in the order of their first id in {@code ids}.
+     */
+    @Transactional(readOnly = true)
+    public List<CatalogItemDTO> findAll(List<Long> ids) {
+        log.debug("Request to get CatalogItems : {}", ids);
+        if (catalogReadModel.isLoaded()) {
+            return catalogReadModel.findAll(ids);
+        }
+        List<CatalogItem> catalogItems = entityManager
+            .unwrap(Session.class)
+            .byMultipleIds(CatalogItem.class)
+            .enableSessionCheck(true)
+            .with(CacheMode.NORMAL)
+            .multiLoad(new ArrayList<>(new LinkedHashSet<>(ids)));
+        return catalogItems.stream().filter(Objects::nonNull).map(this::withAvailableStock).collect(Collectors.toList());
+    }
+
+    /**
+     * Get the catalogItems following a cursor, without counting them.
+     *
+     * @param after the cursor after which to start.
+     * @param size  the maximum number of entities.
+     * @return the slice of entities, use {@link CatalogItemCursor#after} on its last entity to get the next one.
+     */
+    public Slice<CatalogItemDTO> findAll(CatalogItemCursor after, int size) {
+        log.debug("Request to get CatalogItems after : {}", after);
+        if (after.getSortKey() != CatalogItemCursor.SortKey.NAME && catalogReadModel.isLoaded()) {
+            return catalogReadModel.findAllAfter(after.getId(), size);
+        }
+        Slice<CatalogItem> slice;
+        if (after.getSortKey() == CatalogItemCursor.SortKey.NAME) {
+            Pageable pageable = PageRequest.of(0, size, Sort.by("name", "id"));
+            slice =
+                after.getId() == null
+                    ? catalogItemRepository.findAllBy(pageable)
+                    : catalogItemRepository.findAllAfterName(after.getName(), after.getId(), pageable);
+        } else {
+            Pageable pageable = PageRequest.of(0, size, Sort.by("id"));
+            slice =
+                after.getId() == null
+                    ? catalogItemRepository.findAllBy(pageable)
+                    : catalogItemRepository.findAllByIdGreaterThan(after.getId(), pageable);
+        }
+        return slice.map(this::withAvailableStock);
+    }
+
+    /**
+     * Search the catalogItems by name and description, see {@link CatalogItemSearchIndex}.
+     *
+     * @param query the words to look for.
+     * @param size  the maximum number of entities.
+     * @return the list of entities, best match first.
+     */
+    public List<CatalogItemDTO> search(String query, int size) {
+        log.debug("Request to search CatalogItems : {}", query);
+        List<Long> ids = catalogItemSearchIndex.search(query, size);
+        Map<Long, CatalogItem> catalogItems = catalogItemRepository
+            .findAllById(ids)
+            .stream()
+            .collect(Collectors.toMap(CatalogItem::getId, Function.identity()));
+        return ids.stream().map(catalogItems::get).filter(Objects::nonNull).map(this::withAvailableStock).collect(Collectors.toList());
     }
 
     /**
-     * Get one catalogItem by id.
+     * Suggest the names of the catalogItems starting with a prefix, most available first, without reading the database.
+     *
+     * @param prefix the beginning of the name.
+     * @param size   the maximum number of names.
+     * @return the list of names.
+     */
+    public List<CatalogItemSuggestionDTO> suggest(String prefix, int size) {
+        log.debug("Request to suggest CatalogItems : {}", prefix);
+        return catalogItemSearchIndex
+            .suggest(prefix, size)
+            .stream()
+            .map(suggestion -> new CatalogItemSuggestionDTO(suggestion.getId(), suggestion.getName()))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Get one catalogItem by id, with the stock available to sell once active holds are taken into account.
      *
      * @param id the id of the entity.
      * @return the entity.
@@ -96,7 +406,22 @@ public class CatalogItemService {
 
     public Optional<CatalogItemDTO> findOne(Long id) {
         log.debug("Request to get CatalogItem : {}", id);
-        return catalogItemRepository.findById(id).map(catalogItemMapper::toDto);
+        if (catalogReadModel.isLoaded()) {
+            return catalogReadModel.findOne(id).map(this::withAvailableToSell);
+        }
+        return findOneInDatabase(id);
+    }
+
+    /**
+     * Get the stock movements of a catalogItem, most recent first.
+     *
+     * @param id       the id of the entity.
+     * @param pageable the pagination information.
+     * @return the list of movements.
+     */
+    public Page<StockMovementDTO> findStockMovements(Long id, Pageable pageable) {
+        log.debug("Request to get the stock movements of CatalogItem : {}", id);
+        return stockJournalService.findAll(id, pageable);
     }
 
     /**
@@ -106,42 +431,124 @@ public class CatalogItemService {
      */
     public void delete(Long id) {
         log.debug("Request to delete CatalogItem : {}", id);
-        catalogItemRepository.deleteById(id);
+        transactionTemplate.executeWithoutResult(status -> {
+            catalogItemRepository.deleteById(id);
+            catalogItemDeletionRepository.save(new CatalogItemDeletion().catalogItemId(id).deletedDate(Instant.now()));
+            catalogChangeEventService.deleted(id);
+        });
+        stockJournalService.evict(id);
+        removed(id);
     }
 
-    public Optional<CatalogItemDTO> partialUpdateAddStock(CatalogItemDTO catalogItemDTO, int quantity) {
+    /**
+     * Add stock to a catalogItem.
+     *
+     * @param catalogItemDTO the entity to add stock to.
+     * @param quantity       the quantity to add.
+     * @param correlationId  what caused the change, recorded in the journal, may be {@code null}.
+     * @return the persisted entity, or empty if the entity does not exist.
+     */
+    public Optional<CatalogItemDTO> partialUpdateAddStock(CatalogItemDTO catalogItemDTO, int quantity, String correlationId) {
         log.debug("Request to add stock to CatalogItem : {}, {}", quantity, catalogItemDTO);
 
-        return catalogItemRepository
-            .findById(catalogItemDTO.getId())
-            .map(existingCatalogItem -> {
-                CatalogItemDTO dto = catalogItemMapper.toDto(existingCatalogItem);
+        Optional<CatalogItemDTO> result = stockWriteQueue
+            .addStock(catalogItemDTO.getId(), quantity, correlationId)
+            .flatMap(added -> findOneInDatabase(catalogItemDTO.getId()));
+        result.ifPresent(this::indexed);
+        return result;
+    }
 
-                CatalogItemDomain catalogItemDomain = new CatalogItemDomain.CatalogItemBuilder().withCatalogItemDTO(dto).build();
-                catalogItemDomain.addStock(quantity);
+    /**
+     * Remove stock from a catalogItem.
+     *
+     * @param catalogItemDTO the entity to remove stock from.
+     * @param quantity       the quantity desired.
+     * @param correlationId  what caused the change, recorded in the journal, may be {@code null}.
+     * @return the persisted entity, or empty if the entity does not exist.
+     */
+    public Optional<CatalogItemDTO> partialUpdateRemoveStock(CatalogItemDTO catalogItemDTO, int quantity, String correlationId) {
+        log.debug("Request to remove stock to CatalogItem : {}, {}", quantity, catalogItemDTO);
 
-                existingCatalogItem = catalogItemDomain.getCatalogItem();
-                return existingCatalogItem;
-            })
-            .map(catalogItemRepository::save)
-            .map(catalogItemMapper::toDto);
+        Optional<CatalogItemDTO> result = stockWriteQueue
+            .removeStock(catalogItemDTO.getId(), quantity, correlationId)
+            .flatMap(removed -> findOneInDatabase(catalogItemDTO.getId()));
+        result.ifPresent(this::indexed);
+        return result;
     }
 
-    public Optional<CatalogItemDTO> partialUpdateRemoveStock(CatalogItemDTO catalogItemDTO, int quantity) {
-        log.debug("Request to remove stock to CatalogItem : {}, {}", quantity, catalogItemDTO);
+    /**
+     * Remove stock from several catalogItems in one transaction.
+     *
+     * @param lines        the items and quantities desired, the quantity actually removed is set on each line.
+     * @param allOrNothing  if {@code true}, nothing is removed unless every line can be removed in full.
+     * @param correlationId what caused the change, recorded in the journal, may be {@code null}.
+     * @return the updated entities.
+     */
+    public List<CatalogItemDTO> removeStock(List<StockLineDTO> lines, boolean allOrNothing, String correlationId) {
+        log.debug("Request to remove stock from CatalogItems : {}", lines);
 
-        return catalogItemRepository
-            .findById(catalogItemDTO.getId())
-            .map(existingCatalogItem -> {
-                CatalogItemDTO dto = catalogItemMapper.toDto(existingCatalogItem);
+        List<CatalogItemDTO> result = optimisticLockRetry.execute(
+            "removeStockBulk",
+            () -> stockMutationService.removeStock(lines, allOrNothing, correlationId)
+        );
+        result.forEach(this::indexed);
+        return result;
+    }
 
-                CatalogItemDomain catalogItemDomain = new CatalogItemDomain.CatalogItemBuilder().withCatalogItemDTO(dto).build();
-                catalogItemDomain.removeStock(quantity);
+    /**
+     * Publish the stock changes committed by {@link StockMutationService} outside of this service to the search index,
+     * the read model and the version of the collection.
+     *
+     * @param ids the ids of the changed entities.
+     */
+    public void stockChanged(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        for (CatalogItem catalogItem : catalogItemRepository.findAllById(ids)) {
+            catalogItemSearchIndex.indexed(withAvailableStock(catalogItem));
+        }
+        catalogReadModel.changed(ids);
+        collectionVersionService.changed(CollectionVersionService.CatalogCollection.ITEMS);
+    }
+
+    /**
+     * Get one catalogItem by id from the database, as just changed by this instance: the read model only gets the
+     * change once it is committed.
+     */
+    private Optional<CatalogItemDTO> findOneInDatabase(Long id) {
+        return catalogItemRepository.findById(id).map(this::withAvailableStock).map(this::withAvailableToSell);
+    }
+
+    /**
+     * Publish a catalogItem created or changed by this instance to the search index, the read model and the version of
+     * the collection.
+     */
+    private void indexed(CatalogItemDTO catalogItemDTO) {
+        catalogItemSearchIndex.indexed(catalogItemDTO);
+        catalogReadModel.changed(List.of(catalogItemDTO.getId()));
+        collectionVersionService.changed(CollectionVersionService.CatalogCollection.ITEMS);
+    }
+
+    private void removed(Long id) {
+        catalogItemSearchIndex.removed(id);
+        catalogReadModel.changed(List.of(id));
+        collectionVersionService.changed(CollectionVersionService.CatalogCollection.ITEMS);
+    }
+
+    private CatalogItemDTO withAvailableToSell(CatalogItemDTO catalogItemDTO) {
+        int held = stockHoldService.heldQuantity(catalogItemDTO.getId());
+        return catalogItemDTO.availableToSell(Math.max(catalogItemDTO.getAvailableStock() - held, 0));
+    }
+
+    private CatalogItemDTO withAvailableStock(CatalogItem catalogItem) {
+        CatalogItemDTO catalogItemDTO = catalogItemMapper.toDto(catalogItem);
+        catalogItemDTO.setAvailableStock(stockJournalService.availableStock(catalogItem));
+        return catalogItemDTO;
+    }
 
-                existingCatalogItem = catalogItemDomain.getCatalogItem();
-                return existingCatalogItem;
-            })
-            .map(catalogItemRepository::save)
-            .map(catalogItemMapper::toDto);
+    private CatalogItemDTO withAvailableStock(CatalogItemDTO catalogItemDTO) {
+        catalogItemDTO.setAvailableStock(stockJournalService.availableStock(catalogItemDTO.getId(), catalogItemDTO.getAvailableStock()));
+        return catalogItemDTO;
     }
 }
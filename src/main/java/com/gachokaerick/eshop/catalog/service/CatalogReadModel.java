@@ -0,0 +1,572 @@
+package com.gachokaerick.eshop.catalog.service;
+
+import com.gachokaerick.eshop.catalog.config.ApplicationProperties;
+import com.gachokaerick.eshop.catalog.repository.CatalogItemRepository;
+import com.gachokaerick.eshop.catalog.service.criteria.CatalogItemCriteria;
+import com.gachokaerick.eshop.catalog.service.dto.CatalogBrandDTO;
+import com.gachokaerick.eshop.catalog.service.dto.CatalogItemFacetsDTO;
+import com.gachokaerick.eshop.catalog.service.dto.CatalogItemDTO;
+import com.gachokaerick.eshop.catalog.service.dto.CatalogTypeDTO;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.topic.ITopic;
+import com.hazelcast.topic.Message;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * The whole catalog held in memory by each instance, as a {@link CatalogSnapshot} serving the reads of catalogItems
+ * without a database query.
+ * <p>
+ * The snapshot is loaded once the application is ready, if enabled by {@code application.read-model.enabled}, or by
+ * {@code application.facets.in-memory} for the facets only: the other reads then keep querying the database. Every
+ * committed change goes through {@link #changed}: the changed catalogItems are read again from the database by a
+ * background thread, off the thread which made the change, the snapshot is updated in place, and the catalogItems are
+ * published on the Hazelcast topic {@value #TOPIC_NAME} so that the other members of the cluster update their own
+ * snapshot. A catalogItem is never replaced by an older version. Stock changes do not always change the version: a
+ * catalogItem read with the version held but different values is read again under the write lock, after every read
+ * already applied, so that the last read wins.
+ * <p>
+ * Writers are serialized, and a write costs time proportional to the number of catalogItems it changes; reads wait for
+ * the write in progress, if any. The snapshot is compared with the database
+ * every {@code application.read-model.check-interval}, and the catalogItems found different are read again; their
+ * number is counted in the {@code catalog.read.model.repairs} counter.
+ */
+@Service
+public class CatalogReadModel {
+
+    public static final String TOPIC_NAME = "catalog-read-model";
+
+    private final Logger log = LoggerFactory.getLogger(CatalogReadModel.class);
+
+    private final CatalogItemRepository catalogItemRepository;
+    private final StockJournalService stockJournalService;
+    private final ApplicationProperties.ReadModel properties;
+    private final ApplicationProperties.Facets facetsProperties;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+    private final ITopic<Change> topic;
+    private final UUID listener;
+    private final Counter repairs;
+    private final ExecutorService refresher = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("catalog-read-model-"));
+
+    private final AtomicReference<CatalogSnapshot> snapshot = new AtomicReference<>();
+    private final Object writeLock = new Object();
+
+    /**
+     * Ids of the catalogItems changed while the snapshot is loading, guarded by {@link #writeLock}.
+     */
+    private Set<Long> changedWhileLoading;
+
+    public CatalogReadModel(
+        CatalogItemRepository catalogItemRepository,
+        StockJournalService stockJournalService,
+        HazelcastInstance hazelcastInstance,
+        PlatformTransactionManager transactionManager,
+        ApplicationProperties applicationProperties,
+        MeterRegistry meterRegistry
+    ) {
+        this.catalogItemRepository = catalogItemRepository;
+        this.stockJournalService = stockJournalService;
+        this.properties = applicationProperties.getReadModel();
+        this.facetsProperties = applicationProperties.getFacets();
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.repairs = Counter.builder("catalog.read.model.repairs").register(meterRegistry);
+        Gauge.builder("catalog.read.model.items", this, CatalogReadModel::size).register(meterRegistry);
+        this.topic = hazelcastInstance.getTopic(TOPIC_NAME);
+        this.listener = topic.addMessageListener(this::onMessage);
+    }
+
+    @PreDestroy
+    public void stop() {
+        topic.removeMessageListener(listener);
+        refresher.shutdown();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (isKept()) {
+            load();
+        }
+    }
+
+    /**
+     * Whether the reads of catalogItems are served from memory: the read model is enabled and its snapshot is loaded.
+     *
+     * @return {@code true} if the reads may use this read model.
+     */
+    public boolean isLoaded() {
+        return properties.isEnabled() && snapshot.get() != null;
+    }
+
+    /**
+     * Whether the facets are counted from memory: the read model or the facets in memory are enabled, and the snapshot
+     * is loaded.
+     *
+     * @return {@code true} if {@link #facets} may be called.
+     */
+    public boolean hasFacets() {
+        return isKept() && snapshot.get() != null;
+    }
+
+    /**
+     * Load the whole catalog from the database, replacing the current snapshot if there is one.
+     *
+     * @return the number of catalogItems loaded.
+     */
+    public int load() {
+        long start = System.currentTimeMillis();
+        synchronized (writeLock) {
+            if (changedWhileLoading != null) {
+                log.debug("The CatalogItems are already loading");
+                return 0;
+            }
+            changedWhileLoading = new HashSet<>();
+        }
+        CatalogSnapshot loaded;
+        try {
+            loaded = CatalogSnapshot.of(readOnlyTransactionTemplate.execute(status -> readAll()));
+        } catch (RuntimeException e) {
+            synchronized (writeLock) {
+                changedWhileLoading = null;
+            }
+            throw e;
+        }
+        Set<Long> changed;
+        synchronized (writeLock) {
+            snapshot.set(loaded);
+            changed = changedWhileLoading;
+            changedWhileLoading = null;
+        }
+        refresh(changed, false);
+        log.info("Loaded {} CatalogItems in memory in {} ms", loaded.size(), System.currentTimeMillis() - start);
+        return loaded.size();
+    }
+
+    /**
+     * Read again catalogItems created, changed or deleted by this instance, once the current transaction committed if
+     * there is one, and publish them to the other members of the cluster. The catalogItems are read in the background:
+     * the reads of this instance see the change shortly after the commit.
+     *
+     * @param ids the ids of the catalogItems.
+     */
+    public void changed(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        List<Long> changed = List.copyOf(ids);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(
+                new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        refreshLater(changed);
+                    }
+                }
+            );
+        } else {
+            refreshLater(changed);
+        }
+    }
+
+    /**
+     * Read again the catalogItems of a brand changed by this instance.
+     *
+     * @param catalogBrandId the id of the brand.
+     */
+    public void brandChanged(Long catalogBrandId) {
+        CatalogSnapshot current = snapshot.get();
+        if (current != null) {
+            changed(LongStream.of(current.idsOfBrand(catalogBrandId)).boxed().collect(Collectors.toList()));
+        }
+    }
+
+    /**
+     * Read again the catalogItems of a type changed by this instance.
+     *
+     * @param catalogTypeId the id of the type.
+     */
+    public void typeChanged(Long catalogTypeId) {
+        CatalogSnapshot current = snapshot.get();
+        if (current != null) {
+            changed(LongStream.of(current.idsOfType(catalogTypeId)).boxed().collect(Collectors.toList()));
+        }
+    }
+
+    /**
+     * Compare the snapshot with the database, and read again the catalogItems which differ.
+     *
+     * @return the number of catalogItems read again.
+     */
+    @Scheduled(fixedDelayString = "${application.read-model.check-interval:PT10M}")
+    public int check() {
+        CatalogSnapshot current = snapshot.get();
+        if (!isKept() || current == null) {
+            return 0;
+        }
+        long[] ids = current.ids();
+        Set<Long> stale = new TreeSet<>();
+        readOnlyTransactionTemplate.executeWithoutResult(status -> {
+            try (Stream<CatalogItemDTO> catalogItems = catalogItemRepository.streamAllProjectedBy()) {
+                int index = 0;
+                for (Iterator<CatalogItemDTO> iterator = catalogItems.iterator(); iterator.hasNext();) {
+                    CatalogItemDTO stored = withAvailableStock(iterator.next());
+                    for (; index < ids.length && ids[index] < stored.getId(); index++) {
+                        stale.add(ids[index]);
+                    }
+                    if (index < ids.length && ids[index] == stored.getId()) {
+                        index++;
+                    }
+                    CatalogItemDTO held = current.get(stored.getId());
+                    if (held == null || !same(held, stored)) {
+                        stale.add(stored.getId());
+                    }
+                }
+                for (; index < ids.length; index++) {
+                    stale.add(ids[index]);
+                }
+            }
+        });
+        if (!stale.isEmpty()) {
+            log.warn("{} CatalogItem(s) held in memory differed from the database: {}", stale.size(), stale);
+            refresh(stale, true);
+            repairs.increment(stale.size());
+        }
+        return stale.size();
+    }
+
+    /**
+     * Get a catalogItem by id.
+     *
+     * @param id the id of the catalogItem.
+     * @return the catalogItem, or empty if there is none.
+     */
+    public Optional<CatalogItemDTO> findOne(Long id) {
+        return Optional.ofNullable(snapshot().get(id)).map(CatalogReadModel::copy);
+    }
+
+    /**
+     * Get several catalogItems by id.
+     *
+     * @param ids the ids of the catalogItems.
+     * @return the catalogItems found, in the order of their first id in {@code ids}.
+     */
+    public List<CatalogItemDTO> findAll(List<Long> ids) {
+        CatalogSnapshot current = snapshot();
+        return new LinkedHashSet<>(ids)
+            .stream()
+            .map(current::get)
+            .filter(Objects::nonNull)
+            .map(CatalogReadModel::copy)
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Get the catalogItems with an id greater than a cursor, in id order.
+     *
+     * @param after the id after which to start, or {@code null} to start from the first catalogItem.
+     * @param size  the maximum number of catalogItems.
+     * @return the slice of catalogItems.
+     */
+    public Slice<CatalogItemDTO> findAllAfter(Long after, int size) {
+        List<CatalogItemDTO> content = snapshot().after(after == null ? Long.MIN_VALUE : after, size + 1);
+        boolean hasNext = content.size() > size;
+        return new SliceImpl<>(
+            content.stream().limit(size).map(CatalogReadModel::copy).collect(Collectors.toList()),
+            PageRequest.of(0, size, Sort.by("id")),
+            hasNext
+        );
+    }
+
+    /**
+     * Whether the catalogItems can be sorted in memory in the order of a sort.
+     *
+     * @param sort the sort.
+     * @return {@code false} if the sort needs the database.
+     */
+    public boolean supports(Sort sort) {
+        return CatalogItemMatcher.order(sort) != null;
+    }
+
+    /**
+     * Get the catalogItems matching criteria.
+     *
+     * @param criteria the criteria, may be {@code null}.
+     * @param sort     a sort supported by {@link #supports}.
+     * @return the matching catalogItems.
+     */
+    public List<CatalogItemDTO> findAll(CatalogItemCriteria criteria, Sort sort) {
+        return matching(snapshot(), criteria, sort).stream().map(CatalogReadModel::copy).collect(Collectors.toList());
+    }
+
+    /**
+     * Get a page of the catalogItems matching criteria.
+     *
+     * @param criteria the criteria, may be {@code null}.
+     * @param pageable the pagination information, with a sort supported by {@link #supports}.
+     * @return the page of catalogItems.
+     */
+    public Page<CatalogItemDTO> findAll(CatalogItemCriteria criteria, Pageable pageable) {
+        CatalogSnapshot current = snapshot();
+        if (criteria == null && (pageable.getSort().isUnsorted() || pageable.getSort().equals(Sort.by("id")))) {
+            // the snapshot is already in id order
+            List<CatalogItemDTO> content = pageable.isPaged()
+                ? current.range(pageable.getOffset(), pageable.getPageSize())
+                : current.range(0, Integer.MAX_VALUE);
+            return new PageImpl<>(content.stream().map(CatalogReadModel::copy).collect(Collectors.toList()), pageable, current.size());
+        }
+        List<CatalogItemDTO> matching = matching(current, criteria, pageable.getSort());
+        List<CatalogItemDTO> content = pageable.isPaged()
+            ? matching.subList(
+                (int) Math.min(pageable.getOffset(), matching.size()),
+                (int) Math.min(pageable.getOffset() + pageable.getPageSize(), matching.size())
+            )
+            : matching;
+        return new PageImpl<>(content.stream().map(CatalogReadModel::copy).collect(Collectors.toList()), pageable, matching.size());
+    }
+
+    /**
+     * Count the catalogItems matching criteria.
+     *
+     * @param criteria the criteria, may be {@code null}.
+     * @return the number of matching catalogItems.
+     */
+    public long count(CatalogItemCriteria criteria) {
+        return snapshot().count(criteria);
+    }
+
+    /**
+     * Count the catalogItems matching criteria per brand, type and price bucket, reading the columns of the snapshot,
+     * each facet without the criterion on its own dimension.
+     *
+     * @param criteria          the criteria, may be {@code null}.
+     * @param bounds            the bounds between the price buckets, in ascending order.
+     * @param parallelThreshold the number of catalogItems from which to count in parallel.
+     * @return the counts.
+     */
+    public CatalogItemFacetsDTO facets(CatalogItemCriteria criteria, List<BigDecimal> bounds, int parallelThreshold) {
+        return snapshot().facets(criteria, bounds, parallelThreshold);
+    }
+
+    private int size() {
+        CatalogSnapshot current = snapshot.get();
+        return current == null ? 0 : current.size();
+    }
+
+    private CatalogSnapshot snapshot() {
+        CatalogSnapshot current = snapshot.get();
+        if (current == null) {
+            throw new IllegalStateException("The CatalogItems are not loaded in memory");
+        }
+        return current;
+    }
+
+    private List<CatalogItemDTO> matching(CatalogSnapshot current, CatalogItemCriteria criteria, Sort sort) {
+        Comparator<CatalogItemDTO> order = CatalogItemMatcher.order(sort);
+        if (order == null) {
+            throw new IllegalArgumentException("Unsupported sort: " + sort);
+        }
+        return current.matching(criteria, order);
+    }
+
+    private void onMessage(Message<Change> message) {
+        if (message.getPublishingMember() == null || !message.getPublishingMember().localMember()) {
+            Change change = message.getMessageObject();
+            apply(change.catalogItems, change.deleted, false);
+        }
+    }
+
+    private void refreshLater(List<Long> ids) {
+        refresher.execute(() -> {
+            try {
+                refresh(ids, false);
+            } catch (RuntimeException e) {
+                log.warn("Could not read again the CatalogItems {} held in memory, left to the next check: {}", ids, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Read catalogItems from the database, swap them into the snapshot and publish them.
+     *
+     * @param force whether to replace the catalogItems in memory even if they have a more recent version.
+     */
+    private void refresh(Collection<Long> ids, boolean force) {
+        if (!isKept()) {
+            // a snapshot no longer kept up to date must be loaded again
+            snapshot.set(null);
+            return;
+        }
+        if (ids.isEmpty() || (snapshot.get() == null && !isLoading())) {
+            return;
+        }
+        List<CatalogItemDTO> catalogItems = read(ids);
+        Set<Long> deleted = new HashSet<>(ids);
+        catalogItems.forEach(catalogItem -> deleted.remove(catalogItem.getId()));
+        apply(catalogItems, deleted, force);
+        topic.publish(new Change(catalogItems, new ArrayList<>(deleted)));
+    }
+
+    private void apply(List<CatalogItemDTO> catalogItems, Collection<Long> deleted, boolean force) {
+        synchronized (writeLock) {
+            CatalogSnapshot current = snapshot.get();
+            if (changedWhileLoading != null) {
+                catalogItems.forEach(catalogItem -> changedWhileLoading.add(catalogItem.getId()));
+                changedWhileLoading.addAll(deleted);
+            }
+            if (current == null) {
+                return;
+            }
+            List<CatalogItemDTO> newer = new ArrayList<>();
+            List<Long> tied = new ArrayList<>();
+            for (CatalogItemDTO catalogItem : catalogItems) {
+                CatalogItemDTO held = current.get(catalogItem.getId());
+                if (force || isNewer(catalogItem, held)) {
+                    newer.add(catalogItem);
+                } else if (catalogItem.getVersion().equals(held.getVersion()) && !same(catalogItem, held)) {
+                    tied.add(catalogItem.getId());
+                }
+            }
+            if (!tied.isEmpty()) {
+                // read after the catalogItems held, so newer than them whatever their version
+                newer.addAll(read(tied));
+            }
+            if (!newer.isEmpty() || !deleted.isEmpty()) {
+                current.update(newer, deleted);
+            }
+        }
+    }
+
+    private boolean isKept() {
+        return properties.isEnabled() || facetsProperties.isInMemory();
+    }
+
+    private boolean isLoading() {
+        synchronized (writeLock) {
+            return changedWhileLoading != null;
+        }
+    }
+
+    private List<CatalogItemDTO> read(Collection<Long> ids) {
+        return catalogItemRepository.findAllProjectedByIdIn(ids).stream().map(this::withAvailableStock).collect(Collectors.toList());
+    }
+
+    private List<CatalogItemDTO> readAll() {
+        try (Stream<CatalogItemDTO> catalogItems = catalogItemRepository.streamAllProjectedBy()) {
+            return catalogItems.map(this::withAvailableStock).collect(Collectors.toList());
+        }
+    }
+
+    private CatalogItemDTO withAvailableStock(CatalogItemDTO catalogItemDTO) {
+        catalogItemDTO.setAvailableStock(stockJournalService.availableStock(catalogItemDTO.getId(), catalogItemDTO.getAvailableStock()));
+        return catalogItemDTO;
+    }
+
+    private static boolean isNewer(CatalogItemDTO catalogItem, CatalogItemDTO current) {
+        return (
+            current == null ||
+            current.getVersion() == null ||
+            catalogItem.getVersion() == null ||
+            catalogItem.getVersion() > current.getVersion()
+        );
+    }
+
+    private static boolean same(CatalogItemDTO a, CatalogItemDTO b) {
+        return (
+            Objects.equals(a.getName(), b.getName()) &&
+            Objects.equals(a.getDescription(), b.getDescription()) &&
+            (a.getPrice() == null ? b.getPrice() == null : b.getPrice() != null && a.getPrice().compareTo(b.getPrice()) == 0) &&
+            Objects.equals(a.getPictureFileName(), b.getPictureFileName()) &&
+            Objects.equals(a.getPictureUrl(), b.getPictureUrl()) &&
+            Objects.equals(a.getAvailableStock(), b.getAvailableStock()) &&
+            Objects.equals(a.getRestockThreshold(), b.getRestockThreshold()) &&
+            Objects.equals(a.getMaxStockThreshold(), b.getMaxStockThreshold()) &&
+            Objects.equals(a.getOnReorder(), b.getOnReorder()) &&
+            Objects.equals(a.getVersion(), b.getVersion()) &&
+            Objects.equals(a.getCatalogBrand().getId(), b.getCatalogBrand().getId()) &&
+            Objects.equals(a.getCatalogBrand().getBrand(), b.getCatalogBrand().getBrand()) &&
+            Objects.equals(a.getCatalogType().getId(), b.getCatalogType().getId()) &&
+            Objects.equals(a.getCatalogType().getType(), b.getCatalogType().getType())
+        );
+    }
+
+    /**
+     * Copy of a catalogItem of the snapshot, which the caller may change.
+     */
+    private static CatalogItemDTO copy(CatalogItemDTO catalogItem) {
+        CatalogBrandDTO catalogBrand = catalogItem.getCatalogBrand();
+        CatalogTypeDTO catalogType = catalogItem.getCatalogType();
+        return new CatalogItemDTO(
+            catalogItem.getId(),
+            catalogItem.getName(),
+            catalogItem.getDescription(),
+            catalogItem.getPrice(),
+            catalogItem.getPictureFileName(),
+            catalogItem.getPictureUrl(),
+            catalogItem.getAvailableStock(),
+            catalogItem.getRestockThreshold(),
+            catalogItem.getMaxStockThreshold(),
+            catalogItem.getOnReorder(),
+            catalogItem.getVersion(),
+            catalogBrand.getId(),
+            catalogBrand.getBrand(),
+            catalogType.getId(),
+            catalogType.getType()
+        );
+    }
+
+    /**
+     * CatalogItems changed and deleted by a member of the cluster.
+     */
+    static final class Change implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<CatalogItemDTO> catalogItems;
+        private final List<Long> deleted;
+
+        Change(List<CatalogItemDTO> catalogItems, List<Long> deleted) {
+            this.catalogItems = catalogItems;
+            this.deleted = deleted;
+        }
+    }
+}
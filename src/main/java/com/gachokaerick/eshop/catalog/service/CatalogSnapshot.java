@@ -0,0 +1,249 @@
+package com.gachokaerick.eshop.catalog.service;
+
+import com.gachokaerick.eshop.catalog.service.criteria.CatalogItemCriteria;
+import com.gachokaerick.eshop.catalog.service.dto.CatalogItemDTO;
+import com.gachokaerick.eshop.catalog.service.dto.CatalogItemFacetsDTO;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntConsumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Copy of the whole catalog: each catalogItem in a slot, with the slots of the catalogItems in id order.
+ * <p>
+ * The snapshot is changed in place under a write lock, and read under a read lock so that each read sees the catalog
+ * between two changes. A changed catalogItem is written into its own slot, a new one into a slot freed by a removed one
+ * or at the end: a change costs time proportional to the number of catalogItems changed, whatever the size of the
+ * catalog. The catalogItems are replaced, never modified, and are shared with the readers, who must copy them before
+ * handing them out.
+ * <p>
+ * The columns counted by the facets are kept along, by slot, see {@link CatalogFacets}.
+ */
+final class CatalogSnapshot {
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final NavigableMap<Long, Integer> slotsById = new TreeMap<>();
+    private final CatalogFacets facets;
+    private CatalogItemDTO[] items;
+    private int[] freeSlots = new int[0];
+    private int freeCount;
+
+    private CatalogSnapshot(CatalogItemDTO[] items) {
+        this.items = items;
+        this.facets = CatalogFacets.of(items);
+    }
+
+    /**
+     * Snapshot of catalogItems.
+     */
+    static CatalogSnapshot of(List<CatalogItemDTO> catalogItems) {
+        CatalogSnapshot snapshot = new CatalogSnapshot(catalogItems.toArray(new CatalogItemDTO[0]));
+        for (int slot = 0; slot < snapshot.items.length; slot++) {
+            if (snapshot.slotsById.put(snapshot.items[slot].getId(), slot) != null) {
+                throw new IllegalArgumentException("CatalogItem " + snapshot.items[slot].getId() + " is listed twice");
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Add or replace catalogItems and remove catalogItems.
+     *
+     * @param changed the catalogItems to add or replace.
+     * @param deleted the ids of the catalogItems to remove, unless they are also changed.
+     */
+    void update(Collection<CatalogItemDTO> changed, Collection<Long> deleted) {
+        lock.writeLock().lock();
+        try {
+            for (Long id : deleted) {
+                Integer slot = slotsById.remove(id);
+                if (slot != null) {
+                    items[slot] = null;
+                    facets.clear(slot);
+                    if (freeCount == freeSlots.length) {
+                        freeSlots = Arrays.copyOf(freeSlots, Math.max(16, freeCount * 2));
+                    }
+                    freeSlots[freeCount++] = slot;
+                }
+            }
+            for (CatalogItemDTO catalogItem : changed) {
+                Integer slot = slotsById.get(catalogItem.getId());
+                if (slot == null) {
+                    slot = freeCount > 0 ? freeSlots[--freeCount] : slotsById.size() + freeCount;
+                    if (slot == items.length) {
+                        items = Arrays.copyOf(items, Math.max(16, items.length * 2));
+                    }
+                    slotsById.put(catalogItem.getId(), slot);
+                }
+                items[slot] = catalogItem;
+                facets.set(slot, catalogItem);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    int size() {
+        return read(slotsById::size);
+    }
+
+    /**
+     * Get a catalogItem by id.
+     *
+     * @return the catalogItem, or {@code null} if there is none.
+     */
+    CatalogItemDTO get(long id) {
+        return read(() -> {
+            Integer slot = slotsById.get(id);
+            return slot == null ? null : items[slot];
+        });
+    }
+
+    /**
+     * Ids of all the catalogItems, in ascending order.
+     */
+    long[] ids() {
+        return read(() -> slotsById.keySet().stream().mapToLong(Long::longValue).toArray());
+    }
+
+    /**
+     * CatalogItems with an id greater than {@code after}, in id order.
+     *
+     * @param after the id after which to start.
+     * @param limit the maximum number of catalogItems.
+     */
+    List<CatalogItemDTO> after(long after, int limit) {
+        return read(() -> first(slotsById.tailMap(after, false).values().iterator(), limit));
+    }
+
+    /**
+     * CatalogItems from a position in id order.
+     *
+     * @param offset the number of catalogItems to skip.
+     * @param limit  the maximum number of catalogItems.
+     */
+    List<CatalogItemDTO> range(long offset, int limit) {
+        return read(() -> {
+            Iterator<Integer> slots = slotsById.values().iterator();
+            for (long skipped = 0; skipped < offset && slots.hasNext(); skipped++) {
+                slots.next();
+            }
+            return first(slots, limit);
+        });
+    }
+
+    /**
+     * Ids of the catalogItems of a brand, in ascending order.
+     */
+    long[] idsOfBrand(long brandId) {
+        CatalogItemCriteria criteria = new CatalogItemCriteria();
+        criteria.catalogBrandId().setEquals(brandId);
+        return idsOf(criteria);
+    }
+
+    /**
+     * Ids of the catalogItems of a type, in ascending order.
+     */
+    long[] idsOfType(long typeId) {
+        CatalogItemCriteria criteria = new CatalogItemCriteria();
+        criteria.catalogTypeId().setEquals(typeId);
+        return idsOf(criteria);
+    }
+
+    /**
+     * CatalogItems matching criteria, sorted.
+     */
+    List<CatalogItemDTO> matching(CatalogItemCriteria criteria, Comparator<CatalogItemDTO> order) {
+        List<CatalogItemDTO> matching = read(() -> {
+            List<CatalogItemDTO> found = new ArrayList<>();
+            forEachMatching(criteria, slot -> found.add(items[slot]));
+            return found;
+        });
+        matching.sort(order);
+        return matching;
+    }
+
+    /**
+     * Count the catalogItems matching criteria.
+     */
+    long count(CatalogItemCriteria criteria) {
+        return read(() -> {
+            long[] count = new long[1];
+            forEachMatching(criteria, slot -> count[0]++);
+            return count[0];
+        });
+    }
+
+    /**
+     * Count the catalogItems matching criteria per brand, type and price bucket, see {@link CatalogFacets#count}.
+     */
+    CatalogItemFacetsDTO facets(CatalogItemCriteria criteria, List<BigDecimal> bounds, int parallelThreshold) {
+        return read(() ->
+            facets.count(
+                criteria,
+                others -> {
+                    Predicate<CatalogItemDTO> matches = CatalogItemMatcher.filter(others);
+                    return slot -> matches.test(items[slot]);
+                },
+                bounds,
+                parallelThreshold
+            )
+        );
+    }
+
+    /**
+     * The columns counted by the facets, which may only be read while the snapshot is not changed.
+     */
+    CatalogFacets facets() {
+        return facets;
+    }
+
+    private long[] idsOf(CatalogItemCriteria criteria) {
+        return read(() -> facets.candidates(criteria).stream().mapToLong(slot -> items[slot].getId()).sorted().toArray());
+    }
+
+    /**
+     * Visit the slots of the catalogItems matching criteria, among the slots of the brands and types they filter on.
+     */
+    private void forEachMatching(CatalogItemCriteria criteria, IntConsumer visitor) {
+        Predicate<CatalogItemDTO> filter = CatalogItemMatcher.filter(criteria);
+        BitSet candidates = facets.candidates(criteria);
+        if (candidates == null) {
+            for (int slot = 0; slot < items.length; slot++) {
+                if (items[slot] != null && filter.test(items[slot])) {
+                    visitor.accept(slot);
+                }
+            }
+        } else {
+            candidates.stream().filter(slot -> filter.test(items[slot])).forEach(visitor);
+        }
+    }
+
+    private List<CatalogItemDTO> first(Iterator<Integer> slots, int limit) {
+        List<CatalogItemDTO> first = new ArrayList<>();
+        while (first.size() < limit && slots.hasNext()) {
+            first.add(items[slots.next()]);
+        }
+        return first;
+    }
+
+    private <T> T read(Supplier<T> reader) {
+        lock.readLock().lock();
+        try {
+            return reader.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
@@ -25,9 +25,20 @@ public class CatalogTypeService {
 
     private final CatalogTypeMapper catalogTypeMapper;
 
-    public CatalogTypeService(CatalogTypeRepository catalogTypeRepository, CatalogTypeMapper catalogTypeMapper) {
+    private final CollectionVersionService collectionVersionService;
+
+    private final CatalogReadModel catalogReadModel;
+
+    public CatalogTypeService(
+        CatalogTypeRepository catalogTypeRepository,
+        CatalogTypeMapper catalogTypeMapper,
+        CollectionVersionService collectionVersionService,
+        CatalogReadModel catalogReadModel
+    ) {
         this.catalogTypeRepository = catalogTypeRepository;
         this.catalogTypeMapper = catalogTypeMapper;
+        this.collectionVersionService = collectionVersionService;
+        this.catalogReadModel = catalogReadModel;
     }
 
     /**
@@ -40,6 +51,7 @@ public class CatalogTypeService {
         log.debug("Request to save CatalogType : {}", catalogTypeDTO);
         CatalogType catalogType = catalogTypeMapper.toEntity(catalogTypeDTO);
         catalogType = catalogTypeRepository.save(catalogType);
+        changed(catalogType.getId());
         return catalogTypeMapper.toDto(catalogType);
     }
 
@@ -60,7 +72,10 @@ public class CatalogTypeService {
                 return existingCatalogType;
             })
             .map(catalogTypeRepository::save)
-            .map(catalogTypeMapper::toDto);
+            .map(catalogType -> {
+                changed(catalogType.getId());
+                return catalogTypeMapper.toDto(catalogType);
+            });
     }
 
     /**
@@ -95,5 +110,14 @@ public class CatalogTypeService {
     public void delete(Long id) {
         log.debug("Request to delete CatalogType : {}", id);
         catalogTypeRepository.deleteById(id);
+        changed(id);
+    }
+
+    /**
+     * The catalogItems embed their catalogType, so they change with it.
+     */
+    private void changed(Long id) {
+        collectionVersionService.changed(CollectionVersionService.CatalogCollection.TYPES, CollectionVersionService.CatalogCollection.ITEMS);
+        catalogReadModel.typeChanged(id);
     }
 }
@@ -0,0 +1,82 @@
+package com.gachokaerick.eshop.catalog.service;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.cp.IAtomicLong;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Version of each collection of the catalog, incremented on every change to the collection and shared by the members
+ * of the cluster through a Hazelcast atomic long.
+ * <p>
+ * Reading a version costs one Hazelcast call and no database query, so that the resources answer conditional requests
+ * before doing any other work. A version starts from the time its counter was created, in microseconds, so that it does
+ * not go back to a value already handed out after the whole cluster restarted.
+ */
+@Service
+public class CollectionVersionService {
+
+    /**
+     * Collections of the catalog.
+     */
+    public enum CatalogCollection {
+        ITEMS,
+        BRANDS,
+        TYPES,
+    }
+
+    private final Map<CatalogCollection, IAtomicLong> versions = new EnumMap<>(CatalogCollection.class);
+    private final ResponseCache responseCache;
+
+    public CollectionVersionService(HazelcastInstance hazelcastInstance, ResponseCache responseCache) {
+        this.responseCache = responseCache;
+        for (CatalogCollection collection : CatalogCollection.values()) {
+            IAtomicLong version = hazelcastInstance.getCPSubsystem().getAtomicLong("collection-version-" + collection.name().toLowerCase(Locale.ROOT));
+            version.compareAndSet(0, System.currentTimeMillis() * 1000);
+            versions.put(collection, version);
+        }
+    }
+
+    /**
+     * Get the current version of a collection.
+     *
+     * @param collection the collection.
+     * @return the version.
+     */
+    public long version(CatalogCollection collection) {
+        return versions.get(collection).get();
+    }
+
+    /**
+     * Increment the version of collections changed by the caller, once the current transaction committed if there is
+     * one, so that a version is never read before the change it stands for can be read. The responses cached for the
+     * collections are evicted at the same time.
+     *
+     * @param collections the collections changed.
+     */
+    public void changed(CatalogCollection... collections) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(
+                new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        increment(collections);
+                    }
+                }
+            );
+        } else {
+            increment(collections);
+        }
+    }
+
+    private void increment(CatalogCollection... collections) {
+        for (CatalogCollection collection : collections) {
+            versions.get(collection).incrementAndGet();
+        }
+        responseCache.evict(collections);
+    }
+}
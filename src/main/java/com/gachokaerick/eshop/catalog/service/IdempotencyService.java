@@ -0,0 +1,209 @@
+package com.gachokaerick.eshop.catalog.service;
+
+import com.gachokaerick.eshop.catalog.config.ApplicationProperties;
+import com.gachokaerick.eshop.catalog.exception.IdempotencyKeyException;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.map.IMap;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * Service Implementation for {@code Idempotency-Key} handling.
+ * <p>
+ * The first request with a key claims it, runs, and stores its response under the key. A retry of the same request
+ * gets the stored response back without running again; a concurrent retry is rejected while the first one runs.
+ * Failed requests release their key so that they can be retried.
+ * <p>
+ * Keys are stored in a bounded map whose entries expire: a Hazelcast map shared by the cluster when Hazelcast is
+ * clustered, a map local to this instance otherwise.
+ */
+@Service
+public class IdempotencyService {
+
+    public static final String MAP_NAME = "idempotency-keys";
+
+    private final Logger log = LoggerFactory.getLogger(IdempotencyService.class);
+
+    private final ApplicationProperties.Idempotency properties;
+    private final Store store;
+    private final Counter replays;
+
+    public IdempotencyService(HazelcastInstance hazelcastInstance, ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+        this.properties = applicationProperties.getIdempotency();
+        if (hazelcastInstance.getConfig().getNetworkConfig().getJoin().getTcpIpConfig().isEnabled()) {
+            log.debug("Idempotency keys are stored in the Hazelcast map {}", MAP_NAME);
+            this.store = new HazelcastStore(hazelcastInstance.getMap(MAP_NAME));
+        } else {
+            log.debug("Idempotency keys are stored locally");
+            this.store = new LocalStore(properties.getMaxEntries());
+        }
+        this.replays = Counter.builder("catalog.idempotency.replays").register(meterRegistry);
+    }
+
+    /**
+     * Run a request at most once per key.
+     *
+     * @param key         the {@code Idempotency-Key} sent by the client.
+     * @param fingerprint what identifies the request, a key sent again with another fingerprint is rejected.
+     * @param request     the request to run, its result must be {@link Serializable}.
+     * @param <T>         the type of the result.
+     * @return the result of the request, or the result stored for the key if the request already ran.
+     * @throws IdempotencyKeyException if the key is held by a request still running or was used for another request.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, String fingerprint, Supplier<T> request) {
+        Entry claim = new Entry(fingerprint, null, false, expiresAt(properties.getInFlightTtl()));
+        Entry existing = store.putIfAbsent(key, claim, properties.getInFlightTtl());
+        if (existing != null) {
+            if (!existing.fingerprint.equals(fingerprint)) {
+                throw new IdempotencyKeyException(key, IdempotencyKeyException.Reason.REUSED);
+            }
+            if (!existing.completed) {
+                throw new IdempotencyKeyException(key, IdempotencyKeyException.Reason.IN_PROGRESS);
+            }
+            log.debug("Replaying the response stored for Idempotency-Key {}", key);
+            replays.increment();
+            return (T) existing.response;
+        }
+
+        T result;
+        try {
+            result = request.get();
+        } catch (RuntimeException e) {
+            store.remove(key, claim);
+            throw e;
+        }
+        store.put(key, new Entry(fingerprint, (Serializable) result, true, expiresAt(properties.getTtl())), properties.getTtl());
+        return result;
+    }
+
+    private static long expiresAt(Duration ttl) {
+        return System.currentTimeMillis() + ttl.toMillis();
+    }
+
+    private static final class Entry implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String fingerprint;
+        private final Serializable response;
+        private final boolean completed;
+        private final long expiresAt;
+
+        private Entry(String fingerprint, Serializable response, boolean completed, long expiresAt) {
+            this.fingerprint = fingerprint;
+            this.response = response;
+            this.completed = completed;
+            this.expiresAt = expiresAt;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            Entry entry = (Entry) o;
+            return completed == entry.completed && expiresAt == entry.expiresAt && fingerprint.equals(entry.fingerprint);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(fingerprint, completed, expiresAt);
+        }
+    }
+
+    private interface Store {
+        Entry putIfAbsent(String key, Entry entry, Duration ttl);
+
+        void put(String key, Entry entry, Duration ttl);
+
+        void remove(String key, Entry entry);
+    }
+
+    private static final class HazelcastStore implements Store {
+
+        private final IMap<String, Entry> map;
+
+        private HazelcastStore(IMap<String, Entry> map) {
+            this.map = map;
+        }
+
+        @Override
+        public Entry putIfAbsent(String key, Entry entry, Duration ttl) {
+            return map.putIfAbsent(key, entry, ttl.toMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void put(String key, Entry entry, Duration ttl) {
+            map.set(key, entry, ttl.toMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void remove(String key, Entry entry) {
+            map.remove(key, entry);
+        }
+    }
+
+    /**
+     * Entries are kept in insertion order: expired entries and, past the maximum size, the oldest ones are evicted
+     * from the head of the map on every insertion.
+     */
+    private static final class LocalStore implements Store {
+
+        private final int maxEntries;
+        private final LinkedHashMap<String, Entry> map = new LinkedHashMap<>();
+
+        private LocalStore(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        @Override
+        public synchronized Entry putIfAbsent(String key, Entry entry, Duration ttl) {
+            Entry existing = map.get(key);
+            if (existing != null && existing.expiresAt > System.currentTimeMillis()) {
+                return existing;
+            }
+            put(key, entry, ttl);
+            return null;
+        }
+
+        @Override
+        public synchronized void put(String key, Entry entry, Duration ttl) {
+            // re-insert so that the entry moves to the tail
+            map.remove(key);
+            map.put(key, entry);
+            evict();
+        }
+
+        @Override
+        public synchronized void remove(String key, Entry entry) {
+            map.remove(key, entry);
+        }
+
+        private void evict() {
+            long now = System.currentTimeMillis();
+            Iterator<Map.Entry<String, Entry>> iterator = map.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, Entry> eldest = iterator.next();
+                if (map.size() <= maxEntries && eldest.getValue().expiresAt > now) {
+                    return;
+                }
+                iterator.remove();
+            }
+        }
+    }
+}
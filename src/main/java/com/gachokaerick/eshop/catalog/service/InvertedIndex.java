@@ -0,0 +1,362 @@
+package com.gachokaerick.eshop.catalog.service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory inverted index of documents identified by a {@code long}.
+ * <p>
+ * Text is split into lower-cased tokens stripped of their accents. Each token maps to the sorted ids of the documents
+ * containing it; these posting arrays are replaced, never modified, so searches read them without locking while
+ * updates are serialized.
+ * <p>
+ * A search matches the documents containing every term of the query, a term matching the tokens equal to it or
+ * starting with it, or, if there are none, the tokens at one edit from it. Documents are ranked by the number of terms
+ * they match exactly, then by id.
+ * <p>
+ * The terms are intersected from the most selective one, and a short posting array is intersected with a long one by
+ * binary search. Tokens at one edit from a term share either the first half of the term or the rest of it after its
+ * first half and one more character, so they are looked up by prefix among the tokens and among the reversed tokens.
+ */
+public final class InvertedIndex {
+
+    private static final long[] EMPTY = new long[0];
+
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+    private final NavigableMap<String, long[]> postings = new ConcurrentSkipListMap<>();
+    private final NavigableMap<String, String> reversedTokens = new ConcurrentSkipListMap<>();
+    private final Map<Long, String[]> documents = new ConcurrentHashMap<>();
+
+    private final int maxExpansions;
+    private final int fuzzyMinLength;
+
+    /**
+     * @param maxExpansions  maximum number of tokens a query term expands to by prefix or edit.
+     * @param fuzzyMinLength minimum length of a query term to match tokens at one edit from it.
+     */
+    public InvertedIndex(int maxExpansions, int fuzzyMinLength) {
+        this.maxExpansions = maxExpansions;
+        this.fuzzyMinLength = fuzzyMinLength;
+    }
+
+    /**
+     * Split a text into its distinct tokens.
+     *
+     * @param text the text, may be {@code null}.
+     * @return the tokens, in order of first occurrence.
+     */
+    public static List<String> tokenize(String text) {
+        if (text == null || text.isEmpty()) {
+            return List.of();
+        }
+        String normalized = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("").toLowerCase(Locale.ROOT);
+        Set<String> tokens = new LinkedHashSet<>();
+        for (String token : SEPARATORS.split(normalized)) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return new ArrayList<>(tokens);
+    }
+
+    /**
+     * Index a document, replacing its previous text.
+     *
+     * @param id    the id of the document.
+     * @param texts the text of the document, {@code null} values are ignored.
+     */
+    public void put(long id, String... texts) {
+        putAll(Map.of(id, texts));
+    }
+
+    /**
+     * Index several documents, replacing their previous text. Cheaper than indexing them one by one, as each posting
+     * array is copied once.
+     *
+     * @param texts the text of each document by id.
+     */
+    public synchronized void putAll(Map<Long, String[]> texts) {
+        Map<String, List<Long>> added = new HashMap<>();
+        Map<String, Set<Long>> removed = new HashMap<>();
+        texts.forEach((id, text) -> {
+            Set<String> tokens = new LinkedHashSet<>();
+            for (String field : text) {
+                tokens.addAll(tokenize(field));
+            }
+            Set<String> previous = new HashSet<>(Arrays.asList(documents.getOrDefault(id, new String[0])));
+            for (String token : previous) {
+                if (!tokens.contains(token)) {
+                    removed.computeIfAbsent(token, key -> new HashSet<>()).add(id);
+                }
+            }
+            for (String token : tokens) {
+                if (!previous.contains(token)) {
+                    added.computeIfAbsent(token, key -> new ArrayList<>()).add(id);
+                }
+            }
+            documents.put(id, tokens.toArray(new String[0]));
+        });
+        removed.forEach(this::removePostings);
+        added.forEach(this::addPostings);
+        // share the token instances of the posting keys
+        texts.keySet().forEach(id -> documents.computeIfPresent(id, (key, tokens) -> intern(tokens)));
+    }
+
+    /**
+     * Remove a document.
+     *
+     * @param id the id of the document.
+     */
+    public synchronized void remove(long id) {
+        String[] tokens = documents.remove(id);
+        if (tokens != null) {
+            for (String token : tokens) {
+                removePostings(token, Set.of(id));
+            }
+        }
+    }
+
+    /**
+     * @return the number of documents.
+     */
+    public int size() {
+        return documents.size();
+    }
+
+    /**
+     * @return the number of distinct tokens.
+     */
+    public int tokens() {
+        return postings.size();
+    }
+
+    /**
+     * Search the documents.
+     *
+     * @param query the query.
+     * @param limit the maximum number of ids.
+     * @return the ids of the best matching documents, best first.
+     */
+    public List<Long> search(String query, int limit) {
+        List<String> terms = tokenize(query);
+        if (terms.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        List<long[]> exact = new ArrayList<>(terms.size());
+        List<long[]> matching = new ArrayList<>(terms.size());
+        for (String term : terms) {
+            long[] termExact = postings.getOrDefault(term, EMPTY);
+            exact.add(termExact);
+            matching.add(union(termExact, expand(term)));
+        }
+        matching.sort(Comparator.comparingInt(posting -> posting.length));
+        long[] matches = matching.get(0);
+        for (int i = 1; i < matching.size() && matches.length > 0; i++) {
+            matches = intersect(matches, matching.get(i));
+        }
+        if (matches.length == 0) {
+            return List.of();
+        }
+        return rank(matches, exact, limit);
+    }
+
+    /**
+     * Posting arrays of the tokens starting with a term, or if none, of the tokens at one edit from it.
+     */
+    private List<long[]> expand(String term) {
+        List<long[]> expansions = new ArrayList<>();
+        for (Map.Entry<String, long[]> entry : postings.subMap(term, false, term + Character.MAX_VALUE, false).entrySet()) {
+            if (expansions.size() == maxExpansions) {
+                return expansions;
+            }
+            expansions.add(entry.getValue());
+        }
+        if (!expansions.isEmpty() || postings.containsKey(term) || term.length() < fuzzyMinLength) {
+            return expansions;
+        }
+        // tokens at one edit share the first half of the term, or its end
+        String start = term.substring(0, term.length() / 2);
+        Set<String> candidates = new LinkedHashSet<>(postings.subMap(start, start + Character.MAX_VALUE).keySet());
+        String end = reverse(term.substring(start.length() + 1));
+        candidates.addAll(reversedTokens.subMap(end, end + Character.MAX_VALUE).values());
+        for (String candidate : candidates) {
+            if (expansions.size() == maxExpansions) {
+                break;
+            }
+            if (withinOneEdit(term, candidate)) {
+                expansions.add(postings.getOrDefault(candidate, EMPTY));
+            }
+        }
+        return expansions;
+    }
+
+    private static List<Long> rank(long[] matches, List<long[]> exact, int limit) {
+        int[] scores = new int[matches.length];
+        int best = 0;
+        for (int i = 0; i < matches.length; i++) {
+            for (long[] posting : exact) {
+                if (Arrays.binarySearch(posting, matches[i]) >= 0) {
+                    scores[i]++;
+                }
+            }
+            best = Math.max(best, scores[i]);
+        }
+        // matches are sorted by id: collect by descending score, stopping once the limit is reached
+        List<Long> ids = new ArrayList<>(Math.min(limit, matches.length));
+        for (int score = best; score >= 0 && ids.size() < limit; score--) {
+            for (int i = 0; i < matches.length && ids.size() < limit; i++) {
+                if (scores[i] == score) {
+                    ids.add(matches[i]);
+                }
+            }
+        }
+        return ids;
+    }
+
+    private void addPostings(String token, List<Long> ids) {
+        long[] added = ids.stream().mapToLong(Long::longValue).sorted().toArray();
+        if (postings.merge(token, added, InvertedIndex::union) == added) {
+            reversedTokens.put(reverse(token), token);
+        }
+    }
+
+    private void removePostings(String token, Set<Long> ids) {
+        long[] posting = postings.get(token);
+        if (posting == null) {
+            return;
+        }
+        long[] remaining = Arrays.stream(posting).filter(id -> !ids.contains(id)).toArray();
+        if (remaining.length == 0) {
+            postings.remove(token);
+            reversedTokens.remove(reverse(token));
+        } else {
+            postings.put(token, remaining);
+        }
+    }
+
+    private String[] intern(String[] tokens) {
+        for (int i = 0; i < tokens.length; i++) {
+            String key = postings.ceilingKey(tokens[i]);
+            if (tokens[i].equals(key)) {
+                tokens[i] = key;
+            }
+        }
+        return tokens;
+    }
+
+    private static long[] union(long[] first, long[] second) {
+        long[] result = new long[first.length + second.length];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < first.length || j < second.length) {
+            long next;
+            if (j == second.length || (i < first.length && first[i] < second[j])) {
+                next = first[i++];
+            } else if (i == first.length || second[j] < first[i]) {
+                next = second[j++];
+            } else {
+                next = first[i++];
+                j++;
+            }
+            result[count++] = next;
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    private static long[] union(long[] first, List<long[]> others) {
+        // merge pairwise, so that each id is copied log(others) times
+        List<long[]> runs = new ArrayList<>(others);
+        runs.add(first);
+        while (runs.size() > 1) {
+            List<long[]> merged = new ArrayList<>((runs.size() + 1) / 2);
+            for (int i = 0; i < runs.size(); i += 2) {
+                merged.add(i + 1 < runs.size() ? union(runs.get(i), runs.get(i + 1)) : runs.get(i));
+            }
+            runs = merged;
+        }
+        return runs.get(0);
+    }
+
+    private static long[] intersect(long[] shorter, long[] longer) {
+        long[] result = new long[shorter.length];
+        int count = 0;
+        if (shorter.length * 16L < longer.length) {
+            // binary search the few ids of the shorter array, from the position of the previous one
+            int from = 0;
+            for (long id : shorter) {
+                int position = Arrays.binarySearch(longer, from, longer.length, id);
+                if (position >= 0) {
+                    result[count++] = id;
+                    from = position + 1;
+                } else {
+                    from = -position - 1;
+                }
+            }
+            return Arrays.copyOf(result, count);
+        }
+        int i = 0;
+        int j = 0;
+        while (i < shorter.length && j < longer.length) {
+            if (shorter[i] < longer[j]) {
+                i++;
+            } else if (shorter[i] > longer[j]) {
+                j++;
+            } else {
+                result[count++] = shorter[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    private static String reverse(String token) {
+        return new StringBuilder(token).reverse().toString();
+    }
+
+    /**
+     * Whether two strings differ by at most one insertion, deletion or substitution.
+     */
+    static boolean withinOneEdit(String a, String b) {
+        if (Math.abs(a.length() - b.length()) > 1) {
+            return false;
+        }
+        String shorter = a.length() <= b.length() ? a : b;
+        String longer = shorter == a ? b : a;
+        int i = 0;
+        int j = 0;
+        boolean edited = false;
+        while (i < shorter.length() && j < longer.length()) {
+            if (shorter.charAt(i) == longer.charAt(j)) {
+                i++;
+                j++;
+                continue;
+            }
+            if (edited) {
+                return false;
+            }
+            edited = true;
+            if (shorter.length() == longer.length()) {
+                i++;
+            }
+            j++;
+        }
+        return !edited || i == shorter.length() && j == longer.length();
+    }
+}
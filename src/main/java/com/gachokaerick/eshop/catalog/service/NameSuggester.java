@@ -0,0 +1,372 @@
+package com.gachokaerick.eshop.catalog.service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory suggestions of names starting with a prefix, ranked by a score.
+ * <p>
+ * Names are held in an array sorted by their lower-cased, accent-free form, so that the names starting with a prefix
+ * are a range found by binary search. A segment tree over the scores gives the best names of a range without scanning
+ * it. The arrays are immutable: names put or removed since they were built are kept in a small overlay, which is
+ * merged into new arrays once it holds {@code maxPending} names.
+ */
+public final class NameSuggester {
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+    private static final Comparator<Suggestion> BEST_FIRST = Comparator
+        .comparingInt(Suggestion::getScore)
+        .reversed()
+        .thenComparing(suggestion -> suggestion.key)
+        .thenComparingLong(Suggestion::getId);
+
+    private static final Comparator<Suggestion> BY_KEY = Comparator
+        .comparing((Suggestion suggestion) -> suggestion.key)
+        .thenComparingLong(Suggestion::getId);
+
+    private final int maxPending;
+
+    private volatile Names names = new Names(new Suggestion[0]);
+
+    /** Latest suggestion of each id put or removed since the arrays were built, {@code null} name when removed. */
+    private final Map<Long, Suggestion> overrides = new ConcurrentHashMap<>();
+    /** Suggestions put since the arrays were built, by {@link Suggestion#sortKey()}. */
+    private final NavigableMap<String, Suggestion> pending = new ConcurrentSkipListMap<>();
+
+    /**
+     * @param maxPending number of names put or removed after which the arrays are rebuilt.
+     */
+    public NameSuggester(int maxPending) {
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * Lower-case a name and strip its accents, as names and prefixes are compared.
+     *
+     * @param name the name.
+     * @return the normalized name.
+     */
+    public static String normalize(String name) {
+        return MARKS.matcher(Normalizer.normalize(name, Normalizer.Form.NFD)).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Add or replace a name.
+     *
+     * @param id    the id of the name.
+     * @param name  the name.
+     * @param score the rank of the name, higher first.
+     */
+    public synchronized void put(long id, String name, int score) {
+        override(new Suggestion(id, name, score));
+    }
+
+    /**
+     * Remove a name.
+     *
+     * @param id the id of the name.
+     */
+    public synchronized void remove(long id) {
+        override(new Suggestion(id, null, 0));
+    }
+
+    /**
+     * Add or replace many names at once, rebuilding the arrays.
+     *
+     * @param suggestions the names.
+     */
+    public synchronized void putAll(List<Suggestion> suggestions) {
+        suggestions.forEach(suggestion -> overrides.put(suggestion.id, suggestion));
+        compact();
+    }
+
+    /**
+     * Get the best names starting with a prefix.
+     *
+     * @param prefix the prefix, compared lower-cased and without accents.
+     * @param limit  the maximum number of names.
+     * @return the names, best first.
+     */
+    public List<Suggestion> suggest(String prefix, int limit) {
+        String key = prefix == null ? "" : normalize(prefix).strip();
+        if (key.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        Names current = names;
+        List<Suggestion> best = current.best(key, limit, overrides);
+        for (Suggestion suggestion : pending.subMap(key, key + Character.MAX_VALUE).values()) {
+            if (overrides.get(suggestion.id) == suggestion) {
+                best.add(suggestion);
+            }
+        }
+        best.sort(BEST_FIRST);
+        return best.size() > limit ? new ArrayList<>(best.subList(0, limit)) : best;
+    }
+
+    /**
+     * @return the number of names.
+     */
+    public int size() {
+        Names current = names;
+        int size = current.suggestions.length;
+        for (Suggestion suggestion : overrides.values()) {
+            boolean inArrays = current.contains(suggestion.id);
+            if (suggestion.name == null && inArrays) {
+                size--;
+            } else if (suggestion.name != null && !inArrays) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Estimate the memory held by the arrays, assuming compressed references and compact strings.
+     *
+     * @return the size in bytes.
+     */
+    public long footprint() {
+        Names current = names;
+        long bytes =
+            array(current.suggestions.length, 4) +
+            array(current.keys.length, 4) +
+            array(current.tree.length, 4) +
+            array(current.ids.length, 8);
+        for (int i = 0; i < current.suggestions.length; i++) {
+            Suggestion suggestion = current.suggestions[i];
+            // the suggestion object, its name and its key unless it is the name
+            bytes += 32 + string(suggestion.name);
+            if (!suggestion.key.equals(suggestion.name)) {
+                bytes += string(suggestion.key);
+            }
+        }
+        return bytes;
+    }
+
+    private void override(Suggestion suggestion) {
+        Suggestion previous = overrides.put(suggestion.id, suggestion);
+        if (previous != null && previous.name != null) {
+            pending.remove(previous.sortKey());
+        }
+        if (suggestion.name != null) {
+            pending.put(suggestion.sortKey(), suggestion);
+        }
+        if (overrides.size() >= maxPending) {
+            compact();
+        }
+    }
+
+    /**
+     * Merge the overlay into new arrays.
+     */
+    private void compact() {
+        List<Suggestion> all = new ArrayList<>(names.suggestions.length + overrides.size());
+        for (Suggestion suggestion : names.suggestions) {
+            if (!overrides.containsKey(suggestion.id)) {
+                all.add(suggestion);
+            }
+        }
+        for (Suggestion suggestion : overrides.values()) {
+            if (suggestion.name != null) {
+                all.add(suggestion);
+            }
+        }
+        Suggestion[] sorted = all.toArray(new Suggestion[0]);
+        Arrays.sort(sorted, BY_KEY);
+        // publish the new arrays before clearing the overlay, so that a name is always found in one or the other
+        names = new Names(sorted);
+        overrides.clear();
+        pending.clear();
+    }
+
+    private static long array(int length, int elementSize) {
+        return align(16 + (long) length * elementSize);
+    }
+
+    private static long string(String value) {
+        return 24 + array(value.length(), 1);
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) / 8 * 8;
+    }
+
+    /**
+     * Name suggested for a prefix.
+     */
+    public static final class Suggestion {
+
+        private final long id;
+        private final String name;
+        private final String key;
+        private final int score;
+
+        public Suggestion(long id, String name, int score) {
+            this.id = id;
+            this.name = name;
+            this.score = score;
+            if (name == null) {
+                this.key = null;
+            } else {
+                String normalized = normalize(name);
+                // share the name when it is already normalized
+                this.key = normalized.equals(name) ? name : normalized;
+            }
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getScore() {
+            return score;
+        }
+
+        private String sortKey() {
+            return key + '\u0000' + id;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Suggestion)) {
+                return false;
+            }
+            Suggestion that = (Suggestion) o;
+            return id == that.id && score == that.score && Objects.equals(name, that.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(id, name, score);
+        }
+
+        @Override
+        public String toString() {
+            return "Suggestion{id=" + id + ", name='" + name + "', score=" + score + "}";
+        }
+    }
+
+    /**
+     * Immutable names sorted by key, with a segment tree holding the position of the best score of each node.
+     */
+    private static final class Names {
+
+        private final Suggestion[] suggestions;
+        private final String[] keys;
+        private final int[] tree;
+        private final long[] ids;
+
+        private Names(Suggestion[] suggestions) {
+            this.suggestions = suggestions;
+            int n = suggestions.length;
+            this.keys = new String[n];
+            this.tree = new int[2 * n];
+            this.ids = new long[n];
+            for (int i = 0; i < n; i++) {
+                keys[i] = suggestions[i].key;
+                tree[n + i] = i;
+                ids[i] = suggestions[i].id;
+            }
+            Arrays.sort(ids);
+            for (int i = n - 1; i > 0; i--) {
+                tree[i] = better(tree[2 * i], tree[2 * i + 1]);
+            }
+        }
+
+        private boolean contains(long id) {
+            return Arrays.binarySearch(ids, id) >= 0;
+        }
+
+        /**
+         * Best suggestions of the range of keys starting with a prefix, skipping the overridden ones.
+         */
+        private List<Suggestion> best(String prefix, int limit, Map<Long, Suggestion> overrides) {
+            int from = lowerBound(prefix);
+            int to = lowerBound(prefix + Character.MAX_VALUE);
+            List<Suggestion> best = new ArrayList<>(limit);
+            if (from >= to) {
+                return best;
+            }
+            // ranges ordered by their best position, split around each position taken
+            PriorityQueue<int[]> ranges = new PriorityQueue<>((a, b) -> compare(a[2], b[2]));
+            ranges.add(new int[] { from, to, max(from, to) });
+            while (!ranges.isEmpty() && best.size() < limit) {
+                int[] range = ranges.poll();
+                int position = range[2];
+                Suggestion suggestion = suggestions[position];
+                if (!overrides.containsKey(suggestion.id)) {
+                    best.add(suggestion);
+                }
+                if (range[0] < position) {
+                    ranges.add(new int[] { range[0], position, max(range[0], position) });
+                }
+                if (position + 1 < range[1]) {
+                    ranges.add(new int[] { position + 1, range[1], max(position + 1, range[1]) });
+                }
+            }
+            return best;
+        }
+
+        private int lowerBound(String key) {
+            int low = 0;
+            int high = keys.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (keys[middle].compareTo(key) < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Position of the best score in {@code [from, to)}.
+         */
+        private int max(int from, int to) {
+            int n = suggestions.length;
+            int best = from;
+            for (int l = from + n, r = to + n; l < r; l >>= 1, r >>= 1) {
+                if ((l & 1) == 1) {
+                    best = better(best, tree[l++]);
+                }
+                if ((r & 1) == 1) {
+                    best = better(best, tree[--r]);
+                }
+            }
+            return best;
+        }
+
+        private int better(int a, int b) {
+            return compare(a, b) <= 0 ? a : b;
+        }
+
+        /**
+         * Order of two positions, best first: higher score, then lower position.
+         */
+        private int compare(int a, int b) {
+            int byScore = Integer.compare(suggestions[b].score, suggestions[a].score);
+            return byScore != 0 ? byScore : Integer.compare(a, b);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.gachokaerick.eshop.catalog.service;
+
+import com.gachokaerick.eshop.catalog.config.ApplicationProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+import javax.persistence.OptimisticLockException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Runs an update that may fail on a concurrent modification of a versioned entity, and retries it with a jittered
+ * exponential backoff.
+ * <p>
+ * Each attempt must run in its own transaction so that it reloads the current version: when called inside an
+ * existing transaction the update is attempted only once. Conflicts and retries are counted per operation in the
+ * {@code catalog.optimistic.conflicts} and {@code catalog.optimistic.retries} meters.
+ */
+@Component
+public class OptimisticLockRetry {
+
+    private final Logger log = LoggerFactory.getLogger(OptimisticLockRetry.class);
+
+    private final MeterRegistry meterRegistry;
+    private final ApplicationProperties.OptimisticRetry properties;
+
+    public OptimisticLockRetry(MeterRegistry meterRegistry, ApplicationProperties applicationProperties) {
+        this.meterRegistry = meterRegistry;
+        this.properties = applicationProperties.getOptimisticRetry();
+    }
+
+    /**
+     * Run an update, retrying it while it conflicts with a concurrent one.
+     *
+     * @param operation the name of the operation, used to tag the meters.
+     * @param update    the update to run.
+     * @param <T>       the type of the result.
+     * @return the result of the first attempt that did not conflict.
+     * @throws OptimisticLockingFailureException if every attempt conflicted.
+     */
+    public <T> T execute(String operation, Supplier<T> update) {
+        int maxAttempts = TransactionSynchronizationManager.isActualTransactionActive() ? 1 : Math.max(properties.getMaxAttempts(), 1);
+        return run(operation, maxAttempts, update);
+    }
+
+    /**
+     * Run an update once, counting it as a conflict if it fails on a concurrent modification.
+     * For updates made against a version given by the client, where retrying cannot succeed.
+     *
+     * @param operation the name of the operation, used to tag the meters.
+     * @param update    the update to run.
+     * @param <T>       the type of the result.
+     * @return the result of the update.
+     * @throws OptimisticLockingFailureException if the update conflicted.
+     */
+    public <T> T executeOnce(String operation, Supplier<T> update) {
+        return run(operation, 1, update);
+    }
+
+    private <T> T run(String operation, int maxAttempts, Supplier<T> update) {
+        for (int attempt = 1;; attempt++) {
+            try {
+                return update.get();
+            } catch (OptimisticLockingFailureException | OptimisticLockException e) {
+                counter("catalog.optimistic.conflicts", operation).increment();
+                if (attempt >= maxAttempts) {
+                    log.debug("Giving up {} after {} conflicting attempt(s)", operation, attempt);
+                    throw e instanceof OptimisticLockingFailureException
+                        ? (OptimisticLockingFailureException) e
+                        : new OptimisticLockingFailureException(e.getMessage(), e);
+                }
+                counter("catalog.optimistic.retries", operation).increment();
+                backoff(operation, attempt);
+            }
+        }
+    }
+
+    private void backoff(String operation, int attempt) {
+        // full jitter: sleep a random time up to the exponential bound so that retrying writers spread out
+        long bound = Math.min(properties.getInitialBackoff().toMillis() << Math.min(attempt - 1, 20), properties.getMaxBackoff().toMillis());
+        long millis = ThreadLocalRandom.current().nextLong(bound + 1);
+        log.debug("Conflict on {}, retrying in {} ms", operation, millis);
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OptimisticLockingFailureException("Interrupted while retrying " + operation, e);
+        }
+    }
+
+    private Counter counter(String name, String operation) {
+        return Counter.builder(name).tag("operation", operation).register(meterRegistry);
+    }
+}
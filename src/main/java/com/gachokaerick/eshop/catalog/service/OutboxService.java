@@ -0,0 +1,195 @@
+package com.gachokaerick.eshop.catalog.service;
+
+import com.gachokaerick.eshop.catalog.config.ApplicationProperties;
+import com.gachokaerick.eshop.catalog.config.KafkaProperties;
+import com.gachokaerick.eshop.catalog.model.OutboxEvent;
+import com.gachokaerick.eshop.catalog.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import javax.annotation.PreDestroy;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Transactional outbox of the Kafka messages.
+ * <p>
+ * Messages are written as {@link OutboxEvent}s by the transaction of the change they announce, so they are published
+ * if and only if the change commits, and the request never waits for the broker. A scheduled relay publishes the
+ * oldest events in batches, in the order they were written, and deletes them once the broker acknowledged the whole
+ * batch. A batch that fails is published again on the next run: delivery is at least once.
+ * <p>
+ * The relay uses its own idempotent producer, which compresses and lingers to send each batch in a few requests. The
+ * number of events waiting is published in the {@code catalog.outbox.pending} gauge, the age of the oldest one in the
+ * {@code catalog.outbox.lag} gauge, and the events published in the {@code catalog.outbox.published} counter.
+ */
+@Service
+public class OutboxService {
+
+    private final Logger log = LoggerFactory.getLogger(OutboxService.class);
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final KafkaProperties kafkaProperties;
+    private final ApplicationProperties.Outbox properties;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Counter published;
+    private final Counter failures;
+    private final Timer batches;
+    private final AtomicLong pending = new AtomicLong();
+    private volatile Instant oldest;
+
+    private Producer<String, String> producer;
+
+    public OutboxService(
+        OutboxEventRepository outboxEventRepository,
+        KafkaProperties kafkaProperties,
+        PlatformTransactionManager transactionManager,
+        MeterRegistry meterRegistry,
+        ApplicationProperties applicationProperties
+    ) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.kafkaProperties = kafkaProperties;
+        this.properties = applicationProperties.getOutbox();
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.published = Counter.builder("catalog.outbox.published").register(meterRegistry);
+        this.failures = Counter.builder("catalog.outbox.failures").register(meterRegistry);
+        this.batches = Timer.builder("catalog.outbox.batches").register(meterRegistry);
+        Gauge.builder("catalog.outbox.pending", pending, AtomicLong::get).register(meterRegistry);
+        Gauge.builder("catalog.outbox.lag", this, OutboxService::lagSeconds).baseUnit("seconds").register(meterRegistry);
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (producer != null) {
+            producer.close(Duration.ofSeconds(5));
+            producer = null;
+        }
+    }
+
+    /**
+     * Write a message to the outbox, in the current transaction.
+     *
+     * @param topic   the topic to publish the message to.
+     * @param key     the key of the message, may be {@code null}.
+     * @param payload the message, {@code null} for a tombstone deleting the key from a compacted topic.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueue(String topic, String key, String payload) {
+        log.debug("Request to publish to Kafka topic {} with key {} the message : {}", topic, key, payload);
+        outboxEventRepository.save(new OutboxEvent().topic(topic).messageKey(key).payload(payload).createdDate(Instant.now()));
+    }
+
+    /**
+     * Publish the events of the outbox until it is drained or a batch fails.
+     *
+     * @return the number of events published.
+     */
+    @Scheduled(fixedDelayString = "${application.outbox.relay-interval:PT1S}")
+    public int relay() {
+        if (!properties.isEnabled()) {
+            return 0;
+        }
+        return relay(producer());
+    }
+
+    int relay(Producer<String, String> producer) {
+        int relayed = 0;
+        try {
+            int sent;
+            do {
+                sent = transactionTemplate.execute(status -> publishBatch(producer));
+                relayed += sent;
+            } while (sent >= Math.max(properties.getBatchSize(), 1));
+        } catch (RuntimeException e) {
+            failures.increment();
+            log.warn("Could not publish the outbox, retrying in {}: {}", properties.getRelayInterval(), e.getMessage());
+        } finally {
+            transactionTemplate.executeWithoutResult(status -> measureLag());
+        }
+        if (relayed > 0) {
+            log.debug("Published {} event(s) of the outbox", relayed);
+        }
+        return relayed;
+    }
+
+    /**
+     * Publish the oldest events and delete them once all of them are acknowledged, in one transaction holding their
+     * row locks.
+     */
+    private int publishBatch(Producer<String, String> producer) {
+        List<OutboxEvent> events = outboxEventRepository.findOldestForUpdate(PageRequest.of(0, Math.max(properties.getBatchSize(), 1)));
+        if (events.isEmpty()) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        List<Future<RecordMetadata>> acknowledgements = new ArrayList<>(events.size());
+        for (OutboxEvent event : events) {
+            acknowledgements.add(producer.send(new ProducerRecord<>(event.getTopic(), event.getMessageKey(), event.getPayload())));
+        }
+        producer.flush();
+        long deadline = System.nanoTime() + properties.getSendTimeout().toNanos();
+        for (Future<RecordMetadata> acknowledgement : acknowledgements) {
+            try {
+                acknowledgement.get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while publishing the outbox", e);
+            } catch (ExecutionException | TimeoutException e) {
+                throw new IllegalStateException("The broker did not acknowledge the batch", e);
+            }
+        }
+        outboxEventRepository.deleteByIdIn(events.stream().map(OutboxEvent::getId).collect(Collectors.toList()));
+        batches.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        published.increment(events.size());
+        return events.size();
+    }
+
+    private void measureLag() {
+        pending.set(outboxEventRepository.count());
+        oldest = outboxEventRepository.findFirstByOrderByIdAsc().map(OutboxEvent::getCreatedDate).orElse(null);
+    }
+
+    private double lagSeconds() {
+        Instant current = oldest;
+        return current == null ? 0 : Math.max(Duration.between(current, Instant.now()).toMillis(), 0) / 1000.0;
+    }
+
+    private synchronized Producer<String, String> producer() {
+        if (producer == null) {
+            Map<String, Object> producerProps = kafkaProperties.getProducerProps();
+            producerProps.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+            producerProps.put(ProducerConfig.ACKS_CONFIG, "all");
+            producerProps.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, properties.getCompressionType());
+            producerProps.put(ProducerConfig.LINGER_MS_CONFIG, (int) properties.getLinger().toMillis());
+            // a broker that is down fails the batch instead of blocking the relay
+            producerProps.put(ProducerConfig.MAX_BLOCK_MS_CONFIG, properties.getSendTimeout().toMillis());
+            producer = new KafkaProducer<>(producerProps);
+        }
+        return producer;
+    }
+}
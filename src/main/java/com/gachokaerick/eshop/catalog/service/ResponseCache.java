@@ -0,0 +1,202 @@
+package com.gachokaerick.eshop.catalog.service;
+
+import com.gachokaerick.eshop.catalog.config.ApplicationProperties;
+import com.gachokaerick.eshop.catalog.service.CollectionVersionService.CatalogCollection;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * Cache of the serialized responses of the most requested reads of the catalog, local to this instance.
+ * <p>
+ * Each response is stored with the version of the collection it was read from, and is only returned while that version
+ * is current: as every write to the catalog increments the version of the collections it changes, a write on any member
+ * of the cluster makes the responses cached by the others stale. The responses of a collection changed by this instance
+ * are also evicted at once by {@link CollectionVersionService}.
+ * <p>
+ * Entries are kept in a {@link ConcurrentHashMap}, so that hits never wait for each other, and remember when they were
+ * last read. Past the maximum number of entries or bytes, a single thread evicts the least recently read entries down
+ * to 90% of the maximums, so that the scan is paid for once every many insertions. Other threads
+ * insert meanwhile, so the maximums are approximate.
+ */
+@Service
+public class ResponseCache {
+
+    private static final double LOW_WATER_MARK = 0.9;
+
+    private final Logger log = LoggerFactory.getLogger(ResponseCache.class);
+
+    private final ApplicationProperties.ResponseCache properties;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong bytes = new AtomicLong();
+    private final Lock evicting = new ReentrantLock();
+    private final Counter hits;
+    private final Counter misses;
+
+    public ResponseCache(ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+        this.properties = applicationProperties.getResponseCache();
+        this.hits = Counter.builder("catalog.response.cache.hits").register(meterRegistry);
+        this.misses = Counter.builder("catalog.response.cache.misses").register(meterRegistry);
+        Gauge.builder("catalog.response.cache.bytes", this, ResponseCache::bytes).register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * Get a response, if it was cached at the current version of its collection.
+     *
+     * @param key     the normalized request.
+     * @param version the current version of the collection read by the request.
+     * @return the response, or {@code null} if it is not cached or stale.
+     */
+    public Entry get(String key, long version) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.version != version) {
+            remove(key, entry);
+            entry = null;
+        }
+        if (entry == null) {
+            misses.increment();
+        } else {
+            entry.lastRead = System.nanoTime();
+            hits.increment();
+        }
+        return entry;
+    }
+
+    /**
+     * Cache a response, unless it is larger than the maximum size of an entry.
+     *
+     * @param key   the normalized request.
+     * @param entry the response.
+     */
+    public void put(String key, Entry entry) {
+        if (entry.body.length > properties.getMaxEntryBytes()) {
+            log.debug("Not caching the response to {} of {} bytes", key, entry.body.length);
+            return;
+        }
+        entry.lastRead = System.nanoTime();
+        Entry replaced = entries.put(key, entry);
+        bytes.addAndGet(entry.body.length - (replaced == null ? 0 : replaced.body.length));
+        if (exceeds(1)) {
+            evict();
+        }
+    }
+
+    /**
+     * Evict the responses read from collections.
+     *
+     * @param collections the collections changed.
+     */
+    public void evict(CatalogCollection... collections) {
+        Set<CatalogCollection> changed = EnumSet.copyOf(Arrays.asList(collections));
+        entries.forEach((key, entry) -> {
+            if (changed.contains(entry.collection)) {
+                remove(key, entry);
+            }
+        });
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long bytes() {
+        return bytes.get();
+    }
+
+    private void remove(String key, Entry entry) {
+        if (entries.remove(key, entry)) {
+            bytes.addAndGet(-entry.body.length);
+        }
+    }
+
+    private boolean exceeds(double share) {
+        return entries.size() > properties.getMaxEntries() * share || bytes.get() > properties.getMaxBytes() * share;
+    }
+
+    private void evict() {
+        if (!evicting.tryLock()) {
+            // another thread is evicting
+            return;
+        }
+        try {
+            // read once, as the entries may be read while sorting
+            List<Candidate> candidates = new ArrayList<>(entries.size());
+            entries.forEach((key, entry) -> candidates.add(new Candidate(key, entry, entry.lastRead)));
+            candidates.sort(Comparator.comparingLong(candidate -> candidate.lastRead));
+            Iterator<Candidate> iterator = candidates.iterator();
+            while (iterator.hasNext() && exceeds(LOW_WATER_MARK)) {
+                Candidate eldest = iterator.next();
+                remove(eldest.key, eldest.entry);
+            }
+        } finally {
+            evicting.unlock();
+        }
+    }
+
+    private static final class Candidate {
+
+        private final String key;
+        private final Entry entry;
+        private final long lastRead;
+
+        private Candidate(String key, Entry entry, long lastRead) {
+            this.key = key;
+            this.entry = entry;
+            this.lastRead = lastRead;
+        }
+    }
+
+    /**
+     * A response as written to the client: its status, headers and encoded body.
+     */
+    public static final class Entry {
+
+        private final CatalogCollection collection;
+        private final long version;
+        private final int status;
+        private final Map<String, List<String>> headers;
+        private final byte[] body;
+        private volatile long lastRead;
+
+        public Entry(CatalogCollection collection, long version, int status, Map<String, List<String>> headers, byte[] body) {
+            this.collection = collection;
+            this.version = version;
+            this.status = status;
+            this.headers = Collections.unmodifiableMap(new LinkedHashMap<>(headers));
+            this.body = body;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public Map<String, List<String>> getHeaders() {
+            return headers;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+    }
+}
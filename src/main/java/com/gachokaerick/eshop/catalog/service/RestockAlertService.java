@@ -0,0 +1,199 @@
+package com.gachokaerick.eshop.catalog.service;
+
+import static com.gachokaerick.eshop.catalog.config.Constants.RESTOCK_TOPIC;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gachokaerick.eshop.catalog.config.ApplicationProperties;
+import com.gachokaerick.eshop.catalog.model.OutboxEvent;
+import com.gachokaerick.eshop.catalog.model.RestockAlert;
+import com.gachokaerick.eshop.catalog.repository.RestockAlertRepository;
+import com.gachokaerick.eshop.catalog.service.dto.CatalogItemDTO;
+import com.gachokaerick.eshop.catalog.service.dto.RestockAlertDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Batches the restock alerts of the {@link com.gachokaerick.eshop.catalog.domain.catalogItem.CatalogItem}s whose stock
+ * crossed their restock threshold.
+ * <p>
+ * An alert is written as a {@link RestockAlert} by the transaction of the crossing, so it is kept if and only if the
+ * crossing commits, and survives a restart. An item has at most one pending alert, listing its latest crossing: the
+ * crossings of an item whose alert is pending are left out as duplicates, the others start a new alert.
+ * <p>
+ * Every {@code application.restock-alerts.window}, the pending alerts are locked and, once the oldest of them has been
+ * pending for a window, written to {@link OutboxService} and deleted in the same transaction: one restock message then
+ * lists them as {@link RestockAlertDTO}s, each with the quantity to order to get back to its maxStockThreshold. The
+ * row locks and the age of the oldest alert make the instances of the cluster publish one message per window between
+ * them, and each alert once.
+ * <p>
+ * The numbers of crossings, of crossings left out as duplicates and of messages are published in the
+ * {@code catalog.restock.alerts.crossings}, {@code catalog.restock.alerts.deduplicated} and
+ * {@code catalog.restock.alerts.messages} counters.
+ */
+@Service
+public class RestockAlertService {
+
+    private final Logger log = LoggerFactory.getLogger(RestockAlertService.class);
+
+    private final RestockAlertRepository restockAlertRepository;
+    private final OutboxService outboxService;
+    private final ObjectMapper objectMapper;
+    private final ApplicationProperties.RestockAlerts properties;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Counter crossings;
+    private final Counter deduplicated;
+    private final Counter messages;
+
+    public RestockAlertService(
+        RestockAlertRepository restockAlertRepository,
+        OutboxService outboxService,
+        ObjectMapper objectMapper,
+        PlatformTransactionManager transactionManager,
+        MeterRegistry meterRegistry,
+        ApplicationProperties applicationProperties
+    ) {
+        this.restockAlertRepository = restockAlertRepository;
+        this.outboxService = outboxService;
+        this.objectMapper = objectMapper;
+        this.properties = applicationProperties.getRestockAlerts();
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.crossings = Counter.builder("catalog.restock.alerts.crossings").register(meterRegistry);
+        this.deduplicated = Counter.builder("catalog.restock.alerts.deduplicated").register(meterRegistry);
+        this.messages = Counter.builder("catalog.restock.alerts.messages").register(meterRegistry);
+    }
+
+    /**
+     * Alert that the stock of a catalogItem crossed its restock threshold, in the current transaction.
+     *
+     * @param catalogItemDTO the catalogItem, as changed by the crossing.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void alert(CatalogItemDTO catalogItemDTO) {
+        Instant now = Instant.now();
+        crossings.increment();
+        Optional<RestockAlert> pending = restockAlertRepository.findByIdForUpdate(catalogItemDTO.getId());
+        if (pending.isPresent()) {
+            deduplicated.increment();
+        }
+        // the latest crossing of the window is listed, with its stock
+        RestockAlert restockAlert = pending
+            .orElseGet(() -> new RestockAlert().catalogItemId(catalogItemDTO.getId()).pendingSince(now))
+            .name(catalogItemDTO.getName())
+            .availableStock(catalogItemDTO.getAvailableStock())
+            .restockThreshold(catalogItemDTO.getRestockThreshold())
+            .maxStockThreshold(catalogItemDTO.getMaxStockThreshold())
+            .crossedDate(now);
+        restockAlertRepository.save(restockAlert);
+    }
+
+    /**
+     * Publish the pending alerts, if the oldest of them has been pending for a window.
+     *
+     * @return the number of catalogItems listed.
+     */
+    @Scheduled(
+        fixedDelayString = "${application.restock-alerts.window:PT1M}",
+        initialDelayString = "${application.restock-alerts.window:PT1M}"
+    )
+    public int flush() {
+        return flush(Instant.now());
+    }
+
+    int flush(Instant now) {
+        Window window;
+        try {
+            window = transactionTemplate.execute(status -> publish(now));
+        } catch (RuntimeException e) {
+            log.warn("Could not publish the restock alerts, retrying in {}: {}", properties.getWindow(), e.getMessage());
+            return 0;
+        }
+        if (window.alerts > 0) {
+            messages.increment(window.messages);
+            log.debug("Published restock alerts for {} catalogItem(s) in {} message(s)", window.alerts, window.messages);
+        }
+        return window.alerts;
+    }
+
+    /**
+     * Write the pending alerts to the outbox and delete them, holding their row locks.
+     */
+    private Window publish(Instant now) {
+        Window window = new Window();
+        List<RestockAlert> pending = restockAlertRepository.findAllForUpdate();
+        Optional<Instant> oldest = pending.stream().map(RestockAlert::getPendingSince).min(Comparator.naturalOrder());
+        if (oldest.isEmpty() || oldest.get().plus(properties.getWindow()).isAfter(now)) {
+            return window;
+        }
+        List<String> payloads = payloads(pending.stream().map(RestockAlertService::toDto).collect(Collectors.toList()));
+        for (String payload : payloads) {
+            outboxService.enqueue(RESTOCK_TOPIC, null, payload);
+        }
+        restockAlertRepository.deleteAllInBatch(pending);
+        window.alerts = pending.size();
+        window.messages = payloads.size();
+        return window;
+    }
+
+    /**
+     * Write the alerts as JSON arrays, as few as fit in the payload of an {@link OutboxEvent}.
+     */
+    private List<String> payloads(List<RestockAlertDTO> alerts) {
+        List<String> payloads = new ArrayList<>();
+        StringBuilder payload = new StringBuilder("[");
+        for (RestockAlertDTO alert : alerts) {
+            String json;
+            try {
+                json = objectMapper.writeValueAsString(alert);
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("Could not write the restock alert of CatalogItem " + alert.getItemId(), e);
+            }
+            if (payload.length() > 1 && payload.length() + json.length() + 2 > OutboxEvent.MAX_PAYLOAD_LENGTH) {
+                payloads.add(payload.append(']').toString());
+                payload = new StringBuilder("[");
+            }
+            if (payload.length() > 1) {
+                payload.append(',');
+            }
+            payload.append(json);
+        }
+        payloads.add(payload.append(']').toString());
+        return payloads;
+    }
+
+    private static RestockAlertDTO toDto(RestockAlert restockAlert) {
+        RestockAlertDTO restockAlertDTO = new RestockAlertDTO();
+        restockAlertDTO.setItemId(restockAlert.getCatalogItemId());
+        restockAlertDTO.setName(restockAlert.getName());
+        restockAlertDTO.setAvailableStock(restockAlert.getAvailableStock());
+        restockAlertDTO.setRestockThreshold(restockAlert.getRestockThreshold());
+        restockAlertDTO.setMaxStockThreshold(restockAlert.getMaxStockThreshold());
+        restockAlertDTO.setSuggestedQuantity(Math.max(restockAlert.getMaxStockThreshold() - restockAlert.getAvailableStock(), 0));
+        restockAlertDTO.setCrossedDate(restockAlert.getCrossedDate());
+        return restockAlertDTO;
+    }
+
+    /**
+     * Outcome of a window, counted once it is committed.
+     */
+    private static final class Window {
+
+        private int alerts;
+        private int messages;
+    }
+}
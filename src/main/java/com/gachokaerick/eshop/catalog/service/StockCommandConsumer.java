@@ -0,0 +1,336 @@
+package com.gachokaerick.eshop.catalog.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gachokaerick.eshop.catalog.config.ApplicationProperties;
+import com.gachokaerick.eshop.catalog.config.KafkaProperties;
+import com.gachokaerick.eshop.catalog.model.OutboxEvent;
+import com.gachokaerick.eshop.catalog.model.StockCommandOffset;
+import com.gachokaerick.eshop.catalog.model.enumeration.StockMovementReason;
+import com.gachokaerick.eshop.catalog.repository.StockCommandOffsetRepository;
+import com.gachokaerick.eshop.catalog.service.dto.StockCommandDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PreDestroy;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Applies the stock commands published on Kafka, by ordering for instance, instead of one REST call per change.
+ * <p>
+ * Each consumer polls up to {@code application.stock-commands.batch-size} commands, groups them by item and applies
+ * them in one transaction through {@link StockMutationService#applyAll(Map)}: one statement locks every row, the stock
+ * rules of {@link com.gachokaerick.eshop.catalog.domain.catalogItem.CatalogItemDomain} apply the commands of each item
+ * in order, and the updates are written in JDBC batches. The offsets are committed once the transaction is, so a
+ * consumer only polls again once its batch is applied, and a batch that fails is polled again.
+ * <p>
+ * Kafka delivers the commands at least once: a crash or a rebalance between the transaction and the commit of the
+ * offsets delivers the batch again. The offset of the next command of each partition is therefore also written in the
+ * transaction, as a {@link StockCommandOffset} locked for its duration, and the commands below it are skipped: each
+ * command is applied once, whether or not the stock journal is enabled.
+ * <p>
+ * Commands that cannot be read, are for an unknown item or are rejected by the stock rules are written to the
+ * dead-letter topic through {@link OutboxService}, in the same transaction, unchanged. The numbers of commands applied,
+ * dead-lettered and skipped are published in the {@code catalog.stock.commands.applied},
+ * {@code catalog.stock.commands.dead.lettered} and {@code catalog.stock.commands.skipped} counters.
+ */
+@Service
+public class StockCommandConsumer {
+
+    private final Logger log = LoggerFactory.getLogger(StockCommandConsumer.class);
+
+    private final KafkaProperties kafkaProperties;
+    private final StockMutationService stockMutationService;
+    private final CatalogItemService catalogItemService;
+    private final OutboxService outboxService;
+    private final StockCommandOffsetRepository stockCommandOffsetRepository;
+    private final ObjectMapper objectMapper;
+    private final ApplicationProperties.StockCommands properties;
+    private final TransactionTemplate transactionTemplate;
+
+    private final List<Consumer<String, String>> consumers = new CopyOnWriteArrayList<>();
+    private final List<Thread> threads = new CopyOnWriteArrayList<>();
+    private volatile boolean running;
+
+    private final Counter applied;
+    private final Counter deadLettered;
+    private final Counter skipped;
+    private final Counter failures;
+    private final Timer batches;
+
+    public StockCommandConsumer(
+        KafkaProperties kafkaProperties,
+        StockMutationService stockMutationService,
+        CatalogItemService catalogItemService,
+        OutboxService outboxService,
+        StockCommandOffsetRepository stockCommandOffsetRepository,
+        ObjectMapper objectMapper,
+        PlatformTransactionManager transactionManager,
+        MeterRegistry meterRegistry,
+        ApplicationProperties applicationProperties
+    ) {
+        this.kafkaProperties = kafkaProperties;
+        this.stockMutationService = stockMutationService;
+        this.catalogItemService = catalogItemService;
+        this.outboxService = outboxService;
+        this.stockCommandOffsetRepository = stockCommandOffsetRepository;
+        this.objectMapper = objectMapper;
+        this.properties = applicationProperties.getStockCommands();
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.applied = Counter.builder("catalog.stock.commands.applied").register(meterRegistry);
+        this.deadLettered = Counter.builder("catalog.stock.commands.dead.lettered").register(meterRegistry);
+        this.skipped = Counter.builder("catalog.stock.commands.skipped").register(meterRegistry);
+        this.failures = Counter.builder("catalog.stock.commands.failures").register(meterRegistry);
+        this.batches = Timer.builder("catalog.stock.commands.batches").register(meterRegistry);
+    }
+
+    /**
+     * Start the consumers, once the application is ready.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        running = true;
+        for (int i = 0; i < Math.max(properties.getConcurrency(), 1); i++) {
+            Consumer<String, String> consumer = new KafkaConsumer<>(consumerProps());
+            consumers.add(consumer);
+            Thread thread = new Thread(() -> run(consumer), "stock-command-consumer-" + i);
+            threads.add(thread);
+            thread.start();
+        }
+        log.info("Consuming stock commands from {} with {} consumer(s)", properties.getTopic(), consumers.size());
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        consumers.forEach(Consumer::wakeup);
+        for (Thread thread : threads) {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+
+    private void run(Consumer<String, String> consumer) {
+        try {
+            consumer.subscribe(List.of(properties.getTopic()));
+            while (running) {
+                try {
+                    poll(consumer);
+                } catch (WakeupException e) {
+                    // stopping
+                } catch (RuntimeException e) {
+                    log.warn("Could not consume the stock commands, retrying in {}: {}", properties.getRetryBackoff(), e.getMessage());
+                    pause();
+                }
+            }
+        } finally {
+            consumer.close();
+        }
+    }
+
+    /**
+     * Poll a batch of commands, apply it and commit its offsets.
+     *
+     * @param consumer the consumer, subscribed to the commands.
+     * @return the number of commands polled, {@code 0} if the batch could not be applied and is to be polled again.
+     */
+    int poll(Consumer<String, String> consumer) {
+        ConsumerRecords<String, String> records = consumer.poll(properties.getPollTimeout());
+        if (records.isEmpty()) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        Batch batch;
+        try {
+            batch = transactionTemplate.execute(status -> apply(records));
+        } catch (RuntimeException e) {
+            failures.increment();
+            log.warn(
+                "Could not apply {} stock commands, retrying in {}: {}",
+                records.count(),
+                properties.getRetryBackoff(),
+                e.getMessage()
+            );
+            // poll the same commands again
+            for (TopicPartition partition : records.partitions()) {
+                consumer.seek(partition, records.records(partition).get(0).offset());
+            }
+            pause();
+            return 0;
+        }
+        catalogItemService.stockChanged(batch.changed);
+        consumer.commitSync(offsets(records));
+        batches.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        applied.increment(batch.applied);
+        deadLettered.increment(batch.deadLettered);
+        skipped.increment(batch.skipped);
+        return records.count();
+    }
+
+    /**
+     * Apply a batch of commands and write those that are rejected to the dead-letter topic, in the current transaction,
+     * skipping the commands already applied.
+     */
+    private Batch apply(ConsumerRecords<String, String> records) {
+        Batch batch = new Batch();
+        Map<TopicPartition, StockCommandOffset> offsets = lockOffsets(records);
+        Map<Long, List<StockMutationService.Operation>> operations = new TreeMap<>();
+        Map<StockMutationService.Operation, ConsumerRecord<String, String>> sources = new IdentityHashMap<>();
+        for (ConsumerRecord<String, String> record : records) {
+            StockCommandOffset offset = offsets.get(new TopicPartition(record.topic(), record.partition()));
+            if (record.offset() < offset.getNextOffset()) {
+                batch.skipped++;
+                continue;
+            }
+            offset.setNextOffset(record.offset() + 1);
+            StockCommandDTO command = read(record);
+            if (command == null) {
+                deadLetter(batch, record, "not a stock command");
+                continue;
+            }
+            String correlationId = command.getCorrelationId() != null ? command.getCorrelationId() : coordinates(record);
+            StockMutationService.Operation operation = new StockMutationService.Operation(
+                command.getReason(),
+                command.getQuantity(),
+                correlationId
+            );
+            operations.computeIfAbsent(command.getItemId(), id -> new ArrayList<>()).add(operation);
+            sources.put(operation, record);
+        }
+        stockCommandOffsetRepository.saveAll(offsets.values());
+        if (batch.skipped > 0) {
+            log.info("Skipped {} stock commands already applied", batch.skipped);
+        }
+        if (operations.isEmpty()) {
+            return batch;
+        }
+
+        Set<Long> missing = stockMutationService.applyAll(operations);
+        operations.forEach((id, itemOperations) -> {
+            for (StockMutationService.Operation operation : itemOperations) {
+                if (missing.contains(id)) {
+                    deadLetter(batch, sources.get(operation), "CatalogItem " + id + " does not exist");
+                } else if (operation.getFailure() != null) {
+                    deadLetter(batch, sources.get(operation), operation.getFailure().getMessage());
+                } else {
+                    batch.applied++;
+                    batch.changed.add(id);
+                }
+            }
+        });
+        return batch;
+    }
+
+    /**
+     * Lock the offsets of the partitions of a batch, creating those of the partitions never applied.
+     */
+    private Map<TopicPartition, StockCommandOffset> lockOffsets(ConsumerRecords<String, String> records) {
+        Map<String, TopicPartition> partitions = new TreeMap<>();
+        for (TopicPartition partition : records.partitions()) {
+            partitions.put(properties.getGroupId() + "/" + partition, partition);
+        }
+        Map<TopicPartition, StockCommandOffset> offsets = new HashMap<>();
+        for (StockCommandOffset offset : stockCommandOffsetRepository.findAllByIdForUpdate(partitions.keySet())) {
+            offsets.put(partitions.get(offset.getConsumerPartition()), offset);
+        }
+        partitions.forEach((consumerPartition, partition) ->
+            offsets.computeIfAbsent(partition, missing -> new StockCommandOffset().consumerPartition(consumerPartition).nextOffset(0L))
+        );
+        return offsets;
+    }
+
+    private StockCommandDTO read(ConsumerRecord<String, String> record) {
+        if (record.value() == null) {
+            return null;
+        }
+        StockCommandDTO command;
+        try {
+            command = objectMapper.readValue(record.value(), StockCommandDTO.class);
+        } catch (JsonProcessingException e) {
+            return null;
+        }
+        boolean valid =
+            command.getItemId() != null &&
+            command.getQuantity() != null &&
+            command.getQuantity() > 0 &&
+            (command.getReason() == StockMovementReason.ADD_STOCK || command.getReason() == StockMovementReason.REMOVE_STOCK);
+        return valid ? command : null;
+    }
+
+    private void deadLetter(Batch batch, ConsumerRecord<String, String> record, String reason) {
+        log.warn("Rejected the stock command {}: {}", coordinates(record), reason);
+        if (record.value() != null && record.value().length() > OutboxEvent.MAX_PAYLOAD_LENGTH) {
+            log.error("Dropped the stock command {}: too large for the dead-letter topic", coordinates(record));
+            return;
+        }
+        outboxService.enqueue(properties.getDeadLetterTopic(), record.key(), record.value() != null ? record.value() : "");
+        batch.deadLettered++;
+    }
+
+    private Map<String, Object> consumerProps() {
+        Map<String, Object> consumerProps = kafkaProperties.getConsumerProps();
+        consumerProps.put(ConsumerConfig.GROUP_ID_CONFIG, properties.getGroupId());
+        consumerProps.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        consumerProps.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, Math.max(properties.getBatchSize(), 1));
+        consumerProps.put(ConsumerConfig.ISOLATION_LEVEL_CONFIG, "read_committed");
+        return consumerProps;
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(properties.getRetryBackoff().toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Map<TopicPartition, OffsetAndMetadata> offsets(ConsumerRecords<String, String> records) {
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        for (TopicPartition partition : records.partitions()) {
+            List<ConsumerRecord<String, String>> partitionRecords = records.records(partition);
+            offsets.put(partition, new OffsetAndMetadata(partitionRecords.get(partitionRecords.size() - 1).offset() + 1));
+        }
+        return offsets;
+    }
+
+    private static String coordinates(ConsumerRecord<String, String> record) {
+        return record.topic() + "-" + record.partition() + "@" + record.offset();
+    }
+
+    /**
+     * Outcome of a batch, counted once it is committed.
+     */
+    private static final class Batch {
+
+        private final Set<Long> changed = new TreeSet<>();
+        private int applied;
+        private int deadLettered;
+        private int skipped;
+    }
+}
@@ -0,0 +1,482 @@
+package com.gachokaerick.eshop.catalog.service;
+
+import com.gachokaerick.eshop.catalog.config.ApplicationProperties;
+import com.gachokaerick.eshop.catalog.domain.catalogItem.CatalogItem;
+import com.gachokaerick.eshop.catalog.exception.DomainException;
+import com.gachokaerick.eshop.catalog.repository.CatalogItemRepository;
+import com.gachokaerick.eshop.catalog.service.dto.StockHoldDTO;
+import com.gachokaerick.eshop.catalog.service.dto.StockLineDTO;
+import com.hazelcast.core.EntryEvent;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.map.EntryProcessor;
+import com.hazelcast.map.IMap;
+import com.hazelcast.map.listener.EntryExpiredListener;
+import com.hazelcast.query.Predicates;
+import java.io.Serializable;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Service Implementation for time-bound holds on catalogItem stock.
+ * <p>
+ * A hold reserves stock for a cart without touching {@code catalog_item}: holds live in memory, with the quantity
+ * held per item, and expire through a hashed timing wheel. Committing a hold applies the real decrement through
+ * {@link StockMutationService} and publishes it through {@link CatalogItemService#stockChanged(java.util.Collection)};
+ * releasing or expiring it frees the quantity. The stock available to sell is the
+ * available stock minus the quantity held.
+ * <p>
+ * A hold is taken under the lock that {@link StockMutationService} takes on the stock of the item, and every removal of
+ * stock leaves the quantity held untouched, so a hold can be committed in full unless its stock was overwritten. Its
+ * quantity is counted as held under that lock, but the hold itself is only registered once the transaction commits: a
+ * rolled back reservation gives its quantity back.
+ * <p>
+ * Holds are kept in Hazelcast maps shared by the cluster when Hazelcast is clustered, so that every instance leaves the
+ * stock held on any of them untouched and the holds outlive the restart of an instance. A hold expires from the map a
+ * tick after its wheel would drop it, should the instance which took it be gone. Holds are local to this instance
+ * otherwise.
+ */
+@Service
+public class StockHoldService {
+
+    public static final String HOLDS_MAP_NAME = "stock-holds";
+
+    public static final String HELD_MAP_NAME = "stock-held";
+
+    private static final String DOMAIN_NAME = "CatalogItem";
+
+    private static final int STRIPES = 64;
+
+    private final Logger log = LoggerFactory.getLogger(StockHoldService.class);
+
+    private final CatalogItemRepository catalogItemRepository;
+    private final StockMutationService stockMutationService;
+    private final StockJournalService stockJournalService;
+    private final CatalogItemService catalogItemService;
+    private final TaskScheduler taskScheduler;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationProperties.StockHold properties;
+
+    private final Store store;
+    private final Object[] stripes = new Object[STRIPES];
+
+    private final Queue<Hold>[] wheel;
+    private final long tickMillis;
+    private long currentTick;
+    private ScheduledFuture<?> ticker;
+
+    @SuppressWarnings("unchecked")
+    public StockHoldService(
+        CatalogItemRepository catalogItemRepository,
+        StockMutationService stockMutationService,
+        StockJournalService stockJournalService,
+        @Lazy CatalogItemService catalogItemService,
+        TaskScheduler taskScheduler,
+        HazelcastInstance hazelcastInstance,
+        PlatformTransactionManager transactionManager,
+        ApplicationProperties applicationProperties
+    ) {
+        this.catalogItemRepository = catalogItemRepository;
+        this.stockMutationService = stockMutationService;
+        this.stockJournalService = stockJournalService;
+        this.catalogItemService = catalogItemService;
+        this.taskScheduler = taskScheduler;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = applicationProperties.getStockHold();
+        if (hazelcastInstance.getConfig().getNetworkConfig().getJoin().getTcpIpConfig().isEnabled()) {
+            log.debug("Stock holds are stored in the Hazelcast maps {} and {}", HOLDS_MAP_NAME, HELD_MAP_NAME);
+            this.store = new HazelcastStore(hazelcastInstance.getMap(HOLDS_MAP_NAME), hazelcastInstance.getMap(HELD_MAP_NAME));
+        } else {
+            log.debug("Stock holds are stored locally");
+            this.store = new LocalStore();
+        }
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Object();
+        }
+        this.wheel = new Queue[properties.getWheelSize()];
+        for (int i = 0; i < wheel.length; i++) {
+            wheel[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.tickMillis = properties.getTickDuration().toMillis();
+        this.currentTick = System.currentTimeMillis() / tickMillis;
+    }
+
+    @PostConstruct
+    public void start() {
+        ticker = taskScheduler.scheduleWithFixedDelay(() -> expireHolds(Instant.now()), properties.getTickDuration());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (ticker != null) {
+            ticker.cancel(false);
+        }
+        store.close();
+    }
+
+    /**
+     * Hold stock of a catalogItem.
+     *
+     * @param itemId   the id of the catalogItem.
+     * @param quantity the quantity to hold.
+     * @param ttl      how long to hold it, the configured default if {@code null}.
+     * @return the hold, or empty if the catalogItem does not exist.
+     * @throws DomainException if the quantity is not positive or is more than the stock available to sell.
+     */
+    public Optional<StockHoldDTO> reserve(Long itemId, int quantity, Duration ttl) {
+        log.debug("Request to hold stock of CatalogItem : {}, {}, {}", itemId, quantity, ttl);
+        if (quantity <= 0) {
+            throw DomainException.throwDomainException(DOMAIN_NAME, "Units to hold should be greater than zero");
+        }
+        Duration duration = ttl == null ? properties.getDefaultTtl() : ttl;
+        if (duration.compareTo(properties.getMaxTtl()) > 0) {
+            duration = properties.getMaxTtl();
+        }
+
+        Instant expiresAt = Instant.now().plus(duration);
+        synchronized (stripe(itemId)) {
+            // a removal of stock reads the quantity held under the same lock, it cannot sell the stock being held
+            return transactionTemplate.execute(status -> {
+                boolean journaled = stockJournalService.isEnabled();
+                Optional<CatalogItem> catalogItem = journaled
+                    ? catalogItemRepository.findById(itemId)
+                    : catalogItemRepository.findByIdForUpdate(itemId);
+                if (catalogItem.isEmpty()) {
+                    return Optional.empty();
+                }
+                int availableStock = journaled ? stockJournalService.lock(catalogItem.get()) : catalogItem.get().getAvailableStock();
+                int availableToSell = availableStock - heldQuantity(itemId);
+                if (availableToSell < quantity) {
+                    throw DomainException.throwDomainException(
+                        DOMAIN_NAME,
+                        "Insufficient stock. Only " +
+                        Math.max(availableToSell, 0) +
+                        " of " +
+                        quantity +
+                        " " +
+                        catalogItem.get().getName() +
+                        " available"
+                    );
+                }
+                Hold hold = new Hold(UUID.randomUUID(), itemId, quantity, expiresAt);
+                store.adjust(itemId, quantity);
+                TransactionSynchronizationManager.registerSynchronization(
+                    new TransactionSynchronization() {
+                        @Override
+                        public void afterCompletion(int status) {
+                            if (status == STATUS_COMMITTED) {
+                                store.put(hold, Duration.ofMillis(hold.expiresAt - System.currentTimeMillis() + tickMillis));
+                                wheel[(int) (expiryTick(hold) % wheel.length)].add(hold);
+                            } else {
+                                store.adjust(itemId, -quantity);
+                            }
+                        }
+                    }
+                );
+                return Optional.of(hold.toDto());
+            });
+        }
+    }
+
+    /**
+     * Get an active hold.
+     *
+     * @param id the id of the hold.
+     * @return the hold, or empty if it does not exist, was committed, released or has expired.
+     */
+    public Optional<StockHoldDTO> findOne(UUID id) {
+        return Optional.ofNullable(store.get(id)).map(Hold::toDto);
+    }
+
+    /**
+     * Turn a hold into a real stock decrement. The hold is dropped either way.
+     *
+     * @param id the id of the hold.
+     * @return the line with the quantity removed, always the quantity held, or empty if the hold does not exist, was
+     * released or has expired.
+     * @throws DomainException if the stock held is no longer available, nothing is then removed.
+     */
+    public Optional<StockLineDTO> commit(UUID id) {
+        log.debug("Request to commit stock hold : {}", id);
+        Hold hold = store.get(id);
+        if (hold == null) {
+            return Optional.empty();
+        }
+        synchronized (stripe(hold.itemId)) {
+            if (store.get(id) == null) {
+                return Optional.empty();
+            }
+            // the hold is only dropped once the decrement is applied, so the stock is never counted as available twice
+            try {
+                int removed = stockMutationService
+                    .removeHeldStock(hold.itemId, hold.quantity, hold.id.toString())
+                    .orElseThrow(() -> DomainException.throwDomainException(DOMAIN_NAME, "CatalogItem " + hold.itemId + " does not exist"));
+                StockLineDTO line = new StockLineDTO(hold.itemId, hold.quantity);
+                line.setRemoved(removed);
+                catalogItemService.stockChanged(List.of(hold.itemId));
+                return Optional.of(line);
+            } finally {
+                store.remove(hold);
+            }
+        }
+    }
+
+    /**
+     * Release a hold, freeing its quantity.
+     *
+     * @param id the id of the hold.
+     * @return {@code true} if the hold was active.
+     */
+    public boolean release(UUID id) {
+        log.debug("Request to release stock hold : {}", id);
+        Hold hold = store.get(id);
+        if (hold == null) {
+            return false;
+        }
+        synchronized (stripe(hold.itemId)) {
+            return store.remove(hold);
+        }
+    }
+
+    /**
+     * Quantity of a catalogItem currently held.
+     *
+     * @param itemId the id of the catalogItem.
+     * @return the quantity held.
+     */
+    public int heldQuantity(Long itemId) {
+        return store.held(itemId);
+    }
+
+    /**
+     * Advance the expiry wheel up to {@code now} and release the holds that have expired.
+     * Called every tick by the scheduler.
+     *
+     * @param now the current instant.
+     */
+    public void expireHolds(Instant now) {
+        long nowMillis = now.toEpochMilli();
+        synchronized (wheel) {
+            long nowTick = nowMillis / tickMillis;
+            // a full turn visits every bucket, there is no need to go further back
+            for (long tick = Math.max(currentTick + 1, nowTick - wheel.length + 1); tick <= nowTick; tick++) {
+                wheel[(int) (tick % wheel.length)].removeIf(hold -> {
+                    if (store.get(hold.id) == null) {
+                        // already committed or released
+                        return true;
+                    }
+                    if (hold.expiresAt > nowMillis) {
+                        // due in a later turn of the wheel
+                        return false;
+                    }
+                    synchronized (stripe(hold.itemId)) {
+                        if (store.remove(hold)) {
+                            log.debug("Stock hold expired : {}", hold.id);
+                        }
+                    }
+                    return true;
+                });
+            }
+            currentTick = Math.max(currentTick, nowTick);
+        }
+    }
+
+    private long expiryTick(Hold hold) {
+        return (hold.expiresAt + tickMillis - 1) / tickMillis;
+    }
+
+    private Object stripe(Long itemId) {
+        return stripes[Long.hashCode(itemId) & (STRIPES - 1)];
+    }
+
+    private static final class Hold implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final UUID id;
+        private final Long itemId;
+        private final int quantity;
+        private final long expiresAt;
+
+        private Hold(UUID id, Long itemId, int quantity, Instant expiresAt) {
+            this.id = id;
+            this.itemId = itemId;
+            this.quantity = quantity;
+            this.expiresAt = expiresAt.toEpochMilli();
+        }
+
+        private StockHoldDTO toDto() {
+            return new StockHoldDTO(id, itemId, quantity, Instant.ofEpochMilli(expiresAt));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Hold)) {
+                return false;
+            }
+            return id.equals(((Hold) o).id);
+        }
+
+        @Override
+        public int hashCode() {
+            return id.hashCode();
+        }
+    }
+
+    private interface Store {
+        /**
+         * Register a hold, its quantity already counted by {@link #adjust}.
+         */
+        void put(Hold hold, Duration ttl);
+
+        Hold get(UUID id);
+
+        /**
+         * Drop a hold and its quantity.
+         *
+         * @return {@code true} if the hold was registered.
+         */
+        boolean remove(Hold hold);
+
+        int held(Long itemId);
+
+        void adjust(Long itemId, int delta);
+
+        default void close() {}
+    }
+
+    private static final class HazelcastStore implements Store {
+
+        private final IMap<UUID, Hold> holds;
+        private final IMap<Long, Integer> heldByItem;
+        private final UUID listener;
+
+        private HazelcastStore(IMap<UUID, Hold> holds, IMap<Long, Integer> heldByItem) {
+            this.holds = holds;
+            this.heldByItem = heldByItem;
+            // only the member owning the hold gives its quantity back
+            this.listener = holds.addLocalEntryListener((EntryExpiredListener<UUID, Hold>) this::expired, Predicates.alwaysTrue(), true);
+        }
+
+        private void expired(EntryEvent<UUID, Hold> event) {
+            Hold hold = event.getOldValue();
+            heldByItem.submitToKey(hold.itemId, new Adjust(-hold.quantity));
+        }
+
+        @Override
+        public void put(Hold hold, Duration ttl) {
+            holds.set(hold.id, hold, Math.max(ttl.toMillis(), 1), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public Hold get(UUID id) {
+            return holds.get(id);
+        }
+
+        @Override
+        public boolean remove(Hold hold) {
+            if (holds.remove(hold.id) == null) {
+                return false;
+            }
+            adjust(hold.itemId, -hold.quantity);
+            return true;
+        }
+
+        @Override
+        public int held(Long itemId) {
+            Integer held = heldByItem.get(itemId);
+            return held == null ? 0 : held;
+        }
+
+        @Override
+        public void adjust(Long itemId, int delta) {
+            heldByItem.executeOnKey(itemId, new Adjust(delta));
+        }
+
+        @Override
+        public void close() {
+            holds.removeEntryListener(listener);
+        }
+    }
+
+    /**
+     * Change of the quantity held of a catalogItem, applied by the member owning it.
+     */
+    private static final class Adjust implements EntryProcessor<Long, Integer, Integer> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int delta;
+
+        private Adjust(int delta) {
+            this.delta = delta;
+        }
+
+        @Override
+        public Integer process(Map.Entry<Long, Integer> entry) {
+            int held = (entry.getValue() == null ? 0 : entry.getValue()) + delta;
+            entry.setValue(held > 0 ? held : null);
+            return held;
+        }
+    }
+
+    private static final class LocalStore implements Store {
+
+        private final Map<UUID, Hold> holds = new ConcurrentHashMap<>();
+        private final Map<Long, Integer> heldByItem = new ConcurrentHashMap<>();
+
+        @Override
+        public void put(Hold hold, Duration ttl) {
+            holds.put(hold.id, hold);
+        }
+
+        @Override
+        public Hold get(UUID id) {
+            return holds.get(id);
+        }
+
+        @Override
+        public boolean remove(Hold hold) {
+            if (holds.remove(hold.id) == null) {
+                return false;
+            }
+            adjust(hold.itemId, -hold.quantity);
+            return true;
+        }
+
+        @Override
+        public int held(Long itemId) {
+            return heldByItem.getOrDefault(itemId, 0);
+        }
+
+        @Override
+        public void adjust(Long itemId, int delta) {
+            heldByItem.compute(itemId, (id, held) -> {
+                int total = (held == null ? 0 : held) + delta;
+                return total > 0 ? total : null;
+            });
+        }
+    }
+}
@@ -0,0 +1,341 @@
+package com.gachokaerick.eshop.catalog.service;
+
+import com.gachokaerick.eshop.catalog.config.ApplicationProperties;
+import com.gachokaerick.eshop.catalog.domain.catalogItem.CatalogItem;
+import com.gachokaerick.eshop.catalog.domain.catalogItem.CatalogItemMapper;
+import com.gachokaerick.eshop.catalog.model.StockMovement;
+import com.gachokaerick.eshop.catalog.model.enumeration.StockMovementReason;
+import com.gachokaerick.eshop.catalog.repository.CatalogItemRepository;
+import com.gachokaerick.eshop.catalog.repository.StockMovementRepository;
+import com.gachokaerick.eshop.catalog.service.dto.CatalogItemDTO;
+import com.gachokaerick.eshop.catalog.service.dto.StockMovementDTO;
+import com.gachokaerick.eshop.catalog.service.mapper.StockMovementMapper;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Service Implementation for the append-only journal of stock changes.
+ * <p>
+ * When the journal is enabled ({@code application.stock-journal.enabled}), stock changes only append a
+ * {@link StockMovement}: the available stock of an item is its snapshot in {@code catalog_item.available_stock} plus the
+ * movements not yet compacted, and that running total is cached per item. A scheduled compaction folds the movements
+ * into the snapshot, and keeps them as an audit trail. When the journal is disabled, the snapshot is updated in place
+ * and no movement is recorded, so that stock changes do not pay for an extra insert.
+ * <p>
+ * Writers of the same item are serialized by an in-memory lock held until their transaction completes, instead of the
+ * row lock on {@code catalog_item}. The running totals and the locks are local to this instance: with the journal
+ * enabled, the stock changes of an item must all go through the same instance.
+ */
+@Service
+public class StockJournalService {
+
+    private final Logger log = LoggerFactory.getLogger(StockJournalService.class);
+
+    private final StockMovementRepository stockMovementRepository;
+    private final StockMovementMapper stockMovementMapper;
+    private final CatalogItemRepository catalogItemRepository;
+    private final CatalogItemMapper catalogItemMapper;
+    private final CatalogReadModel catalogReadModel;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationProperties.StockJournal properties;
+
+    private final Map<Long, StockLevel> levels = new ConcurrentHashMap<>();
+
+    public StockJournalService(
+        StockMovementRepository stockMovementRepository,
+        StockMovementMapper stockMovementMapper,
+        CatalogItemRepository catalogItemRepository,
+        CatalogItemMapper catalogItemMapper,
+        @Lazy CatalogReadModel catalogReadModel,
+        PlatformTransactionManager transactionManager,
+        ApplicationProperties applicationProperties
+    ) {
+        this.stockMovementRepository = stockMovementRepository;
+        this.stockMovementMapper = stockMovementMapper;
+        this.catalogItemRepository = catalogItemRepository;
+        this.catalogItemMapper = catalogItemMapper;
+        this.catalogReadModel = catalogReadModel;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = applicationProperties.getStockJournal();
+    }
+
+    /**
+     * Whether stock changes are appended to the journal instead of overwriting the available stock.
+     *
+     * @return {@code true} if the journal is enabled.
+     */
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * Current available stock of a catalogItem: its snapshot plus the movements not yet compacted.
+     *
+     * @param catalogItem the catalogItem, as just loaded.
+     * @return the available stock.
+     */
+    public int availableStock(CatalogItem catalogItem) {
+        return availableStock(catalogItem.getId(), catalogItem.getAvailableStock());
+    }
+
+    /**
+     * Current available stock of a catalogItem read without loading the entity.
+     *
+     * @param catalogItemId the id of the catalogItem.
+     * @param snapshot      the available stock of the catalogItem, as just read from {@code catalog_item}. Only returned
+     *                      as is when the journal is disabled: the running total is loaded from the database.
+     * @return the available stock.
+     */
+    public int availableStock(Long catalogItemId, int snapshot) {
+        if (!isEnabled()) {
+            return snapshot;
+        }
+        StockLevel level = levels.computeIfAbsent(catalogItemId, id -> new StockLevel());
+        if (!level.loaded) {
+            level.lock.lock();
+            try {
+                load(level, catalogItemId);
+            } finally {
+                level.lock.unlock();
+            }
+        }
+        return level.committed;
+    }
+
+    /**
+     * Lock the stock of a catalogItem until the end of the current transaction.
+     *
+     * @param catalogItem the catalogItem, as just loaded.
+     * @return the available stock, including the changes already made by the current transaction.
+     */
+    public int lock(CatalogItem catalogItem) {
+        return lockLevel(catalogItem).pending;
+    }
+
+    /**
+     * Record a stock change made by the current transaction, which must hold the lock on the stock of the catalogItem.
+     * Nothing is recorded when the journal is disabled.
+     *
+     * @param catalogItem    the catalogItem.
+     * @param delta          the change of the available stock.
+     * @param reason         why the stock changed.
+     * @param correlationId  what caused the change, may be {@code null}.
+     */
+    public void record(CatalogItem catalogItem, int delta, StockMovementReason reason, String correlationId) {
+        if (delta == 0 || !isEnabled()) {
+            return;
+        }
+        StockMovement stockMovement = new StockMovement()
+            .catalogItemId(catalogItem.getId())
+            .delta(delta)
+            .reason(reason)
+            .correlationId(correlationId)
+            .createdDate(Instant.now())
+            .compacted(false);
+        stockMovementRepository.save(stockMovement);
+        lockLevel(catalogItem).pending += delta;
+    }
+
+    /**
+     * Run an update that sets the available stock of a catalogItem: the movements not yet compacted are discarded,
+     * as the new value already accounts for them.
+     *
+     * @param catalogItemId the id of the catalogItem.
+     * @param update        the update, returning the updated catalogItem.
+     * @return the updated catalogItem.
+     */
+    @Transactional
+    public CatalogItemDTO overwrite(Long catalogItemId, Supplier<CatalogItemDTO> update) {
+        if (!isEnabled()) {
+            return update.get();
+        }
+        Optional<CatalogItem> catalogItem = catalogItemRepository.findById(catalogItemId);
+        if (catalogItem.isEmpty()) {
+            return update.get();
+        }
+        StockLevel level = lockLevel(catalogItem.get());
+        CatalogItemDTO result = update.get();
+        stockMovementRepository.markCompacted(catalogItemId);
+        level.pending = result.getAvailableStock();
+        return result;
+    }
+
+    /**
+     * Forget the running total of a deleted catalogItem. Its movements are kept as an audit trail.
+     * <p>
+     * The running total is kept while a transaction holds its lock or has changes not yet published: that transaction
+     * releases the lock of the running total it took, and the next compaction forgets it.
+     *
+     * @param catalogItemId the id of the catalogItem.
+     */
+    public void evict(Long catalogItemId) {
+        StockLevel level = levels.get(catalogItemId);
+        if (level != null && level.lock.tryLock()) {
+            try {
+                if (level.lock.getHoldCount() == 1 && level.pending == level.committed) {
+                    levels.remove(catalogItemId, level);
+                }
+            } finally {
+                level.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Get the movements of a catalogItem, most recent first.
+     *
+     * @param catalogItemId the id of the catalogItem.
+     * @param pageable      the pagination information.
+     * @return the movements.
+     */
+    @Transactional(readOnly = true)
+    public Page<StockMovementDTO> findAll(Long catalogItemId, Pageable pageable) {
+        return stockMovementRepository.findAllByCatalogItemIdOrderByIdDesc(catalogItemId, pageable).map(stockMovementMapper::toDto);
+    }
+
+    /**
+     * Fold the movements not yet compacted into the available stock of their catalogItem, one transaction per item.
+     *
+     * @return the number of catalogItems compacted.
+     */
+    @Scheduled(fixedDelayString = "${application.stock-journal.compaction-interval:PT1M}")
+    public int compact() {
+        if (!isEnabled()) {
+            return 0;
+        }
+        int compacted = 0;
+        for (Long catalogItemId : stockMovementRepository.findUncompactedCatalogItemIds()) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> compact(catalogItemId));
+                compacted++;
+            } catch (RuntimeException e) {
+                log.warn("Could not compact the stock journal of CatalogItem {}: {}", catalogItemId, e.getMessage());
+            }
+        }
+        if (compacted > 0) {
+            log.debug("Compacted the stock journal of {} CatalogItem(s)", compacted);
+        }
+        return compacted;
+    }
+
+    private void compact(Long catalogItemId) {
+        Optional<CatalogItem> catalogItem = catalogItemRepository.findById(catalogItemId);
+        if (catalogItem.isEmpty()) {
+            // deleted item, keep the movements as an audit trail
+            stockMovementRepository.markCompacted(catalogItemId);
+            evict(catalogItemId);
+            return;
+        }
+        StockLevel level = lockLevel(catalogItem.get());
+        int snapshot = catalogItem.get().getAvailableStock() + (int) stockMovementRepository.sumUncompacted(catalogItemId);
+        if (snapshot != level.pending) {
+            log.warn("Stock of CatalogItem {} was {} in memory but {} in the journal", catalogItemId, level.pending, snapshot);
+            level.pending = snapshot;
+        }
+
+        CatalogItemDTO stock = new CatalogItemDTO();
+        stock.setAvailableStock(snapshot);
+        if (stockMovementRepository.existsByCatalogItemIdAndCompactedFalseAndDeltaGreaterThan(catalogItemId, 0)) {
+            // see CatalogItemDomain#addStock
+            stock.setOnReorder(false);
+        }
+        catalogItemMapper.partialUpdate(catalogItem.get(), stock);
+        stockMovementRepository.markCompacted(catalogItemId);
+        // the available stock read is the same, but not the version
+        catalogReadModel.changed(List.of(catalogItemId));
+    }
+
+    /**
+     * Take the lock on the stock of a catalogItem for the current transaction, and release it when the transaction
+     * completes, publishing the changes made if it committed.
+     */
+    private StockLevel lockLevel(CatalogItem catalogItem) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Stock changes must run in a transaction");
+        }
+        @SuppressWarnings("unchecked")
+        Map<Long, StockLevel> locked = (Map<Long, StockLevel>) TransactionSynchronizationManager.getResource(this);
+        if (locked == null) {
+            Map<Long, StockLevel> held = new HashMap<>();
+            TransactionSynchronizationManager.bindResource(this, held);
+            TransactionSynchronizationManager.registerSynchronization(
+                new TransactionSynchronization() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        TransactionSynchronizationManager.unbindResourceIfPossible(StockJournalService.this);
+                        held.values().forEach(level -> level.release(status == STATUS_COMMITTED));
+                    }
+                }
+            );
+            locked = held;
+        }
+
+        StockLevel level = locked.get(catalogItem.getId());
+        if (level == null) {
+            level = levels.computeIfAbsent(catalogItem.getId(), id -> new StockLevel());
+            level.lock.lock();
+            while (levels.get(catalogItem.getId()) != level) {
+                // evicted while waiting for the lock
+                level.lock.unlock();
+                level = levels.computeIfAbsent(catalogItem.getId(), id -> new StockLevel());
+                level.lock.lock();
+            }
+            locked.put(catalogItem.getId(), level);
+            load(level, catalogItem.getId());
+        }
+        return level;
+    }
+
+    /**
+     * Load the running total of a catalogItem, under its lock. Compaction holds the lock until its transaction completes,
+     * so the snapshot and the movements not yet compacted are read on the same side of it: a movement is never counted
+     * both in the snapshot and in the journal. The snapshot is read from the database, not from the caches.
+     */
+    private void load(StockLevel level, Long catalogItemId) {
+        if (!level.loaded) {
+            int snapshot = catalogItemRepository.findAvailableStockById(catalogItemId).orElse(0);
+            level.committed = snapshot + (int) stockMovementRepository.sumUncompacted(catalogItemId);
+            level.pending = level.committed;
+            level.loaded = true;
+        }
+    }
+
+    /**
+     * Running total of the stock of a catalogItem. {@code pending} includes the changes of the transaction holding the
+     * lock, {@code committed} only the committed ones.
+     */
+    private static final class StockLevel {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile boolean loaded;
+        private volatile int committed;
+        private int pending;
+
+        private void release(boolean commit) {
+            if (commit) {
+                committed = pending;
+            } else {
+                pending = committed;
+            }
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,464 @@
+package com.gachokaerick.eshop.catalog.service;
+
+import com.gachokaerick.eshop.catalog.domain.catalogItem.CatalogItem;
+import com.gachokaerick.eshop.catalog.domain.catalogItem.CatalogItemDomain;
+import com.gachokaerick.eshop.catalog.domain.catalogItem.CatalogItemMapper;
+import com.gachokaerick.eshop.catalog.exception.DomainException;
+import com.gachokaerick.eshop.catalog.model.enumeration.StockMovementReason;
+import com.gachokaerick.eshop.catalog.repository.CatalogItemRepository;
+import com.gachokaerick.eshop.catalog.service.dto.CatalogItemDTO;
+import com.gachokaerick.eshop.catalog.service.dto.StockLineDTO;
+import java.sql.DatabaseMetaData;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+import javax.sql.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Applies the stock rules of {@link CatalogItemDomain} directly in the database.
+ * <p>
+ * On PostgreSQL a stock change is a single guarded {@code UPDATE ... RETURNING} statement. On other databases (H2 in
+ * development and tests) the row is locked with {@code SELECT ... FOR UPDATE} and the change is computed by
+ * {@link CatalogItemDomain}. In both cases concurrent writers on the same item are serialized by the row lock, so no
+ * update is lost.
+ * <p>
+ * Every change is recorded by {@link StockJournalService}. When the journal is enabled the row is neither locked nor
+ * updated: the change is computed against the running total of the item and appended to the journal.
+ * <p>
+ * Stock held by {@link StockHoldService} is only removed by committing its hold. The quantity held is read once the
+ * stock of the item is locked, as holds are taken under the same lock.
+ * <p>
+ * A change that takes the stock of an item from above its restock threshold down to it or below it puts the item on
+ * reorder, in the same transaction, and is alerted to {@link RestockAlertService}. Every change of stock is published
+ * by {@link CatalogChangeEventService}, in the same transaction.
+ */
+@Service
+@Transactional
+public class StockMutationService {
+
+    private static final String DOMAIN_NAME = "CatalogItem";
+
+    private final Logger log = LoggerFactory.getLogger(StockMutationService.class);
+
+    private final CatalogItemRepository catalogItemRepository;
+    private final CatalogItemMapper catalogItemMapper;
+    private final StockJournalService stockJournalService;
+    private final RestockAlertService restockAlertService;
+    private final CatalogChangeEventService catalogChangeEventService;
+    private final StockHoldService stockHoldService;
+    private final EntityManager entityManager;
+    private final boolean returningSupported;
+
+    public StockMutationService(
+        CatalogItemRepository catalogItemRepository,
+        CatalogItemMapper catalogItemMapper,
+        StockJournalService stockJournalService,
+        RestockAlertService restockAlertService,
+        CatalogChangeEventService catalogChangeEventService,
+        @Lazy StockHoldService stockHoldService,
+        EntityManager entityManager,
+        DataSource dataSource
+    ) {
+        this.catalogItemRepository = catalogItemRepository;
+        this.catalogItemMapper = catalogItemMapper;
+        this.stockJournalService = stockJournalService;
+        this.restockAlertService = restockAlertService;
+        this.catalogChangeEventService = catalogChangeEventService;
+        this.stockHoldService = stockHoldService;
+        this.entityManager = entityManager;
+        this.returningSupported = "PostgreSQL".equals(databaseProductName(dataSource));
+        log.debug("Stock mutations use {}", returningSupported ? "UPDATE ... RETURNING" : "SELECT ... FOR UPDATE");
+    }
+
+    /**
+     * Remove stock from a catalogItem, see {@link CatalogItemDomain#removeStock(int, int)}. The stock held is left
+     * untouched.
+     *
+     * @param id            the id of the entity.
+     * @param quantity      the quantity desired.
+     * @param correlationId what caused the change, recorded in the journal, may be {@code null}.
+     * @return the quantity actually removed, or empty if the entity does not exist.
+     */
+    public Optional<Integer> removeStock(Long id, int quantity, String correlationId) {
+        log.debug("Request to remove stock from CatalogItem : {}, {}", id, quantity);
+        return removeStock(id, quantity, 0, correlationId);
+    }
+
+    /**
+     * Remove the stock of a hold from a catalogItem, see {@link StockHoldService#commit(java.util.UUID)}. The stock of
+     * the other holds is left untouched.
+     *
+     * @param id            the id of the entity.
+     * @param quantity      the quantity held.
+     * @param correlationId what caused the change, recorded in the journal, may be {@code null}.
+     * @return the quantity removed, always the quantity held, or empty if the entity does not exist.
+     * @throws DomainException if the quantity held is no longer in stock, nothing is then removed.
+     */
+    public Optional<Integer> removeHeldStock(Long id, int quantity, String correlationId) {
+        log.debug("Request to remove held stock from CatalogItem : {}, {}", id, quantity);
+        Optional<Integer> removed = removeStock(id, quantity, quantity, correlationId);
+        if (removed.isPresent() && removed.get() < quantity) {
+            // rolls the partial removal back
+            throw DomainException.throwDomainException(
+                DOMAIN_NAME,
+                "Insufficient stock. Only " + removed.get() + " of " + quantity + " held units of CatalogItem " + id + " available"
+            );
+        }
+        return removed;
+    }
+
+    private Optional<Integer> removeStock(Long id, int quantity, int ownHeld, String correlationId) {
+        BiFunction<CatalogItemDomain, Integer, Integer> removal = (catalogItemDomain, desired) ->
+            catalogItemDomain.removeStock(desired, heldByOthers(id, ownHeld));
+        if (stockJournalService.isEnabled()) {
+            return applyJournaled(id, quantity, removal, StockMovementReason.REMOVE_STOCK, correlationId);
+        }
+        if (!returningSupported) {
+            return applyLocked(id, quantity, removal, StockMovementReason.REMOVE_STOCK, correlationId);
+        }
+        int held = heldByOthers(id, ownHeld);
+        Optional<Integer> applied = catalogItemRepository.removeStockReturning(id, quantity, held);
+        if (applied.isPresent() && heldByOthers(id, ownHeld) > held) {
+            // the quantity held was read before the update locked the row, and a hold was taken in between
+            throw new OptimisticLockingFailureException("Stock of CatalogItem " + id + " was held while being removed");
+        }
+        Optional<Integer> removed = applyReturning(id, applied, StockMovementReason.REMOVE_STOCK, correlationId);
+        if (removed.isEmpty()) {
+            // nothing was updated: either the item does not exist or it is sold out, let the domain decide
+            return catalogItemRepository.findById(id).map(catalogItem -> removal.apply(toDomain(catalogItem), quantity));
+        }
+        return removed;
+    }
+
+    /**
+     * Add stock to a catalogItem, see {@link CatalogItemDomain#addStock(int)}.
+     *
+     * @param id            the id of the entity.
+     * @param quantity      the quantity to add.
+     * @param correlationId what caused the change, recorded in the journal, may be {@code null}.
+     * @return the quantity actually added, or empty if the entity does not exist.
+     */
+    public Optional<Integer> addStock(Long id, int quantity, String correlationId) {
+        log.debug("Request to add stock to CatalogItem : {}, {}", id, quantity);
+        if (stockJournalService.isEnabled()) {
+            return applyJournaled(id, quantity, CatalogItemDomain::addStock, StockMovementReason.ADD_STOCK, correlationId);
+        }
+        if (!returningSupported) {
+            return applyLocked(id, quantity, CatalogItemDomain::addStock, StockMovementReason.ADD_STOCK, correlationId);
+        }
+        return applyReturning(id, catalogItemRepository.addStockReturning(id, quantity), StockMovementReason.ADD_STOCK, correlationId);
+    }
+
+    /**
+     * Remove stock from several catalogItems in one transaction, see {@link CatalogItemDomain#removeStock(int, int)}.
+     * The stock held is left untouched.
+     * <p>
+     * All rows are locked up front in ascending id order and the changes are computed by {@link CatalogItemDomain}.
+     * Entities are only modified once every line has been checked, so they are written in a single JDBC batch when
+     * the transaction flushes. The quantity removed for each line is stored in {@link StockLineDTO#setRemoved(Integer)}.
+     *
+     * @param lines         the items and quantities desired.
+     * @param allOrNothing  if {@code true}, fail without removing anything unless every line can be removed in full;
+     *                      otherwise remove what is available and report {@code 0} for unknown or sold out items.
+     * @param correlationId what caused the change, recorded in the journal, may be {@code null}.
+     * @return the updated entities.
+     * @throws DomainException if {@code allOrNothing} is set and a line cannot be removed in full.
+     */
+    public List<CatalogItemDTO> removeStock(List<StockLineDTO> lines, boolean allOrNothing, String correlationId) {
+        log.debug("Request to remove stock from CatalogItems : {}, allOrNothing: {}", lines, allOrNothing);
+        Set<Long> ids = lines.stream().map(StockLineDTO::getItemId).collect(Collectors.toCollection(TreeSet::new));
+        Map<Long, CatalogItem> catalogItems = new HashMap<>();
+        Map<Long, Integer> originalStock = new HashMap<>();
+        if (stockJournalService.isEnabled()) {
+            // lock the running totals in ascending id order, as the rows are otherwise
+            List<CatalogItem> found = new ArrayList<>(catalogItemRepository.findAllById(ids));
+            found.sort(Comparator.comparing(CatalogItem::getId));
+            for (CatalogItem catalogItem : found) {
+                catalogItems.put(catalogItem.getId(), catalogItem);
+                originalStock.put(catalogItem.getId(), stockJournalService.lock(catalogItem));
+            }
+        } else {
+            for (CatalogItem catalogItem : catalogItemRepository.findAllByIdForUpdate(ids)) {
+                catalogItems.put(catalogItem.getId(), catalogItem);
+                originalStock.put(catalogItem.getId(), catalogItem.getAvailableStock());
+            }
+        }
+
+        Map<Long, CatalogItemDomain> catalogItemDomains = new LinkedHashMap<>();
+        for (StockLineDTO line : lines) {
+            CatalogItem catalogItem = catalogItems.get(line.getItemId());
+            if (catalogItem == null) {
+                if (allOrNothing) {
+                    throw DomainException.throwDomainException(DOMAIN_NAME, "CatalogItem " + line.getItemId() + " does not exist");
+                }
+                line.setRemoved(0);
+                continue;
+            }
+            CatalogItemDomain catalogItemDomain = catalogItemDomains.computeIfAbsent(
+                line.getItemId(),
+                id -> toDomain(catalogItem, originalStock.get(id))
+            );
+            int removed;
+            try {
+                removed = catalogItemDomain.removeStock(line.getQuantity(), stockHoldService.heldQuantity(line.getItemId()));
+            } catch (DomainException e) {
+                if (allOrNothing) {
+                    throw e;
+                }
+                removed = 0;
+            }
+            if (allOrNothing && removed < line.getQuantity()) {
+                throw DomainException.throwDomainException(
+                    DOMAIN_NAME,
+                    "Insufficient stock. Only " + removed + " of " + line.getQuantity() + " " + catalogItem.getName() + " available"
+                );
+            }
+            line.setRemoved(removed);
+        }
+
+        catalogItemDomains.forEach((id, catalogItemDomain) -> {
+            CatalogItem catalogItem = catalogItems.get(id);
+            int delta = catalogItemDomain.getCatalogItemDTO().getAvailableStock() - originalStock.get(id);
+            if (!stockJournalService.isEnabled()) {
+                copyStock(catalogItemDomain, catalogItem);
+            }
+            stockJournalService.record(catalogItem, delta, StockMovementReason.REMOVE_STOCK, correlationId);
+            stockChanged(originalStock.get(id), catalogItemDomain, catalogItem);
+        });
+        return catalogItemDomains.values().stream().map(CatalogItemDomain::getCatalogItemDTO).collect(Collectors.toList());
+    }
+
+    /**
+     * Apply several stock changes to one catalogItem in one transaction, see {@link CatalogItemDomain#addStock(int)}
+     * and {@link CatalogItemDomain#removeStock(int, int)}. The stock held is left untouched.
+     * <p>
+     * The row is locked once and the changes are computed in order by {@link CatalogItemDomain}, each with its own
+     * result, then written in a single update. A change rejected by the domain does not fail the others.
+     *
+     * @param id         the id of the entity.
+     * @param operations the changes to apply, the quantity applied or the failure is set on each of them.
+     * @return {@code false} if the entity does not exist.
+     */
+    public boolean applyAll(Long id, List<Operation> operations) {
+        log.debug("Request to apply {} stock changes to CatalogItem : {}", operations.size(), id);
+        boolean journaled = stockJournalService.isEnabled();
+        Optional<CatalogItem> found = journaled ? catalogItemRepository.findById(id) : catalogItemRepository.findByIdForUpdate(id);
+        if (found.isEmpty()) {
+            return false;
+        }
+        apply(found.get(), operations);
+        return true;
+    }
+
+    /**
+     * Apply the stock changes of several catalogItems in one transaction, see {@link #applyAll(Long, List)}.
+     * <p>
+     * All rows are locked up front in ascending id order, in one statement, then the changes of each item are applied
+     * as by {@link #applyAll(Long, List)}. The updated rows are written in JDBC batches when the transaction flushes.
+     *
+     * @param operations the changes to apply by item id, the quantity applied or the failure is set on each of them.
+     * @return the ids of the entities that do not exist, whose changes are left untouched.
+     */
+    public Set<Long> applyAll(Map<Long, List<Operation>> operations) {
+        log.debug("Request to apply the stock changes of {} CatalogItems", operations.size());
+        List<CatalogItem> found;
+        if (stockJournalService.isEnabled()) {
+            found = new ArrayList<>(catalogItemRepository.findAllById(operations.keySet()));
+            found.sort(Comparator.comparing(CatalogItem::getId));
+        } else {
+            found = catalogItemRepository.findAllByIdForUpdate(operations.keySet());
+        }
+        Set<Long> missing = new TreeSet<>(operations.keySet());
+        for (CatalogItem catalogItem : found) {
+            missing.remove(catalogItem.getId());
+            apply(catalogItem, operations.get(catalogItem.getId()));
+        }
+        return missing;
+    }
+
+    private void apply(CatalogItem catalogItem, List<Operation> operations) {
+        boolean journaled = stockJournalService.isEnabled();
+        int stockBefore = journaled ? stockJournalService.lock(catalogItem) : catalogItem.getAvailableStock();
+        int held = stockHoldService.heldQuantity(catalogItem.getId());
+        CatalogItemDomain catalogItemDomain = toDomain(catalogItem, stockBefore);
+        for (Operation operation : operations) {
+            operation.applied = null;
+            operation.failure = null;
+            try {
+                operation.applied =
+                    operation.reason == StockMovementReason.ADD_STOCK
+                        ? catalogItemDomain.addStock(operation.quantity)
+                        : catalogItemDomain.removeStock(operation.quantity, held);
+            } catch (DomainException e) {
+                operation.failure = e;
+            }
+        }
+
+        if (!journaled) {
+            copyStock(catalogItemDomain, catalogItem);
+        }
+        for (Operation operation : operations) {
+            if (operation.applied != null) {
+                int delta = delta(operation.reason, operation.applied);
+                stockJournalService.record(catalogItem, delta, operation.reason, operation.correlationId);
+            }
+        }
+        stockChanged(stockBefore, catalogItemDomain, catalogItem);
+    }
+
+    private Optional<Integer> applyLocked(
+        Long id,
+        int quantity,
+        BiFunction<CatalogItemDomain, Integer, Integer> mutation,
+        StockMovementReason reason,
+        String correlationId
+    ) {
+        return catalogItemRepository
+            .findByIdForUpdate(id)
+            .map(catalogItem -> {
+                int stockBefore = catalogItem.getAvailableStock();
+                CatalogItemDomain catalogItemDomain = toDomain(catalogItem);
+                int applied = mutation.apply(catalogItemDomain, quantity);
+                copyStock(catalogItemDomain, catalogItem);
+                stockJournalService.record(catalogItem, delta(reason, applied), reason, correlationId);
+                stockChanged(stockBefore, catalogItemDomain, catalogItem);
+                return applied;
+            });
+    }
+
+    private Optional<Integer> applyJournaled(
+        Long id,
+        int quantity,
+        BiFunction<CatalogItemDomain, Integer, Integer> mutation,
+        StockMovementReason reason,
+        String correlationId
+    ) {
+        return catalogItemRepository
+            .findById(id)
+            .map(catalogItem -> {
+                int stockBefore = stockJournalService.lock(catalogItem);
+                CatalogItemDomain catalogItemDomain = toDomain(catalogItem, stockBefore);
+                int applied = mutation.apply(catalogItemDomain, quantity);
+                stockJournalService.record(catalogItem, delta(reason, applied), reason, correlationId);
+                stockChanged(stockBefore, catalogItemDomain, catalogItem);
+                return applied;
+            });
+    }
+
+    private void copyStock(CatalogItemDomain catalogItemDomain, CatalogItem catalogItem) {
+        // only copy the stock fields back, dirty checking issues the UPDATE and refreshes the L2 entry
+        CatalogItemDTO stock = new CatalogItemDTO();
+        stock.setAvailableStock(catalogItemDomain.getCatalogItemDTO().getAvailableStock());
+        stock.setOnReorder(catalogItemDomain.getCatalogItemDTO().getOnReorder());
+        catalogItemMapper.partialUpdate(catalogItem, stock);
+    }
+
+    private Optional<Integer> applyReturning(
+        Long id,
+        Optional<Integer> applied,
+        StockMovementReason reason,
+        String correlationId
+    ) {
+        if (applied.isPresent()) {
+            // the native statement bypassed Hibernate: drop the stale L2 entry and any managed copy
+            entityManager.getEntityManagerFactory().getCache().evict(CatalogItem.class, id);
+            entityManager.clear();
+            CatalogItem catalogItem = entityManager.getReference(CatalogItem.class, id);
+            stockJournalService.record(catalogItem, delta(reason, applied.get()), reason, correlationId);
+            CatalogItemDomain catalogItemDomain = toDomain(catalogItem);
+            int stockBefore = catalogItemDomain.getCatalogItemDTO().getAvailableStock() - delta(reason, applied.get());
+            stockChanged(stockBefore, catalogItemDomain, catalogItem);
+        }
+        return applied;
+    }
+
+    private void stockChanged(int stockBefore, CatalogItemDomain catalogItemDomain, CatalogItem catalogItem) {
+        CatalogItemDTO catalogItemDTO = catalogItemDomain.getCatalogItemDTO();
+        if (catalogItemDTO.getAvailableStock() == stockBefore) {
+            return;
+        }
+        if (catalogItemDomain.reorderIfRestockThresholdCrossed(stockBefore)) {
+            // written by the same transaction as the change of stock
+            CatalogItemDTO reorder = new CatalogItemDTO();
+            reorder.setOnReorder(true);
+            catalogItemMapper.partialUpdate(catalogItem, reorder);
+            restockAlertService.alert(catalogItemDTO);
+        }
+        catalogChangeEventService.stockChanged(catalogItemDTO);
+    }
+
+    private int heldByOthers(Long id, int ownHeld) {
+        return Math.max(stockHoldService.heldQuantity(id) - ownHeld, 0);
+    }
+
+    private static int delta(StockMovementReason reason, int applied) {
+        return reason == StockMovementReason.ADD_STOCK ? applied : -applied;
+    }
+
+    private CatalogItemDomain toDomain(CatalogItem catalogItem) {
+        return toDomain(catalogItem, catalogItem.getAvailableStock());
+    }
+
+    private CatalogItemDomain toDomain(CatalogItem catalogItem, int availableStock) {
+        CatalogItemDTO catalogItemDTO = catalogItemMapper.toDto(catalogItem);
+        catalogItemDTO.setAvailableStock(availableStock);
+        return new CatalogItemDomain.CatalogItemBuilder().withCatalogItemDTO(catalogItemDTO).build();
+    }
+
+    private static String databaseProductName(DataSource dataSource) {
+        try {
+            return JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName);
+        } catch (MetaDataAccessException e) {
+            return null;
+        }
+    }
+
+    /**
+     * A stock change applied by {@link #applyAll(Long, List)}.
+     */
+    public static final class Operation {
+
+        private final StockMovementReason reason;
+        private final int quantity;
+        private final String correlationId;
+        private Integer applied;
+        private DomainException failure;
+
+        public Operation(StockMovementReason reason, int quantity, String correlationId) {
+            this.reason = reason;
+            this.quantity = quantity;
+            this.correlationId = correlationId;
+        }
+
+        /**
+         * @return the quantity actually added or removed, {@code null} if the change failed.
+         */
+        public Integer getApplied() {
+            return applied;
+        }
+
+        /**
+         * @return why the domain rejected the change, {@code null} if it was applied.
+         */
+        public DomainException getFailure() {
+            return failure;
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package com.gachokaerick.eshop.catalog.service;
+
+import com.gachokaerick.eshop.catalog.config.ApplicationProperties;
+import com.gachokaerick.eshop.catalog.exception.StockQueueTimeoutException;
+import com.gachokaerick.eshop.catalog.model.enumeration.StockMovementReason;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Funnels the concurrent stock changes of a contended catalogItem onto a single writer.
+ * <p>
+ * Stock changes go straight to {@link StockMutationService} while few callers change the same item. Once more than
+ * {@code application.stock-queue.contention-threshold} callers change it at the same time, new changes are queued
+ * and a writer thread applies them in batches through {@link StockMutationService#applyAll(Long, List)}: one row
+ * lock and one update per batch instead of one per change, each caller getting its own result. The queue of an item
+ * is dropped once its callers are gone.
+ * <p>
+ * A caller waits at most {@code application.stock-queue.timeout} for a writer to take its change, after which the change
+ * is withdrawn, and then as long again for it to be written, see {@link StockQueueTimeoutException}.
+ * <p>
+ * The number of queued changes is published in the {@code catalog.stock.queue.depth} gauge, and the average number of
+ * changes per write in the {@code catalog.stock.queue.coalescing.ratio} gauge.
+ */
+@Service
+public class StockWriteQueue {
+
+    private final Logger log = LoggerFactory.getLogger(StockWriteQueue.class);
+
+    private final StockMutationService stockMutationService;
+    private final OptimisticLockRetry optimisticLockRetry;
+    private final ApplicationProperties.StockQueue properties;
+
+    private final Map<Long, ItemQueue> items = new ConcurrentHashMap<>();
+    private final ExecutorService writers;
+
+    private final AtomicInteger depth = new AtomicInteger();
+    private final Counter operations;
+    private final Counter writes;
+
+    public StockWriteQueue(
+        StockMutationService stockMutationService,
+        OptimisticLockRetry optimisticLockRetry,
+        MeterRegistry meterRegistry,
+        ApplicationProperties applicationProperties
+    ) {
+        this.stockMutationService = stockMutationService;
+        this.optimisticLockRetry = optimisticLockRetry;
+        this.properties = applicationProperties.getStockQueue();
+        this.writers =
+            Executors.newFixedThreadPool(Math.max(properties.getWriterThreads(), 1), new CustomizableThreadFactory("stock-writer-"));
+        this.operations = Counter.builder("catalog.stock.queue.operations").register(meterRegistry);
+        this.writes = Counter.builder("catalog.stock.queue.writes").register(meterRegistry);
+        Gauge.builder("catalog.stock.queue.depth", depth, AtomicInteger::get).register(meterRegistry);
+        Gauge.builder("catalog.stock.queue.coalescing.ratio", this, StockWriteQueue::coalescingRatio).register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void stop() {
+        writers.shutdown();
+    }
+
+    /**
+     * Add stock to a catalogItem, see {@link StockMutationService#addStock(Long, int, String)}.
+     *
+     * @param id            the id of the entity.
+     * @param quantity      the quantity to add.
+     * @param correlationId what caused the change, recorded in the journal, may be {@code null}.
+     * @return the quantity actually added, or empty if the entity does not exist.
+     * @throws StockQueueTimeoutException if the change was queued and not written in time.
+     */
+    public Optional<Integer> addStock(Long id, int quantity, String correlationId) {
+        return apply(
+            id,
+            new StockMutationService.Operation(StockMovementReason.ADD_STOCK, quantity, correlationId),
+            () -> optimisticLockRetry.execute("addStock", () -> stockMutationService.addStock(id, quantity, correlationId))
+        );
+    }
+
+    /**
+     * Remove stock from a catalogItem, see {@link StockMutationService#removeStock(Long, int, String)}.
+     *
+     * @param id            the id of the entity.
+     * @param quantity      the quantity desired.
+     * @param correlationId what caused the change, recorded in the journal, may be {@code null}.
+     * @return the quantity actually removed, or empty if the entity does not exist.
+     * @throws com.gachokaerick.eshop.catalog.exception.DomainException if the item is sold out.
+     * @throws StockQueueTimeoutException if the change was queued and not written in time.
+     */
+    public Optional<Integer> removeStock(Long id, int quantity, String correlationId) {
+        return apply(
+            id,
+            new StockMutationService.Operation(StockMovementReason.REMOVE_STOCK, quantity, correlationId),
+            () -> optimisticLockRetry.execute("removeStock", () -> stockMutationService.removeStock(id, quantity, correlationId))
+        );
+    }
+
+    /**
+     * Average number of stock changes applied per queued write.
+     *
+     * @return the ratio, {@code 0} before the first queued write.
+     */
+    public double coalescingRatio() {
+        double count = writes.count();
+        return count == 0 ? 0 : operations.count() / count;
+    }
+
+    private Optional<Integer> apply(Long id, StockMutationService.Operation operation, Supplier<Optional<Integer>> direct) {
+        // a caller inside a transaction must see its own uncommitted changes, which a writer thread would not
+        if (!properties.isEnabled() || TransactionSynchronizationManager.isActualTransactionActive()) {
+            return direct.get();
+        }
+
+        ItemQueue queue = items.compute(
+            id,
+            (key, existing) -> {
+                ItemQueue itemQueue = existing == null ? new ItemQueue(key) : existing;
+                itemQueue.callers.incrementAndGet();
+                return itemQueue;
+            }
+        );
+        try {
+            if (queue.callers.get() <= properties.getContentionThreshold() && !queue.scheduled.get()) {
+                return direct.get();
+            }
+            return enqueue(queue, operation);
+        } finally {
+            queue.callers.decrementAndGet();
+            items.computeIfPresent(id, (key, existing) -> existing.callers.get() == 0 && existing.pending.isEmpty() ? null : existing);
+        }
+    }
+
+    private Optional<Integer> enqueue(ItemQueue queue, StockMutationService.Operation operation) {
+        Pending pending = new Pending(operation);
+        queue.pending.add(pending);
+        depth.incrementAndGet();
+        schedule(queue);
+        long timeout = properties.getTimeout().toMillis();
+        try {
+            try {
+                return pending.result.get(timeout, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                if (queue.pending.remove(pending)) {
+                    depth.decrementAndGet();
+                    throw new StockQueueTimeoutException(queue.itemId, false);
+                }
+            }
+            // taken by a writer in the meantime
+            return pending.result.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new StockQueueTimeoutException(queue.itemId, true);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConcurrencyFailureException("Interrupted while waiting for the stock writer of CatalogItem " + queue.itemId, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new ConcurrencyFailureException("Stock writer of CatalogItem " + queue.itemId + " failed", e.getCause());
+        }
+    }
+
+    private void schedule(ItemQueue queue) {
+        if (queue.scheduled.compareAndSet(false, true)) {
+            writers.execute(() -> drain(queue));
+        }
+    }
+
+    private void drain(ItemQueue queue) {
+        List<Pending> batch = new ArrayList<>();
+        Pending pending;
+        while (batch.size() < Math.max(properties.getMaxBatchSize(), 1) && (pending = queue.pending.poll()) != null) {
+            batch.add(pending);
+        }
+        depth.addAndGet(-batch.size());
+        try {
+            if (!batch.isEmpty()) {
+                write(queue.itemId, batch);
+            }
+        } finally {
+            queue.scheduled.set(false);
+            // changes queued while writing: keep the item on one writer
+            if (!queue.pending.isEmpty()) {
+                schedule(queue);
+            }
+        }
+    }
+
+    private void write(Long itemId, List<Pending> batch) {
+        List<StockMutationService.Operation> batchOperations = new ArrayList<>(batch.size());
+        batch.forEach(pending -> batchOperations.add(pending.operation));
+        boolean found;
+        try {
+            found = optimisticLockRetry.execute("stockBatch", () -> stockMutationService.applyAll(itemId, batchOperations));
+        } catch (RuntimeException e) {
+            log.debug("Could not apply {} stock changes to CatalogItem {}: {}", batch.size(), itemId, e.getMessage());
+            batch.forEach(pending -> pending.result.completeExceptionally(e));
+            return;
+        }
+        operations.increment(batch.size());
+        writes.increment();
+        log.debug("Applied {} stock changes to CatalogItem {} in one write", batch.size(), itemId);
+
+        for (Pending pending : batch) {
+            if (!found) {
+                pending.result.complete(Optional.empty());
+            } else if (pending.operation.getFailure() != null) {
+                pending.result.completeExceptionally(pending.operation.getFailure());
+            } else {
+                pending.result.complete(Optional.of(pending.operation.getApplied()));
+            }
+        }
+    }
+
+    private static final class ItemQueue {
+
+        private final Long itemId;
+        private final AtomicInteger callers = new AtomicInteger();
+        private final Queue<Pending> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private ItemQueue(Long itemId) {
+            this.itemId = itemId;
+        }
+    }
+
+    private static final class Pending {
+
+        private final StockMutationService.Operation operation;
+        private final CompletableFuture<Optional<Integer>> result = new CompletableFuture<>();
+
+        private Pending(StockMutationService.Operation operation) {
+            this.operation = operation;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.gachokaerick.eshop.catalog.service.criteria;
+
+import java.io.Serializable;
+import java.util.Objects;
+import tech.jhipster.service.Criteria;
+import tech.jhipster.service.filter.BigDecimalFilter;
+import tech.jhipster.service.filter.BooleanFilter;
+import tech.jhipster.service.filter.IntegerFilter;
+import tech.jhipster.service.filter.LongFilter;
+
+/**
+ * Criteria class for the {@link com.gachokaerick.eshop.catalog.domain.catalogItem.CatalogItem} entity. This class is used
+ * in {@link com.gachokaerick.eshop.catalog.web.rest.CatalogItemResource} to receive all the possible filtering options from
+ * the Http GET request parameters.
+ * For example the following could be a valid request:
+ * {@code /catalog-items?catalogBrandId.equals=1051&price.greaterThanOrEqual=10&price.lessThan=50&availableStock.greaterThan=0}
+ * As Spring is unable to properly convert the types, unless specific {@link tech.jhipster.service.filter.Filter} class are used, we need to use
+ * fix type specific filters.
+ */
+public class CatalogItemCriteria implements Serializable, Criteria {
+
+    private static final long serialVersionUID = 1L;
+
+    private LongFilter id;
+
+    private PrefixStringFilter name;
+
+    private BigDecimalFilter price;
+
+    private IntegerFilter availableStock;
+
+    private BooleanFilter onReorder;
+
+    private LongFilter catalogBrandId;
+
+    private LongFilter catalogTypeId;
+
+    private Boolean distinct;
+
+    public CatalogItemCriteria() {}
+
+    public CatalogItemCriteria(CatalogItemCriteria other) {
+        this.id = other.id == null ? null : other.id.copy();
+        this.name = other.name == null ? null : other.name.copy();
+        this.price = other.price == null ? null : other.price.copy();
+        this.availableStock = other.availableStock == null ? null : other.availableStock.copy();
+        this.onReorder = other.onReorder == null ? null : other.onReorder.copy();
+        this.catalogBrandId = other.catalogBrandId == null ? null : other.catalogBrandId.copy();
+        this.catalogTypeId = other.catalogTypeId == null ? null : other.catalogTypeId.copy();
+        this.distinct = other.distinct;
+    }
+
+    @Override
+    public CatalogItemCriteria copy() {
+        return new CatalogItemCriteria(this);
+    }
+
+    public LongFilter getId() {
+        return id;
+    }
+
+    public LongFilter id() {
+        if (id == null) {
+            id = new LongFilter();
+        }
+        return id;
+    }
+
+    public void setId(LongFilter id) {
+        this.id = id;
+    }
+
+    public PrefixStringFilter getName() {
+        return name;
+    }
+
+    public PrefixStringFilter name() {
+        if (name == null) {
+            name = new PrefixStringFilter();
+        }
+        return name;
+    }
+
+    public void setName(PrefixStringFilter name) {
+        this.name = name;
+    }
+
+    public BigDecimalFilter getPrice() {
+        return price;
+    }
+
+    public BigDecimalFilter price() {
+        if (price == null) {
+            price = new BigDecimalFilter();
+        }
+        return price;
+    }
+
+    public void setPrice(BigDecimalFilter price) {
+        this.price = price;
+    }
+
+    public IntegerFilter getAvailableStock() {
+        return availableStock;
+    }
+
+    public IntegerFilter availableStock() {
+        if (availableStock == null) {
+            availableStock = new IntegerFilter();
+        }
+        return availableStock;
+    }
+
+    public void setAvailableStock(IntegerFilter availableStock) {
+        this.availableStock = availableStock;
+    }
+
+    public BooleanFilter getOnReorder() {
+        return onReorder;
+    }
+
+    public BooleanFilter onReorder() {
+        if (onReorder == null) {
+            onReorder = new BooleanFilter();
+        }
+        return onReorder;
+    }
+
+    public void setOnReorder(BooleanFilter onReorder) {
+        this.onReorder = onReorder;
+    }
+
+    public LongFilter getCatalogBrandId() {
+        return catalogBrandId;
+    }
+
+    public LongFilter catalogBrandId() {
+        if (catalogBrandId == null) {
+            catalogBrandId = new LongFilter();
+        }
+        return catalogBrandId;
+    }
+
+    public void setCatalogBrandId(LongFilter catalogBrandId) {
+        this.catalogBrandId = catalogBrandId;
+    }
+
+    public LongFilter getCatalogTypeId() {
+        return catalogTypeId;
+    }
+
+    public LongFilter catalogTypeId() {
+        if (catalogTypeId == null) {
+            catalogTypeId = new LongFilter();
+        }
+        return catalogTypeId;
+    }
+
+    public void setCatalogTypeId(LongFilter catalogTypeId) {
+        this.catalogTypeId = catalogTypeId;
+    }
+
+    public Boolean getDistinct() {
+        return distinct;
+    }
+
+    public void setDistinct(Boolean distinct) {
+        this.distinct = distinct;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        final CatalogItemCriteria that = (CatalogItemCriteria) o;
+        return (
+            Objects.equals(id, that.id) &&
+            Objects.equals(name, that.name) &&
+            Objects.equals(price, that.price) &&
+            Objects.equals(availableStock, that.availableStock) &&
+            Objects.equals(onReorder, that.onReorder) &&
+            Objects.equals(catalogBrandId, that.catalogBrandId) &&
+            Objects.equals(catalogTypeId, that.catalogTypeId) &&
+            Objects.equals(distinct, that.distinct)
+        );
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, name, price, availableStock, onReorder, catalogBrandId, catalogTypeId, distinct);
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "CatalogItemCriteria{" +
+            (id != null ? "id=" + id + ", " : "") +
+            (name != null ? "name=" + name + ", " : "") +
+            (price != null ? "price=" + price + ", " : "") +
+            (availableStock != null ? "availableStock=" + availableStock + ", " : "") +
+            (onReorder != null ? "onReorder=" + onReorder + ", " : "") +
+            (catalogBrandId != null ? "catalogBrandId=" + catalogBrandId + ", " : "") +
+            (catalogTypeId != null ? "catalogTypeId=" + catalogTypeId + ", " : "") +
+            (distinct != null ? "distinct=" + distinct + ", " : "") +
+            "}";
+    }
+}
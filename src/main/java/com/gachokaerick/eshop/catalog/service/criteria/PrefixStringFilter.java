@@ -0,0 +1,70 @@
+package com.gachokaerick.eshop.catalog.service.criteria;
+
+import java.util.Objects;
+import tech.jhipster.service.filter.StringFilter;
+
+/**
+ * {@link StringFilter} that can also match the values starting with a prefix, for example
+ * {@code name.startsWith=Bag}. Unlike {@code contains}, a prefix is case sensitive so that it can seek on an index.
+ */
+public class PrefixStringFilter extends StringFilter {
+
+    private static final long serialVersionUID = 1L;
+
+    private String startsWith;
+
+    public PrefixStringFilter() {}
+
+    public PrefixStringFilter(PrefixStringFilter filter) {
+        super(filter);
+        this.startsWith = filter.startsWith;
+    }
+
+    @Override
+    public PrefixStringFilter copy() {
+        return new PrefixStringFilter(this);
+    }
+
+    public String getStartsWith() {
+        return startsWith;
+    }
+
+    public PrefixStringFilter setStartsWith(String startsWith) {
+        this.startsWith = startsWith;
+        return this;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        if (!super.equals(o)) {
+            return false;
+        }
+        PrefixStringFilter that = (PrefixStringFilter) o;
+        return Objects.equals(startsWith, that.startsWith);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(super.hashCode(), startsWith);
+    }
+
+    @Override
+    public String toString() {
+        return (
+            getFilterName() +
+            " [" +
+            (getEquals() != null ? "equals=" + getEquals() + ", " : "") +
+            (getIn() != null ? "in=" + getIn() + ", " : "") +
+            (getContains() != null ? "contains=" + getContains() + ", " : "") +
+            (getStartsWith() != null ? "startsWith=" + getStartsWith() + ", " : "") +
+            (getSpecified() != null ? "specified=" + getSpecified() : "") +
+            "]"
+        );
+    }
+}
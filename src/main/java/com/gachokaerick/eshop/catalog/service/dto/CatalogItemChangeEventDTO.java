@@ -0,0 +1,95 @@
+package com.gachokaerick.eshop.catalog.service.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * A change of a {@link com.gachokaerick.eshop.catalog.domain.catalogItem.CatalogItem}, as published on the
+ * change-event topic. It carries the whole catalogItem as changed, so the latest event of an item is its current state.
+ */
+public class CatalogItemChangeEventDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public enum Type {
+        @JsonProperty("created")
+        CREATED,
+        @JsonProperty("updated")
+        UPDATED,
+        @JsonProperty("deleted")
+        DELETED,
+        @JsonProperty("priceChanged")
+        PRICE_CHANGED,
+        @JsonProperty("stockChanged")
+        STOCK_CHANGED,
+        /**
+         * Written by a snapshot of the whole catalog, not by a change
+         */
+        @JsonProperty("snapshot")
+        SNAPSHOT,
+    }
+
+    private Type type;
+
+    private Long itemId;
+
+    /**
+     * The catalogItem as changed, {@code null} once deleted
+     */
+    private CatalogItemDTO catalogItem;
+
+    private Instant occurredDate;
+
+    public CatalogItemChangeEventDTO() {}
+
+    public CatalogItemChangeEventDTO(Type type, Long itemId, CatalogItemDTO catalogItem, Instant occurredDate) {
+        this.type = type;
+        this.itemId = itemId;
+        this.catalogItem = catalogItem;
+        this.occurredDate = occurredDate;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+    public Long getItemId() {
+        return itemId;
+    }
+
+    public void setItemId(Long itemId) {
+        this.itemId = itemId;
+    }
+
+    public CatalogItemDTO getCatalogItem() {
+        return catalogItem;
+    }
+
+    public void setCatalogItem(CatalogItemDTO catalogItem) {
+        this.catalogItem = catalogItem;
+    }
+
+    public Instant getOccurredDate() {
+        return occurredDate;
+    }
+
+    public void setOccurredDate(Instant occurredDate) {
+        this.occurredDate = occurredDate;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "CatalogItemChangeEventDTO{" +
+            "type='" + getType() + "'" +
+            ", itemId=" + getItemId() +
+            ", catalogItem=" + getCatalogItem() +
+            ", occurredDate='" + getOccurredDate() + "'" +
+            "}";
+    }
+}
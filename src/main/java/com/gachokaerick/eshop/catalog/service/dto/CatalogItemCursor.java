@@ -0,0 +1,160 @@
+package com.gachokaerick.eshop.catalog.service.dto;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Objects;
+
+/**
+ * Position in the catalogItems ordered by a sort key, used for cursor pagination.
+ * <p>
+ * A cursor holds the sort key values of the last catalogItem of a page: the next page seeks past them on an index
+ * instead of skipping the rows of the previous pages. It is exchanged with clients as an opaque string.
+ */
+public final class CatalogItemCursor implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public enum SortKey {
+        ID("i"),
+        NAME("n");
+
+        private final String code;
+
+        SortKey(String code) {
+            this.code = code;
+        }
+
+        /**
+         * Parse a {@code sort} request parameter, {@code property[,asc]}.
+         *
+         * @param sort the parameter, {@code null} for the default sort key.
+         * @return the sort key.
+         * @throws IllegalArgumentException if the catalogItems cannot be paged by cursor in this order.
+         */
+        public static SortKey fromSortParameter(String sort) {
+            if (sort == null || sort.isBlank()) {
+                return ID;
+            }
+            String[] parts = sort.split(",");
+            if (parts.length > 2 || (parts.length == 2 && !parts[1].trim().equalsIgnoreCase("asc"))) {
+                throw new IllegalArgumentException("Cursor pagination only supports ascending order");
+            }
+            switch (parts[0].trim()) {
+                case "id":
+                    return ID;
+                case "name":
+                    return NAME;
+                default:
+                    throw new IllegalArgumentException("Cursor pagination only supports sorting by id or name");
+            }
+        }
+    }
+
+    private final SortKey sortKey;
+    private final Long id;
+    private final String name;
+
+    private CatalogItemCursor(SortKey sortKey, Long id, String name) {
+        this.sortKey = sortKey;
+        this.id = id;
+        this.name = name;
+    }
+
+    /**
+     * @param sortKey the order of the catalogItems.
+     * @return the cursor before the first catalogItem.
+     */
+    public static CatalogItemCursor first(SortKey sortKey) {
+        return new CatalogItemCursor(sortKey, null, null);
+    }
+
+    /**
+     * @param sortKey     the order of the catalogItems.
+     * @param catalogItem the last catalogItem of a page.
+     * @return the cursor after this catalogItem.
+     */
+    public static CatalogItemCursor after(SortKey sortKey, CatalogItemDTO catalogItem) {
+        return new CatalogItemCursor(sortKey, catalogItem.getId(), sortKey == SortKey.NAME ? catalogItem.getName() : null);
+    }
+
+    /**
+     * Read a cursor sent by a client.
+     *
+     * @param value the value of {@link #encode()}, empty for the first page.
+     * @param sort  the {@code sort} request parameter, only used for the first page.
+     * @return the cursor.
+     * @throws IllegalArgumentException if the value is not a cursor.
+     */
+    public static CatalogItemCursor decode(String value, String sort) {
+        if (value == null || value.isEmpty()) {
+            return first(SortKey.fromSortParameter(sort));
+        }
+        String decoded = new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8);
+        String[] parts = decoded.split(":", 3);
+        try {
+            if (parts.length == 2 && parts[0].equals(SortKey.ID.code)) {
+                return new CatalogItemCursor(SortKey.ID, Long.valueOf(parts[1]), null);
+            }
+            if (parts.length == 3 && parts[0].equals(SortKey.NAME.code)) {
+                return new CatalogItemCursor(SortKey.NAME, Long.valueOf(parts[1]), parts[2]);
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+        throw new IllegalArgumentException("Invalid cursor");
+    }
+
+    /**
+     * @return the cursor as an opaque, URL-safe string.
+     */
+    public String encode() {
+        String value = sortKey.code + ":" + id + (sortKey == SortKey.NAME ? ":" + name : "");
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public SortKey getSortKey() {
+        return sortKey;
+    }
+
+    /**
+     * @return the id of the last catalogItem, {@code null} before the first one.
+     */
+    public Long getId() {
+        return id;
+    }
+
+    /**
+     * @return the name of the last catalogItem when sorting by name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CatalogItemCursor)) {
+            return false;
+        }
+        CatalogItemCursor that = (CatalogItemCursor) o;
+        return sortKey == that.sortKey && Objects.equals(id, that.id) && Objects.equals(name, that.name);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(sortKey, id, name);
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "CatalogItemCursor{" +
+            "sortKey=" + getSortKey() +
+            ", id=" + getId() +
+            ", name='" + getName() + "'" +
+            "}";
+    }
+}
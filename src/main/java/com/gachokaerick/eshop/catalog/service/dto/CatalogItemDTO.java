@@ -54,6 +54,18 @@ public class CatalogItemDTO implements Serializable {
 
     private CatalogTypeDTO catalogType;
 
+    /**
+     * Version of the entity, incremented on every update
+     */
+    @ApiModelProperty(value = "Version of the entity, incremented on every update")
+    private Integer version;
+
+    /**
+     * Available stock minus the quantity held by carts
+     */
+    @ApiModelProperty(value = "Available stock minus the quantity held by carts", readOnly = true)
+    private Integer availableToSell;
+
     public CatalogItemDTO() {}
 
     public CatalogItemDTO(
@@ -84,6 +96,44 @@ public class CatalogItemDTO implements Serializable {
         this.catalogType = catalogType;
     }
 
+    /**
+     * Constructor of the JPQL constructor expressions, which select the columns of the catalogItem joined with its brand
+     * and type instead of loading the entities.
+     */
+    public CatalogItemDTO(
+        Long id,
+        String name,
+        String description,
+        BigDecimal price,
+        String pictureFileName,
+        String pictureUrl,
+        Integer availableStock,
+        Integer restockThreshold,
+        Integer maxStockThreshold,
+        Boolean onReorder,
+        Integer version,
+        Long catalogBrandId,
+        String catalogBrand,
+        Long catalogTypeId,
+        String catalogType
+    ) {
+        this(
+            id,
+            name,
+            description,
+            price,
+            pictureFileName,
+            pictureUrl,
+            availableStock,
+            restockThreshold,
+            maxStockThreshold,
+            onReorder,
+            new CatalogBrandDTO(catalogBrandId, catalogBrand),
+            new CatalogTypeDTO(catalogTypeId, catalogType)
+        );
+        this.version = version;
+    }
+
     public Long getId() {
         return id;
     }
@@ -235,6 +285,32 @@ public class CatalogItemDTO implements Serializable {
         return this;
     }
 
+    public Integer getVersion() {
+        return version;
+    }
+
+    public void setVersion(Integer version) {
+        this.version = version;
+    }
+
+    public CatalogItemDTO version(Integer version) {
+        this.version = version;
+        return this;
+    }
+
+    public Integer getAvailableToSell() {
+        return availableToSell;
+    }
+
+    public void setAvailableToSell(Integer availableToSell) {
+        this.availableToSell = availableToSell;
+    }
+
+    public CatalogItemDTO availableToSell(Integer availableToSell) {
+        this.availableToSell = availableToSell;
+        return this;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -272,6 +348,8 @@ public class CatalogItemDTO implements Serializable {
             ", onReorder='" + getOnReorder() + "'" +
             ", catalogBrand=" + getCatalogBrand() +
             ", catalogType=" + getCatalogType() +
+            ", version=" + getVersion() +
+            ", availableToSell=" + getAvailableToSell() +
             "}";
     }
 }
@@ -0,0 +1,178 @@
+package com.gachokaerick.eshop.catalog.service.dto;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Number of {@link com.gachokaerick.eshop.catalog.domain.catalogItem.CatalogItem}s matching a filter, per brand, per
+ * type and per price bucket.
+ */
+public class CatalogItemFacetsDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private long total;
+
+    private List<FacetValue> catalogBrands = new ArrayList<>();
+
+    private List<FacetValue> catalogTypes = new ArrayList<>();
+
+    private List<PriceBucket> prices = new ArrayList<>();
+
+    public long getTotal() {
+        return total;
+    }
+
+    public void setTotal(long total) {
+        this.total = total;
+    }
+
+    public List<FacetValue> getCatalogBrands() {
+        return catalogBrands;
+    }
+
+    public void setCatalogBrands(List<FacetValue> catalogBrands) {
+        this.catalogBrands = catalogBrands;
+    }
+
+    public List<FacetValue> getCatalogTypes() {
+        return catalogTypes;
+    }
+
+    public void setCatalogTypes(List<FacetValue> catalogTypes) {
+        this.catalogTypes = catalogTypes;
+    }
+
+    public List<PriceBucket> getPrices() {
+        return prices;
+    }
+
+    public void setPrices(List<PriceBucket> prices) {
+        this.prices = prices;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "CatalogItemFacetsDTO{" +
+            "total=" + getTotal() +
+            ", catalogBrands=" + getCatalogBrands() +
+            ", catalogTypes=" + getCatalogTypes() +
+            ", prices=" + getPrices() +
+            "}";
+    }
+
+    /**
+     * Number of catalogItems of a brand or type.
+     */
+    public static class FacetValue implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private Long id;
+
+        private String name;
+
+        private long count;
+
+        public FacetValue() {}
+
+        public FacetValue(Long id, String name, long count) {
+            this.id = id;
+            this.name = name;
+            this.count = count;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public void setId(Long id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public void setCount(long count) {
+            this.count = count;
+        }
+
+        // prettier-ignore
+        @Override
+        public String toString() {
+            return "FacetValue{" +
+                "id=" + getId() +
+                ", name='" + getName() + "'" +
+                ", count=" + getCount() +
+                "}";
+        }
+    }
+
+    /**
+     * Number of catalogItems priced from {@code from}, inclusive, to {@code to}, exclusive; a missing bound is unbounded.
+     */
+    public static class PriceBucket implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private BigDecimal from;
+
+        private BigDecimal to;
+
+        private long count;
+
+        public PriceBucket() {}
+
+        public PriceBucket(BigDecimal from, BigDecimal to, long count) {
+            this.from = from;
+            this.to = to;
+            this.count = count;
+        }
+
+        public BigDecimal getFrom() {
+            return from;
+        }
+
+        public void setFrom(BigDecimal from) {
+            this.from = from;
+        }
+
+        public BigDecimal getTo() {
+            return to;
+        }
+
+        public void setTo(BigDecimal to) {
+            this.to = to;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public void setCount(long count) {
+            this.count = count;
+        }
+
+        // prettier-ignore
+        @Override
+        public String toString() {
+            return "PriceBucket{" +
+                "from=" + getFrom() +
+                ", to=" + getTo() +
+                ", count=" + getCount() +
+                "}";
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.gachokaerick.eshop.catalog.service.dto;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Properties of the {@link CatalogItemDTO}s requested by a client, for sparse fieldsets.
+ * <p>
+ * The id is always part of the fields: clients need it to link to a catalogItem, and the services to read its stock.
+ * The brand and type are whole fields, written with both their id and name.
+ */
+public final class CatalogItemFields implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Id of the Jackson filter writing the fields of a {@link CatalogItemDTO}.
+     */
+    public static final String FILTER = "catalogItemFields";
+
+    public static final String ID = "id";
+    public static final String NAME = "name";
+    public static final String DESCRIPTION = "description";
+    public static final String PRICE = "price";
+    public static final String PICTURE_FILE_NAME = "pictureFileName";
+    public static final String PICTURE_URL = "pictureUrl";
+    public static final String AVAILABLE_STOCK = "availableStock";
+    public static final String RESTOCK_THRESHOLD = "restockThreshold";
+    public static final String MAX_STOCK_THRESHOLD = "maxStockThreshold";
+    public static final String ON_REORDER = "onReorder";
+    public static final String CATALOG_BRAND = "catalogBrand";
+    public static final String CATALOG_TYPE = "catalogType";
+    public static final String VERSION = "version";
+    public static final String AVAILABLE_TO_SELL = "availableToSell";
+
+    private static final List<String> NAMES = List.of(
+        ID,
+        NAME,
+        DESCRIPTION,
+        PRICE,
+        PICTURE_FILE_NAME,
+        PICTURE_URL,
+        AVAILABLE_STOCK,
+        RESTOCK_THRESHOLD,
+        MAX_STOCK_THRESHOLD,
+        ON_REORDER,
+        CATALOG_BRAND,
+        CATALOG_TYPE,
+        VERSION,
+        AVAILABLE_TO_SELL
+    );
+
+    /**
+     * All the properties, as when no fields are requested.
+     */
+    public static final CatalogItemFields ALL = new CatalogItemFields(new LinkedHashSet<>(NAMES));
+
+    private final Set<String> names;
+
+    private CatalogItemFields(Set<String> names) {
+        this.names = Collections.unmodifiableSet(names);
+    }
+
+    /**
+     * Parse a {@code fields} request parameter, the comma separated names of the properties.
+     *
+     * @param fields the parameter, {@code null} or blank for all the properties.
+     * @return the fields, in the order of the properties of {@link CatalogItemDTO}.
+     * @throws IllegalArgumentException if a name is not a property of {@link CatalogItemDTO}.
+     */
+    public static CatalogItemFields parse(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return ALL;
+        }
+        Set<String> requested = new LinkedHashSet<>();
+        for (String name : fields.split(",")) {
+            String trimmed = name.trim();
+            if (!trimmed.isEmpty() && !NAMES.contains(trimmed)) {
+                throw new IllegalArgumentException("Unknown field: " + trimmed);
+            }
+            requested.add(trimmed);
+        }
+        Set<String> names = new LinkedHashSet<>();
+        for (String name : NAMES) {
+            if (name.equals(ID) || requested.contains(name)) {
+                names.add(name);
+            }
+        }
+        return names.size() == NAMES.size() ? ALL : new CatalogItemFields(names);
+    }
+
+    /**
+     * @return {@code true} if every property is requested.
+     */
+    public boolean isAll() {
+        return names.size() == NAMES.size();
+    }
+
+    public boolean contains(String name) {
+        return names.contains(name);
+    }
+
+    /**
+     * @return the names of the properties, the id first.
+     */
+    public Set<String> getNames() {
+        return names;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CatalogItemFields)) {
+            return false;
+        }
+        return names.equals(((CatalogItemFields) o).names);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(names);
+    }
+
+    @Override
+    public String toString() {
+        return String.join(",", names);
+    }
+}
@@ -0,0 +1,65 @@
+package com.gachokaerick.eshop.catalog.service.dto;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * A name of a {@link com.gachokaerick.eshop.catalog.domain.catalogItem.CatalogItem} suggested while typing.
+ */
+public class CatalogItemSuggestionDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private Long id;
+
+    private String name;
+
+    public CatalogItemSuggestionDTO() {}
+
+    public CatalogItemSuggestionDTO(Long id, String name) {
+        this.id = id;
+        this.name = name;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CatalogItemSuggestionDTO)) {
+            return false;
+        }
+        CatalogItemSuggestionDTO that = (CatalogItemSuggestionDTO) o;
+        return Objects.equals(id, that.id) && Objects.equals(name, that.name);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, name);
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "CatalogItemSuggestionDTO{" +
+            "id=" + getId() +
+            ", name='" + getName() + "'" +
+            "}";
+    }
+}
@@ -0,0 +1,115 @@
+package com.gachokaerick.eshop.catalog.service.dto;
+
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * A {@link com.gachokaerick.eshop.catalog.domain.catalogItem.CatalogItem} whose stock fell to its restock threshold,
+ * as published on the restock topic.
+ */
+public class RestockAlertDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private Long itemId;
+
+    private String name;
+
+    private Integer availableStock;
+
+    private Integer restockThreshold;
+
+    private Integer maxStockThreshold;
+
+    /**
+     * Quantity to order to bring the stock back up to maxStockThreshold
+     */
+    private Integer suggestedQuantity;
+
+    /**
+     * When the stock crossed the restock threshold
+     */
+    private Instant crossedDate;
+
+    public RestockAlertDTO() {}
+
+    public RestockAlertDTO(CatalogItemDTO catalogItemDTO, Instant crossedDate) {
+        this.itemId = catalogItemDTO.getId();
+        this.name = catalogItemDTO.getName();
+        this.availableStock = catalogItemDTO.getAvailableStock();
+        this.restockThreshold = catalogItemDTO.getRestockThreshold();
+        this.maxStockThreshold = catalogItemDTO.getMaxStockThreshold();
+        this.suggestedQuantity = Math.max(catalogItemDTO.getMaxStockThreshold() - catalogItemDTO.getAvailableStock(), 0);
+        this.crossedDate = crossedDate;
+    }
+
+    public Long getItemId() {
+        return itemId;
+    }
+
+    public void setItemId(Long itemId) {
+        this.itemId = itemId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public Integer getAvailableStock() {
+        return availableStock;
+    }
+
+    public void setAvailableStock(Integer availableStock) {
+        this.availableStock = availableStock;
+    }
+
+    public Integer getRestockThreshold() {
+        return restockThreshold;
+    }
+
+    public void setRestockThreshold(Integer restockThreshold) {
+        this.restockThreshold = restockThreshold;
+    }
+
+    public Integer getMaxStockThreshold() {
+        return maxStockThreshold;
+    }
+
+    public void setMaxStockThreshold(Integer maxStockThreshold) {
+        this.maxStockThreshold = maxStockThreshold;
+    }
+
+    public Integer getSuggestedQuantity() {
+        return suggestedQuantity;
+    }
+
+    public void setSuggestedQuantity(Integer suggestedQuantity) {
+        this.suggestedQuantity = suggestedQuantity;
+    }
+
+    public Instant getCrossedDate() {
+        return crossedDate;
+    }
+
+    public void setCrossedDate(Instant crossedDate) {
+        this.crossedDate = crossedDate;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "RestockAlertDTO{" +
+            "itemId=" + getItemId() +
+            ", name='" + getName() + "'" +
+            ", availableStock=" + getAvailableStock() +
+            ", restockThreshold=" + getRestockThreshold() +
+            ", maxStockThreshold=" + getMaxStockThreshold() +
+            ", suggestedQuantity=" + getSuggestedQuantity() +
+            ", crossedDate='" + getCrossedDate() + "'" +
+            "}";
+    }
+}
@@ -0,0 +1,84 @@
+package com.gachokaerick.eshop.catalog.service.dto;
+
+import com.gachokaerick.eshop.catalog.model.enumeration.StockMovementReason;
+import java.io.Serializable;
+import javax.validation.constraints.*;
+
+/**
+ * A stock change of a {@link com.gachokaerick.eshop.catalog.domain.catalogItem.CatalogItem} requested on Kafka, by
+ * ordering for instance.
+ */
+public class StockCommandDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @NotNull
+    private Long itemId;
+
+    /**
+     * {@link StockMovementReason#ADD_STOCK} or {@link StockMovementReason#REMOVE_STOCK}
+     */
+    @NotNull
+    private StockMovementReason reason;
+
+    @NotNull
+    @Positive
+    private Integer quantity;
+
+    /**
+     * What caused the change, the order for instance, recorded in the stock journal
+     */
+    private String correlationId;
+
+    public StockCommandDTO() {}
+
+    public StockCommandDTO(Long itemId, StockMovementReason reason, Integer quantity, String correlationId) {
+        this.itemId = itemId;
+        this.reason = reason;
+        this.quantity = quantity;
+        this.correlationId = correlationId;
+    }
+
+    public Long getItemId() {
+        return itemId;
+    }
+
+    public void setItemId(Long itemId) {
+        this.itemId = itemId;
+    }
+
+    public StockMovementReason getReason() {
+        return reason;
+    }
+
+    public void setReason(StockMovementReason reason) {
+        this.reason = reason;
+    }
+
+    public Integer getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(Integer quantity) {
+        this.quantity = quantity;
+    }
+
+    public String getCorrelationId() {
+        return correlationId;
+    }
+
+    public void setCorrelationId(String correlationId) {
+        this.correlationId = correlationId;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "StockCommandDTO{" +
+            "itemId=" + getItemId() +
+            ", reason='" + getReason() + "'" +
+            ", quantity=" + getQuantity() +
+            ", correlationId='" + getCorrelationId() + "'" +
+            "}";
+    }
+}
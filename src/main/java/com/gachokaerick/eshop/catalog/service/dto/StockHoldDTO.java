@@ -0,0 +1,104 @@
+package com.gachokaerick.eshop.catalog.service.dto;
+
+import io.swagger.annotations.ApiModelProperty;
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.UUID;
+import javax.validation.constraints.*;
+
+/**
+ * A DTO for a time-bound hold on the stock of a {@link com.gachokaerick.eshop.catalog.domain.catalogItem.CatalogItem}.
+ */
+public class StockHoldDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private UUID id;
+
+    @NotNull
+    private Long itemId;
+
+    @NotNull
+    @Positive
+    private Integer quantity;
+
+    /**
+     * Instant after which the hold is released automatically
+     */
+    @ApiModelProperty(value = "Instant after which the hold is released automatically", readOnly = true)
+    private Instant expiresAt;
+
+    public StockHoldDTO() {}
+
+    public StockHoldDTO(UUID id, Long itemId, Integer quantity, Instant expiresAt) {
+        this.id = id;
+        this.itemId = itemId;
+        this.quantity = quantity;
+        this.expiresAt = expiresAt;
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    public void setId(UUID id) {
+        this.id = id;
+    }
+
+    public Long getItemId() {
+        return itemId;
+    }
+
+    public void setItemId(Long itemId) {
+        this.itemId = itemId;
+    }
+
+    public Integer getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(Integer quantity) {
+        this.quantity = quantity;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(Instant expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof StockHoldDTO)) {
+            return false;
+        }
+
+        StockHoldDTO stockHoldDTO = (StockHoldDTO) o;
+        if (this.id == null) {
+            return false;
+        }
+        return Objects.equals(this.id, stockHoldDTO.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.id);
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "StockHoldDTO{" +
+            "id=" + getId() +
+            ", itemId=" + getItemId() +
+            ", quantity=" + getQuantity() +
+            ", expiresAt='" + getExpiresAt() + "'" +
+            "}";
+    }
+}
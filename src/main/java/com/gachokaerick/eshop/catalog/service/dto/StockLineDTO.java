@@ -0,0 +1,67 @@
+package com.gachokaerick.eshop.catalog.service.dto;
+
+import io.swagger.annotations.ApiModelProperty;
+import java.io.Serializable;
+import javax.validation.constraints.*;
+
+/**
+ * A line of a multi-item stock request: a quantity of a {@link com.gachokaerick.eshop.catalog.domain.catalogItem.CatalogItem}.
+ */
+public class StockLineDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @NotNull
+    private Long itemId;
+
+    @NotNull
+    @Positive
+    private Integer quantity;
+
+    /**
+     * Quantity actually applied to stock, filled in by the server
+     */
+    @ApiModelProperty(value = "Quantity actually applied to stock, filled in by the server", readOnly = true)
+    private Integer removed;
+
+    public StockLineDTO() {}
+
+    public StockLineDTO(Long itemId, Integer quantity) {
+        this.itemId = itemId;
+        this.quantity = quantity;
+    }
+
+    public Long getItemId() {
+        return itemId;
+    }
+
+    public void setItemId(Long itemId) {
+        this.itemId = itemId;
+    }
+
+    public Integer getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(Integer quantity) {
+        this.quantity = quantity;
+    }
+
+    public Integer getRemoved() {
+        return removed;
+    }
+
+    public void setRemoved(Integer removed) {
+        this.removed = removed;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "StockLineDTO{" +
+            "itemId=" + getItemId() +
+            ", quantity=" + getQuantity() +
+            ", removed=" + getRemoved() +
+            "}";
+    }
+}
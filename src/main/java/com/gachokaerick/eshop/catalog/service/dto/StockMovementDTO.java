@@ -0,0 +1,117 @@
+package com.gachokaerick.eshop.catalog.service.dto;
+
+import com.gachokaerick.eshop.catalog.model.enumeration.StockMovementReason;
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * A DTO for the {@link com.gachokaerick.eshop.catalog.model.StockMovement} entity.
+ */
+public class StockMovementDTO implements Serializable {
+
+    private Long id;
+
+    private Long catalogItemId;
+
+    private Integer delta;
+
+    private StockMovementReason reason;
+
+    private String correlationId;
+
+    private Instant createdDate;
+
+    private Boolean compacted;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getCatalogItemId() {
+        return catalogItemId;
+    }
+
+    public void setCatalogItemId(Long catalogItemId) {
+        this.catalogItemId = catalogItemId;
+    }
+
+    public Integer getDelta() {
+        return delta;
+    }
+
+    public void setDelta(Integer delta) {
+        this.delta = delta;
+    }
+
+    public StockMovementReason getReason() {
+        return reason;
+    }
+
+    public void setReason(StockMovementReason reason) {
+        this.reason = reason;
+    }
+
+    public String getCorrelationId() {
+        return correlationId;
+    }
+
+    public void setCorrelationId(String correlationId) {
+        this.correlationId = correlationId;
+    }
+
+    public Instant getCreatedDate() {
+        return createdDate;
+    }
+
+    public void setCreatedDate(Instant createdDate) {
+        this.createdDate = createdDate;
+    }
+
+    public Boolean getCompacted() {
+        return compacted;
+    }
+
+    public void setCompacted(Boolean compacted) {
+        this.compacted = compacted;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof StockMovementDTO)) {
+            return false;
+        }
+
+        StockMovementDTO stockMovementDTO = (StockMovementDTO) o;
+        if (this.id == null) {
+            return false;
+        }
+        return Objects.equals(this.id, stockMovementDTO.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.id);
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "StockMovementDTO{" +
+            "id=" + getId() +
+            ", catalogItemId=" + getCatalogItemId() +
+            ", delta=" + getDelta() +
+            ", reason='" + getReason() + "'" +
+            ", correlationId='" + getCorrelationId() + "'" +
+            ", createdDate='" + getCreatedDate() + "'" +
+            ", compacted='" + getCompacted() + "'" +
+            "}";
+    }
+}
@@ -0,0 +1,11 @@
+package com.gachokaerick.eshop.catalog.service.mapper;
+
+import com.gachokaerick.eshop.catalog.model.StockMovement;
+import com.gachokaerick.eshop.catalog.service.dto.StockMovementDTO;
+import org.mapstruct.*;
+
+/**
+ * Mapper for the entity {@link StockMovement} and its DTO {@link StockMovementDTO}.
+ */
+@Mapper(componentModel = "spring", uses = {})
+public interface StockMovementMapper extends EntityMapper<StockMovementDTO, StockMovement> {}
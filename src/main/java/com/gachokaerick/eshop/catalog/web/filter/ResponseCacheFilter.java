@@ -0,0 +1,192 @@
+package com.gachokaerick.eshop.catalog.web.filter;
+
+import com.gachokaerick.eshop.catalog.config.ApplicationProperties;
+import com.gachokaerick.eshop.catalog.service.CollectionVersionService;
+import com.gachokaerick.eshop.catalog.service.CollectionVersionService.CatalogCollection;
+import com.gachokaerick.eshop.catalog.service.ResponseCache;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+/**
+ * Serves the first pages of catalogItems and of the brands and types from the {@link ResponseCache}.
+ * <p>
+ * A cached response is written as the bytes first sent to a client, without calling the resource: nothing is read from
+ * the database or serialized. The filter runs after the security filters, so the requests are authorized as usual.
+ * Requests are cached under their path and parameters sorted by name, so that the order of the parameters does not
+ * matter. Conditional requests are left to the resources, which answer them without reading the catalog either.
+ */
+@Component
+public class ResponseCacheFilter extends OncePerRequestFilter {
+
+    private static final Map<String, CatalogCollection> COLLECTIONS = Map.of(
+        "/api/catalog-items",
+        CatalogCollection.ITEMS,
+        "/api/catalog-brands",
+        CatalogCollection.BRANDS,
+        "/api/catalog-types",
+        CatalogCollection.TYPES
+    );
+
+    private static final List<String> CACHED_HEADERS = List.of(HttpHeaders.ETAG, "X-Total-Count");
+    private static final Pattern LINK_SEPARATOR = Pattern.compile(",(?=<)");
+    private static final String LINK_START = "</";
+
+    private final ResponseCache responseCache;
+    private final CollectionVersionService collectionVersionService;
+    private final ApplicationProperties.ResponseCache properties;
+
+    public ResponseCacheFilter(
+        ResponseCache responseCache,
+        CollectionVersionService collectionVersionService,
+        ApplicationProperties applicationProperties
+    ) {
+        this.responseCache = responseCache;
+        this.collectionVersionService = collectionVersionService;
+        this.properties = applicationProperties.getResponseCache();
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return (
+            !responseCache.isEnabled() ||
+            !HttpMethod.GET.matches(request.getMethod()) ||
+            request.getHeader(HttpHeaders.IF_NONE_MATCH) != null ||
+            !COLLECTIONS.containsKey(path(request)) ||
+            !isCacheable(request)
+        );
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+        throws ServletException, IOException {
+        CatalogCollection collection = COLLECTIONS.get(path(request));
+        String key = key(request);
+        // read before the resource, so that a response read while the collection changes is cached as stale
+        long version = collectionVersionService.version(collection);
+        ResponseCache.Entry entry = responseCache.get(key, version);
+        if (entry != null) {
+            write(request, entry, response);
+            return;
+        }
+
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        try {
+            filterChain.doFilter(request, wrapper);
+            Map<String, List<String>> headers = headers(request, wrapper);
+            if (wrapper.getStatus() == HttpStatus.OK.value() && headers != null) {
+                responseCache.put(
+                    key,
+                    new ResponseCache.Entry(collection, version, wrapper.getStatus(), headers, wrapper.getContentAsByteArray())
+                );
+            }
+        } finally {
+            wrapper.copyBodyToResponse();
+        }
+    }
+
+    private boolean isCacheable(HttpServletRequest request) {
+        if (request.getParameter("ids") != null || !isEmpty(request.getParameter("after"))) {
+            return false;
+        }
+        String page = request.getParameter("page");
+        try {
+            return page == null || Integer.parseInt(page) < properties.getMaxPages();
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static String path(HttpServletRequest request) {
+        return request.getRequestURI().substring(request.getContextPath().length());
+    }
+
+    /**
+     * The path and the parameters of the request sorted by name, the first page being the default page.
+     */
+    private static String key(HttpServletRequest request) {
+        Map<String, String[]> parameters = new TreeMap<>(request.getParameterMap());
+        parameters.putIfAbsent("page", new String[] { "0" });
+        return parameters
+            .entrySet()
+            .stream()
+            .flatMap(parameter -> List.of(parameter.getValue()).stream().map(value -> parameter.getKey() + "=" + value))
+            .collect(Collectors.joining("&", path(request) + "?", ""));
+    }
+
+    /**
+     * The headers of the response which do not depend on the requester, or {@code null} if the response cannot be cached.
+     * <p>
+     * Only the content type, the {@code ETag}, the count and the {@code Link} header are cached: the others, like the CORS
+     * and the security headers, are written for each request. The links are cached relative to the context path, to be
+     * written back with the scheme and the host of each request.
+     */
+    private static Map<String, List<String>> headers(HttpServletRequest request, ContentCachingResponseWrapper response) {
+        Map<String, List<String>> headers = new LinkedHashMap<>();
+        if (response.getContentType() != null) {
+            headers.put(HttpHeaders.CONTENT_TYPE, List.of(response.getContentType()));
+        }
+        for (String name : CACHED_HEADERS) {
+            if (response.containsHeader(name)) {
+                headers.put(name, new ArrayList<>(response.getHeaders(name)));
+            }
+        }
+        if (response.containsHeader(HttpHeaders.LINK)) {
+            String origin = "<" + origin(request);
+            List<String> values = new ArrayList<>();
+            for (String value : response.getHeaders(HttpHeaders.LINK)) {
+                List<String> links = new ArrayList<>();
+                for (String link : LINK_SEPARATOR.split(value)) {
+                    if (!link.startsWith(origin)) {
+                        return null;
+                    }
+                    links.add("<" + link.substring(origin.length()));
+                }
+                values.add(String.join(",", links));
+            }
+            headers.put(HttpHeaders.LINK, values);
+        }
+        return headers;
+    }
+
+    private static void write(HttpServletRequest request, ResponseCache.Entry entry, HttpServletResponse response) throws IOException {
+        response.setStatus(entry.getStatus());
+        String origin = origin(request);
+        entry
+            .getHeaders()
+            .forEach((name, values) -> {
+                for (String value : values) {
+                    response.addHeader(name, HttpHeaders.LINK.equals(name) ? value.replace(LINK_START, "<" + origin + "/") : value);
+                }
+            });
+        response.setContentLength(entry.getBody().length);
+        response.getOutputStream().write(entry.getBody());
+    }
+
+    /**
+     * The scheme, the host and the context path the links of the resources are built from.
+     */
+    private static String origin(HttpServletRequest request) {
+        return ServletUriComponentsBuilder.fromContextPath(request).toUriString();
+    }
+
+    private static boolean isEmpty(String value) {
+        return value == null || value.isEmpty();
+    }
+}
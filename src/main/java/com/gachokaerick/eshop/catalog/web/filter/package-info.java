@@ -0,0 +1,4 @@
+/**
+ * Servlet filters.
+ */
+package com.gachokaerick.eshop.catalog.web.filter;
@@ -2,6 +2,7 @@ package com.gachokaerick.eshop.catalog.web.rest;
 
 import com.gachokaerick.eshop.catalog.repository.CatalogBrandRepository;
 import com.gachokaerick.eshop.catalog.service.CatalogBrandService;
+import com.gachokaerick.eshop.catalog.service.CollectionVersionService;
 import com.gachokaerick.eshop.catalog.service.dto.CatalogBrandDTO;
 import com.gachokaerick.eshop.catalog.web.rest.errors.BadRequestAlertException;
 import java.net.URI;
@@ -17,8 +18,10 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 import tech.jhipster.web.util.HeaderUtil;
 import tech.jhipster.web.util.PaginationUtil;
@@ -42,9 +45,16 @@ public class CatalogBrandResource {
 
     private final CatalogBrandRepository catalogBrandRepository;
 
-    public CatalogBrandResource(CatalogBrandService catalogBrandService, CatalogBrandRepository catalogBrandRepository) {
+    private final CollectionVersionService collectionVersionService;
+
+    public CatalogBrandResource(
+        CatalogBrandService catalogBrandService,
+        CatalogBrandRepository catalogBrandRepository,
+        CollectionVersionService collectionVersionService
+    ) {
         this.catalogBrandService = catalogBrandService;
         this.catalogBrandRepository = catalogBrandRepository;
+        this.collectionVersionService = collectionVersionService;
     }
 
     /**
@@ -142,11 +152,16 @@ public class CatalogBrandResource {
      * {@code GET  /catalog-brands} : get all the catalogBrands.
      *
      * @param pageable the pagination information.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of catalogBrands in body.
+     * @param request  the request, checked against the version of the catalogBrands.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of catalogBrands in body, or with status
+     * {@code 304 (Not Modified)} if no catalogBrand changed since the {@code If-None-Match} ETag.
      */
     @GetMapping("/catalog-brands")
-    public ResponseEntity<List<CatalogBrandDTO>> getAllCatalogBrands(Pageable pageable) {
+    public ResponseEntity<List<CatalogBrandDTO>> getAllCatalogBrands(Pageable pageable, WebRequest request) {
         log.debug("REST request to get a page of CatalogBrands");
+        if (notModified(request)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+        }
         Page<CatalogBrandDTO> page = catalogBrandService.findAll(pageable);
         HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), page);
         return ResponseEntity.ok().headers(headers).body(page.getContent());
@@ -155,12 +170,17 @@ public class CatalogBrandResource {
     /**
      * {@code GET  /catalog-brands/:id} : get the "id" catalogBrand.
      *
-     * @param id the id of the catalogBrandDTO to retrieve.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the catalogBrandDTO, or with status {@code 404 (Not Found)}.
+     * @param id      the id of the catalogBrandDTO to retrieve.
+     * @param request the request, checked against the version of the catalogBrands.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the catalogBrandDTO, or with status {@code 404 (Not Found)},
+     * or with status {@code 304 (Not Modified)} if no catalogBrand changed since the {@code If-None-Match} ETag.
      */
     @GetMapping("/catalog-brands/{id}")
-    public ResponseEntity<CatalogBrandDTO> getCatalogBrand(@PathVariable Long id) {
+    public ResponseEntity<CatalogBrandDTO> getCatalogBrand(@PathVariable Long id, WebRequest request) {
         log.debug("REST request to get CatalogBrand : {}", id);
+        if (notModified(request)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+        }
         Optional<CatalogBrandDTO> catalogBrandDTO = catalogBrandService.findOne(id);
         return ResponseUtil.wrapOrNotFound(catalogBrandDTO);
     }
@@ -180,4 +200,12 @@ public class CatalogBrandResource {
             .headers(HeaderUtil.createEntityDeletionAlert(applicationName, true, ENTITY_NAME, id.toString()))
             .build();
     }
+
+    /**
+     * Check the {@code If-None-Match} header of a request against the version of the catalogBrands and set the {@code ETag}
+     * of the response to it, without reading the database.
+     */
+    private boolean notModified(WebRequest request) {
+        return request.checkNotModified("\"" + collectionVersionService.version(CollectionVersionService.CatalogCollection.BRANDS) + "\"");
+    }
 }
@@ -1,28 +1,58 @@
 package com.gachokaerick.eshop.catalog.web.rest;
 
-import static com.gachokaerick.eshop.catalog.config.Constants.RESTOCK_TOPIC;
-
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import com.gachokaerick.eshop.catalog.config.ApplicationProperties;
+import com.gachokaerick.eshop.catalog.exception.DomainException;
 import com.gachokaerick.eshop.catalog.repository.CatalogItemRepository;
+import com.gachokaerick.eshop.catalog.security.AuthoritiesConstants;
+import com.gachokaerick.eshop.catalog.service.CatalogChangeEventService;
+import com.gachokaerick.eshop.catalog.service.CatalogItemQueryService;
 import com.gachokaerick.eshop.catalog.service.CatalogItemService;
+import com.gachokaerick.eshop.catalog.service.CollectionVersionService;
+import com.gachokaerick.eshop.catalog.service.IdempotencyService;
+import com.gachokaerick.eshop.catalog.service.criteria.CatalogItemCriteria;
+import com.gachokaerick.eshop.catalog.service.dto.CatalogItemCursor;
 import com.gachokaerick.eshop.catalog.service.dto.CatalogItemDTO;
+import com.gachokaerick.eshop.catalog.service.dto.CatalogItemFacetsDTO;
+import com.gachokaerick.eshop.catalog.service.dto.CatalogItemFields;
+import com.gachokaerick.eshop.catalog.service.dto.CatalogItemSuggestionDTO;
+import com.gachokaerick.eshop.catalog.service.dto.StockLineDTO;
+import com.gachokaerick.eshop.catalog.service.dto.StockMovementDTO;
 import com.gachokaerick.eshop.catalog.web.rest.errors.BadRequestAlertException;
+import com.gachokaerick.eshop.catalog.web.rest.errors.PreconditionFailedAlertException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.time.Instant;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.MappingJacksonValue;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 import tech.jhipster.web.util.HeaderUtil;
 import tech.jhipster.web.util.PaginationUtil;
@@ -39,21 +69,50 @@ public class CatalogItemResource {
 
     private static final String ENTITY_NAME = "catalogCatalogItem";
 
+    private static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+
+    private static final int MAX_CURSOR_PAGE_SIZE = 2000;
+
+    private static final int MAX_BATCH_IDS = 1000;
+
+    private static final int MAX_PRICE_BUCKETS = 100;
+
+    private static final String NDJSON = "application/x-ndjson";
+
+    private static final String NEXT_MODIFIED_SINCE = "X-Next-Modified-Since";
+
     @Value("${jhipster.clientApp.name}")
     private String applicationName;
 
     private final CatalogItemService catalogItemService;
+    private final CatalogItemQueryService catalogItemQueryService;
     private final CatalogItemRepository catalogItemRepository;
-    private final CatalogKafkaResource catalogKafkaResource;
+    private final IdempotencyService idempotencyService;
+    private final CollectionVersionService collectionVersionService;
+    private final CatalogChangeEventService catalogChangeEventService;
+    private final ObjectMapper objectMapper;
+    private final ApplicationProperties.Search searchProperties;
+    private final ApplicationProperties.Export exportProperties;
 
     public CatalogItemResource(
         CatalogItemService catalogItemService,
+        CatalogItemQueryService catalogItemQueryService,
         CatalogItemRepository catalogItemRepository,
-        CatalogKafkaResource catalogKafkaResource
+        IdempotencyService idempotencyService,
+        CollectionVersionService collectionVersionService,
+        CatalogChangeEventService catalogChangeEventService,
+        ObjectMapper objectMapper,
+        ApplicationProperties applicationProperties
     ) {
         this.catalogItemService = catalogItemService;
+        this.catalogItemQueryService = catalogItemQueryService;
         this.catalogItemRepository = catalogItemRepository;
-        this.catalogKafkaResource = catalogKafkaResource;
+        this.idempotencyService = idempotencyService;
+        this.collectionVersionService = collectionVersionService;
+        this.catalogChangeEventService = catalogChangeEventService;
+        this.objectMapper = objectMapper;
+        this.searchProperties = applicationProperties.getSearch();
+        this.exportProperties = applicationProperties.getExport();
     }
 
     /**
@@ -80,15 +139,19 @@ public class CatalogItemResource {
      * {@code PUT  /catalog-items/:id} : Updates an existing catalogItem.
      *
      * @param id             the id of the catalogItemDTO to save.
+     * @param ifMatch        the ETag of the version the update is based on, if any.
      * @param catalogItemDTO the catalogItemDTO to update.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated catalogItemDTO,
      * or with status {@code 400 (Bad Request)} if the catalogItemDTO is not valid,
+     * or with status {@code 409 (Conflict)} if the version of the catalogItemDTO is not the current one,
+     * or with status {@code 412 (Precondition Failed)} if the {@code If-Match} header does not match the current version,
      * or with status {@code 500 (Internal Server Error)} if the catalogItemDTO couldn't be updated.
      * @throws URISyntaxException if the Location URI syntax is incorrect.
      */
     @PutMapping("/catalog-items/{id}")
     public ResponseEntity<CatalogItemDTO> updateCatalogItem(
         @PathVariable(value = "id", required = false) final Long id,
+        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
         @Valid @RequestBody CatalogItemDTO catalogItemDTO
     ) throws URISyntaxException {
         log.debug("REST request to update CatalogItem : {}, {}", id, catalogItemDTO);
@@ -104,13 +167,17 @@ public class CatalogItemResource {
             throw new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound");
         }
 
-        CatalogItemDTO result = catalogItemService.update(catalogItemDTO);
-
-        checkThreshold(Optional.of(result));
+        applyIfMatch(ifMatch, catalogItemDTO);
+        CatalogItemDTO result;
+        try {
+            result = catalogItemService.update(catalogItemDTO);
+        } catch (OptimisticLockingFailureException e) {
+            throw preconditionFailedOr(ifMatch, e);
+        }
 
         return ResponseEntity
             .ok()
-            .headers(HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, catalogItemDTO.getId().toString()))
+            .headers(eTag(HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, catalogItemDTO.getId().toString()), result))
             .body(result);
     }
 
@@ -118,16 +185,20 @@ public class CatalogItemResource {
      * {@code PATCH  /catalog-items/:id} : Partial updates given fields of an existing catalogItem, field will ignore if it is null
      *
      * @param id             the id of the catalogItemDTO to save.
+     * @param ifMatch        the ETag of the version the update is based on, if any.
      * @param catalogItemDTO the catalogItemDTO to update.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated catalogItemDTO,
      * or with status {@code 400 (Bad Request)} if the catalogItemDTO is not valid,
      * or with status {@code 404 (Not Found)} if the catalogItemDTO is not found,
+     * or with status {@code 409 (Conflict)} if the version of the catalogItemDTO is not the current one,
+     * or with status {@code 412 (Precondition Failed)} if the {@code If-Match} header does not match the current version,
      * or with status {@code 500 (Internal Server Error)} if the catalogItemDTO couldn't be updated.
      * @throws URISyntaxException if the Location URI syntax is incorrect.
      */
     @PatchMapping(value = "/catalog-items/{id}", consumes = { "application/json", "application/merge-patch+json" })
     public ResponseEntity<CatalogItemDTO> partialUpdateCatalogItem(
         @PathVariable(value = "id", required = false) final Long id,
+        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
         @NotNull @RequestBody CatalogItemDTO catalogItemDTO
     ) throws URISyntaxException {
         log.debug("REST request to partial update CatalogItem partially : {}, {}", id, catalogItemDTO);
@@ -143,13 +214,17 @@ public class CatalogItemResource {
             throw new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound");
         }
 
-        Optional<CatalogItemDTO> result = catalogItemService.partialUpdate(catalogItemDTO);
-
-        checkThreshold(result);
+        applyIfMatch(ifMatch, catalogItemDTO);
+        Optional<CatalogItemDTO> result;
+        try {
+            result = catalogItemService.partialUpdate(catalogItemDTO);
+        } catch (OptimisticLockingFailureException e) {
+            throw preconditionFailedOr(ifMatch, e);
+        }
 
         return ResponseUtil.wrapOrNotFound(
             result,
-            HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, catalogItemDTO.getId().toString())
+            eTag(HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, catalogItemDTO.getId().toString()), result.orElse(null))
         );
     }
 
@@ -157,27 +232,330 @@ public class CatalogItemResource {
      * {@code GET  /catalog-items} : get all the catalogItems.
      *
      * @param pageable the pagination information.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of catalogItems in body.
+     * @param criteria the criteria which the requested entities should match.
+     * @param fields   the comma separated properties of the catalogItems to read and return, all of them if absent.
+     * @param request  the request, checked against the version of the catalogItems.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of catalogItems in body, or with status
+     * {@code 400 (Bad Request)} if a field is unknown, or with status {@code 304 (Not Modified)} if no catalogItem
+     * changed since the {@code If-None-Match} ETag.
      */
     @GetMapping("/catalog-items")
-    public ResponseEntity<List<CatalogItemDTO>> getAllCatalogItems(Pageable pageable) {
-        log.debug("REST request to get a page of CatalogItems");
-        Page<CatalogItemDTO> page = catalogItemService.findAll(pageable);
+    public ResponseEntity<MappingJacksonValue> getAllCatalogItems(
+        CatalogItemCriteria criteria,
+        Pageable pageable,
+        @RequestParam(value = "fields", required = false) String fields,
+        WebRequest request
+    ) {
+        log.debug("REST request to get CatalogItems by criteria: {}", criteria);
+        CatalogItemFields catalogItemFields = parseFields(fields);
+        if (notModified(request)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+        }
+        Page<CatalogItemDTO> page = catalogItemQueryService.findByCriteria(criteria, pageable, catalogItemFields);
         HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), page);
-        return ResponseEntity.ok().headers(headers).body(page.getContent());
+        return ResponseEntity.ok().headers(headers).body(withFields(page.getContent(), catalogItemFields));
+    }
+
+    /**
+     * {@code GET  /catalog-items/count} : count all the catalogItems.
+     *
+     * @param criteria the criteria which the requested entities should match.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the count in body.
+     */
+    @GetMapping("/catalog-items/count")
+    public ResponseEntity<Long> countCatalogItems(CatalogItemCriteria criteria) {
+        log.debug("REST request to count CatalogItems by criteria: {}", criteria);
+        return ResponseEntity.ok().body(catalogItemQueryService.countByCriteria(criteria));
+    }
+
+    /**
+     * {@code GET  /catalog-items/_facets} : count the catalogItems per brand, type and price bucket.
+     *
+     * @param criteria     the criteria which the counted entities should match.
+     * @param priceBuckets the bounds between the price buckets, the configured ones if missing.
+     * @param request      the request, checked against the version of the catalogItems.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the counts in body, or with status
+     * {@code 400 (Bad Request)} if there are too many price buckets, or with status {@code 304 (Not Modified)} if no
+     * catalogItem changed since the {@code If-None-Match} ETag.
+     */
+    @GetMapping("/catalog-items/_facets")
+    public ResponseEntity<CatalogItemFacetsDTO> getCatalogItemFacets(
+        CatalogItemCriteria criteria,
+        @RequestParam(value = "priceBuckets", required = false) List<BigDecimal> priceBuckets,
+        WebRequest request
+    ) {
+        log.debug("REST request to get CatalogItem facets by criteria: {}", criteria);
+        if (priceBuckets != null && priceBuckets.size() > MAX_PRICE_BUCKETS) {
+            throw new BadRequestAlertException(
+                "At most " + MAX_PRICE_BUCKETS + " price buckets are allowed",
+                ENTITY_NAME,
+                "priceBucketsInvalid"
+            );
+        }
+        if (notModified(request)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+        }
+        return ResponseEntity.ok().body(catalogItemQueryService.facetsByCriteria(criteria, priceBuckets));
+    }
+
+    /**
+     * {@code GET  /catalog-items/_search?q=} : search the catalogItems by name and description.
+     * <p>
+     * Every word must match a word of the name or description of a catalogItem, as a whole, as a prefix, or with a typo.
+     *
+     * @param query the words to look for.
+     * @param size  the maximum number of catalogItems.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of catalogItems in body, best match
+     * first, or with status {@code 400 (Bad Request)} if the size is not valid.
+     */
+    @GetMapping("/catalog-items/_search")
+    public ResponseEntity<List<CatalogItemDTO>> searchCatalogItems(
+        @RequestParam("q") String query,
+        @RequestParam(value = "size", defaultValue = "20") int size
+    ) {
+        log.debug("REST request to search CatalogItems : {}", query);
+        if (size <= 0 || size > searchProperties.getMaxResults()) {
+            throw new BadRequestAlertException(
+                "Size must be between 1 and " + searchProperties.getMaxResults(),
+                ENTITY_NAME,
+                "sizeInvalid"
+            );
+        }
+        return ResponseEntity.ok().body(catalogItemService.search(query, size));
+    }
+
+    /**
+     * {@code GET  /catalog-items/_suggest?prefix=} : suggest the names of the catalogItems starting with a prefix.
+     * <p>
+     * Answered from memory, as it is called on every keystroke. The most available catalogItems come first.
+     *
+     * @param prefix the beginning of the name, compared lower-cased and without accents.
+     * @param size   the maximum number of names.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of names in body, or with status
+     * {@code 400 (Bad Request)} if the size is not valid.
+     */
+    @GetMapping("/catalog-items/_suggest")
+    public ResponseEntity<List<CatalogItemSuggestionDTO>> suggestCatalogItems(
+        @RequestParam("prefix") String prefix,
+        @RequestParam(value = "size", defaultValue = "10") int size
+    ) {
+        log.debug("REST request to suggest CatalogItems : {}", prefix);
+        if (size <= 0 || size > searchProperties.getMaxResults()) {
+            throw new BadRequestAlertException(
+                "Size must be between 1 and " + searchProperties.getMaxResults(),
+                ENTITY_NAME,
+                "sizeInvalid"
+            );
+        }
+        return ResponseEntity.ok().body(catalogItemService.suggest(prefix, size));
+    }
+
+    /**
+     * {@code GET  /catalog-items/_export} : export the catalogItems as newline-delimited JSON.
+     * <p>
+     * Each catalogItem is written to the response as soon as it is read from the database, ordered by id, so the export
+     * does not hold the catalog in memory whatever its size. With {@code modifiedSince}, the catalogItems deleted since
+     * then follow, ordered by id, each as a {@code {"id":...,"deleted":true}} tombstone.
+     * <p>
+     * Feeds keep the {@code X-Next-Modified-Since} header of a response as the {@code modifiedSince} of the next export
+     * to only pull the catalogItems changed in between. It is some time before the start of the export, as a row is
+     * dated when it is written but only exported once its transaction commits: the changes made shortly before an export
+     * are exported again by the next one, so feeds apply the lines as upserts.
+     *
+     * @param modifiedSince the earliest last modified date of the catalogItems, inclusive, or all the catalogItems if
+     *                      absent.
+     * @param response      the response the catalogItems are written to.
+     * @throws IOException if the response cannot be written.
+     */
+    @GetMapping(value = "/catalog-items/_export", produces = NDJSON)
+    public void exportCatalogItems(
+        @RequestParam(value = "modifiedSince", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant modifiedSince,
+        HttpServletResponse response
+    ) throws IOException {
+        log.debug("REST request to export CatalogItems modified since : {}", modifiedSince);
+        Instant start = Instant.now();
+        response.setContentType(NDJSON);
+        response.setDateHeader(HttpHeaders.DATE, start.toEpochMilli());
+        response.setHeader(NEXT_MODIFIED_SINCE, start.minus(exportProperties.getModifiedSinceOverlap()).toString());
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+            long count = catalogItemService.export(
+                modifiedSince,
+                catalogItemDTO -> {
+                    try {
+                        generator.writeObject(catalogItemDTO);
+                        generator.writeRaw('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                },
+                id -> {
+                    try {
+                        generator.writeStartObject();
+                        generator.writeNumberField("id", id);
+                        generator.writeBooleanField("deleted", true);
+                        generator.writeEndObject();
+                        generator.writeRaw('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            );
+            log.debug("Exported {} CatalogItems", count);
+        }
+    }
+
+    /**
+     * {@code POST  /catalog-items/_snapshot} : write every catalogItem to the change-event topic.
+     * <p>
+     * Bootstraps a topic that does not hold the whole catalog yet, so that consumers rebuild their copy from the topic
+     * instead of this API, see {@link CatalogChangeEventService#snapshot()}.
+     *
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the number of catalogItems written in body.
+     */
+    @PostMapping("/catalog-items/_snapshot")
+    @PreAuthorize("hasAuthority(\"" + AuthoritiesConstants.ADMIN + "\")")
+    public ResponseEntity<Long> snapshotCatalogItems() {
+        log.debug("REST request to write a snapshot of the CatalogItems");
+        return ResponseEntity.ok().body(catalogChangeEventService.snapshot());
+    }
+
+    /**
+     * {@code GET  /catalog-items?after=} : get the catalogItems following a cursor.
+     * <p>
+     * Unlike the page mode, the catalogItems are not counted and the next page seeks past the last catalogItem on an
+     * index, so deep pages are as fast as the first one. The catalogItems cannot be filtered: a seek past the cursor on a
+     * filtered set would no longer stay on the index.
+     *
+     * @param criteria must be empty: filters are rejected rather than ignored.
+     * @param ids   must be absent: ids are rejected rather than ignored.
+     * @param after the cursor of the {@code next} link of the previous page, empty for the first page.
+     * @param size  the maximum number of catalogItems.
+     * @param sort  {@code id} (the default) or {@code name}, ascending; only read for the first page.
+     * @param fields the comma separated properties of the catalogItems to return, all of them if absent.
+     * @param request the request, checked against the version of the catalogItems.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)}, the list of catalogItems in body and a {@code Link}
+     * header to the next page if there is one, or with status {@code 400 (Bad Request)} if a parameter is not valid or
+     * the request has filters or ids, or with status {@code 304 (Not Modified)} if no catalogItem changed since the
+     * {@code If-None-Match} ETag.
+     */
+    @GetMapping(value = "/catalog-items", params = "after")
+    public ResponseEntity<MappingJacksonValue> getAllCatalogItemsAfter(
+        CatalogItemCriteria criteria,
+        @RequestParam(value = "ids", required = false) String ids,
+        @RequestParam(value = "after") String after,
+        @RequestParam(value = "size", defaultValue = "20") int size,
+        @RequestParam(value = "sort", required = false) String sort,
+        @RequestParam(value = "fields", required = false) String fields,
+        WebRequest request
+    ) {
+        log.debug("REST request to get CatalogItems after : {}", after);
+        if (ids != null || !new CatalogItemCriteria().equals(criteria)) {
+            throw new BadRequestAlertException("A cursor cannot be combined with ids or filters", ENTITY_NAME, "cursorFiltered");
+        }
+        if (size <= 0 || size > MAX_CURSOR_PAGE_SIZE) {
+            throw new BadRequestAlertException("Size must be between 1 and " + MAX_CURSOR_PAGE_SIZE, ENTITY_NAME, "sizeInvalid");
+        }
+        CatalogItemCursor cursor;
+        try {
+            cursor = CatalogItemCursor.decode(after, sort);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestAlertException(e.getMessage(), ENTITY_NAME, "cursorInvalid");
+        }
+        CatalogItemFields catalogItemFields = parseFields(fields);
+
+        if (notModified(request)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+        }
+
+        Slice<CatalogItemDTO> slice = catalogItemService.findAll(cursor, size);
+        HttpHeaders headers = new HttpHeaders();
+        if (slice.hasNext()) {
+            List<CatalogItemDTO> content = slice.getContent();
+            String next = ServletUriComponentsBuilder
+                .fromCurrentRequest()
+                .replaceQueryParam("after", CatalogItemCursor.after(cursor.getSortKey(), content.get(content.size() - 1)).encode())
+                .replaceQueryParam("size", size)
+                .replaceQueryParam("sort")
+                .toUriString();
+            headers.add(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+        }
+        return ResponseEntity.ok().headers(headers).body(withFields(slice.getContent(), catalogItemFields));
+    }
+
+    /**
+     * {@code GET  /catalog-items?ids=} : get several catalogItems by id in one request.
+     * <p>
+     * A request that also has a cursor is mapped to {@link #getAllCatalogItemsAfter} instead.
+     *
+     * @param ids     the ids of the catalogItems, comma separated.
+     * @param fields  the comma separated properties of the catalogItems to return, all of them if absent.
+     * @param request the request, checked against the version of the catalogItems.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of catalogItems found in body, in the
+     * order of the ids, or with status {@code 400 (Bad Request)} if there are no ids or too many or a field is unknown,
+     * or with status {@code 304 (Not Modified)} if no catalogItem changed since the {@code If-None-Match} ETag.
+     */
+    @GetMapping(value = "/catalog-items", params = { "ids", "!after" })
+    public ResponseEntity<MappingJacksonValue> getCatalogItemsByIds(
+        @RequestParam("ids") List<Long> ids,
+        @RequestParam(value = "fields", required = false) String fields,
+        WebRequest request
+    ) {
+        log.debug("REST request to get CatalogItems : {}", ids);
+        CatalogItemFields catalogItemFields = parseFields(fields);
+        if (notModified(request)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+        }
+        return ResponseEntity.ok().body(withFields(findAllByIds(ids), catalogItemFields));
+    }
+
+    /**
+     * {@code POST  /catalog-items/_batch} : get several catalogItems by id, for sets of ids too large for a query string.
+     *
+     * @param ids the ids of the catalogItems.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of catalogItems found in body, in the
+     * order of the ids, or with status {@code 400 (Bad Request)} if there are no ids or too many.
+     */
+    @PostMapping("/catalog-items/_batch")
+    public ResponseEntity<List<CatalogItemDTO>> getCatalogItemsByIdsInBody(@NotNull @RequestBody List<Long> ids) {
+        log.debug("REST request to get CatalogItems : {}", ids);
+        return ResponseEntity.ok().body(findAllByIds(ids));
     }
 
     /**
      * {@code GET  /catalog-items/:id} : get the "id" catalogItem.
      *
      * @param id the id of the catalogItemDTO to retrieve.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the catalogItemDTO, or with status {@code 404 (Not Found)}.
+     * @param fields the comma separated properties of the catalogItem to return, all of them if absent.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the catalogItemDTO and its version as ETag, or with status {@code 404 (Not Found)}.
      */
     @GetMapping("/catalog-items/{id}")
-    public ResponseEntity<CatalogItemDTO> getCatalogItem(@PathVariable Long id) {
+    public ResponseEntity<MappingJacksonValue> getCatalogItem(
+        @PathVariable Long id,
+        @RequestParam(value = "fields", required = false) String fields
+    ) {
         log.debug("REST request to get CatalogItem : {}", id);
+        CatalogItemFields catalogItemFields = parseFields(fields);
         Optional<CatalogItemDTO> catalogItemDTO = catalogItemService.findOne(id);
-        return ResponseUtil.wrapOrNotFound(catalogItemDTO);
+        return ResponseUtil.wrapOrNotFound(
+            catalogItemDTO.map(found -> withFields(found, catalogItemFields)),
+            eTag(new HttpHeaders(), catalogItemDTO.orElse(null))
+        );
+    }
+
+    /**
+     * {@code GET  /catalog-items/:id/stock-movements} : get the stock movements of the "id" catalogItem, most recent first.
+     * Stock movements are only recorded while the stock journal is enabled.
+     *
+     * @param id       the id of the catalogItem.
+     * @param pageable the pagination information.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of stock movements in body.
+     */
+    @GetMapping("/catalog-items/{id}/stock-movements")
+    public ResponseEntity<List<StockMovementDTO>> getCatalogItemStockMovements(@PathVariable Long id, Pageable pageable) {
+        log.debug("REST request to get the stock movements of CatalogItem : {}", id);
+        Page<StockMovementDTO> page = catalogItemService.findStockMovements(id, pageable);
+        HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), page);
+        return ResponseEntity.ok().headers(headers).body(page.getContent());
     }
 
     /**
@@ -199,6 +577,7 @@ public class CatalogItemResource {
     @PatchMapping(value = "/catalog-items/add/{quantity}", consumes = { "application/json", "application/merge-patch+json" })
     public ResponseEntity<CatalogItemDTO> partialUpdateCatalogItemAddStock(
         @PathVariable(value = "quantity") final Integer quantity,
+        @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
         @NotNull @RequestBody CatalogItemDTO catalogItemDTO
     ) throws URISyntaxException {
         log.debug("REST request to add stock to CatalogItem partially : {}", catalogItemDTO);
@@ -211,14 +590,20 @@ public class CatalogItemResource {
             throw new BadRequestAlertException("Quantity to add to stock must be greater than zero", ENTITY_NAME, "quantityInvalid");
         }
 
-        if (!catalogItemRepository.existsById(catalogItemDTO.getId())) {
-            throw new BadRequestAlertException("Entity not found", ENTITY_NAME, "idNotFound");
-        }
-
-        Optional<CatalogItemDTO> result = catalogItemService.partialUpdateAddStock(catalogItemDTO, quantity);
+        CatalogItemDTO result = idempotent(
+            idempotencyKey,
+            "add/" + quantity + "/" + catalogItemDTO.getId(),
+            () -> {
+                Optional<CatalogItemDTO> updated = catalogItemService.partialUpdateAddStock(catalogItemDTO, quantity, idempotencyKey);
+                if (updated.isEmpty()) {
+                    throw new BadRequestAlertException("Entity not found", ENTITY_NAME, "idNotFound");
+                }
+                return updated.get();
+            }
+        );
 
         return ResponseUtil.wrapOrNotFound(
-            result,
+            Optional.of(result),
             HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, catalogItemDTO.getId().toString())
         );
     }
@@ -226,6 +611,7 @@ public class CatalogItemResource {
     @PatchMapping(value = "/catalog-items/remove/{quantity}", consumes = { "application/json", "application/merge-patch+json" })
     public ResponseEntity<CatalogItemDTO> partialUpdateCatalogItemRemoveStock(
         @PathVariable(value = "quantity") final Integer quantity,
+        @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
         @NotNull @RequestBody CatalogItemDTO catalogItemDTO
     ) throws URISyntaxException {
         log.debug("REST request to remove stock to CatalogItem partially : {}", catalogItemDTO);
@@ -238,33 +624,163 @@ public class CatalogItemResource {
             throw new BadRequestAlertException("Quantity to remove to stock must be greater than zero", ENTITY_NAME, "quantityInvalid");
         }
 
-        if (!catalogItemRepository.existsById(catalogItemDTO.getId())) {
-            throw new BadRequestAlertException("Entity not found", ENTITY_NAME, "idNotFound");
-        }
-
-        Optional<CatalogItemDTO> result = catalogItemService.partialUpdateRemoveStock(catalogItemDTO, quantity);
-
-        checkThreshold(result);
+        CatalogItemDTO result = idempotent(
+            idempotencyKey,
+            "remove/" + quantity + "/" + catalogItemDTO.getId(),
+            () -> {
+                Optional<CatalogItemDTO> updated = catalogItemService.partialUpdateRemoveStock(catalogItemDTO, quantity, idempotencyKey);
+                if (updated.isEmpty()) {
+                    throw new BadRequestAlertException("Entity not found", ENTITY_NAME, "idNotFound");
+                }
+                return updated.get();
+            }
+        );
 
         return ResponseUtil.wrapOrNotFound(
-            result,
+            Optional.of(result),
             HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, catalogItemDTO.getId().toString())
         );
     }
 
-    private void checkThreshold(Optional<CatalogItemDTO> catalogItemDTOOptional) {
-        if (catalogItemDTOOptional.isPresent()) {
-            // send email to admin if stock reaches restock threshold
-            CatalogItemDTO catalogItemDTO = catalogItemDTOOptional.get();
+    /**
+     * {@code PATCH  /catalog-items/remove} : Remove stock from several catalogItems in one transaction.
+     *
+     * @param allOrNothing if {@code true} (the default), nothing is removed unless every line can be removed in full,
+     *                     otherwise whatever is available is removed.
+     * @param idempotencyKey if set, a retry with the same key gets the first response back instead of removing stock again.
+     * @param lines        the items and quantities to remove.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the lines with the quantity actually removed,
+     * or with status {@code 400 (Bad Request)} if a line is not valid or, when allOrNothing is set, cannot be removed in full,
+     * or with status {@code 409 (Conflict)} if a request with the same key is still being processed,
+     * or with status {@code 422 (Unprocessable Entity)} if the key was already used for a different request.
+     */
+    @PatchMapping(value = "/catalog-items/remove", consumes = { "application/json", "application/merge-patch+json" })
+    public ResponseEntity<List<StockLineDTO>> partialUpdateCatalogItemsRemoveStock(
+        @RequestParam(value = "allOrNothing", defaultValue = "true") boolean allOrNothing,
+        @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+        @NotNull @RequestBody List<StockLineDTO> lines
+    ) {
+        log.debug("REST request to remove stock from CatalogItems : {}", lines);
 
-            if (Objects.equals(catalogItemDTO.getAvailableStock(), catalogItemDTO.getRestockThreshold())) {
-                String message = "Item: " + catalogItemDTO.getName() + " has reached restock threshold";
+        if (lines.isEmpty()) {
+            throw new BadRequestAlertException("At least one line is required", ENTITY_NAME, "linesEmpty");
+        }
+        for (StockLineDTO line : lines) {
+            if (line.getItemId() == null) {
+                throw new BadRequestAlertException("Invalid id", ENTITY_NAME, "idnull");
+            }
+            if (line.getQuantity() == null || line.getQuantity() <= 0) {
+                throw new BadRequestAlertException("Quantity to remove to stock must be greater than zero", ENTITY_NAME, "quantityInvalid");
+            }
+        }
+
+        String fingerprint =
+            "remove/" +
+            allOrNothing +
+            lines.stream().map(line -> "/" + line.getItemId() + ":" + line.getQuantity()).collect(Collectors.joining());
+        List<StockLineDTO> result = idempotent(
+            idempotencyKey,
+            fingerprint,
+            () -> {
                 try {
-                    catalogKafkaResource.publish(RESTOCK_TOPIC, message, null);
-                } catch (ExecutionException | InterruptedException e) {
-                    e.printStackTrace();
+                    catalogItemService.removeStock(lines, allOrNothing, idempotencyKey);
+                } catch (DomainException e) {
+                    throw new BadRequestAlertException(e.getMessage(), ENTITY_NAME, "insufficientStock");
                 }
+                return lines;
             }
+        );
+
+        return ResponseEntity.ok().body(result);
+    }
+
+    private List<CatalogItemDTO> findAllByIds(List<Long> ids) {
+        if (ids.isEmpty() || ids.size() > MAX_BATCH_IDS) {
+            throw new BadRequestAlertException("Between 1 and " + MAX_BATCH_IDS + " ids are required", ENTITY_NAME, "idsInvalid");
+        }
+        if (ids.contains(null)) {
+            throw new BadRequestAlertException("Invalid id", ENTITY_NAME, "idnull");
+        }
+        return catalogItemService.findAll(ids);
+    }
+
+    /**
+     * Parse the requested fields, so that an unknown field is a bad request.
+     */
+    private static CatalogItemFields parseFields(String fields) {
+        try {
+            return CatalogItemFields.parse(fields);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestAlertException(e.getMessage(), ENTITY_NAME, "fieldsInvalid");
+        }
+    }
+
+    /**
+     * Wrap a catalogItem or a list of catalogItems, so that only the requested fields are written.
+     */
+    private static MappingJacksonValue withFields(Object body, CatalogItemFields fields) {
+        SimpleBeanPropertyFilter filter = fields.isAll()
+            ? SimpleBeanPropertyFilter.serializeAll()
+            : SimpleBeanPropertyFilter.filterOutAllExcept(fields.getNames());
+        MappingJacksonValue value = new MappingJacksonValue(body);
+        value.setFilters(new SimpleFilterProvider().addFilter(CatalogItemFields.FILTER, filter));
+        return value;
+    }
+
+    /**
+     * Check the {@code If-None-Match} header of a request against the version of the catalogItems, which changes with
+     * every catalogItem, and set the {@code ETag} of the response to it. Nothing is read from the database.
+     *
+     * @return {@code true} if the client already has the current version and the response is a {@code 304 (Not Modified)}.
+     */
+    private boolean notModified(WebRequest request) {
+        return request.checkNotModified("\"" + collectionVersionService.version(CollectionVersionService.CatalogCollection.ITEMS) + "\"");
+    }
+
+    /**
+     * Run a stock change at most once per {@code Idempotency-Key}, or every time if the client did not send one.
+     */
+    private <T> T idempotent(String idempotencyKey, String fingerprint, Supplier<T> request) {
+        if (idempotencyKey == null) {
+            return request.get();
+        }
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > 255) {
+            throw new BadRequestAlertException("Idempotency-Key must have 1 to 255 characters", ENTITY_NAME, "idempotencyKeyInvalid");
+        }
+        return idempotencyService.execute(idempotencyKey, fingerprint, request);
+    }
+
+    /**
+     * Take the version an update is based on from the {@code If-Match} header, which wins over the version in the body.
+     * {@code *} only requires the entity to exist.
+     */
+    private void applyIfMatch(String ifMatch, CatalogItemDTO catalogItemDTO) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return;
+        }
+        String value = ifMatch.trim();
+        // If-Match uses the strong comparison: a weak or malformed ETag never matches
+        if (value.length() < 3 || !value.startsWith("\"") || !value.endsWith("\"")) {
+            throw new PreconditionFailedAlertException("If-Match does not match the current version", ENTITY_NAME, "versionMismatch");
+        }
+        try {
+            catalogItemDTO.setVersion(Integer.valueOf(value.substring(1, value.length() - 1)));
+        } catch (NumberFormatException e) {
+            throw new PreconditionFailedAlertException("If-Match does not match the current version", ENTITY_NAME, "versionMismatch");
+        }
+    }
+
+    private RuntimeException preconditionFailedOr(String ifMatch, OptimisticLockingFailureException e) {
+        if (ifMatch == null) {
+            return e;
+        }
+        return new PreconditionFailedAlertException("If-Match does not match the current version", ENTITY_NAME, "versionMismatch");
+    }
+
+    private static HttpHeaders eTag(HttpHeaders headers, CatalogItemDTO catalogItemDTO) {
+        if (catalogItemDTO != null && catalogItemDTO.getVersion() != null) {
+            headers.setETag("\"" + catalogItemDTO.getVersion() + "\"");
         }
+        return headers;
     }
 }
@@ -6,17 +6,15 @@ import java.time.Instant;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import org.apache.kafka.clients.consumer.ConsumerRecord;
-import org.apache.kafka.clients.consumer.ConsumerRecords;
-import org.apache.kafka.clients.consumer.KafkaConsumer;
+import java.util.concurrent.RejectedExecutionException;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.clients.producer.RecordMetadata;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @RestController
@@ -26,11 +24,12 @@ public class CatalogKafkaResource {
     private final Logger log = LoggerFactory.getLogger(CatalogKafkaResource.class);
 
     private final KafkaProperties kafkaProperties;
+    private final KafkaSseHub kafkaSseHub;
     private KafkaProducer<String, String> producer;
-    private ExecutorService sseExecutorService = Executors.newCachedThreadPool();
 
-    public CatalogKafkaResource(KafkaProperties kafkaProperties) {
+    public CatalogKafkaResource(KafkaProperties kafkaProperties, KafkaSseHub kafkaSseHub) {
         this.kafkaProperties = kafkaProperties;
+        this.kafkaSseHub = kafkaSseHub;
         this.producer = new KafkaProducer<>(kafkaProperties.getProducerProps());
     }
 
@@ -50,27 +49,11 @@ public class CatalogKafkaResource {
         consumerProps.remove("topic");
 
         SseEmitter emitter = new SseEmitter(0L);
-        sseExecutorService.execute(() -> {
-            KafkaConsumer<String, String> consumer = new KafkaConsumer<>(consumerProps);
-            emitter.onCompletion(consumer::close);
-            consumer.subscribe(topics);
-            boolean exitLoop = false;
-            while (!exitLoop) {
-                try {
-                    ConsumerRecords<String, String> records = consumer.poll(Duration.ofSeconds(5));
-                    for (ConsumerRecord<String, String> record : records) {
-                        emitter.send(record.value());
-                    }
-                    emitter.send(SseEmitter.event().comment(""));
-                } catch (Exception ex) {
-                    log.trace("Complete with error {}", ex.getMessage(), ex);
-                    emitter.completeWithError(ex);
-                    exitLoop = true;
-                }
-            }
-            consumer.close();
-            emitter.complete();
-        });
+        try {
+            kafkaSseHub.subscribe(topics, consumerProps, emitter);
+        } catch (RejectedExecutionException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many Kafka topic sets consumed", e);
+        }
         return emitter;
     }
 
@@ -2,6 +2,7 @@ package com.gachokaerick.eshop.catalog.web.rest;
 
 import com.gachokaerick.eshop.catalog.repository.CatalogTypeRepository;
 import com.gachokaerick.eshop.catalog.service.CatalogTypeService;
+import com.gachokaerick.eshop.catalog.service.CollectionVersionService;
 import com.gachokaerick.eshop.catalog.service.dto.CatalogTypeDTO;
 import com.gachokaerick.eshop.catalog.web.rest.errors.BadRequestAlertException;
 import java.net.URI;
@@ -17,8 +18,10 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 import tech.jhipster.web.util.HeaderUtil;
 import tech.jhipster.web.util.PaginationUtil;
@@ -42,9 +45,16 @@ public class CatalogTypeResource {
 
     private final CatalogTypeRepository catalogTypeRepository;
 
-    public CatalogTypeResource(CatalogTypeService catalogTypeService, CatalogTypeRepository catalogTypeRepository) {
+    private final CollectionVersionService collectionVersionService;
+
+    public CatalogTypeResource(
+        CatalogTypeService catalogTypeService,
+        CatalogTypeRepository catalogTypeRepository,
+        CollectionVersionService collectionVersionService
+    ) {
         this.catalogTypeService = catalogTypeService;
         this.catalogTypeRepository = catalogTypeRepository;
+        this.collectionVersionService = collectionVersionService;
     }
 
     /**
@@ -141,11 +151,16 @@ public class CatalogTypeResource {
      * {@code GET  /catalog-types} : get all the catalogTypes.
      *
      * @param pageable the pagination information.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of catalogTypes in body.
+     * @param request  the request, checked against the version of the catalogTypes.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of catalogTypes in body, or with status
+     * {@code 304 (Not Modified)} if no catalogType changed since the {@code If-None-Match} ETag.
      */
     @GetMapping("/catalog-types")
-    public ResponseEntity<List<CatalogTypeDTO>> getAllCatalogTypes(Pageable pageable) {
+    public ResponseEntity<List<CatalogTypeDTO>> getAllCatalogTypes(Pageable pageable, WebRequest request) {
         log.debug("REST request to get a page of CatalogTypes");
+        if (notModified(request)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+        }
         Page<CatalogTypeDTO> page = catalogTypeService.findAll(pageable);
         HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), page);
         return ResponseEntity.ok().headers(headers).body(page.getContent());
@@ -154,12 +169,17 @@ public class CatalogTypeResource {
     /**
      * {@code GET  /catalog-types/:id} : get the "id" catalogType.
      *
-     * @param id the id of the catalogTypeDTO to retrieve.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the catalogTypeDTO, or with status {@code 404 (Not Found)}.
+     * @param id      the id of the catalogTypeDTO to retrieve.
+     * @param request the request, checked against the version of the catalogTypes.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the catalogTypeDTO, or with status {@code 404 (Not Found)},
+     * or with status {@code 304 (Not Modified)} if no catalogType changed since the {@code If-None-Match} ETag.
      */
     @GetMapping("/catalog-types/{id}")
-    public ResponseEntity<CatalogTypeDTO> getCatalogType(@PathVariable Long id) {
+    public ResponseEntity<CatalogTypeDTO> getCatalogType(@PathVariable Long id, WebRequest request) {
         log.debug("REST request to get CatalogType : {}", id);
+        if (notModified(request)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+        }
         Optional<CatalogTypeDTO> catalogTypeDTO = catalogTypeService.findOne(id);
         return ResponseUtil.wrapOrNotFound(catalogTypeDTO);
     }
@@ -179,4 +199,12 @@ public class CatalogTypeResource {
             .headers(HeaderUtil.createEntityDeletionAlert(applicationName, true, ENTITY_NAME, id.toString()))
             .build();
     }
+
+    /**
+     * Check the {@code If-None-Match} header of a request against the version of the catalogTypes and set the {@code ETag}
+     * of the response to it, without reading the database.
+     */
+    private boolean notModified(WebRequest request) {
+        return request.checkNotModified("\"" + collectionVersionService.version(CollectionVersionService.CatalogCollection.TYPES) + "\"");
+    }
 }
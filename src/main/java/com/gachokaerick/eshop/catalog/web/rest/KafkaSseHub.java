@@ -0,0 +1,339 @@
+package com.gachokaerick.eshop.catalog.web.rest;
+
+import com.gachokaerick.eshop.catalog.config.ApplicationProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.PreDestroy;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.errors.WakeupException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Fans the records of Kafka topics out to the Server-Sent Events streams of {@link CatalogKafkaResource}.
+ * <p>
+ * The subscribers of the same topics, with the same consumer properties, share one consumer. Its records are kept in a
+ * ring buffer of {@code application.kafka-sse.buffer-size} records, from which each subscriber is sent the records it
+ * has not had yet by a bounded pool of sender threads, so a slow client only holds up itself. A subscriber that falls
+ * further behind than the buffer is dropped or skips the records it missed, depending on
+ * {@code application.kafka-sse.slow-subscriber-policy}. The consumer is closed once its last subscriber is gone.
+ * <p>
+ * The number of subscribers is published in the {@code catalog.kafka.sse.subscribers} gauge, and the number of records
+ * the furthest behind subscriber has not had yet in the {@code catalog.kafka.sse.lag} gauge.
+ */
+@Component
+public class KafkaSseHub {
+
+    private static final int MAX_RECORDS_PER_SEND = 256;
+
+    private final Logger log = LoggerFactory.getLogger(KafkaSseHub.class);
+
+    private final ApplicationProperties.KafkaSse properties;
+    private final Map<Key, Channel> channels = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor consumers;
+    private final ExecutorService senders;
+    private volatile boolean running = true;
+
+    private final Counter dropped;
+    private final Counter skipped;
+
+    public KafkaSseHub(ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+        this.properties = applicationProperties.getKafkaSse();
+        // a new topic set is rejected rather than queued once every consumer thread is taken
+        this.consumers =
+            new ThreadPoolExecutor(
+                0,
+                Math.max(properties.getMaxConsumers(), 1),
+                1,
+                TimeUnit.MINUTES,
+                new SynchronousQueue<>(),
+                new CustomizableThreadFactory("kafka-sse-consumer-")
+            );
+        this.senders =
+            Executors.newFixedThreadPool(Math.max(properties.getSenderThreads(), 1), new CustomizableThreadFactory("kafka-sse-sender-"));
+        this.dropped = Counter.builder("catalog.kafka.sse.dropped").register(meterRegistry);
+        this.skipped = Counter.builder("catalog.kafka.sse.skipped").register(meterRegistry);
+        Gauge.builder("catalog.kafka.sse.consumers", channels, Map::size).register(meterRegistry);
+        Gauge.builder("catalog.kafka.sse.subscribers", this, KafkaSseHub::subscribers).register(meterRegistry);
+        Gauge.builder("catalog.kafka.sse.lag", this, KafkaSseHub::lag).register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        channels.values().forEach(Channel::wakeup);
+        consumers.shutdown();
+        senders.shutdown();
+    }
+
+    /**
+     * Send the records of topics to an emitter, from now on and until it completes.
+     *
+     * @param topics        the topics.
+     * @param consumerProps the properties of the consumer, subscribers with the same ones share it.
+     * @param emitter       the emitter.
+     * @throws RejectedExecutionException if the topics are not consumed yet and {@code application.kafka-sse.max-consumers}
+     *                                    topic sets already are.
+     */
+    public void subscribe(List<String> topics, Map<String, Object> consumerProps, SseEmitter emitter) {
+        Key key = new Key(topics, consumerProps);
+        Subscriber subscriber = new Subscriber(emitter);
+        Channel channel = channels.compute(
+            key,
+            (k, existing) -> {
+                Channel current = existing;
+                if (current == null) {
+                    current = new Channel(k, consumerProps);
+                    consumers.execute(current);
+                }
+                current.add(subscriber);
+                return current;
+            }
+        );
+        emitter.onCompletion(() -> channel.remove(subscriber));
+        emitter.onTimeout(() -> channel.remove(subscriber));
+        emitter.onError(e -> channel.remove(subscriber));
+    }
+
+    /**
+     * Create the consumer of a topic set.
+     *
+     * @param consumerProps the properties of the consumer.
+     * @return the consumer.
+     */
+    Consumer<String, String> createConsumer(Map<String, Object> consumerProps) {
+        return new KafkaConsumer<>(consumerProps);
+    }
+
+    private double subscribers() {
+        return channels.values().stream().mapToInt(channel -> channel.subscribers.size()).sum();
+    }
+
+    private double lag() {
+        return channels.values().stream().mapToLong(Channel::lag).max().orElse(0);
+    }
+
+    /**
+     * Topics and consumer properties of a shared consumer.
+     */
+    private static final class Key {
+
+        private final SortedSet<String> topics;
+        private final SortedMap<String, String> consumerProps = new TreeMap<>();
+
+        private Key(List<String> topics, Map<String, Object> consumerProps) {
+            this.topics = new TreeSet<>(topics);
+            consumerProps.forEach((name, value) -> this.consumerProps.put(name, String.valueOf(value)));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return topics.equals(key.topics) && consumerProps.equals(key.consumerProps);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(topics, consumerProps);
+        }
+    }
+
+    /**
+     * A client of the records, sent by one sender thread at a time.
+     */
+    private static final class Subscriber {
+
+        private final SseEmitter emitter;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        // guarded by the channel
+        private long cursor;
+        private boolean heartbeat;
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+    }
+
+    /**
+     * The consumer of a topic set, its ring buffer and its subscribers.
+     */
+    private final class Channel implements Runnable {
+
+        private final Key key;
+        private final Map<String, Object> consumerProps;
+        private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+        private final String[] buffer = new String[Math.max(properties.getBufferSize(), 2)];
+        // sequence of the next record, guarded by this
+        private long head;
+        private volatile Consumer<String, String> consumer;
+
+        private Channel(Key key, Map<String, Object> consumerProps) {
+            this.key = key;
+            this.consumerProps = consumerProps;
+        }
+
+        @Override
+        public void run() {
+            try (Consumer<String, String> polling = createConsumer(consumerProps)) {
+                consumer = polling;
+                polling.subscribe(key.topics);
+                while (running && !closeIfIdle()) {
+                    ConsumerRecords<String, String> records = polling.poll(properties.getPollTimeout());
+                    append(records);
+                    subscribers.forEach(this::schedule);
+                }
+            } catch (WakeupException e) {
+                // stopping
+            } catch (RuntimeException e) {
+                log.warn("Could not consume the Kafka topics {}: {}", key.topics, e.getMessage());
+                channels.remove(key, this);
+                subscribers.forEach(subscriber -> subscriber.emitter.completeWithError(e));
+            }
+        }
+
+        private void wakeup() {
+            Consumer<String, String> current = consumer;
+            if (current != null) {
+                current.wakeup();
+            }
+        }
+
+        /**
+         * Stop consuming once the last subscriber is gone, unless a new one just came.
+         */
+        private boolean closeIfIdle() {
+            if (!subscribers.isEmpty()) {
+                return false;
+            }
+            return channels.computeIfPresent(key, (k, channel) -> channel == this && subscribers.isEmpty() ? null : channel) != this;
+        }
+
+        private synchronized void add(Subscriber subscriber) {
+            subscriber.cursor = head;
+            subscribers.add(subscriber);
+        }
+
+        private void remove(Subscriber subscriber) {
+            subscribers.remove(subscriber);
+        }
+
+        private synchronized void append(ConsumerRecords<String, String> records) {
+            for (ConsumerRecord<String, String> record : records) {
+                buffer[(int) (head % buffer.length)] = record.value();
+                head++;
+            }
+            if (records.isEmpty()) {
+                subscribers.forEach(subscriber -> subscriber.heartbeat = true);
+            }
+        }
+
+        private synchronized long lag() {
+            return subscribers.stream().mapToLong(subscriber -> head - subscriber.cursor).max().orElse(0);
+        }
+
+        /**
+         * Take the next records of a subscriber, skipping those it missed if the policy allows.
+         *
+         * @return the records, or {@code null} if the subscriber is to be dropped.
+         */
+        private synchronized List<String> next(Subscriber subscriber) {
+            long oldest = head - buffer.length;
+            if (subscriber.cursor < oldest) {
+                if (properties.getSlowSubscriberPolicy() == ApplicationProperties.KafkaSse.SlowSubscriberPolicy.DROP) {
+                    return null;
+                }
+                long resume = head - buffer.length / 2;
+                skipped.increment(resume - subscriber.cursor);
+                subscriber.cursor = resume;
+            }
+            List<String> next = new ArrayList<>((int) Math.min(head - subscriber.cursor, MAX_RECORDS_PER_SEND));
+            while (subscriber.cursor < head && next.size() < MAX_RECORDS_PER_SEND) {
+                next.add(buffer[(int) (subscriber.cursor % buffer.length)]);
+                subscriber.cursor++;
+            }
+            if (!next.isEmpty()) {
+                subscriber.heartbeat = false;
+            }
+            return next;
+        }
+
+        private synchronized boolean pending(Subscriber subscriber) {
+            return subscriber.cursor < head || subscriber.heartbeat;
+        }
+
+        private void schedule(Subscriber subscriber) {
+            if (running && subscriber.scheduled.compareAndSet(false, true)) {
+                try {
+                    senders.execute(() -> send(subscriber));
+                } catch (RejectedExecutionException e) {
+                    subscriber.scheduled.set(false);
+                }
+            }
+        }
+
+        private void send(Subscriber subscriber) {
+            try {
+                List<String> next = next(subscriber);
+                if (next == null) {
+                    log.debug("Dropped a subscriber of the Kafka topics {} that fell behind", key.topics);
+                    remove(subscriber);
+                    dropped.increment();
+                    subscriber.emitter.complete();
+                    return;
+                }
+                for (String value : next) {
+                    subscriber.emitter.send(value);
+                }
+                if (next.isEmpty() && heartbeat(subscriber)) {
+                    subscriber.emitter.send(SseEmitter.event().comment(""));
+                }
+            } catch (IOException | IllegalStateException e) {
+                log.trace("Removed a subscriber of the Kafka topics {}: {}", key.topics, e.getMessage());
+                remove(subscriber);
+                return;
+            } finally {
+                subscriber.scheduled.set(false);
+            }
+            if (subscribers.contains(subscriber) && pending(subscriber)) {
+                schedule(subscriber);
+            }
+        }
+
+        private synchronized boolean heartbeat(Subscriber subscriber) {
+            boolean heartbeat = subscriber.heartbeat;
+            subscriber.heartbeat = false;
+            return heartbeat;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.gachokaerick.eshop.catalog.web.rest;
+
+import com.gachokaerick.eshop.catalog.exception.DomainException;
+import com.gachokaerick.eshop.catalog.service.StockHoldService;
+import com.gachokaerick.eshop.catalog.service.dto.StockHoldDTO;
+import com.gachokaerick.eshop.catalog.service.dto.StockLineDTO;
+import com.gachokaerick.eshop.catalog.web.rest.errors.BadRequestAlertException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import javax.validation.Valid;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import tech.jhipster.web.util.HeaderUtil;
+import tech.jhipster.web.util.ResponseUtil;
+
+/**
+ * REST controller for managing time-bound holds on catalogItem stock.
+ */
+@RestController
+@RequestMapping("/api")
+public class StockHoldResource {
+
+    private final Logger log = LoggerFactory.getLogger(StockHoldResource.class);
+
+    private static final String ENTITY_NAME = "catalogStockHold";
+
+    @Value("${jhipster.clientApp.name}")
+    private String applicationName;
+
+    private final StockHoldService stockHoldService;
+
+    public StockHoldResource(StockHoldService stockHoldService) {
+        this.stockHoldService = stockHoldService;
+    }
+
+    /**
+     * {@code POST  /stock-holds} : Hold stock of a catalogItem without removing it.
+     *
+     * @param ttlMinutes   how long to hold the stock, the configured default if missing.
+     * @param stockHoldDTO the item and quantity to hold.
+     * @return the {@link ResponseEntity} with status {@code 201 (Created)} and with body the new stockHoldDTO,
+     * or with status {@code 400 (Bad Request)} if the item does not exist or there is not enough stock available to sell.
+     * @throws URISyntaxException if the Location URI syntax is incorrect.
+     */
+    @PostMapping("/stock-holds")
+    public ResponseEntity<StockHoldDTO> createStockHold(
+        @RequestParam(value = "ttlMinutes", required = false) Integer ttlMinutes,
+        @Valid @RequestBody StockHoldDTO stockHoldDTO
+    ) throws URISyntaxException {
+        log.debug("REST request to save StockHold : {}", stockHoldDTO);
+        if (stockHoldDTO.getId() != null) {
+            throw new BadRequestAlertException("A new stockHold cannot already have an ID", ENTITY_NAME, "idexists");
+        }
+        if (ttlMinutes != null && ttlMinutes <= 0) {
+            throw new BadRequestAlertException("Hold duration must be greater than zero", ENTITY_NAME, "ttlInvalid");
+        }
+
+        Optional<StockHoldDTO> result;
+        try {
+            result =
+                stockHoldService.reserve(
+                    stockHoldDTO.getItemId(),
+                    stockHoldDTO.getQuantity(),
+                    ttlMinutes == null ? null : Duration.ofMinutes(ttlMinutes)
+                );
+        } catch (DomainException e) {
+            throw new BadRequestAlertException(e.getMessage(), ENTITY_NAME, "insufficientStock");
+        }
+        if (result.isEmpty()) {
+            throw new BadRequestAlertException("Entity not found", ENTITY_NAME, "idNotFound");
+        }
+
+        return ResponseEntity
+            .created(new URI("/api/stock-holds/" + result.get().getId()))
+            .headers(HeaderUtil.createEntityCreationAlert(applicationName, true, ENTITY_NAME, result.get().getId().toString()))
+            .body(result.get());
+    }
+
+    /**
+     * {@code GET  /stock-holds/:id} : get the "id" stockHold.
+     *
+     * @param id the id of the stockHoldDTO to retrieve.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the stockHoldDTO,
+     * or with status {@code 404 (Not Found)} if the hold was committed, released or has expired.
+     */
+    @GetMapping("/stock-holds/{id}")
+    public ResponseEntity<StockHoldDTO> getStockHold(@PathVariable UUID id) {
+        log.debug("REST request to get StockHold : {}", id);
+        return ResponseUtil.wrapOrNotFound(stockHoldService.findOne(id));
+    }
+
+    /**
+     * {@code POST  /stock-holds/:id/commit} : Turn the "id" stockHold into a real stock removal.
+     *
+     * @param id the id of the stockHoldDTO to commit.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the line with the quantity removed,
+     * or with status {@code 400 (Bad Request)} if the stock held is no longer available,
+     * or with status {@code 404 (Not Found)} if the hold was committed, released or has expired.
+     */
+    @PostMapping("/stock-holds/{id}/commit")
+    public ResponseEntity<StockLineDTO> commitStockHold(@PathVariable UUID id) {
+        log.debug("REST request to commit StockHold : {}", id);
+        Optional<StockLineDTO> result;
+        try {
+            result = stockHoldService.commit(id);
+        } catch (DomainException e) {
+            throw new BadRequestAlertException(e.getMessage(), ENTITY_NAME, "insufficientStock");
+        }
+        return ResponseUtil.wrapOrNotFound(result, HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, id.toString()));
+    }
+
+    /**
+     * {@code DELETE  /stock-holds/:id} : release the "id" stockHold.
+     *
+     * @param id the id of the stockHoldDTO to release.
+     * @return the {@link ResponseEntity} with status {@code 204 (NO_CONTENT)}.
+     */
+    @DeleteMapping("/stock-holds/{id}")
+    public ResponseEntity<Void> deleteStockHold(@PathVariable UUID id) {
+        log.debug("REST request to delete StockHold : {}", id);
+        stockHoldService.release(id);
+        return ResponseEntity
+            .noContent()
+            .headers(HeaderUtil.createEntityDeletionAlert(applicationName, true, ENTITY_NAME, id.toString()))
+            .build();
+    }
+}
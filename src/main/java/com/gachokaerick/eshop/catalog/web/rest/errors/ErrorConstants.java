@@ -6,6 +6,9 @@ public final class ErrorConstants {
 
     public static final String ERR_CONCURRENCY_FAILURE = "error.concurrencyFailure";
     public static final String ERR_VALIDATION = "error.validation";
+    public static final String ERR_IDEMPOTENCY_KEY_IN_USE = "error.idempotencyKeyInUse";
+    public static final String ERR_IDEMPOTENCY_KEY_REUSED = "error.idempotencyKeyReused";
+    public static final String ERR_STOCK_QUEUE_TIMEOUT = "error.stockQueueTimeout";
     public static final String PROBLEM_BASE_URL = "https://www.jhipster.tech/problem";
     public static final URI DEFAULT_TYPE = URI.create(PROBLEM_BASE_URL + "/problem-with-message");
     public static final URI CONSTRAINT_VIOLATION_TYPE = URI.create(PROBLEM_BASE_URL + "/constraint-violation");
@@ -1,5 +1,7 @@
 package com.gachokaerick.eshop.catalog.web.rest.errors;
 
+import com.gachokaerick.eshop.catalog.exception.IdempotencyKeyException;
+import com.gachokaerick.eshop.catalog.exception.StockQueueTimeoutException;
 import java.net.URI;
 import java.util.Arrays;
 import java.util.Collection;
@@ -124,12 +126,44 @@ public class ExceptionTranslator implements ProblemHandling, SecurityAdviceTrait
         );
     }
 
+    @ExceptionHandler
+    public ResponseEntity<Problem> handlePreconditionFailedAlertException(PreconditionFailedAlertException ex, NativeWebRequest request) {
+        return create(
+            ex,
+            request,
+            HeaderUtil.createFailureAlert(applicationName, true, ex.getEntityName(), ex.getErrorKey(), ex.getMessage())
+        );
+    }
+
     @ExceptionHandler
     public ResponseEntity<Problem> handleConcurrencyFailure(ConcurrencyFailureException ex, NativeWebRequest request) {
         Problem problem = Problem.builder().withStatus(Status.CONFLICT).with(MESSAGE_KEY, ErrorConstants.ERR_CONCURRENCY_FAILURE).build();
         return create(ex, problem, request);
     }
 
+    @ExceptionHandler
+    public ResponseEntity<Problem> handleIdempotencyKeyException(IdempotencyKeyException ex, NativeWebRequest request) {
+        boolean inProgress = ex.getReason() == IdempotencyKeyException.Reason.IN_PROGRESS;
+        Problem problem = Problem
+            .builder()
+            .withStatus(inProgress ? Status.CONFLICT : Status.UNPROCESSABLE_ENTITY)
+            .withDetail(ex.getMessage())
+            .with(MESSAGE_KEY, inProgress ? ErrorConstants.ERR_IDEMPOTENCY_KEY_IN_USE : ErrorConstants.ERR_IDEMPOTENCY_KEY_REUSED)
+            .build();
+        return create(ex, problem, request);
+    }
+
+    @ExceptionHandler
+    public ResponseEntity<Problem> handleStockQueueTimeoutException(StockQueueTimeoutException ex, NativeWebRequest request) {
+        Problem problem = Problem
+            .builder()
+            .withStatus(Status.SERVICE_UNAVAILABLE)
+            .withDetail(ex.getMessage())
+            .with(MESSAGE_KEY, ErrorConstants.ERR_STOCK_QUEUE_TIMEOUT)
+            .build();
+        return create(ex, problem, request);
+    }
+
     @Override
     public ProblemBuilder prepare(final Throwable throwable, final StatusType status, final URI type) {
         Collection<String> activeProfiles = Arrays.asList(env.getActiveProfiles());
@@ -0,0 +1,59 @@
+package com.gachokaerick.eshop.catalog.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.gachokaerick.eshop.catalog.IntegrationTest;
+import com.hazelcast.config.InMemoryFormat;
+import com.hazelcast.config.NearCacheConfig;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.map.IMap;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * Integration tests for the near caches of the second-level cache regions configured by {@link CacheConfiguration}.
+ */
+@IntegrationTest
+class NearCacheIT {
+
+    private static final String REGION = "com.gachokaerick.eshop.catalog.model.CatalogBrand";
+    private static final String UNCONFIGURED_REGION = "com.gachokaerick.eshop.catalog.domain.catalogItem.CatalogItem";
+
+    @Autowired
+    private HazelcastInstance hazelcastInstance;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @AfterEach
+    public void cleanUp() {
+        hazelcastInstance.getMap(REGION).clear();
+    }
+
+    @Test
+    void regionIsReadFromTheNearCache() {
+        NearCacheConfig nearCacheConfig = hazelcastInstance.getConfig().getMapConfig(REGION).getNearCacheConfig();
+        assertThat(nearCacheConfig).isNotNull();
+        assertThat(nearCacheConfig.getInMemoryFormat()).isEqualTo(InMemoryFormat.OBJECT);
+        assertThat(nearCacheConfig.getEvictionConfig().getSize()).isEqualTo(1000);
+        assertThat(hazelcastInstance.getConfig().getMapConfig(UNCONFIGURED_REGION).getNearCacheConfig()).isNull();
+
+        IMap<Long, String> map = hazelcastInstance.getMap(REGION);
+        map.set(1L, "brand");
+        double hits = meterRegistry.get("catalog.near.cache.hits").tag("region", REGION).functionCounter().count();
+        for (int i = 0; i < 4; i++) {
+            assertThat(map.get(1L)).isEqualTo("brand");
+        }
+
+        // the first read misses and fills the near cache
+        assertThat(meterRegistry.get("catalog.near.cache.hits").tag("region", REGION).functionCounter().count()).isEqualTo(hits + 3);
+        assertThat(meterRegistry.get("catalog.near.cache.hit.ratio").tag("region", REGION).gauge().value()).isGreaterThan(0).isLessThan(1);
+        assertThat(meterRegistry.get("catalog.near.cache.entries").tag("region", REGION).gauge().value()).isEqualTo(1);
+
+        // a change invalidates the entry
+        map.set(1L, "other brand");
+        assertThat(map.get(1L)).isEqualTo("other brand");
+    }
+}
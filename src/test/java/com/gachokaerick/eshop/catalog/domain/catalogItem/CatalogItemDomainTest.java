@@ -319,6 +319,26 @@ public class CatalogItemDomainTest {
                 int removed = domain.removeStock(25);
                 assertEquals(availableStock, removed);
                 assertEquals(0, domain.getCatalogItemDTO().getAvailableStock());
+            },
+            () -> {
+                CatalogItemDTO itemDTO = getDTO();
+                CatalogItemDomain domain = new CatalogItemDomain.CatalogItemBuilder().withCatalogItemDTO(itemDTO).build();
+                int removed = domain.removeStock(25, 15);
+                assertEquals(availableStock - 15, removed);
+                assertEquals(15, domain.getCatalogItemDTO().getAvailableStock());
+            },
+            () -> {
+                CatalogItemDTO itemDTO = getDTO();
+                Exception exception = assertThrows(
+                    DomainException.class,
+                    () -> {
+                        CatalogItemDomain domain = new CatalogItemDomain.CatalogItemBuilder().withCatalogItemDTO(itemDTO).build();
+                        domain.removeStock(1, availableStock);
+                    }
+                );
+                String expected = "Empty stock. Product " + itemDTO.getName() + " is sold out";
+                String actual = exception.getMessage();
+                assertTrue(actual.contains(expected));
             }
         );
     }
@@ -342,4 +362,33 @@ public class CatalogItemDomainTest {
             }
         );
     }
+
+    @Test
+    public void testRestockThresholdCrossing() {
+        assertAll(
+            () -> {
+                CatalogItemDTO itemDTO = getDTO();
+                CatalogItemDomain domain = new CatalogItemDomain.CatalogItemBuilder().withCatalogItemDTO(itemDTO).build();
+                int before = domain.getCatalogItemDTO().getAvailableStock();
+                domain.removeStock(before - restockThreshold + 1);
+                assertTrue(domain.reorderIfRestockThresholdCrossed(before));
+                assertTrue(domain.getCatalogItemDTO().getOnReorder());
+            },
+            () -> {
+                CatalogItemDTO itemDTO = getDTO();
+                CatalogItemDomain domain = new CatalogItemDomain.CatalogItemBuilder().withCatalogItemDTO(itemDTO).build();
+                int before = domain.getCatalogItemDTO().getAvailableStock();
+                domain.removeStock(1);
+                assertFalse(domain.reorderIfRestockThresholdCrossed(before));
+                assertFalse(domain.getCatalogItemDTO().getOnReorder());
+            },
+            () -> {
+                CatalogItemDTO itemDTO = getDTO();
+                itemDTO.setAvailableStock(restockThreshold);
+                CatalogItemDomain domain = new CatalogItemDomain.CatalogItemBuilder().withCatalogItemDTO(itemDTO).build();
+                domain.removeStock(1);
+                assertFalse(domain.reorderIfRestockThresholdCrossed(restockThreshold));
+            }
+        );
+    }
 }
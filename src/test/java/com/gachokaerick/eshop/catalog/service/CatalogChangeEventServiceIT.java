@@ -0,0 +1,182 @@
+package com.gachokaerick.eshop.catalog.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gachokaerick.eshop.catalog.IntegrationTest;
+import com.gachokaerick.eshop.catalog.config.ApplicationProperties;
+import com.gachokaerick.eshop.catalog.model.CatalogBrand;
+import com.gachokaerick.eshop.catalog.model.CatalogType;
+import com.gachokaerick.eshop.catalog.model.OutboxEvent;
+import com.gachokaerick.eshop.catalog.repository.CatalogBrandRepository;
+import com.gachokaerick.eshop.catalog.repository.CatalogItemRepository;
+import com.gachokaerick.eshop.catalog.repository.CatalogTypeRepository;
+import com.gachokaerick.eshop.catalog.repository.OutboxEventRepository;
+import com.gachokaerick.eshop.catalog.service.dto.CatalogItemChangeEventDTO;
+import com.gachokaerick.eshop.catalog.service.dto.CatalogItemDTO;
+import com.gachokaerick.eshop.catalog.service.mapper.CatalogBrandMapper;
+import com.gachokaerick.eshop.catalog.service.mapper.CatalogTypeMapper;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Integration tests for {@link CatalogChangeEventService}, reading the events it writes to the outbox.
+ */
+@IntegrationTest
+@Transactional
+class CatalogChangeEventServiceIT {
+
+    private static final String TOPIC = "catalog-item-changes";
+
+    @Autowired
+    private CatalogChangeEventService catalogChangeEventService;
+
+    @Autowired
+    private CatalogItemService catalogItemService;
+
+    @Autowired
+    private StockMutationService stockMutationService;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private CatalogItemRepository catalogItemRepository;
+
+    @Autowired
+    private CatalogBrandRepository catalogBrandRepository;
+
+    @Autowired
+    private CatalogTypeRepository catalogTypeRepository;
+
+    @Autowired
+    private CatalogBrandMapper catalogBrandMapper;
+
+    @Autowired
+    private CatalogTypeMapper catalogTypeMapper;
+
+    @Autowired
+    private ApplicationProperties applicationProperties;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @BeforeEach
+    public void enable() {
+        // events committed by other tests are not part of these ones
+        outboxEventRepository.deleteAllInBatch();
+        applicationProperties.getChangeEvents().setEnabled(true);
+    }
+
+    @AfterEach
+    public void disable() {
+        applicationProperties.getChangeEvents().setEnabled(false);
+        applicationProperties.getChangeEvents().setSnapshotPageSize(500);
+    }
+
+    @Test
+    void writesAreTypedEventsKeyedByItem() throws Exception {
+        CatalogItemDTO catalogItemDTO = catalogItemService.create(newItem());
+
+        CatalogItemDTO price = new CatalogItemDTO();
+        price.setId(catalogItemDTO.getId());
+        price.setPrice(BigDecimal.TEN);
+        catalogItemService.partialUpdate(price);
+
+        CatalogItemDTO name = new CatalogItemDTO();
+        name.setId(catalogItemDTO.getId());
+        name.setName("BBBBBBBBBB");
+        catalogItemService.partialUpdate(name);
+
+        stockMutationService.removeStock(catalogItemDTO.getId(), 1, null);
+
+        catalogItemService.delete(catalogItemDTO.getId());
+
+        List<OutboxEvent> events = outboxEventRepository.findAll(Sort.by("id"));
+        assertThat(events).extracting(OutboxEvent::getTopic).containsOnly(TOPIC);
+        assertThat(events).extracting(OutboxEvent::getMessageKey).containsOnly(catalogItemDTO.getId().toString());
+        List<CatalogItemChangeEventDTO> changes = read(events.subList(0, events.size() - 1));
+        assertThat(changes)
+            .extracting(CatalogItemChangeEventDTO::getType)
+            .containsExactly(
+                CatalogItemChangeEventDTO.Type.CREATED,
+                CatalogItemChangeEventDTO.Type.PRICE_CHANGED,
+                CatalogItemChangeEventDTO.Type.UPDATED,
+                CatalogItemChangeEventDTO.Type.STOCK_CHANGED,
+                CatalogItemChangeEventDTO.Type.DELETED
+            );
+        assertThat(changes.get(1).getCatalogItem().getPrice()).isEqualByComparingTo(BigDecimal.TEN);
+        assertThat(changes.get(2).getCatalogItem().getName()).isEqualTo("BBBBBBBBBB");
+        assertThat(changes.get(3).getCatalogItem().getAvailableStock()).isZero();
+        assertThat(changes.get(4).getCatalogItem()).isNull();
+        assertThat(events.get(0).getPayload()).contains("\"type\":\"created\"");
+        // the tombstone
+        assertThat(events.get(events.size() - 1).getPayload()).isNull();
+    }
+
+    @Test
+    void disabledWritesNoEvent() {
+        applicationProperties.getChangeEvents().setEnabled(false);
+
+        catalogItemService.create(newItem());
+
+        assertThat(outboxEventRepository.count()).isZero();
+    }
+
+    @Test
+    void snapshotWritesEveryItem() throws Exception {
+        applicationProperties.getChangeEvents().setEnabled(false);
+        CatalogItemDTO first = catalogItemService.create(newItem());
+        CatalogItemDTO second = catalogItemService.create(newItem());
+        applicationProperties.getChangeEvents().setSnapshotPageSize(1);
+
+        // like the changes, the snapshot is only written if the change events are enabled
+        assertThat(catalogChangeEventService.snapshot()).isZero();
+        assertThat(outboxEventRepository.count()).isZero();
+
+        applicationProperties.getChangeEvents().setEnabled(true);
+        assertThat(catalogChangeEventService.snapshot()).isEqualTo(catalogItemRepository.count());
+
+        List<CatalogItemChangeEventDTO> changes = read(outboxEventRepository.findAll(Sort.by("id")));
+        assertThat(changes).extracting(CatalogItemChangeEventDTO::getType).containsOnly(CatalogItemChangeEventDTO.Type.SNAPSHOT);
+        assertThat(changes).extracting(CatalogItemChangeEventDTO::getItemId).isSorted().contains(first.getId(), second.getId());
+        assertThat(changes)
+            .filteredOn(change -> change.getItemId().equals(first.getId()))
+            .extracting(change -> change.getCatalogItem().getAvailableStock())
+            .containsExactly(1);
+    }
+
+    private List<CatalogItemChangeEventDTO> read(List<OutboxEvent> events) throws Exception {
+        List<CatalogItemChangeEventDTO> changes = new ArrayList<>(events.size());
+        for (OutboxEvent event : events) {
+            changes.add(objectMapper.readValue(event.getPayload(), CatalogItemChangeEventDTO.class));
+        }
+        return changes;
+    }
+
+    private CatalogItemDTO newItem() {
+        CatalogBrand catalogBrand = catalogBrandRepository.save(new CatalogBrand().brand("CatalogChangeEventServiceIT"));
+        CatalogType catalogType = catalogTypeRepository.save(new CatalogType().type("CatalogChangeEventServiceIT"));
+        return new CatalogItemDTO(
+            null,
+            "AAAAAAAAAA",
+            null,
+            BigDecimal.ONE,
+            null,
+            null,
+            1,
+            0,
+            100,
+            false,
+            catalogBrandMapper.toDto(catalogBrand),
+            catalogTypeMapper.toDto(catalogType)
+        );
+    }
+}
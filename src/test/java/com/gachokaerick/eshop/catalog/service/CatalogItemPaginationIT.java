@@ -0,0 +1,122 @@
+package com.gachokaerick.eshop.catalog.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.gachokaerick.eshop.catalog.IntegrationTest;
+import com.gachokaerick.eshop.catalog.domain.catalogItem.CatalogItem;
+import com.gachokaerick.eshop.catalog.service.dto.CatalogItemCursor;
+import com.gachokaerick.eshop.catalog.service.dto.CatalogItemDTO;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import javax.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Integration tests for the pagination of {@link CatalogItemService}, comparing the latency of a deep page in page
+ * (offset) and cursor (keyset) mode.
+ * <p>
+ * These tests commit their data, so they are not {@link org.springframework.transaction.annotation.Transactional}.
+ */
+@IntegrationTest
+class CatalogItemPaginationIT {
+
+    private static final long FIRST_ID = 1_000_000_000L;
+    private static final int PAGE = 1000;
+    private static final int PAGE_SIZE = 20;
+    private static final int ITEMS = (PAGE + 1) * PAGE_SIZE;
+    private static final int ITERATIONS = 20;
+
+    private final Logger log = LoggerFactory.getLogger(CatalogItemPaginationIT.class);
+
+    @Autowired
+    private CatalogItemService catalogItemService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManager em;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    public void cleanUp() {
+        new TransactionTemplate(transactionManager)
+            .executeWithoutResult(status -> {
+                jdbcTemplate.update("delete from catalog_item where id >= ?", FIRST_ID);
+                jdbcTemplate.update("delete from catalog_brand where id >= ?", FIRST_ID);
+                jdbcTemplate.update("delete from catalog_type where id >= ?", FIRST_ID);
+            });
+        em.getEntityManagerFactory().getCache().evict(CatalogItem.class);
+    }
+
+    @Test
+    void deepPageByCursorMatchesPageByOffset() {
+        createCommittedItems();
+        List<Long> ids = jdbcTemplate.queryForList("select id from catalog_item order by id", Long.class);
+        CatalogItemDTO last = new CatalogItemDTO();
+        last.setId(ids.get(PAGE * PAGE_SIZE - 1));
+        CatalogItemCursor after = CatalogItemCursor.after(CatalogItemCursor.SortKey.ID, last);
+
+        List<CatalogItemDTO> byOffset = measure(
+            "page " + PAGE + " by offset",
+            () -> catalogItemService.findAll(PageRequest.of(PAGE, PAGE_SIZE, Sort.by("id"))).getContent()
+        );
+        List<CatalogItemDTO> byCursor = measure(
+            "page " + PAGE + " by cursor",
+            () -> catalogItemService.findAll(after, PAGE_SIZE).getContent()
+        );
+
+        assertThat(ids(byCursor)).hasSize(PAGE_SIZE).isEqualTo(ids(byOffset));
+    }
+
+    private List<CatalogItemDTO> measure(String mode, Supplier<List<CatalogItemDTO>> query) {
+        // warm up
+        for (int i = 0; i < 5; i++) {
+            query.get();
+        }
+        List<CatalogItemDTO> result = null;
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            result = query.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        log.info("{} of {} items: {} us per query", mode, ITEMS, TimeUnit.NANOSECONDS.toMicros(elapsed / ITERATIONS));
+        return result;
+    }
+
+    private static List<Long> ids(List<CatalogItemDTO> catalogItems) {
+        return catalogItems.stream().map(CatalogItemDTO::getId).collect(Collectors.toList());
+    }
+
+    private void createCommittedItems() {
+        // every catalogItem has its own brand and type
+        List<Object[]> rows = IntStream
+            .range(0, ITEMS)
+            .mapToObj(i -> new Object[] { FIRST_ID + i, String.format("Item %05d", i) })
+            .collect(Collectors.toList());
+        new TransactionTemplate(transactionManager)
+            .executeWithoutResult(status -> {
+                jdbcTemplate.batchUpdate("insert into catalog_brand (id, brand) values (?, ?)", rows);
+                jdbcTemplate.batchUpdate("insert into catalog_type (id, type) values (?, ?)", rows);
+                jdbcTemplate.batchUpdate(
+                    "insert into catalog_item (id, name, price, available_stock, restock_threshold, max_stock_threshold, on_reorder, " +
+                    "catalog_brand_id, catalog_type_id, version) values (?, ?, 1, 10, 0, 100, false, ?, ?, 0)",
+                    rows.stream().map(row -> new Object[] { row[0], row[1], row[0], row[0] }).collect(Collectors.toList())
+                );
+            });
+    }
+}
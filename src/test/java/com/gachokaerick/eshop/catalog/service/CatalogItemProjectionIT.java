@@ -0,0 +1,152 @@
+package com.gachokaerick.eshop.catalog.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.gachokaerick.eshop.catalog.IntegrationTest;
+import com.gachokaerick.eshop.catalog.domain.catalogItem.CatalogItem;
+import com.gachokaerick.eshop.catalog.domain.catalogItem.CatalogItemMapper;
+import com.gachokaerick.eshop.catalog.repository.CatalogItemRepository;
+import com.gachokaerick.eshop.catalog.service.criteria.CatalogItemCriteria;
+import com.gachokaerick.eshop.catalog.service.dto.CatalogItemDTO;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import javax.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Integration tests for the read path of the catalogItems, comparing the latency and allocations of a page of 100
+ * catalogItems loaded as entities and mapped by MapStruct with the DTOs selected by a constructor expression.
+ * <p>
+ * These tests commit their data, so they are not {@link org.springframework.transaction.annotation.Transactional}.
+ */
+@IntegrationTest
+class CatalogItemProjectionIT {
+
+    private static final long FIRST_ID = 2_000_000_000L;
+    private static final int PAGES = 10;
+    private static final int PAGE_SIZE = 100;
+    private static final int ITERATIONS = 50;
+
+    private final Logger log = LoggerFactory.getLogger(CatalogItemProjectionIT.class);
+
+    /** First page holding only catalogItems created by this test. */
+    private int firstPage;
+
+    @Autowired
+    private CatalogItemService catalogItemService;
+
+    @Autowired
+    private CatalogItemQueryService catalogItemQueryService;
+
+    @Autowired
+    private CatalogItemRepository catalogItemRepository;
+
+    @Autowired
+    private CatalogItemMapper catalogItemMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManager em;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    public void cleanUp() {
+        new TransactionTemplate(transactionManager)
+            .executeWithoutResult(status -> {
+                jdbcTemplate.update("delete from catalog_item where id >= ?", FIRST_ID);
+                jdbcTemplate.update("delete from catalog_brand where id >= ?", FIRST_ID);
+                jdbcTemplate.update("delete from catalog_type where id >= ?", FIRST_ID);
+            });
+        em.getEntityManagerFactory().getCache().evict(CatalogItem.class);
+    }
+
+    @Test
+    void projectedPageMatchesMappedEntities() {
+        createCommittedItems();
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        CatalogItemCriteria criteria = new CatalogItemCriteria();
+
+        List<CatalogItemDTO> mapped = measure(
+            "entities mapped by MapStruct",
+            pageable -> readOnly.execute(status -> catalogItemRepository.findAll(pageable).map(catalogItemMapper::toDto).getContent())
+        );
+        List<CatalogItemDTO> projected = measure("JPQL constructor expression", pageable -> catalogItemService.findAll(pageable).getContent());
+        List<CatalogItemDTO> filtered = measure(
+            "criteria constructor expression",
+            pageable -> catalogItemQueryService.findByCriteria(criteria, pageable).getContent()
+        );
+
+        assertThat(projected).hasSize(PAGE_SIZE).usingRecursiveFieldByFieldElementComparator().isEqualTo(mapped);
+        assertThat(filtered).usingRecursiveFieldByFieldElementComparator().isEqualTo(mapped);
+        assertThat(projected.get(0).getCatalogBrand().getBrand()).isEqualTo(projected.get(0).getName());
+    }
+
+    /**
+     * Read the pages of the catalogItems created by this test in turn, then log the time and bytes allocated per page.
+     *
+     * @return the last page.
+     */
+    private List<CatalogItemDTO> measure(String mode, Function<Pageable, List<CatalogItemDTO>> query) {
+        // warm up
+        for (int i = 0; i < ITERATIONS; i++) {
+            query.apply(PageRequest.of(firstPage + i % PAGES, PAGE_SIZE, Sort.by("id")));
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        List<CatalogItemDTO> result = null;
+        long allocated = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            result = query.apply(PageRequest.of(firstPage + i % PAGES, PAGE_SIZE, Sort.by("id")));
+        }
+        long elapsed = System.nanoTime() - start;
+        allocated = threads.getThreadAllocatedBytes(thread) - allocated;
+        log.info(
+            "Page of {} items by {}: {} us and {} KB allocated per page",
+            PAGE_SIZE,
+            mode,
+            TimeUnit.NANOSECONDS.toMicros(elapsed / ITERATIONS),
+            allocated / ITERATIONS / 1024
+        );
+        return result;
+    }
+
+    private void createCommittedItems() {
+        long existing = jdbcTemplate.queryForObject("select count(*) from catalog_item", Long.class);
+        firstPage = (int) ((existing + PAGE_SIZE - 1) / PAGE_SIZE);
+        // every catalogItem has its own brand and type, named after it
+        List<Object[]> rows = IntStream
+            .range(0, (PAGES + 1) * PAGE_SIZE)
+            .mapToObj(i -> new Object[] { FIRST_ID + i, String.format("Item %05d", i) })
+            .collect(Collectors.toList());
+        new TransactionTemplate(transactionManager)
+            .executeWithoutResult(status -> {
+                jdbcTemplate.batchUpdate("insert into catalog_brand (id, brand) values (?, ?)", rows);
+                jdbcTemplate.batchUpdate("insert into catalog_type (id, type) values (?, ?)", rows);
+                jdbcTemplate.batchUpdate(
+                    "insert into catalog_item (id, name, description, price, available_stock, restock_threshold, max_stock_threshold, " +
+                    "on_reorder, catalog_brand_id, catalog_type_id, version) values (?, ?, ?, 1, 10, 0, 100, false, ?, ?, 0)",
+                    rows.stream().map(row -> new Object[] { row[0], row[1], row[1], row[0], row[0] }).collect(Collectors.toList())
+                );
+            });
+    }
+}
@@ -0,0 +1,224 @@
+package com.gachokaerick.eshop.catalog.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+import com.gachokaerick.eshop.catalog.IntegrationTest;
+import com.gachokaerick.eshop.catalog.config.ApplicationProperties;
+import com.gachokaerick.eshop.catalog.domain.catalogItem.CatalogItem;
+import com.gachokaerick.eshop.catalog.service.criteria.CatalogItemCriteria;
+import com.gachokaerick.eshop.catalog.service.dto.CatalogItemDTO;
+import com.gachokaerick.eshop.catalog.service.dto.CatalogItemFacetsDTO;
+import com.gachokaerick.eshop.catalog.service.dto.CatalogItemFacetsDTO.FacetValue;
+import com.gachokaerick.eshop.catalog.service.dto.CatalogItemFacetsDTO.PriceBucket;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import javax.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Integration tests for the {@link CatalogReadModel}: the catalogItems changed behind its back with plain SQL show
+ * which reads are served from memory.
+ * <p>
+ * These tests commit their data, so they are not {@link org.springframework.transaction.annotation.Transactional}.
+ */
+@IntegrationTest
+class CatalogReadModelIT {
+
+    private static final long FIRST_ID = 2_000_000_000L;
+    private static final int COUNT = 3;
+
+    @Autowired
+    private CatalogReadModel catalogReadModel;
+
+    @Autowired
+    private CatalogItemService catalogItemService;
+
+    @Autowired
+    private CatalogItemQueryService catalogItemQueryService;
+
+    @Autowired
+    private ApplicationProperties applicationProperties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private StockJournalService stockJournalService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManager em;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    public void enable() {
+        createCommittedItems();
+        applicationProperties.getReadModel().setEnabled(true);
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        applicationProperties.getReadModel().setEnabled(false);
+        applicationProperties.getStockJournal().setEnabled(false);
+        IntStream.range(0, COUNT).forEach(i -> stockJournalService.evict(FIRST_ID + i));
+        new TransactionTemplate(transactionManager)
+            .executeWithoutResult(status -> {
+                jdbcTemplate.update("delete from stock_movement where catalog_item_id >= ?", FIRST_ID);
+                jdbcTemplate.update("delete from catalog_item where id >= ?", FIRST_ID);
+                jdbcTemplate.update("delete from catalog_brand where id >= ?", FIRST_ID);
+                jdbcTemplate.update("delete from catalog_type where id >= ?", FIRST_ID);
+            });
+        em.getEntityManagerFactory().getCache().evict(CatalogItem.class);
+        // drop the snapshot, which is no longer kept up to date
+        catalogReadModel.changed(List.of(FIRST_ID));
+        assertThat(catalogReadModel.isLoaded()).isFalse();
+    }
+
+    @Test
+    void readsAreServedFromMemoryUntilChecked() {
+        assertThat(catalogReadModel.isLoaded()).isFalse();
+        assertThat(catalogReadModel.load()).isGreaterThanOrEqualTo(COUNT);
+        assertThat(catalogReadModel.isLoaded()).isTrue();
+
+        // changes made without the services are not seen
+        new TransactionTemplate(transactionManager)
+            .executeWithoutResult(status -> {
+                jdbcTemplate.update("update catalog_item set name = 'Renamed' where id = ?", FIRST_ID);
+                jdbcTemplate.update("delete from catalog_item where id = ?", FIRST_ID + 2);
+            });
+        assertThat(catalogItemService.findOne(FIRST_ID)).map(CatalogItemDTO::getName).contains("Read Model 0");
+        assertThat(catalogItemService.findAll(List.of(FIRST_ID + 2, FIRST_ID)))
+            .extracting(CatalogItemDTO::getId)
+            .containsExactly(FIRST_ID + 2, FIRST_ID);
+
+        CatalogItemCriteria criteria = new CatalogItemCriteria();
+        criteria.name().setStartsWith("Read Model");
+        Page<CatalogItemDTO> page = catalogItemQueryService.findByCriteria(
+            criteria,
+            PageRequest.of(0, 2, Sort.by(Sort.Direction.DESC, "name"))
+        );
+        assertThat(page.getTotalElements()).isEqualTo(COUNT);
+        assertThat(page.getContent()).extracting(CatalogItemDTO::getName).containsExactly("Read Model 2", "Read Model 1");
+        assertThat(catalogItemQueryService.countByCriteria(criteria)).isEqualTo(COUNT);
+
+        // changes made through the services are seen once read again in the background
+        CatalogItemDTO update = new CatalogItemDTO();
+        update.setId(FIRST_ID + 1);
+        update.setPrice(new BigDecimal("42.00"));
+        catalogItemService.partialUpdate(update);
+        await(() -> new BigDecimal("42.00").equals(catalogItemService.findOne(FIRST_ID + 1).map(CatalogItemDTO::getPrice).orElse(null)));
+        criteria.price().setGreaterThan(BigDecimal.TEN);
+        assertThat(catalogItemQueryService.findByCriteria(criteria)).extracting(CatalogItemDTO::getId).containsExactly(FIRST_ID + 1);
+
+        // so are the facets, counted in memory
+        criteria = new CatalogItemCriteria();
+        criteria.catalogBrandId().setIn(List.of(FIRST_ID, FIRST_ID + 1, FIRST_ID + 2));
+        CatalogItemFacetsDTO facets = catalogItemQueryService.facetsByCriteria(criteria, List.of(BigDecimal.TEN));
+        assertThat(facets.getTotal()).isEqualTo(COUNT);
+        assertThat(facets.getCatalogTypes()).extracting(FacetValue::getId).containsExactly(FIRST_ID, FIRST_ID + 1, FIRST_ID + 2);
+        assertThat(facets.getPrices()).extracting(PriceBucket::getCount).containsExactly(2L, 1L);
+        criteria.price().setLessThan(BigDecimal.TEN);
+        assertThat(catalogItemQueryService.facetsByCriteria(criteria, null).getCatalogBrands())
+            .extracting(FacetValue::getName)
+            .containsExactly("Read Model 0", "Read Model 2");
+        // the brands are counted without the criterion on the brand
+        criteria.id().setGreaterThanOrEqual(FIRST_ID);
+        criteria.catalogBrandId().setIn(List.of(FIRST_ID));
+        facets = catalogItemQueryService.facetsByCriteria(criteria, null);
+        assertThat(facets.getTotal()).isEqualTo(1);
+        assertThat(facets.getCatalogBrands()).extracting(FacetValue::getName).containsExactly("Read Model 0", "Read Model 2");
+        assertThat(facets.getCatalogTypes()).extracting(FacetValue::getName).containsExactly("Read Model 0");
+
+        // the check reads the catalogItems which differ again
+        double repairs = meterRegistry.get("catalog.read.model.repairs").counter().count();
+        assertThat(catalogReadModel.check()).isEqualTo(2);
+        assertThat(meterRegistry.get("catalog.read.model.repairs").counter().count()).isEqualTo(repairs + 2);
+        assertThat(catalogItemService.findOne(FIRST_ID)).map(CatalogItemDTO::getName).contains("Renamed");
+        assertThat(catalogItemService.findOne(FIRST_ID + 2)).isEmpty();
+        assertThat(catalogReadModel.check()).isZero();
+    }
+
+    @Test
+    void concurrentStockChangesLeaveTheLastStockInMemory() throws Exception {
+        // the journal changes the stock without changing the version
+        applicationProperties.getStockJournal().setEnabled(true);
+        catalogReadModel.load();
+        CatalogItemDTO catalogItem = new CatalogItemDTO();
+        catalogItem.setId(FIRST_ID);
+
+        ExecutorService writers = Executors.newFixedThreadPool(2);
+        try {
+            for (int round = 0; round < 20; round++) {
+                List<Future<?>> writes = List.of(
+                    writers.submit(() -> catalogItemService.partialUpdateRemoveStock(catalogItem, 1, null)),
+                    writers.submit(() -> catalogItemService.partialUpdateAddStock(catalogItem, 2, null))
+                );
+                for (Future<?> write : writes) {
+                    write.get(10, TimeUnit.SECONDS);
+                }
+            }
+        } finally {
+            writers.shutdown();
+        }
+
+        int stock = stockJournalService.availableStock(FIRST_ID, 0);
+        assertThat(stock).isEqualTo(10 + 20);
+        await(() -> catalogReadModel.findOne(FIRST_ID).map(CatalogItemDTO::getAvailableStock).orElseThrow() == stock);
+        assertThat(catalogReadModel.findOne(FIRST_ID)).map(CatalogItemDTO::getVersion).contains(0);
+        assertThat(catalogReadModel.check()).isZero();
+    }
+
+    private static void await(BooleanSupplier condition) {
+        for (int i = 0; i < 100; i++) {
+            if (condition.getAsBoolean()) {
+                return;
+            }
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        fail("Condition not met");
+    }
+
+    private void createCommittedItems() {
+        // every catalogItem has its own brand and type, named after it
+        List<Object[]> rows = IntStream
+            .range(0, COUNT)
+            .mapToObj(i -> new Object[] { FIRST_ID + i, "Read Model " + i })
+            .collect(Collectors.toList());
+        new TransactionTemplate(transactionManager)
+            .executeWithoutResult(status -> {
+                jdbcTemplate.batchUpdate("insert into catalog_brand (id, brand) values (?, ?)", rows);
+                jdbcTemplate.batchUpdate("insert into catalog_type (id, type) values (?, ?)", rows);
+                jdbcTemplate.batchUpdate(
+                    "insert into catalog_item (id, name, description, price, available_stock, restock_threshold, max_stock_threshold, " +
+                    "on_reorder, catalog_brand_id, catalog_type_id, version) values (?, ?, ?, 1, 10, 0, 100, false, ?, ?, 0)",
+                    rows.stream().map(row -> new Object[] { row[0], row[1], row[1], row[0], row[0] }).collect(Collectors.toList())
+                );
+            });
+    }
+}
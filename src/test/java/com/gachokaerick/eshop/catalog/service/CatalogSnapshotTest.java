@@ -0,0 +1,159 @@
+package com.gachokaerick.eshop.catalog.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.gachokaerick.eshop.catalog.service.criteria.CatalogItemCriteria;
+import com.gachokaerick.eshop.catalog.service.dto.CatalogItemDTO;
+import com.gachokaerick.eshop.catalog.service.dto.CatalogItemFacetsDTO;
+import com.gachokaerick.eshop.catalog.service.dto.CatalogItemFacetsDTO.FacetValue;
+import com.gachokaerick.eshop.catalog.service.dto.CatalogItemFacetsDTO.PriceBucket;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntPredicate;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+
+class CatalogSnapshotTest {
+
+    private final CatalogSnapshot snapshot = CatalogSnapshot.of(
+        List.of(
+            item(1, ".NET Bot Black Hoodie", "19.5", 1, 1),
+            item(3, ".NET Black & White Mug", "8.5", 1, 2),
+            item(5, "Prism White T-Shirt", "12", 2, 1),
+            item(7, "Roslyn Red Sheet", null, 2, 2)
+        )
+    );
+
+    @Test
+    void getFindsTheCatalogItemsById() {
+        assertThat(snapshot.size()).isEqualTo(4);
+        assertThat(snapshot.get(5).getName()).isEqualTo("Prism White T-Shirt");
+        assertThat(snapshot.get(4)).isNull();
+        assertThat(snapshot.after(3, 10)).extracting(CatalogItemDTO::getId).containsExactly(5L, 7L);
+        assertThat(snapshot.after(4, 1)).extracting(CatalogItemDTO::getId).containsExactly(5L);
+        assertThat(snapshot.after(7, 10)).isEmpty();
+        assertThat(snapshot.range(1, 2)).extracting(CatalogItemDTO::getId).containsExactly(3L, 5L);
+        assertThat(snapshot.idsOfBrand(1)).containsExactly(1, 3);
+        assertThat(snapshot.idsOfType(2)).containsExactly(3, 7);
+        assertThat(snapshot.idsOfType(3)).isEmpty();
+    }
+
+    @Test
+    void ofRejectsCatalogItemsListedTwice() {
+        assertThatThrownBy(() -> CatalogSnapshot.of(List.of(item(2, "B", "1", 1, 1), item(2, "A", "1", 1, 1))))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void updateAddsReplacesAndRemovesInPlace() {
+        snapshot.update(List.of(item(4, "Cup", "3", 1, 1), item(5, "Prism Black T-Shirt", "12", 1, 1)), Set.of(1L));
+
+        assertThat(snapshot.ids()).containsExactly(3L, 4L, 5L, 7L);
+        assertThat(snapshot.range(0, 10)).extracting(CatalogItemDTO::getId).containsExactly(3L, 4L, 5L, 7L);
+        assertThat(snapshot.get(5).getName()).isEqualTo("Prism Black T-Shirt");
+        assertThat(snapshot.get(1)).isNull();
+        assertThat(snapshot.idsOfBrand(1)).containsExactly(3, 4, 5);
+        assertThat(snapshot.idsOfBrand(2)).containsExactly(7);
+
+        // the slot freed by a removed catalogItem is reused, past the end the columns grow
+        snapshot.update(List.of(item(2, "Mug", "4", 2, 2)), Set.of());
+        snapshot.update(List.of(item(8, "Sheet", "5", 3, 2), item(9, "Cap", "6", 3, 1)), Set.of(3L, 8L));
+        assertThat(snapshot.ids()).containsExactly(2L, 4L, 5L, 7L, 8L, 9L);
+        assertThat(snapshot.idsOfBrand(3)).containsExactly(8, 9);
+        assertThat(snapshot.idsOfType(2)).containsExactly(2, 7, 8);
+        assertThat(snapshot.count(null)).isEqualTo(6);
+    }
+
+    @Test
+    void matchingFiltersAndSortsLikeTheDatabase() {
+        CatalogItemCriteria criteria = new CatalogItemCriteria();
+        criteria.catalogBrandId().setIn(List.of(1L, 2L));
+        criteria.price().setGreaterThanOrEqual(new BigDecimal("8.50"));
+
+        List<CatalogItemDTO> byPrice = snapshot.matching(criteria, CatalogItemMatcher.order(Sort.by(Sort.Direction.DESC, "price")));
+        assertThat(byPrice).extracting(CatalogItemDTO::getId).containsExactly(1L, 5L, 3L);
+
+        criteria = new CatalogItemCriteria();
+        criteria.name().setStartsWith(".NET");
+        criteria.name().setContains("mug");
+        assertThat(snapshot.matching(criteria, CatalogItemMatcher.order(Sort.unsorted())))
+            .extracting(CatalogItemDTO::getId)
+            .containsExactly(3L);
+
+        criteria.name().setContains(null);
+        criteria.name().setStartsWith(".net");
+        assertThat(snapshot.matching(criteria, CatalogItemMatcher.order(Sort.unsorted()))).isEmpty();
+        assertThat(snapshot.count(criteria)).isZero();
+
+        assertThat(CatalogItemMatcher.order(Sort.by("catalogBrand.brand"))).isNull();
+    }
+
+    @Test
+    void facetsCountTheMatchingColumns() {
+        CatalogItemCriteria criteria = new CatalogItemCriteria();
+        criteria.price().setGreaterThan(new BigDecimal("8.499"));
+        CatalogFacets facets = snapshot.facets();
+        List<BigDecimal> bounds = List.of(BigDecimal.TEN, new BigDecimal("19.50"));
+
+        CatalogItemFacetsDTO counts = facets.count(criteria, CatalogSnapshotTest::unsupported, bounds, Integer.MAX_VALUE);
+        assertThat(counts.getTotal()).isEqualTo(3);
+        assertThat(counts.getCatalogBrands()).extracting(FacetValue::getName).containsExactly("Brand 1", "Brand 2");
+        assertThat(counts.getCatalogBrands()).extracting(FacetValue::getCount).containsExactly(2L, 1L);
+        assertThat(counts.getPrices()).extracting(PriceBucket::getCount).containsExactly(1L, 1L, 1L);
+
+        // each facet is counted without the criterion on its own dimension
+        criteria.catalogBrandId().setEquals(2L);
+        criteria.price().setGreaterThan(BigDecimal.TEN);
+        counts = facets.count(criteria, CatalogSnapshotTest::unsupported, bounds, Integer.MAX_VALUE);
+        assertThat(counts.getTotal()).isEqualTo(1);
+        assertThat(counts.getCatalogBrands()).extracting(FacetValue::getCount).containsExactly(1L, 1L);
+        assertThat(counts.getCatalogTypes()).extracting(FacetValue::getCount).containsExactly(1L);
+        assertThat(counts.getPrices()).extracting(PriceBucket::getCount).containsExactly(0L, 1L, 0L);
+        criteria.setCatalogBrandId(null);
+        criteria.price().setGreaterThan(new BigDecimal("8.499"));
+
+        // replacing a catalogItem changes its own columns only
+        snapshot.update(List.of(item(5, "Prism White T-Shirt", "7", 2, 1)), Set.of());
+        assertThat(facets.count(criteria, CatalogSnapshotTest::unsupported, bounds, Integer.MAX_VALUE).getCatalogBrands())
+            .extracting(FacetValue::getName)
+            .containsExactly("Brand 1");
+
+        // moving a catalogItem to another brand, and removing one, change their bits only
+        snapshot.update(List.of(item(3, ".NET Black & White Mug", "8.5", 2, 2)), Set.of(1L));
+        counts = facets.count(criteria, CatalogSnapshotTest::unsupported, bounds, Integer.MAX_VALUE);
+        assertThat(counts.getTotal()).isEqualTo(1);
+        assertThat(counts.getCatalogBrands()).extracting(FacetValue::getName).containsExactly("Brand 2");
+        assertThat(counts.getCatalogTypes()).extracting(FacetValue::getName).containsExactly("Type 2");
+
+        criteria.catalogTypeId().setEquals(2L);
+        criteria.name().setContains("mug");
+        assertThat(facets.filter(criteria)).isNull();
+        assertThat(facets.candidates(criteria).cardinality()).isEqualTo(2);
+    }
+
+    private static IntPredicate unsupported(CatalogItemCriteria criteria) {
+        throw new AssertionError("The columns should filter on " + criteria);
+    }
+
+    private static CatalogItemDTO item(long id, String name, String price, long brandId, long typeId) {
+        return new CatalogItemDTO(
+            id,
+            name,
+            name,
+            price == null ? null : new BigDecimal(price),
+            null,
+            null,
+            10,
+            0,
+            100,
+            false,
+            0,
+            brandId,
+            "Brand " + brandId,
+            typeId,
+            "Type " + typeId
+        );
+    }
+}
@@ -0,0 +1,126 @@
+package com.gachokaerick.eshop.catalog.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+class InvertedIndexTest {
+
+    private static final String[] WORDS = { "mug", "shirt", "hoodie", "cap", "sheet", "bottle", "pin", "sticker" };
+    private static final String[] COLORS = { "red", "green", "blue", "black", "white" };
+
+    private final Logger log = LoggerFactory.getLogger(InvertedIndexTest.class);
+
+    private InvertedIndex index;
+
+    @BeforeEach
+    void init() {
+        index = new InvertedIndex(64, 4);
+        index.put(1, ".NET Bot Black Hoodie", "Warm hoodie");
+        index.put(2, ".NET Black & White Mug", null);
+        index.put(3, "Prism White T-Shirt", "Crème cotton");
+        index.put(4, "Roslyn Red Sheet", "Paper sheet");
+    }
+
+    @Test
+    void tokenizeLowerCasesAndStripsAccents() {
+        assertThat(InvertedIndex.tokenize("Crème Brûlée, crème!")).containsExactly("creme", "brulee");
+        assertThat(InvertedIndex.tokenize(null)).isEmpty();
+        assertThat(InvertedIndex.tokenize(" -- ")).isEmpty();
+    }
+
+    @Test
+    void searchMatchesEveryTerm() {
+        assertThat(index.search("black", 10)).containsExactly(1L, 2L);
+        assertThat(index.search("Black MUG", 10)).containsExactly(2L);
+        assertThat(index.search("black sheet", 10)).isEmpty();
+        assertThat(index.search("creme", 10)).containsExactly(3L);
+        assertThat(index.search("", 10)).isEmpty();
+    }
+
+    @Test
+    void searchMatchesPrefixesAfterExactMatches() {
+        index.put(5, "Whiteboard", null);
+
+        assertThat(index.search("whi", 10)).containsExactly(2L, 3L, 5L);
+        assertThat(index.search("white", 10)).containsExactly(2L, 3L, 5L);
+        assertThat(index.search("white", 2)).containsExactly(2L, 3L);
+        assertThat(index.search("whiteb", 10)).containsExactly(5L);
+    }
+
+    @Test
+    void searchMatchesTyposOnlyWithoutExactOrPrefixMatches() {
+        assertThat(index.search("hoddie", 10)).containsExactly(1L);
+        assertThat(index.search("roslin", 10)).containsExactly(4L);
+        assertThat(index.search("shet", 10)).containsExactly(4L);
+        // too short for a typo
+        assertThat(index.search("mig", 10)).isEmpty();
+    }
+
+    @Test
+    void putReplacesAndRemoveForgets() {
+        index.put(2, ".NET Blue Mug", null);
+        assertThat(index.search("black", 10)).containsExactly(1L);
+        assertThat(index.search("blue mug", 10)).containsExactly(2L);
+
+        index.remove(2);
+        assertThat(index.search("mug", 10)).isEmpty();
+        assertThat(index.size()).isEqualTo(3);
+        assertThat(index.search("net", 10)).containsExactly(1L);
+    }
+
+    @Test
+    void withinOneEdit() {
+        assertThat(InvertedIndex.withinOneEdit("hoodie", "hoodie")).isTrue();
+        assertThat(InvertedIndex.withinOneEdit("hoodie", "hodie")).isTrue();
+        assertThat(InvertedIndex.withinOneEdit("hoodie", "hoodies")).isTrue();
+        assertThat(InvertedIndex.withinOneEdit("hoodie", "hoodle")).isTrue();
+        assertThat(InvertedIndex.withinOneEdit("hoodie", "hodle")).isFalse();
+        assertThat(InvertedIndex.withinOneEdit("hoodie", "hoodiess")).isFalse();
+    }
+
+    @Test
+    void searchOneMillionItems() {
+        int items = 1_000_000;
+        InvertedIndex large = new InvertedIndex(64, 4);
+        long start = System.nanoTime();
+        Map<Long, String[]> batch = new HashMap<>();
+        for (long id = 1; id <= items; id++) {
+            String name = COLORS[(int) (id % COLORS.length)] + " " + WORDS[(int) (id % WORDS.length)] + " model" + (id % 49_999);
+            batch.put(id, new String[] { name });
+            if (batch.size() == 10_000) {
+                large.putAll(batch);
+                batch = new HashMap<>();
+            }
+        }
+        log.info("Indexed {} items ({} tokens) in {} ms", large.size(), large.tokens(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+        // 20 items per model, 4 of them green, and no longer model token starts with this one
+        assertThat(large.search("green model49998", 100)).hasSize(4);
+        measure(large, "model49998");
+        measure(large, "green modet49998");
+        measure(large, "mug model432");
+        measure(large, "green mug");
+    }
+
+    private void measure(InvertedIndex large, String query) {
+        for (int i = 0; i < 20; i++) {
+            large.search(query, 20);
+        }
+        int iterations = 200;
+        List<Long> result = null;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            result = large.search(query, 20);
+        }
+        long elapsed = System.nanoTime() - start;
+        log.info("Search \"{}\": {} us per query, {} results", query, TimeUnit.NANOSECONDS.toMicros(elapsed / iterations), result.size());
+    }
+}
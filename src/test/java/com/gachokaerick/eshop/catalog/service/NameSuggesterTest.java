@@ -0,0 +1,108 @@
+package com.gachokaerick.eshop.catalog.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+class NameSuggesterTest {
+
+    private static final String[] WORDS = { "Mug", "Shirt", "Hoodie", "Cap", "Sheet", "Bottle", "Pin", "Sticker" };
+
+    private final Logger log = LoggerFactory.getLogger(NameSuggesterTest.class);
+
+    private NameSuggester suggester;
+
+    @BeforeEach
+    void init() {
+        suggester = new NameSuggester(3);
+        suggester.putAll(
+            List.of(
+                new NameSuggester.Suggestion(1, ".NET Bot Black Hoodie", 5),
+                new NameSuggester.Suggestion(2, ".NET Black & White Mug", 40),
+                new NameSuggester.Suggestion(3, "Prism White T-Shirt", 0),
+                new NameSuggester.Suggestion(4, "Prism Crème Mug", 12),
+                new NameSuggester.Suggestion(5, "Roslyn Red Sheet", 12)
+            )
+        );
+    }
+
+    @Test
+    void suggestRanksNamesStartingWithThePrefixByScore() {
+        assertThat(names(".net", 10)).containsExactly(".NET Black & White Mug", ".NET Bot Black Hoodie");
+        assertThat(names("PRISM", 10)).containsExactly("Prism Crème Mug", "Prism White T-Shirt");
+        assertThat(names("prism cre", 10)).containsExactly("Prism Crème Mug");
+        assertThat(names("p", 1)).containsExactly("Prism Crème Mug");
+        assertThat(names("mug", 10)).isEmpty();
+        assertThat(names(" ", 10)).isEmpty();
+    }
+
+    @Test
+    void suggestBreaksTiesByName() {
+        assertThat(names("", 10)).isEmpty();
+        suggester.put(6, "Prism Red Cap", 12);
+        assertThat(names("pr", 10)).containsExactly("Prism Crème Mug", "Prism Red Cap", "Prism White T-Shirt");
+    }
+
+    @Test
+    void putAndRemoveAreSuggestedBeforeAndAfterRebuilding() {
+        suggester.put(3, "Prism White T-Shirt", 100);
+        suggester.put(6, "Roslyn Blue Sheet", 1);
+        assertThat(names("prism", 10)).containsExactly("Prism White T-Shirt", "Prism Crème Mug");
+        assertThat(names("roslyn", 10)).containsExactly("Roslyn Red Sheet", "Roslyn Blue Sheet");
+        assertThat(suggester.size()).isEqualTo(6);
+
+        // the third change rebuilds the arrays
+        suggester.remove(5);
+        assertThat(names("roslyn", 10)).containsExactly("Roslyn Blue Sheet");
+        assertThat(names("prism", 10)).containsExactly("Prism White T-Shirt", "Prism Crème Mug");
+        assertThat(suggester.size()).isEqualTo(5);
+
+        suggester.put(2, "Black & White Mug", 40);
+        assertThat(names(".net", 10)).containsExactly(".NET Bot Black Hoodie");
+        assertThat(names("black", 10)).containsExactly("Black & White Mug");
+    }
+
+    @Test
+    void footprintPerHundredThousandNames() {
+        int names = 100_000;
+        List<NameSuggester.Suggestion> suggestions = new ArrayList<>(names);
+        for (int i = 0; i < names; i++) {
+            suggestions.add(new NameSuggester.Suggestion(i, WORDS[i % WORDS.length] + " Model " + i, i % 997));
+        }
+        NameSuggester large = new NameSuggester(4096);
+        long start = System.nanoTime();
+        large.putAll(suggestions);
+        log.info(
+            "Suggesting {} names takes {} KB ({} bytes per name), built in {} ms",
+            large.size(),
+            large.footprint() / 1024,
+            large.footprint() / names,
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+        );
+        assertThat(large.footprint()).isLessThan(200L * names);
+
+        assertThat(large.suggest("hoodie model 9", 5)).hasSize(5).allMatch(suggestion -> suggestion.getName().startsWith("Hoodie Model 9"));
+        for (String prefix : List.of("h", "hoodie model 9", "hoodie model 99994")) {
+            for (int i = 0; i < 1000; i++) {
+                large.suggest(prefix, 10);
+            }
+            int iterations = 10_000;
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                large.suggest(prefix, 10);
+            }
+            log.info("Suggest \"{}\": {} ns per query", prefix, (System.nanoTime() - start) / iterations);
+        }
+    }
+
+    private List<String> names(String prefix, int limit) {
+        return suggester.suggest(prefix, limit).stream().map(NameSuggester.Suggestion::getName).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,97 @@
+package com.gachokaerick.eshop.catalog.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.gachokaerick.eshop.catalog.config.ApplicationProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.persistence.OptimisticLockException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+/**
+ * Test class for the {@link OptimisticLockRetry}.
+ */
+class OptimisticLockRetryTest {
+
+    private MeterRegistry meterRegistry;
+
+    private OptimisticLockRetry optimisticLockRetry;
+
+    @BeforeEach
+    public void setup() {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getOptimisticRetry().setMaxAttempts(3);
+        applicationProperties.getOptimisticRetry().setInitialBackoff(Duration.ofMillis(1));
+        applicationProperties.getOptimisticRetry().setMaxBackoff(Duration.ofMillis(2));
+        meterRegistry = new SimpleMeterRegistry();
+        optimisticLockRetry = new OptimisticLockRetry(meterRegistry, applicationProperties);
+    }
+
+    @Test
+    void retriesUntilTheUpdateDoesNotConflict() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = optimisticLockRetry.execute(
+            "update",
+            () -> {
+                if (attempts.incrementAndGet() < 3) {
+                    throw new ObjectOptimisticLockingFailureException(Object.class, 1L);
+                }
+                return "done";
+            }
+        );
+
+        assertThat(result).isEqualTo("done");
+        assertThat(attempts).hasValue(3);
+        assertThat(meterRegistry.get("catalog.optimistic.conflicts").tag("operation", "update").counter().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("catalog.optimistic.retries").tag("operation", "update").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void givesUpAfterMaxAttempts() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(
+            OptimisticLockingFailureException.class,
+            () ->
+                optimisticLockRetry.execute(
+                    "addStock",
+                    () -> {
+                        attempts.incrementAndGet();
+                        throw new OptimisticLockException();
+                    }
+                )
+        );
+
+        assertThat(attempts).hasValue(3);
+        assertThat(meterRegistry.get("catalog.optimistic.conflicts").tag("operation", "addStock").counter().count()).isEqualTo(3);
+        assertThat(meterRegistry.get("catalog.optimistic.retries").tag("operation", "addStock").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void doesNotRetryAnUpdateAgainstAGivenVersion() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(
+            OptimisticLockingFailureException.class,
+            () ->
+                optimisticLockRetry.executeOnce(
+                    "partialUpdate",
+                    () -> {
+                        attempts.incrementAndGet();
+                        throw new ObjectOptimisticLockingFailureException(Object.class, 1L);
+                    }
+                )
+        );
+
+        assertThat(attempts).hasValue(1);
+        assertThat(meterRegistry.get("catalog.optimistic.conflicts").tag("operation", "partialUpdate").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.find("catalog.optimistic.retries").counter()).isNull();
+    }
+}
@@ -0,0 +1,59 @@
+package com.gachokaerick.eshop.catalog.service;
+
+import static com.gachokaerick.eshop.catalog.config.Constants.RESTOCK_TOPIC;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.gachokaerick.eshop.catalog.IntegrationTest;
+import com.gachokaerick.eshop.catalog.repository.OutboxEventRepository;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Integration tests for {@link OutboxService}, relaying to a {@link MockProducer}.
+ */
+@IntegrationTest
+@Transactional
+class OutboxServiceIT {
+
+    @Autowired
+    private OutboxService outboxService;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @BeforeEach
+    public void initTest() {
+        // events committed by other tests are not part of these ones
+        outboxEventRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void relayPublishesTheEventsInOrderAndDeletesThem() {
+        outboxService.enqueue(RESTOCK_TOPIC, "1", "first");
+        outboxService.enqueue(RESTOCK_TOPIC, "2", "second");
+        MockProducer<String, String> producer = new MockProducer<>(true, new StringSerializer(), new StringSerializer());
+
+        assertThat(outboxService.relay(producer)).isEqualTo(2);
+
+        assertThat(producer.history()).extracting(ProducerRecord::value).containsExactly("first", "second");
+        assertThat(producer.history()).extracting(ProducerRecord::key).containsExactly("1", "2");
+        assertThat(outboxEventRepository.count()).isZero();
+    }
+
+    @Test
+    void relayKeepsTheEventsTheBrokerDidNotAcknowledge() {
+        outboxService.enqueue(RESTOCK_TOPIC, "1", "first");
+        MockProducer<String, String> producer = new MockProducer<>(true, new StringSerializer(), new StringSerializer());
+        producer.sendException = new KafkaException("broker down");
+
+        assertThat(outboxService.relay(producer)).isZero();
+
+        assertThat(outboxEventRepository.count()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,118 @@
+package com.gachokaerick.eshop.catalog.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.gachokaerick.eshop.catalog.config.ApplicationProperties;
+import com.gachokaerick.eshop.catalog.service.CollectionVersionService.CatalogCollection;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class ResponseCacheTest {
+
+    private final ApplicationProperties applicationProperties = new ApplicationProperties();
+    private final ResponseCache responseCache = new ResponseCache(applicationProperties, new SimpleMeterRegistry());
+
+    @Test
+    void getReturnsTheResponseOfTheCurrentVersionOnly() {
+        responseCache.put("items", entry(CatalogCollection.ITEMS, 1, 10));
+
+        assertThat(responseCache.get("items", 1)).isNotNull();
+        assertThat(responseCache.get("items", 2)).isNull();
+        assertThat(responseCache.size()).isZero();
+        assertThat(responseCache.bytes()).isZero();
+    }
+
+    @Test
+    void putReplacesTheResponseOfTheSameKey() {
+        responseCache.put("items", entry(CatalogCollection.ITEMS, 1, 10));
+        responseCache.put("items", entry(CatalogCollection.ITEMS, 2, 30));
+
+        assertThat(responseCache.get("items", 2).getBody()).hasSize(30);
+        assertThat(responseCache.size()).isEqualTo(1);
+        assertThat(responseCache.bytes()).isEqualTo(30);
+    }
+
+    @Test
+    void evictRemovesTheResponsesOfTheChangedCollections() {
+        responseCache.put("items", entry(CatalogCollection.ITEMS, 1, 10));
+        responseCache.put("brands", entry(CatalogCollection.BRANDS, 1, 20));
+
+        responseCache.evict(CatalogCollection.ITEMS, CatalogCollection.TYPES);
+
+        assertThat(responseCache.get("items", 1)).isNull();
+        assertThat(responseCache.get("brands", 1)).isNotNull();
+        assertThat(responseCache.bytes()).isEqualTo(20);
+    }
+
+    @Test
+    void leastRecentlyReadResponsesAreEvictedPastTheMaximumEntries() {
+        applicationProperties.getResponseCache().setMaxEntries(10);
+        for (int i = 0; i < 10; i++) {
+            responseCache.put("page-" + i, entry(CatalogCollection.ITEMS, 1, 10));
+        }
+        for (int i = 0; i < 5; i++) {
+            responseCache.get("page-" + i, 1);
+        }
+
+        responseCache.put("page-10", entry(CatalogCollection.ITEMS, 1, 10));
+
+        // evicted down to 90% of the maximum
+        assertThat(responseCache.size()).isEqualTo(9);
+        assertThat(responseCache.bytes()).isEqualTo(90);
+        for (int i = 0; i < 5; i++) {
+            assertThat(responseCache.get("page-" + i, 1)).isNotNull();
+        }
+        assertThat(responseCache.get("page-10", 1)).isNotNull();
+    }
+
+    @Test
+    void responsesAreEvictedPastTheMaximumBytes() {
+        applicationProperties.getResponseCache().setMaxBytes(100);
+        for (int i = 0; i < 4; i++) {
+            responseCache.put("page-" + i, entry(CatalogCollection.ITEMS, 1, 30));
+        }
+
+        assertThat(responseCache.bytes()).isEqualTo(90);
+        assertThat(responseCache.get("page-3", 1)).isNotNull();
+    }
+
+    @Test
+    void concurrentReadsAndWritesKeepTheCacheBounded() throws Exception {
+        applicationProperties.getResponseCache().setMaxEntries(50);
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int thread = 0; thread < 8; thread++) {
+            int offset = thread;
+            futures.add(
+                executorService.submit(() -> {
+                    for (int i = 0; i < 2_000; i++) {
+                        String key = "page-" + ((i * 7 + offset) % 200);
+                        if (responseCache.get(key, 1) == null) {
+                            responseCache.put(key, entry(CatalogCollection.ITEMS, 1, 10));
+                        }
+                    }
+                })
+            );
+        }
+        for (Future<?> future : futures) {
+            future.get(1, TimeUnit.MINUTES);
+        }
+        executorService.shutdown();
+
+        // one last insertion evicts whatever was inserted while another thread was evicting
+        responseCache.put("last", entry(CatalogCollection.ITEMS, 1, 10));
+        assertThat(responseCache.size()).isLessThanOrEqualTo(50);
+        assertThat(responseCache.bytes()).isEqualTo(responseCache.size() * 10L);
+    }
+
+    private static ResponseCache.Entry entry(CatalogCollection collection, long version, int bytes) {
+        return new ResponseCache.Entry(collection, version, 200, Map.of(), new byte[bytes]);
+    }
+}
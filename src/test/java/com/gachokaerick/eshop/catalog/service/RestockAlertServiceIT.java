@@ -0,0 +1,199 @@
+package com.gachokaerick.eshop.catalog.service;
+
+import static com.gachokaerick.eshop.catalog.config.Constants.RESTOCK_TOPIC;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gachokaerick.eshop.catalog.IntegrationTest;
+import com.gachokaerick.eshop.catalog.config.ApplicationProperties;
+import com.gachokaerick.eshop.catalog.domain.catalogItem.CatalogItem;
+import com.gachokaerick.eshop.catalog.domain.catalogItem.CatalogItemDomain;
+import com.gachokaerick.eshop.catalog.model.CatalogBrand;
+import com.gachokaerick.eshop.catalog.model.CatalogType;
+import com.gachokaerick.eshop.catalog.model.OutboxEvent;
+import com.gachokaerick.eshop.catalog.repository.CatalogBrandRepository;
+import com.gachokaerick.eshop.catalog.repository.CatalogItemRepository;
+import com.gachokaerick.eshop.catalog.repository.CatalogTypeRepository;
+import com.gachokaerick.eshop.catalog.repository.OutboxEventRepository;
+import com.gachokaerick.eshop.catalog.repository.RestockAlertRepository;
+import com.gachokaerick.eshop.catalog.service.dto.CatalogItemDTO;
+import com.gachokaerick.eshop.catalog.service.dto.RestockAlertDTO;
+import com.gachokaerick.eshop.catalog.service.mapper.CatalogBrandMapper;
+import com.gachokaerick.eshop.catalog.service.mapper.CatalogTypeMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import javax.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Integration tests for {@link RestockAlertService}, fed by the stock changes of {@link StockMutationService}.
+ * <p>
+ * Alerts are written by the transaction of the crossing, so these tests commit their data and are not
+ * {@link org.springframework.transaction.annotation.Transactional}.
+ */
+@IntegrationTest
+class RestockAlertServiceIT {
+
+    private static final int AVAILABLE_STOCK = 10;
+    private static final int RESTOCK_THRESHOLD = 5;
+    private static final int MAX_STOCK_THRESHOLD = 100;
+
+    @Autowired
+    private RestockAlertService restockAlertService;
+
+    @Autowired
+    private StockMutationService stockMutationService;
+
+    @Autowired
+    private RestockAlertRepository restockAlertRepository;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private ApplicationProperties applicationProperties;
+
+    @Autowired
+    private CatalogItemRepository catalogItemRepository;
+
+    @Autowired
+    private CatalogBrandRepository catalogBrandRepository;
+
+    @Autowired
+    private CatalogTypeRepository catalogTypeRepository;
+
+    @Autowired
+    private CatalogBrandMapper catalogBrandMapper;
+
+    @Autowired
+    private CatalogTypeMapper catalogTypeMapper;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManager em;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private CatalogItem catalogItem;
+
+    @BeforeEach
+    public void initTest() {
+        // alerts and events committed by other tests are not part of these ones
+        restockAlertRepository.deleteAllInBatch();
+        outboxEventRepository.deleteAllInBatch();
+        catalogItem = new TransactionTemplate(transactionManager).execute(status -> createItem());
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        new TransactionTemplate(transactionManager)
+            .executeWithoutResult(status -> {
+                jdbcTemplate.update("delete from stock_movement where catalog_item_id = ?", catalogItem.getId());
+                jdbcTemplate.update("delete from catalog_item where id = ?", catalogItem.getId());
+                jdbcTemplate.update("delete from catalog_brand where id = ?", catalogItem.getCatalogBrand().getId());
+                jdbcTemplate.update("delete from catalog_type where id = ?", catalogItem.getCatalogType().getId());
+            });
+        em.getEntityManagerFactory().getCache().evict(CatalogItem.class);
+        restockAlertRepository.deleteAllInBatch();
+        outboxEventRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void removalJumpingPastTheThresholdIsAlertedWithTheQuantityToOrder() throws Exception {
+        stockMutationService.removeStock(catalogItem.getId(), AVAILABLE_STOCK - RESTOCK_THRESHOLD + 2, null);
+        // already below the threshold: not a crossing
+        stockMutationService.removeStock(catalogItem.getId(), 1, null);
+
+        assertThat(catalogItemRepository.findById(catalogItem.getId())).map(CatalogItem::getOnReorder).contains(true);
+        assertThat(outboxEventRepository.count()).isZero();
+
+        // the alert is kept in the database until the end of the window
+        assertThat(restockAlertRepository.findById(catalogItem.getId())).isPresent();
+        assertThat(restockAlertService.flush()).isZero();
+        assertThat(restockAlertService.flush(afterTheWindow())).isEqualTo(1);
+        assertThat(restockAlertRepository.count()).isZero();
+
+        List<OutboxEvent> events = outboxEventRepository.findAll();
+        assertThat(events).hasSize(1);
+        assertThat(events.get(0).getTopic()).isEqualTo(RESTOCK_TOPIC);
+        RestockAlertDTO[] alerts = objectMapper.readValue(events.get(0).getPayload(), RestockAlertDTO[].class);
+        assertThat(alerts).hasSize(1);
+        assertThat(alerts[0].getItemId()).isEqualTo(catalogItem.getId());
+        assertThat(alerts[0].getAvailableStock()).isEqualTo(RESTOCK_THRESHOLD - 2);
+        assertThat(alerts[0].getSuggestedQuantity()).isEqualTo(MAX_STOCK_THRESHOLD - RESTOCK_THRESHOLD + 2);
+    }
+
+    @Test
+    void crossingsWithinTheWindowAreAlertedOnce() {
+        double deduplicated = meterRegistry.get("catalog.restock.alerts.deduplicated").counter().count();
+
+        crossTheThreshold();
+        crossTheThreshold();
+        assertThat(restockAlertService.flush(afterTheWindow())).isEqualTo(1);
+        assertThat(restockAlertService.flush(afterTheWindow())).isZero();
+
+        // a crossing once the alert is published is listed in the next window
+        crossTheThreshold();
+        assertThat(restockAlertService.flush(afterTheWindow())).isEqualTo(1);
+
+        assertThat(outboxEventRepository.count()).isEqualTo(2);
+        assertThat(meterRegistry.get("catalog.restock.alerts.deduplicated").counter().count()).isEqualTo(deduplicated + 1);
+    }
+
+    @Test
+    void additionsAreNotAlerted() {
+        stockMutationService.addStock(catalogItem.getId(), 1, null);
+        stockMutationService.removeStock(catalogItem.getId(), 1, null);
+
+        assertThat(restockAlertService.flush(afterTheWindow())).isZero();
+        assertThat(catalogItemRepository.findById(catalogItem.getId())).map(CatalogItem::getOnReorder).contains(false);
+    }
+
+    private Instant afterTheWindow() {
+        return Instant.now().plus(applicationProperties.getRestockAlerts().getWindow());
+    }
+
+    private void crossTheThreshold() {
+        stockMutationService.removeStock(catalogItem.getId(), AVAILABLE_STOCK - RESTOCK_THRESHOLD, null);
+        stockMutationService.addStock(catalogItem.getId(), AVAILABLE_STOCK - RESTOCK_THRESHOLD, null);
+    }
+
+    private CatalogItem createItem() {
+        CatalogBrand catalogBrand = catalogBrandRepository.save(new CatalogBrand().brand("RestockAlertServiceIT"));
+        CatalogType catalogType = catalogTypeRepository.save(new CatalogType().type("RestockAlertServiceIT"));
+        CatalogItemDTO catalogItemDTO = new CatalogItemDTO(
+            null,
+            "AAAAAAAAAA",
+            null,
+            BigDecimal.ONE,
+            null,
+            null,
+            AVAILABLE_STOCK,
+            RESTOCK_THRESHOLD,
+            MAX_STOCK_THRESHOLD,
+            false,
+            catalogBrandMapper.toDto(catalogBrand),
+            catalogTypeMapper.toDto(catalogType)
+        );
+        return catalogItemRepository.saveAndFlush(
+            new CatalogItemDomain.CatalogItemBuilder().withCatalogItemDTO(catalogItemDTO).build().getCatalogItem()
+        );
+    }
+}
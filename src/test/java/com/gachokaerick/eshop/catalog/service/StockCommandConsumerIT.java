@@ -0,0 +1,168 @@
+package com.gachokaerick.eshop.catalog.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.gachokaerick.eshop.catalog.IntegrationTest;
+import com.gachokaerick.eshop.catalog.domain.catalogItem.CatalogItem;
+import com.gachokaerick.eshop.catalog.domain.catalogItem.CatalogItemDomain;
+import com.gachokaerick.eshop.catalog.model.CatalogBrand;
+import com.gachokaerick.eshop.catalog.model.CatalogType;
+import com.gachokaerick.eshop.catalog.model.OutboxEvent;
+import com.gachokaerick.eshop.catalog.repository.CatalogBrandRepository;
+import com.gachokaerick.eshop.catalog.repository.CatalogItemRepository;
+import com.gachokaerick.eshop.catalog.repository.CatalogTypeRepository;
+import com.gachokaerick.eshop.catalog.repository.OutboxEventRepository;
+import com.gachokaerick.eshop.catalog.service.dto.CatalogItemDTO;
+import com.gachokaerick.eshop.catalog.service.mapper.CatalogBrandMapper;
+import com.gachokaerick.eshop.catalog.service.mapper.CatalogTypeMapper;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.persistence.EntityManager;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Integration tests for {@link StockCommandConsumer}, polling a {@link MockConsumer}.
+ */
+@IntegrationTest
+@Transactional
+class StockCommandConsumerIT {
+
+    private static final String TOPIC = "stock-commands";
+    private static final String DEAD_LETTER_TOPIC = "stock-commands.DLT";
+
+    @Autowired
+    private StockCommandConsumer stockCommandConsumer;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private CatalogItemRepository catalogItemRepository;
+
+    @Autowired
+    private CatalogBrandRepository catalogBrandRepository;
+
+    @Autowired
+    private CatalogTypeRepository catalogTypeRepository;
+
+    @Autowired
+    private CatalogBrandMapper catalogBrandMapper;
+
+    @Autowired
+    private CatalogTypeMapper catalogTypeMapper;
+
+    @Autowired
+    private EntityManager em;
+
+    private final TopicPartition partition = new TopicPartition(TOPIC, 0);
+
+    private MockConsumer<String, String> consumer;
+
+    private long offset;
+
+    @BeforeEach
+    public void initTest() {
+        // events committed by other tests are not part of these ones
+        outboxEventRepository.deleteAllInBatch();
+        consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+        consumer.assign(List.of(partition));
+        consumer.updateBeginningOffsets(Map.of(partition, 0L));
+    }
+
+    @Test
+    void commandsAreAppliedInOrderAndCommitted() {
+        CatalogItem first = createItem(10);
+        CatalogItem second = createItem(10);
+        send(first, "{\"itemId\":" + first.getId() + ",\"reason\":\"REMOVE_STOCK\",\"quantity\":4,\"correlationId\":\"order-1\"}");
+        send(second, "{\"itemId\":" + second.getId() + ",\"reason\":\"REMOVE_STOCK\",\"quantity\":10}");
+        send(first, "{\"itemId\":" + first.getId() + ",\"reason\":\"ADD_STOCK\",\"quantity\":1}");
+
+        assertThat(stockCommandConsumer.poll(consumer)).isEqualTo(3);
+
+        em.clear();
+        assertThat(catalogItemRepository.findById(first.getId()).orElseThrow().getAvailableStock()).isEqualTo(7);
+        assertThat(catalogItemRepository.findById(second.getId()).orElseThrow().getAvailableStock()).isZero();
+        assertThat(consumer.committed(Set.of(partition)).get(partition).offset()).isEqualTo(3);
+        assertThat(outboxEventRepository.findAll()).extracting(OutboxEvent::getTopic).doesNotContain(DEAD_LETTER_TOPIC);
+    }
+
+    @Test
+    void commandsDeliveredAgainAreSkipped() {
+        CatalogItem catalogItem = createItem(10);
+        String removed = "{\"itemId\":" + catalogItem.getId() + ",\"reason\":\"REMOVE_STOCK\",\"quantity\":4}";
+        String unknownItem = "{\"itemId\":" + Long.MAX_VALUE + ",\"reason\":\"ADD_STOCK\",\"quantity\":1}";
+        send(catalogItem, removed);
+        send(catalogItem, unknownItem);
+        assertThat(stockCommandConsumer.poll(consumer)).isEqualTo(2);
+
+        // the offsets were not committed to Kafka before a rebalance: the batch is delivered again, with a new command
+        consumer.seek(partition, 0);
+        offset = 0;
+        send(catalogItem, removed);
+        send(catalogItem, unknownItem);
+        send(catalogItem, "{\"itemId\":" + catalogItem.getId() + ",\"reason\":\"ADD_STOCK\",\"quantity\":1}");
+        assertThat(stockCommandConsumer.poll(consumer)).isEqualTo(3);
+
+        em.clear();
+        assertThat(catalogItemRepository.findById(catalogItem.getId()).orElseThrow().getAvailableStock()).isEqualTo(7);
+        assertThat(consumer.committed(Set.of(partition)).get(partition).offset()).isEqualTo(3);
+        assertThat(outboxEventRepository.findAll()).filteredOn(event -> event.getTopic().equals(DEAD_LETTER_TOPIC)).hasSize(1);
+    }
+
+    @Test
+    void rejectedCommandsAreDeadLettered() {
+        CatalogItem catalogItem = createItem(0);
+        String soldOut = "{\"itemId\":" + catalogItem.getId() + ",\"reason\":\"REMOVE_STOCK\",\"quantity\":1}";
+        String unknownItem = "{\"itemId\":" + Long.MAX_VALUE + ",\"reason\":\"ADD_STOCK\",\"quantity\":1}";
+        String unreadable = "{\"itemId\":";
+        send(catalogItem, soldOut);
+        send(catalogItem, unknownItem);
+        send(catalogItem, unreadable);
+        send(catalogItem, "{\"itemId\":" + catalogItem.getId() + ",\"reason\":\"ADD_STOCK\",\"quantity\":2}");
+
+        assertThat(stockCommandConsumer.poll(consumer)).isEqualTo(4);
+
+        em.clear();
+        assertThat(catalogItemRepository.findById(catalogItem.getId()).orElseThrow().getAvailableStock()).isEqualTo(2);
+        assertThat(consumer.committed(Set.of(partition)).get(partition).offset()).isEqualTo(4);
+        assertThat(outboxEventRepository.findAll())
+            .filteredOn(event -> event.getTopic().equals(DEAD_LETTER_TOPIC))
+            .extracting(OutboxEvent::getPayload)
+            .containsExactlyInAnyOrder(soldOut, unknownItem, unreadable);
+    }
+
+    private void send(CatalogItem catalogItem, String command) {
+        consumer.addRecord(new ConsumerRecord<>(TOPIC, 0, offset++, catalogItem.getId().toString(), command));
+    }
+
+    private CatalogItem createItem(int availableStock) {
+        CatalogBrand catalogBrand = catalogBrandRepository.save(new CatalogBrand().brand("StockCommandConsumerIT"));
+        CatalogType catalogType = catalogTypeRepository.save(new CatalogType().type("StockCommandConsumerIT"));
+        CatalogItemDTO catalogItemDTO = new CatalogItemDTO(
+            null,
+            "AAAAAAAAAA",
+            null,
+            BigDecimal.ONE,
+            null,
+            null,
+            availableStock,
+            0,
+            100,
+            false,
+            catalogBrandMapper.toDto(catalogBrand),
+            catalogTypeMapper.toDto(catalogType)
+        );
+        return catalogItemRepository.saveAndFlush(
+            new CatalogItemDomain.CatalogItemBuilder().withCatalogItemDTO(catalogItemDTO).build().getCatalogItem()
+        );
+    }
+}
@@ -0,0 +1,335 @@
+package com.gachokaerick.eshop.catalog.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.gachokaerick.eshop.catalog.IntegrationTest;
+import com.gachokaerick.eshop.catalog.config.ApplicationProperties;
+import com.gachokaerick.eshop.catalog.domain.catalogItem.CatalogItem;
+import com.gachokaerick.eshop.catalog.domain.catalogItem.CatalogItemDomain;
+import com.gachokaerick.eshop.catalog.exception.DomainException;
+import com.gachokaerick.eshop.catalog.model.CatalogBrand;
+import com.gachokaerick.eshop.catalog.model.CatalogType;
+import com.gachokaerick.eshop.catalog.model.enumeration.StockMovementReason;
+import com.gachokaerick.eshop.catalog.repository.CatalogBrandRepository;
+import com.gachokaerick.eshop.catalog.repository.CatalogItemRepository;
+import com.gachokaerick.eshop.catalog.repository.CatalogTypeRepository;
+import com.gachokaerick.eshop.catalog.repository.StockMovementRepository;
+import com.gachokaerick.eshop.catalog.service.dto.CatalogItemDTO;
+import com.gachokaerick.eshop.catalog.service.dto.StockMovementDTO;
+import com.gachokaerick.eshop.catalog.service.mapper.CatalogBrandMapper;
+import com.gachokaerick.eshop.catalog.service.mapper.CatalogTypeMapper;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Integration tests for {@link StockJournalService}, comparing concurrent writers on the same item with the journal
+ * disabled (row lock) and enabled (journal append).
+ * <p>
+ * These tests commit their data, so they are not {@link org.springframework.transaction.annotation.Transactional}.
+ */
+@IntegrationTest
+class StockJournalServiceIT {
+
+    private static final int WRITERS = 8;
+    private static final int OPERATIONS_PER_WRITER = 25;
+    private static final int MAX_STOCK_THRESHOLD = 1000;
+
+    private final Logger log = LoggerFactory.getLogger(StockJournalServiceIT.class);
+
+    @Autowired
+    private StockJournalService stockJournalService;
+
+    @Autowired
+    private StockMutationService stockMutationService;
+
+    @Autowired
+    private CatalogItemService catalogItemService;
+
+    @Autowired
+    private ApplicationProperties applicationProperties;
+
+    @Autowired
+    private StockMovementRepository stockMovementRepository;
+
+    @Autowired
+    private CatalogItemRepository catalogItemRepository;
+
+    @Autowired
+    private CatalogBrandRepository catalogBrandRepository;
+
+    @Autowired
+    private CatalogTypeRepository catalogTypeRepository;
+
+    @Autowired
+    private CatalogBrandMapper catalogBrandMapper;
+
+    @Autowired
+    private CatalogTypeMapper catalogTypeMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private CatalogItem catalogItem;
+
+    @AfterEach
+    public void cleanUp() {
+        applicationProperties.getStockJournal().setEnabled(false);
+        if (catalogItem != null) {
+            stockJournalService.evict(catalogItem.getId());
+            new TransactionTemplate(transactionManager)
+                .executeWithoutResult(status -> {
+                    stockMovementRepository.deleteAll(
+                        stockMovementRepository.findAllByCatalogItemIdOrderByIdDesc(catalogItem.getId(), PageRequest.of(0, 10_000))
+                    );
+                    catalogItemRepository.deleteById(catalogItem.getId());
+                    catalogBrandRepository.deleteById(catalogItem.getCatalogBrand().getId());
+                    catalogTypeRepository.deleteById(catalogItem.getCatalogType().getId());
+                });
+        }
+    }
+
+    @Test
+    void lockedRemovalsRecordNoMovement() throws Exception {
+        catalogItem = createCommittedItem(500);
+
+        int removed = runConcurrently(
+            "removeStock (row lock)",
+            () -> stockMutationService.removeStock(catalogItem.getId(), 1, "locked").orElseThrow()
+        );
+
+        assertThat(removed).isEqualTo(WRITERS * OPERATIONS_PER_WRITER);
+        assertThat(snapshot()).isEqualTo(500 - WRITERS * OPERATIONS_PER_WRITER);
+        assertThat(stockJournalService.findAll(catalogItem.getId(), PageRequest.of(0, 1))).isEmpty();
+    }
+
+    @Test
+    void journaledRemovalsAreRecordedAsMovements() {
+        catalogItem = createCommittedItem(500);
+        applicationProperties.getStockJournal().setEnabled(true);
+
+        stockMutationService.removeStock(catalogItem.getId(), 1, "journaled");
+
+        List<StockMovementDTO> movements = stockJournalService.findAll(catalogItem.getId(), PageRequest.of(0, 1)).getContent();
+        assertThat(movements).hasSize(1);
+        assertThat(movements.get(0).getDelta()).isEqualTo(-1);
+        assertThat(movements.get(0).getReason()).isEqualTo(StockMovementReason.REMOVE_STOCK);
+        assertThat(movements.get(0).getCorrelationId()).isEqualTo("journaled");
+        assertThat(movements.get(0).getCompacted()).isFalse();
+    }
+
+    @Test
+    void journaledRemovalsDoNotLoseUpdatesAndAreCompacted() throws Exception {
+        catalogItem = createCommittedItem(500);
+        applicationProperties.getStockJournal().setEnabled(true);
+
+        int removed = runConcurrently(
+            "removeStock (journal)",
+            () -> stockMutationService.removeStock(catalogItem.getId(), 1, null).orElseThrow()
+        );
+
+        int expected = 500 - WRITERS * OPERATIONS_PER_WRITER;
+        assertThat(removed).isEqualTo(WRITERS * OPERATIONS_PER_WRITER);
+        // the snapshot is untouched until compaction
+        assertThat(snapshot()).isEqualTo(500);
+        assertThat(currentStock()).isEqualTo(expected);
+
+        assertThat(stockJournalService.compact()).isEqualTo(1);
+
+        assertThat(snapshot()).isEqualTo(expected);
+        assertThat(currentStock()).isEqualTo(expected);
+        assertThat(stockMovementRepository.sumUncompacted(catalogItem.getId())).isZero();
+    }
+
+    @Test
+    void journaledRemovalsNeverOversell() throws Exception {
+        catalogItem = createCommittedItem(50);
+        applicationProperties.getStockJournal().setEnabled(true);
+
+        int removed = runConcurrently(
+            "removeStock (journal, sold out)",
+            () -> {
+                try {
+                    return stockMutationService.removeStock(catalogItem.getId(), 1, null).orElseThrow();
+                } catch (DomainException e) {
+                    return 0;
+                }
+            }
+        );
+
+        assertThat(removed).isEqualTo(50);
+        assertThat(currentStock()).isZero();
+        stockJournalService.compact();
+        assertThat(snapshot()).isZero();
+    }
+
+    @Test
+    void journaledAdditionsAreCappedAndClearOnReorder() throws Exception {
+        catalogItem = createCommittedItem(500);
+        applicationProperties.getStockJournal().setEnabled(true);
+
+        int added = runConcurrently("addStock (journal)", () -> stockMutationService.addStock(catalogItem.getId(), 5, null).orElseThrow());
+
+        assertThat(added).isEqualTo(MAX_STOCK_THRESHOLD - 500);
+        assertThat(currentStock()).isEqualTo(MAX_STOCK_THRESHOLD);
+        stockJournalService.compact();
+        CatalogItem compacted = catalogItemRepository.findById(catalogItem.getId()).orElseThrow();
+        assertThat(compacted.getAvailableStock()).isEqualTo(MAX_STOCK_THRESHOLD);
+        assertThat(compacted.getOnReorder()).isFalse();
+    }
+
+    @Test
+    void runningTotalIsLoadedFromTheDatabase() {
+        catalogItem = createCommittedItem(500);
+        applicationProperties.getStockJournal().setEnabled(true);
+        stockMutationService.removeStock(catalogItem.getId(), 10, null);
+        // as after a restart
+        stockJournalService.evict(catalogItem.getId());
+
+        // a snapshot read from a copy that already has the movement folded in
+        assertThat(stockJournalService.availableStock(catalogItem.getId(), 490)).isEqualTo(490);
+        assertThat(stockJournalService.compact()).isEqualTo(1);
+        assertThat(currentStock()).isEqualTo(490);
+    }
+
+    @Test
+    void runningTotalLockedByATransactionIsNotEvicted() throws Exception {
+        catalogItem = createCommittedItem(500);
+        applicationProperties.getStockJournal().setEnabled(true);
+        CountDownLatch removed = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> first = executorService.submit(() ->
+                new TransactionTemplate(transactionManager)
+                    .executeWithoutResult(status -> {
+                        stockMutationService.removeStock(catalogItem.getId(), 1, null);
+                        removed.countDown();
+                        await(commit);
+                    })
+            );
+            await(removed);
+
+            stockJournalService.evict(catalogItem.getId());
+
+            // still serialized behind the first removal
+            Future<?> second = executorService.submit(() -> stockMutationService.removeStock(catalogItem.getId(), 1, null));
+            Thread.sleep(200);
+            assertThat(second).isNotDone();
+            commit.countDown();
+            first.get(1, TimeUnit.MINUTES);
+            second.get(1, TimeUnit.MINUTES);
+        } finally {
+            commit.countDown();
+            executorService.shutdown();
+        }
+
+        assertThat(currentStock()).isEqualTo(498);
+        assertThat(stockJournalService.compact()).isEqualTo(1);
+        assertThat(snapshot()).isEqualTo(498);
+    }
+
+    @Test
+    void updateOverwritesTheJournaledStock() {
+        catalogItem = createCommittedItem(500);
+        applicationProperties.getStockJournal().setEnabled(true);
+        stockMutationService.removeStock(catalogItem.getId(), 10, null);
+
+        CatalogItemDTO patch = new CatalogItemDTO();
+        patch.setId(catalogItem.getId());
+        patch.setAvailableStock(100);
+        catalogItemService.partialUpdate(patch);
+
+        assertThat(currentStock()).isEqualTo(100);
+        assertThat(stockMovementRepository.sumUncompacted(catalogItem.getId())).isZero();
+        assertThat(stockJournalService.compact()).isZero();
+        assertThat(snapshot()).isEqualTo(100);
+    }
+
+    private int runConcurrently(String operation, IntSupplier mutation) throws Exception {
+        ExecutorService executorService = Executors.newFixedThreadPool(WRITERS);
+        AtomicInteger total = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < WRITERS; i++) {
+            futures.add(
+                executorService.submit(() -> {
+                    for (int j = 0; j < OPERATIONS_PER_WRITER; j++) {
+                        total.addAndGet(mutation.getAsInt());
+                    }
+                })
+            );
+        }
+        for (Future<?> future : futures) {
+            future.get(1, TimeUnit.MINUTES);
+        }
+        long elapsed = System.nanoTime() - start;
+        executorService.shutdown();
+        log.info(
+            "{}: {} operations by {} writers in {} ms ({} ops/s)",
+            operation,
+            WRITERS * OPERATIONS_PER_WRITER,
+            WRITERS,
+            TimeUnit.NANOSECONDS.toMillis(elapsed),
+            (WRITERS * OPERATIONS_PER_WRITER) * TimeUnit.SECONDS.toNanos(1) / elapsed
+        );
+        return total.get();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertThat(latch.await(1, TimeUnit.MINUTES)).isTrue();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private int snapshot() {
+        return catalogItemRepository.findById(catalogItem.getId()).orElseThrow().getAvailableStock();
+    }
+
+    private int currentStock() {
+        return catalogItemService.findOne(catalogItem.getId()).orElseThrow().getAvailableStock();
+    }
+
+    private CatalogItem createCommittedItem(int availableStock) {
+        return new TransactionTemplate(transactionManager)
+            .execute(status -> {
+                CatalogBrand catalogBrand = catalogBrandRepository.save(new CatalogBrand().brand("StockJournalServiceIT"));
+                CatalogType catalogType = catalogTypeRepository.save(new CatalogType().type("StockJournalServiceIT"));
+                CatalogItemDTO catalogItemDTO = new CatalogItemDTO(
+                    null,
+                    "AAAAAAAAAA",
+                    null,
+                    BigDecimal.ONE,
+                    null,
+                    null,
+                    availableStock,
+                    0,
+                    MAX_STOCK_THRESHOLD,
+                    true,
+                    catalogBrandMapper.toDto(catalogBrand),
+                    catalogTypeMapper.toDto(catalogType)
+                );
+                return catalogItemRepository.save(
+                    new CatalogItemDomain.CatalogItemBuilder().withCatalogItemDTO(catalogItemDTO).build().getCatalogItem()
+                );
+            });
+    }
+}
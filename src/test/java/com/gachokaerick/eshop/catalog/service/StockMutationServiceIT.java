@@ -0,0 +1,188 @@
+package com.gachokaerick.eshop.catalog.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.gachokaerick.eshop.catalog.IntegrationTest;
+import com.gachokaerick.eshop.catalog.domain.catalogItem.CatalogItem;
+import com.gachokaerick.eshop.catalog.domain.catalogItem.CatalogItemDomain;
+import com.gachokaerick.eshop.catalog.exception.DomainException;
+import com.gachokaerick.eshop.catalog.model.CatalogBrand;
+import com.gachokaerick.eshop.catalog.model.CatalogType;
+import com.gachokaerick.eshop.catalog.repository.CatalogBrandRepository;
+import com.gachokaerick.eshop.catalog.repository.CatalogItemRepository;
+import com.gachokaerick.eshop.catalog.repository.CatalogTypeRepository;
+import com.gachokaerick.eshop.catalog.service.dto.CatalogItemDTO;
+import com.gachokaerick.eshop.catalog.service.mapper.CatalogBrandMapper;
+import com.gachokaerick.eshop.catalog.service.mapper.CatalogTypeMapper;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Integration tests for {@link StockMutationService} with concurrent writers on the same item.
+ * <p>
+ * These tests commit their data, so they are not {@link org.springframework.transaction.annotation.Transactional}.
+ */
+@IntegrationTest
+class StockMutationServiceIT {
+
+    private static final int WRITERS = 8;
+    private static final int OPERATIONS_PER_WRITER = 25;
+    private static final int MAX_STOCK_THRESHOLD = 1000;
+
+    private final Logger log = LoggerFactory.getLogger(StockMutationServiceIT.class);
+
+    @Autowired
+    private StockMutationService stockMutationService;
+
+    @Autowired
+    private CatalogItemRepository catalogItemRepository;
+
+    @Autowired
+    private CatalogBrandRepository catalogBrandRepository;
+
+    @Autowired
+    private CatalogTypeRepository catalogTypeRepository;
+
+    @Autowired
+    private CatalogBrandMapper catalogBrandMapper;
+
+    @Autowired
+    private CatalogTypeMapper catalogTypeMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private CatalogItem catalogItem;
+
+    @AfterEach
+    public void cleanUp() {
+        if (catalogItem != null) {
+            new TransactionTemplate(transactionManager)
+                .executeWithoutResult(status -> {
+                    catalogItemRepository.deleteById(catalogItem.getId());
+                    catalogBrandRepository.deleteById(catalogItem.getCatalogBrand().getId());
+                    catalogTypeRepository.deleteById(catalogItem.getCatalogType().getId());
+                });
+        }
+    }
+
+    @Test
+    void concurrentRemovalsDoNotLoseUpdates() throws Exception {
+        catalogItem = createCommittedItem(500);
+
+        int removed = runConcurrently("removeStock", () -> stockMutationService.removeStock(catalogItem.getId(), 1, null).orElseThrow());
+
+        assertThat(removed).isEqualTo(WRITERS * OPERATIONS_PER_WRITER);
+        assertThat(currentStock()).isEqualTo(500 - WRITERS * OPERATIONS_PER_WRITER);
+    }
+
+    @Test
+    void concurrentRemovalsNeverOversell() throws Exception {
+        catalogItem = createCommittedItem(50);
+
+        int removed = runConcurrently(
+            "removeStock (sold out)",
+            () -> {
+                try {
+                    return stockMutationService.removeStock(catalogItem.getId(), 1, null).orElseThrow();
+                } catch (DomainException e) {
+                    return 0;
+                }
+            }
+        );
+
+        assertThat(removed).isEqualTo(50);
+        assertThat(currentStock()).isZero();
+        assertThrows(DomainException.class, () -> stockMutationService.removeStock(catalogItem.getId(), 1, null));
+    }
+
+    @Test
+    void concurrentAdditionsAreCappedAtMaxStockThreshold() throws Exception {
+        catalogItem = createCommittedItem(500);
+
+        int added = runConcurrently("addStock", () -> stockMutationService.addStock(catalogItem.getId(), 5, null).orElseThrow());
+
+        assertThat(added).isEqualTo(MAX_STOCK_THRESHOLD - 500);
+        assertThat(currentStock()).isEqualTo(MAX_STOCK_THRESHOLD);
+    }
+
+    @Test
+    void mutationOfNonExistingItemIsEmpty() {
+        assertThat(stockMutationService.removeStock(Long.MAX_VALUE, 1, null)).isEmpty();
+        assertThat(stockMutationService.addStock(Long.MAX_VALUE, 1, null)).isEmpty();
+    }
+
+    private int runConcurrently(String operation, IntSupplier mutation) throws Exception {
+        ExecutorService executorService = Executors.newFixedThreadPool(WRITERS);
+        AtomicInteger total = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < WRITERS; i++) {
+            futures.add(
+                executorService.submit(() -> {
+                    for (int j = 0; j < OPERATIONS_PER_WRITER; j++) {
+                        total.addAndGet(mutation.getAsInt());
+                    }
+                })
+            );
+        }
+        for (Future<?> future : futures) {
+            future.get(1, TimeUnit.MINUTES);
+        }
+        long elapsed = System.nanoTime() - start;
+        executorService.shutdown();
+        log.info(
+            "{}: {} operations by {} writers in {} ms ({} ops/s)",
+            operation,
+            WRITERS * OPERATIONS_PER_WRITER,
+            WRITERS,
+            TimeUnit.NANOSECONDS.toMillis(elapsed),
+            (WRITERS * OPERATIONS_PER_WRITER) * TimeUnit.SECONDS.toNanos(1) / elapsed
+        );
+        return total.get();
+    }
+
+    private int currentStock() {
+        return catalogItemRepository.findById(catalogItem.getId()).orElseThrow().getAvailableStock();
+    }
+
+    private CatalogItem createCommittedItem(int availableStock) {
+        return new TransactionTemplate(transactionManager)
+            .execute(status -> {
+                CatalogBrand catalogBrand = catalogBrandRepository.save(new CatalogBrand().brand("StockMutationServiceIT"));
+                CatalogType catalogType = catalogTypeRepository.save(new CatalogType().type("StockMutationServiceIT"));
+                CatalogItemDTO catalogItemDTO = new CatalogItemDTO(
+                    null,
+                    "AAAAAAAAAA",
+                    null,
+                    BigDecimal.ONE,
+                    null,
+                    null,
+                    availableStock,
+                    0,
+                    MAX_STOCK_THRESHOLD,
+                    false,
+                    catalogBrandMapper.toDto(catalogBrand),
+                    catalogTypeMapper.toDto(catalogType)
+                );
+                return catalogItemRepository.save(
+                    new CatalogItemDomain.CatalogItemBuilder().withCatalogItemDTO(catalogItemDTO).build().getCatalogItem()
+                );
+            });
+    }
+}
@@ -0,0 +1,275 @@
+package com.gachokaerick.eshop.catalog.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.gachokaerick.eshop.catalog.IntegrationTest;
+import com.gachokaerick.eshop.catalog.config.ApplicationProperties;
+import com.gachokaerick.eshop.catalog.domain.catalogItem.CatalogItem;
+import com.gachokaerick.eshop.catalog.domain.catalogItem.CatalogItemDomain;
+import com.gachokaerick.eshop.catalog.exception.DomainException;
+import com.gachokaerick.eshop.catalog.exception.StockQueueTimeoutException;
+import com.gachokaerick.eshop.catalog.model.CatalogBrand;
+import com.gachokaerick.eshop.catalog.model.CatalogType;
+import com.gachokaerick.eshop.catalog.repository.CatalogBrandRepository;
+import com.gachokaerick.eshop.catalog.repository.CatalogItemRepository;
+import com.gachokaerick.eshop.catalog.repository.CatalogTypeRepository;
+import com.gachokaerick.eshop.catalog.service.dto.CatalogItemDTO;
+import com.gachokaerick.eshop.catalog.service.mapper.CatalogBrandMapper;
+import com.gachokaerick.eshop.catalog.service.mapper.CatalogTypeMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Integration tests for {@link StockWriteQueue}, comparing concurrent writers on the same item applied directly and
+ * queued onto a single writer.
+ * <p>
+ * These tests commit their data, so they are not {@link org.springframework.transaction.annotation.Transactional}.
+ */
+@IntegrationTest
+class StockWriteQueueIT {
+
+    private static final int WRITERS = 8;
+    private static final int OPERATIONS_PER_WRITER = 25;
+    private static final int MAX_STOCK_THRESHOLD = 1000;
+
+    private final Logger log = LoggerFactory.getLogger(StockWriteQueueIT.class);
+
+    @Autowired
+    private StockWriteQueue stockWriteQueue;
+
+    @Autowired
+    private StockJournalService stockJournalService;
+
+    @Autowired
+    private ApplicationProperties applicationProperties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private CatalogItemRepository catalogItemRepository;
+
+    @Autowired
+    private CatalogBrandRepository catalogBrandRepository;
+
+    @Autowired
+    private CatalogTypeRepository catalogTypeRepository;
+
+    @Autowired
+    private CatalogBrandMapper catalogBrandMapper;
+
+    @Autowired
+    private CatalogTypeMapper catalogTypeMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private CatalogItem catalogItem;
+
+    @AfterEach
+    public void cleanUp() {
+        applicationProperties.getStockQueue().setContentionThreshold(4);
+        applicationProperties.getStockQueue().setTimeout(Duration.ofSeconds(5));
+        applicationProperties.getStockJournal().setEnabled(false);
+        if (catalogItem != null) {
+            stockJournalService.evict(catalogItem.getId());
+            new TransactionTemplate(transactionManager)
+                .executeWithoutResult(status -> {
+                    jdbcTemplate.update("delete from stock_movement where catalog_item_id = ?", catalogItem.getId());
+                    catalogItemRepository.deleteById(catalogItem.getId());
+                    catalogBrandRepository.deleteById(catalogItem.getCatalogBrand().getId());
+                    catalogTypeRepository.deleteById(catalogItem.getCatalogType().getId());
+                });
+        }
+    }
+
+    @Test
+    void contendedRemovalsAreCoalescedWithoutLosingUpdates() throws Exception {
+        catalogItem = createCommittedItem(500);
+        applicationProperties.getStockQueue().setContentionThreshold(Integer.MAX_VALUE);
+        int direct = runConcurrently("removeStock (direct)", this::removeOne);
+        double writesBefore = meterRegistry.get("catalog.stock.queue.writes").counter().count();
+
+        applicationProperties.getStockQueue().setContentionThreshold(0);
+        int queued = runConcurrently("removeStock (queued)", this::removeOne);
+
+        assertThat(direct + queued).isEqualTo(2 * WRITERS * OPERATIONS_PER_WRITER);
+        assertThat(currentStock()).isEqualTo(500 - 2 * WRITERS * OPERATIONS_PER_WRITER);
+        double writes = meterRegistry.get("catalog.stock.queue.writes").counter().count() - writesBefore;
+        log.info("removeStock (queued): {} operations in {} writes", WRITERS * OPERATIONS_PER_WRITER, writes);
+        assertThat(writes).isPositive().isLessThanOrEqualTo(WRITERS * OPERATIONS_PER_WRITER);
+        assertThat(stockWriteQueue.coalescingRatio()).isGreaterThanOrEqualTo(1);
+        assertThat(meterRegistry.get("catalog.stock.queue.depth").gauge().value()).isZero();
+    }
+
+    @Test
+    void queuedRemovalsNeverOversell() throws Exception {
+        catalogItem = createCommittedItem(50);
+        applicationProperties.getStockQueue().setContentionThreshold(0);
+
+        int removed = runConcurrently(
+            "removeStock (queued, sold out)",
+            () -> {
+                try {
+                    return removeOne();
+                } catch (DomainException e) {
+                    return 0;
+                }
+            }
+        );
+
+        assertThat(removed).isEqualTo(50);
+        assertThat(currentStock()).isZero();
+        assertThrows(DomainException.class, () -> stockWriteQueue.removeStock(catalogItem.getId(), 1, null));
+    }
+
+    @Test
+    void queuedAdditionsAreCappedAtMaxStockThreshold() throws Exception {
+        catalogItem = createCommittedItem(500);
+        applicationProperties.getStockQueue().setContentionThreshold(0);
+
+        int added = runConcurrently("addStock (queued)", () -> stockWriteQueue.addStock(catalogItem.getId(), 5, null).orElseThrow());
+
+        assertThat(added).isEqualTo(MAX_STOCK_THRESHOLD - 500);
+        assertThat(currentStock()).isEqualTo(MAX_STOCK_THRESHOLD);
+    }
+
+    @Test
+    void queuedMutationOfNonExistingItemIsEmpty() {
+        applicationProperties.getStockQueue().setContentionThreshold(0);
+
+        assertThat(stockWriteQueue.removeStock(Long.MAX_VALUE, 1, null)).isEmpty();
+        assertThat(stockWriteQueue.addStock(Long.MAX_VALUE, 1, null)).isEmpty();
+    }
+
+    @Test
+    void queuedRemovalsBehindASlowWriterTimeOut() throws Exception {
+        catalogItem = createCommittedItem(500);
+        // the writer waits for the lock on the running total held below
+        applicationProperties.getStockJournal().setEnabled(true);
+        applicationProperties.getStockQueue().setContentionThreshold(0);
+        applicationProperties.getStockQueue().setTimeout(Duration.ofSeconds(1));
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        try {
+            executorService.submit(() ->
+                new TransactionTemplate(transactionManager)
+                    .executeWithoutResult(status -> {
+                        stockJournalService.lock(catalogItemRepository.findById(catalogItem.getId()).orElseThrow());
+                        locked.countDown();
+                        await(release);
+                    })
+            );
+            await(locked);
+            Future<Integer> taken = executorService.submit(this::removeOne);
+            Thread.sleep(200);
+
+            // queued behind the change the writer is stuck on, and withdrawn
+            StockQueueTimeoutException timeout = assertThrows(StockQueueTimeoutException.class, this::removeOne);
+            assertThat(timeout.mayBeApplied()).isFalse();
+            assertThat(meterRegistry.get("catalog.stock.queue.depth").gauge().value()).isZero();
+
+            release.countDown();
+            assertThat(taken.get(1, TimeUnit.MINUTES)).isEqualTo(1);
+        } finally {
+            release.countDown();
+            executorService.shutdown();
+        }
+        assertThat(stockJournalService.availableStock(catalogItem.getId(), 500)).isEqualTo(499);
+    }
+
+    private int removeOne() {
+        return stockWriteQueue.removeStock(catalogItem.getId(), 1, null).orElseThrow();
+    }
+
+    private int runConcurrently(String operation, IntSupplier mutation) throws Exception {
+        ExecutorService executorService = Executors.newFixedThreadPool(WRITERS);
+        AtomicInteger total = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < WRITERS; i++) {
+            futures.add(
+                executorService.submit(() -> {
+                    for (int j = 0; j < OPERATIONS_PER_WRITER; j++) {
+                        total.addAndGet(mutation.getAsInt());
+                    }
+                })
+            );
+        }
+        for (Future<?> future : futures) {
+            future.get(1, TimeUnit.MINUTES);
+        }
+        long elapsed = System.nanoTime() - start;
+        executorService.shutdown();
+        log.info(
+            "{}: {} operations by {} writers in {} ms ({} ops/s)",
+            operation,
+            WRITERS * OPERATIONS_PER_WRITER,
+            WRITERS,
+            TimeUnit.NANOSECONDS.toMillis(elapsed),
+            (WRITERS * OPERATIONS_PER_WRITER) * TimeUnit.SECONDS.toNanos(1) / elapsed
+        );
+        return total.get();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertThat(latch.await(1, TimeUnit.MINUTES)).isTrue();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private int currentStock() {
+        return catalogItemRepository.findById(catalogItem.getId()).orElseThrow().getAvailableStock();
+    }
+
+    private CatalogItem createCommittedItem(int availableStock) {
+        return new TransactionTemplate(transactionManager)
+            .execute(status -> {
+                CatalogBrand catalogBrand = catalogBrandRepository.save(new CatalogBrand().brand("StockWriteQueueIT"));
+                CatalogType catalogType = catalogTypeRepository.save(new CatalogType().type("StockWriteQueueIT"));
+                CatalogItemDTO catalogItemDTO = new CatalogItemDTO(
+                    null,
+                    "AAAAAAAAAA",
+                    null,
+                    BigDecimal.ONE,
+                    null,
+                    null,
+                    availableStock,
+                    0,
+                    MAX_STOCK_THRESHOLD,
+                    false,
+                    catalogBrandMapper.toDto(catalogBrand),
+                    catalogTypeMapper.toDto(catalogType)
+                );
+                return catalogItemRepository.save(
+                    new CatalogItemDomain.CatalogItemBuilder().withCatalogItemDTO(catalogItemDTO).build().getCatalogItem()
+                );
+            });
+    }
+}
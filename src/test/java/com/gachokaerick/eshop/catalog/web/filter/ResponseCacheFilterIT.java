@@ -0,0 +1,161 @@
+package com.gachokaerick.eshop.catalog.web.filter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.not;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import com.gachokaerick.eshop.catalog.IntegrationTest;
+import com.gachokaerick.eshop.catalog.config.ApplicationProperties;
+import com.gachokaerick.eshop.catalog.service.CollectionVersionService.CatalogCollection;
+import com.gachokaerick.eshop.catalog.service.ResponseCache;
+import com.gachokaerick.eshop.catalog.service.dto.CatalogBrandDTO;
+import com.gachokaerick.eshop.catalog.web.rest.TestUtil;
+import com.jayway.jsonpath.JsonPath;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+
+/**
+ * Integration tests for the {@link ResponseCacheFilter}.
+ * <p>
+ * These tests commit their data, so they are not {@link org.springframework.transaction.annotation.Transactional}.
+ */
+@IntegrationTest
+@AutoConfigureMockMvc
+@WithMockUser
+class ResponseCacheFilterIT {
+
+    private static final String ENTITY_API_URL = "/api/catalog-brands";
+
+    @Autowired
+    private ApplicationProperties applicationProperties;
+
+    @Autowired
+    private ResponseCache responseCache;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private MockMvc restMockMvc;
+
+    @BeforeEach
+    public void enable() {
+        applicationProperties.getResponseCache().setEnabled(true);
+    }
+
+    @AfterEach
+    public void disable() {
+        applicationProperties.getResponseCache().setEnabled(false);
+        responseCache.evict(CatalogCollection.values());
+    }
+
+    @Test
+    void cachedResponseIsServedUntilTheCollectionChanges() throws Exception {
+        MockHttpServletResponse first = restMockMvc
+            .perform(get(ENTITY_API_URL + "?sort=id,asc&size=50"))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse();
+        assertThat(responseCache.size()).isEqualTo(1);
+
+        // Same request with the parameters in another order and the default page
+        double hits = hits();
+        MockHttpServletResponse cached = restMockMvc
+            .perform(get(ENTITY_API_URL + "?size=50&page=0&sort=id,asc"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+            .andExpect(header().string(HttpHeaders.ETAG, first.getHeader(HttpHeaders.ETAG)))
+            .andExpect(header().string("X-Total-Count", first.getHeader("X-Total-Count")))
+            .andReturn()
+            .getResponse();
+        assertThat(hits()).isEqualTo(hits + 1);
+        assertThat(cached.getContentAsByteArray()).isEqualTo(first.getContentAsByteArray());
+
+        // Pages past the first ones, lookups by id and conditional requests are not cached
+        restMockMvc.perform(get(ENTITY_API_URL + "?page=" + applicationProperties.getResponseCache().getMaxPages())).andExpect(status().isOk());
+        restMockMvc.perform(get(ENTITY_API_URL + "/" + Long.MAX_VALUE)).andExpect(status().isNotFound());
+        restMockMvc
+            .perform(get(ENTITY_API_URL + "?sort=id,asc&size=50").header(HttpHeaders.IF_NONE_MATCH, first.getHeader(HttpHeaders.ETAG)))
+            .andExpect(status().isNotModified());
+        assertThat(responseCache.size()).isEqualTo(1);
+
+        // A committed change evicts the responses of the collection
+        String created = restMockMvc
+            .perform(
+                post(ENTITY_API_URL)
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(new CatalogBrandDTO(null, "Response Cache Brand")))
+            )
+            .andExpect(status().isCreated())
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+        Integer id = JsonPath.read(created, "$.id");
+        try {
+            assertThat(responseCache.size()).isZero();
+            restMockMvc
+                .perform(get(ENTITY_API_URL + "?sort=id,desc&size=50"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.[0].brand").value("Response Cache Brand"));
+        } finally {
+            restMockMvc.perform(delete(ENTITY_API_URL + "/{id}", id).with(csrf())).andExpect(status().isNoContent());
+        }
+        restMockMvc
+            .perform(get(ENTITY_API_URL + "?sort=id,desc&size=50"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].id").value(not(hasItem(id))));
+    }
+
+    @Test
+    void cachedResponseIsWrittenWithTheLinksAndHeadersOfEachRequest() throws Exception {
+        MockHttpServletResponse first = restMockMvc
+            .perform(
+                get(ENTITY_API_URL + "?sort=id,asc&size=1")
+                    .with(request -> {
+                        request.setServerName("first.example");
+                        return request;
+                    })
+            )
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse();
+        first.getHeaders(HttpHeaders.LINK).forEach(link -> assertThat(link).startsWith("<http://first.example/"));
+        assertThat(first.getHeader("X-Content-Type-Options")).isNotNull();
+
+        double hits = hits();
+        MockHttpServletResponse cached = restMockMvc
+            .perform(
+                get(ENTITY_API_URL + "?size=1&sort=id,asc")
+                    .with(request -> {
+                        request.setServerName("second.example");
+                        return request;
+                    })
+            )
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse();
+        assertThat(hits()).isEqualTo(hits + 1);
+        assertThat(cached.getHeaders(HttpHeaders.LINK))
+            .hasSameSizeAs(first.getHeaders(HttpHeaders.LINK))
+            .allSatisfy(link -> assertThat(link).startsWith("<http://second.example/").doesNotContain("first.example"));
+        // The security headers are written for the second request, not replayed from the first one
+        assertThat(cached.getHeaders("X-Content-Type-Options")).hasSize(1);
+    }
+
+    private double hits() {
+        return meterRegistry.get("catalog.response.cache.hits").counter().count();
+    }
+}
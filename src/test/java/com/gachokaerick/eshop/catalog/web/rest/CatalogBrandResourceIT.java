@@ -2,6 +2,7 @@ package com.gachokaerick.eshop.catalog.web.rest;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.not;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -11,6 +12,7 @@ import com.gachokaerick.eshop.catalog.model.CatalogBrand;
 import com.gachokaerick.eshop.catalog.repository.CatalogBrandRepository;
 import com.gachokaerick.eshop.catalog.service.dto.CatalogBrandDTO;
 import com.gachokaerick.eshop.catalog.service.mapper.CatalogBrandMapper;
+import com.jayway.jsonpath.JsonPath;
 import java.util.List;
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicLong;
@@ -19,6 +21,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
@@ -181,6 +184,52 @@ class CatalogBrandResourceIT {
             .andExpect(jsonPath("$.brand").value(DEFAULT_BRAND));
     }
 
+    @Test
+    void getAllCatalogBrandsIfNoneMatch() throws Exception {
+        String eTag = restCatalogBrandMockMvc
+            .perform(get(ENTITY_API_URL))
+            .andExpect(status().isOk())
+            .andExpect(header().exists(HttpHeaders.ETAG))
+            .andReturn()
+            .getResponse()
+            .getHeader(HttpHeaders.ETAG);
+        String catalogItemsETag = restCatalogBrandMockMvc.perform(get("/api/catalog-items")).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        restCatalogBrandMockMvc
+            .perform(get(ENTITY_API_URL).header(HttpHeaders.IF_NONE_MATCH, eTag))
+            .andExpect(status().isNotModified())
+            .andExpect(header().string(HttpHeaders.ETAG, eTag))
+            .andExpect(content().string(""));
+        restCatalogBrandMockMvc
+            .perform(get(ENTITY_API_URL_ID, Long.MAX_VALUE).header(HttpHeaders.IF_NONE_MATCH, "\"0\", " + eTag))
+            .andExpect(status().isNotModified());
+
+        // A committed change gives new versions to the catalogBrands and to the catalogItems, which embed them
+        String created = restCatalogBrandMockMvc
+            .perform(
+                post(ENTITY_API_URL)
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(catalogBrandMapper.toDto(catalogBrand)))
+            )
+            .andExpect(status().isCreated())
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+        try {
+            restCatalogBrandMockMvc
+                .perform(get(ENTITY_API_URL).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, not(eTag)));
+            restCatalogBrandMockMvc
+                .perform(get("/api/catalog-items").header(HttpHeaders.IF_NONE_MATCH, catalogItemsETag))
+                .andExpect(status().isOk());
+        } finally {
+            Integer id = JsonPath.read(created, "$.id");
+            restCatalogBrandMockMvc.perform(delete(ENTITY_API_URL_ID, id).with(csrf())).andExpect(status().isNoContent());
+        }
+    }
+
     @Test
     @Transactional
     void getNonExistingCatalogBrand() throws Exception {
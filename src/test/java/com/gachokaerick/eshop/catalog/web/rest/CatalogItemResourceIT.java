@@ -2,7 +2,10 @@ package com.gachokaerick.eshop.catalog.web.rest;
 
 import static com.gachokaerick.eshop.catalog.web.rest.TestUtil.sameNumber;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.not;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
@@ -10,6 +13,7 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 import com.gachokaerick.eshop.catalog.IntegrationTest;
+import com.gachokaerick.eshop.catalog.config.ApplicationProperties;
 import com.gachokaerick.eshop.catalog.domain.catalogItem.CatalogItem;
 import com.gachokaerick.eshop.catalog.domain.catalogItem.CatalogItemDomain;
 import com.gachokaerick.eshop.catalog.domain.catalogItem.CatalogItemMapper;
@@ -18,17 +22,29 @@ import com.gachokaerick.eshop.catalog.exception.DomainException;
 import com.gachokaerick.eshop.catalog.model.CatalogBrand;
 import com.gachokaerick.eshop.catalog.model.CatalogType;
 import com.gachokaerick.eshop.catalog.repository.CatalogItemRepository;
+import com.gachokaerick.eshop.catalog.security.AuthoritiesConstants;
+import com.gachokaerick.eshop.catalog.service.StockJournalService;
+import com.gachokaerick.eshop.catalog.service.dto.CatalogItemCursor;
 import com.gachokaerick.eshop.catalog.service.dto.CatalogItemDTO;
+import com.gachokaerick.eshop.catalog.service.dto.StockLineDTO;
 import com.gachokaerick.eshop.catalog.service.mapper.*;
+import com.jayway.jsonpath.JsonPath;
 import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
+import java.util.UUID;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 import javax.persistence.EntityManager;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
@@ -73,6 +89,8 @@ class CatalogItemResourceIT {
     private static final String ENTITY_API_URL_ID = ENTITY_API_URL + "/{id}";
     private static final String ENTITY_API_URL_ID_ADD_STOCK = ENTITY_API_URL + "/add/{quantity}";
     private static final String ENTITY_API_URL_ID_REMOVE_STOCK = ENTITY_API_URL + "/remove/{quantity}";
+    private static final String ENTITY_API_URL_REMOVE_STOCK = ENTITY_API_URL + "/remove";
+    private static final String ENTITY_API_URL_ID_STOCK_MOVEMENTS = ENTITY_API_URL_ID + "/stock-movements";
 
     private static final Random random = new Random();
     private static final AtomicLong count = new AtomicLong(random.nextInt() + (2L * Integer.MAX_VALUE));
@@ -92,6 +110,12 @@ class CatalogItemResourceIT {
     @Autowired
     private EntityManager em;
 
+    @Autowired
+    private ApplicationProperties applicationProperties;
+
+    @Autowired
+    private StockJournalService stockJournalService;
+
     @Autowired
     private MockMvc restCatalogItemMockMvc;
 
@@ -385,6 +409,330 @@ class CatalogItemResourceIT {
             .andExpect(jsonPath("$.[*].onReorder").value(hasItem(DEFAULT_ON_REORDER.booleanValue())));
     }
 
+    @Test
+    @Transactional
+    void getAllCatalogItemsWithSparseFields() throws Exception {
+        // Initialize the database
+        catalogItemRepository.saveAndFlush(catalogItem);
+
+        restCatalogItemMockMvc
+            .perform(get(ENTITY_API_URL + "?sort=id,desc&fields=name,price,pictureUrl,catalogBrand&id.equals=" + catalogItem.getId()))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_VALUE))
+            .andExpect(jsonPath("$.[0].id").value(catalogItem.getId().intValue()))
+            .andExpect(jsonPath("$.[0].name").value(DEFAULT_NAME))
+            .andExpect(jsonPath("$.[0].price").value(sameNumber(DEFAULT_PRICE)))
+            .andExpect(jsonPath("$.[0].pictureUrl").value(DEFAULT_PICTURE_URL))
+            .andExpect(jsonPath("$.[0].catalogBrand.brand").value(catalogItem.getCatalogBrand().getBrand()))
+            .andExpect(jsonPath("$.[0].description").doesNotExist())
+            .andExpect(jsonPath("$.[0].availableStock").doesNotExist())
+            .andExpect(jsonPath("$.[0].catalogType").doesNotExist());
+
+        restCatalogItemMockMvc
+            .perform(get(ENTITY_API_URL).param("ids", catalogItem.getId().toString()).param("fields", "availableStock"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[0].availableStock").value(DEFAULT_AVAILABLE_STOCK))
+            .andExpect(jsonPath("$.[0].name").doesNotExist());
+
+        restCatalogItemMockMvc
+            .perform(get(ENTITY_API_URL_ID, catalogItem.getId()).param("fields", "name"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.id").value(catalogItem.getId().intValue()))
+            .andExpect(jsonPath("$.name").value(DEFAULT_NAME))
+            .andExpect(jsonPath("$.price").doesNotExist());
+
+        restCatalogItemMockMvc.perform(get(ENTITY_API_URL + "?fields=name,secret")).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Transactional
+    void getAllCatalogItemsByNameStartsWith() throws Exception {
+        // Initialize the database
+        catalogItemRepository.saveAndFlush(catalogItem);
+
+        defaultCatalogItemShouldBeFound("name.startsWith=" + DEFAULT_NAME.substring(0, 3));
+        defaultCatalogItemShouldNotBeFound("name.startsWith=" + UPDATED_NAME.substring(0, 3));
+        // a prefix is not a pattern
+        defaultCatalogItemShouldNotBeFound("name.startsWith=A_");
+    }
+
+    @Test
+    @Transactional
+    void getAllCatalogItemsByPriceIsInRange() throws Exception {
+        // Initialize the database
+        catalogItemRepository.saveAndFlush(catalogItem);
+
+        defaultCatalogItemShouldBeFound("price.greaterThanOrEqual=" + DEFAULT_PRICE + "&price.lessThan=" + UPDATED_PRICE);
+        defaultCatalogItemShouldNotBeFound("price.greaterThanOrEqual=" + UPDATED_PRICE);
+        defaultCatalogItemShouldNotBeFound("price.lessThan=" + DEFAULT_PRICE);
+    }
+
+    @Test
+    @Transactional
+    void getAllCatalogItemsInStock() throws Exception {
+        // Initialize the database
+        catalogItemRepository.saveAndFlush(catalogItem);
+
+        defaultCatalogItemShouldBeFound("availableStock.greaterThan=0");
+        defaultCatalogItemShouldNotBeFound("availableStock.greaterThan=" + DEFAULT_AVAILABLE_STOCK);
+    }
+
+    @Test
+    @Transactional
+    void getAllCatalogItemsByOnReorderIsEqualToSomething() throws Exception {
+        // Initialize the database
+        catalogItemRepository.saveAndFlush(catalogItem);
+
+        defaultCatalogItemShouldBeFound("onReorder.equals=" + DEFAULT_ON_REORDER);
+        defaultCatalogItemShouldNotBeFound("onReorder.equals=" + UPDATED_ON_REORDER);
+    }
+
+    @Test
+    @Transactional
+    void getAllCatalogItemsByCatalogBrandIsEqualToSomething() throws Exception {
+        // Initialize the database
+        catalogItemRepository.saveAndFlush(catalogItem);
+        Long catalogBrandId = catalogItem.getCatalogBrand().getId();
+
+        defaultCatalogItemShouldBeFound("catalogBrandId.equals=" + catalogBrandId);
+        defaultCatalogItemShouldNotBeFound("catalogBrandId.equals=" + (catalogBrandId + 1));
+    }
+
+    @Test
+    @Transactional
+    void getAllCatalogItemsByCatalogTypeIsEqualToSomething() throws Exception {
+        // Initialize the database
+        catalogItemRepository.saveAndFlush(catalogItem);
+        Long catalogTypeId = catalogItem.getCatalogType().getId();
+
+        defaultCatalogItemShouldBeFound("catalogTypeId.equals=" + catalogTypeId + "&price.lessThanOrEqual=" + DEFAULT_PRICE);
+        defaultCatalogItemShouldNotBeFound("catalogTypeId.equals=" + (catalogTypeId + 1));
+    }
+
+    @Test
+    @Transactional
+    void countCatalogItemsByCriteria() throws Exception {
+        // Initialize the database
+        catalogItemRepository.saveAndFlush(catalogItem);
+
+        restCatalogItemMockMvc
+            .perform(get(ENTITY_API_URL + "/count?id.equals=" + catalogItem.getId() + "&onReorder.equals=" + DEFAULT_ON_REORDER))
+            .andExpect(status().isOk())
+            .andExpect(content().string("1"));
+        restCatalogItemMockMvc
+            .perform(get(ENTITY_API_URL + "/count?id.equals=" + catalogItem.getId() + "&onReorder.equals=" + UPDATED_ON_REORDER))
+            .andExpect(status().isOk())
+            .andExpect(content().string("0"));
+    }
+
+    @Test
+    @Transactional
+    void getCatalogItemFacetsByCriteria() throws Exception {
+        // Initialize the database
+        catalogItemRepository.saveAndFlush(catalogItem);
+        CatalogItem otherCatalogItem = catalogItemRepository.saveAndFlush(createOtherEntity(3));
+        String ids = "id.in=" + catalogItem.getId() + "," + otherCatalogItem.getId();
+
+        restCatalogItemMockMvc
+            .perform(get(ENTITY_API_URL + "/_facets?" + ids + "&priceBuckets=" + UPDATED_PRICE))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_VALUE))
+            .andExpect(jsonPath("$.total").value(2))
+            .andExpect(jsonPath("$.catalogBrands.[*].id").value(hasItem(otherCatalogItem.getCatalogBrand().getId().intValue())))
+            .andExpect(jsonPath("$.catalogBrands.[*].count").value(contains(1, 1)))
+            .andExpect(jsonPath("$.catalogTypes.[*].id").value(hasItem(catalogItem.getCatalogType().getId().intValue())))
+            .andExpect(jsonPath("$.prices.[*].count").value(contains(1, 1)))
+            .andExpect(jsonPath("$.prices.[1].from").value(sameNumber(UPDATED_PRICE)));
+
+        restCatalogItemMockMvc
+            .perform(get(ENTITY_API_URL + "/_facets?" + ids + "&price.greaterThan=" + DEFAULT_PRICE))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.total").value(1))
+            .andExpect(jsonPath("$.catalogBrands.[*].id").value(contains(otherCatalogItem.getCatalogBrand().getId().intValue())))
+            .andExpect(jsonPath("$.prices.[*].count").value(contains(2, 0, 0, 0, 0)));
+
+        // Each facet is counted without the criterion on its own dimension
+        restCatalogItemMockMvc
+            .perform(get(ENTITY_API_URL + "/_facets?" + ids + "&catalogBrandId.equals=" + catalogItem.getCatalogBrand().getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.total").value(1))
+            .andExpect(jsonPath("$.catalogBrands.[*].count").value(contains(1, 1)))
+            .andExpect(jsonPath("$.catalogTypes.[*].id").value(contains(catalogItem.getCatalogType().getId().intValue())));
+    }
+
+    /**
+     * Executes the search, and checks that the default entity is returned.
+     */
+    private void defaultCatalogItemShouldBeFound(String filter) throws Exception {
+        restCatalogItemMockMvc
+            .perform(get(ENTITY_API_URL + "?sort=id,desc&size=2000&" + filter))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_VALUE))
+            .andExpect(jsonPath("$.[*].id").value(hasItem(catalogItem.getId().intValue())))
+            .andExpect(jsonPath("$.[*].name").value(hasItem(DEFAULT_NAME)))
+            .andExpect(jsonPath("$.[*].price").value(hasItem(sameNumber(DEFAULT_PRICE))));
+    }
+
+    /**
+     * Executes the search, and checks that the default entity is not returned.
+     */
+    private void defaultCatalogItemShouldNotBeFound(String filter) throws Exception {
+        restCatalogItemMockMvc
+            .perform(get(ENTITY_API_URL + "?sort=id,desc&size=2000&" + filter))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_VALUE))
+            .andExpect(jsonPath("$.[*].id").value(not(hasItem(catalogItem.getId().intValue()))));
+    }
+
+    @Test
+    @Transactional
+    void searchCatalogItems() throws Exception {
+        CatalogItemDTO catalogItemDTO = catalogItemMapper.toDto(catalogItem);
+        catalogItemDTO.setName("Quokka Lantern");
+        catalogItemDTO.setDescription("Solar camping light");
+        String created = restCatalogItemMockMvc
+            .perform(
+                post(ENTITY_API_URL)
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(catalogItemDTO))
+            )
+            .andExpect(status().isCreated())
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+        Integer id = JsonPath.read(created, "$.id");
+
+        for (String query : List.of("quokka", "QUOKKA lantern", "solar camp", "lantrn")) {
+            restCatalogItemMockMvc
+                .perform(get(ENTITY_API_URL + "/_search").param("q", query))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.[*].id").value(hasItem(id)));
+        }
+
+        // the index follows updates and deletions
+        CatalogItemDTO patch = new CatalogItemDTO();
+        patch.setId(id.longValue());
+        patch.setName("Wombat Lantern");
+        restCatalogItemMockMvc
+            .perform(
+                patch(ENTITY_API_URL_ID, id)
+                    .with(csrf())
+                    .contentType("application/merge-patch+json")
+                    .content(TestUtil.convertObjectToJsonBytes(patch))
+            )
+            .andExpect(status().isOk());
+        restCatalogItemMockMvc.perform(get(ENTITY_API_URL + "/_search?q=quokka")).andExpect(jsonPath("$.[*].id").value(not(hasItem(id))));
+        restCatalogItemMockMvc.perform(get(ENTITY_API_URL + "/_search?q=wombat")).andExpect(jsonPath("$.[*].id").value(hasItem(id)));
+
+        restCatalogItemMockMvc.perform(delete(ENTITY_API_URL_ID, id).with(csrf())).andExpect(status().isNoContent());
+        restCatalogItemMockMvc.perform(get(ENTITY_API_URL + "/_search?q=wombat")).andExpect(jsonPath("$.[*].id").value(not(hasItem(id))));
+
+        restCatalogItemMockMvc.perform(get(ENTITY_API_URL + "/_search?q=lantern&size=0")).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Transactional
+    void suggestCatalogItems() throws Exception {
+        CatalogItemDTO catalogItemDTO = catalogItemMapper.toDto(catalogItem);
+        catalogItemDTO.setName("Quokka Kettle");
+        String created = restCatalogItemMockMvc
+            .perform(
+                post(ENTITY_API_URL)
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(catalogItemDTO))
+            )
+            .andExpect(status().isCreated())
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+        Integer id = JsonPath.read(created, "$.id");
+
+        restCatalogItemMockMvc
+            .perform(get(ENTITY_API_URL + "/_suggest").param("prefix", "quokka k"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_VALUE))
+            .andExpect(jsonPath("$.[*].id").value(hasItem(id)))
+            .andExpect(jsonPath("$.[*].name").value(hasItem("Quokka Kettle")));
+
+        restCatalogItemMockMvc.perform(delete(ENTITY_API_URL_ID, id).with(csrf())).andExpect(status().isNoContent());
+        restCatalogItemMockMvc
+            .perform(get(ENTITY_API_URL + "/_suggest?prefix=quokka k"))
+            .andExpect(jsonPath("$.[*].id").value(not(hasItem(id))));
+
+        restCatalogItemMockMvc.perform(get(ENTITY_API_URL + "/_suggest?prefix=quokka&size=0")).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Transactional
+    void getAllCatalogItemsAfterCursor() throws Exception {
+        // Initialize the database
+        catalogItemRepository.saveAndFlush(catalogItem);
+        CatalogItem otherCatalogItem = catalogItemRepository.saveAndFlush(createOtherEntity(3));
+        String after = cursorBefore(CatalogItemCursor.SortKey.ID, catalogItem);
+
+        // Get the page following the cursor
+        String next = restCatalogItemMockMvc
+            .perform(get(ENTITY_API_URL).param("after", after).param("size", "1"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_VALUE))
+            .andExpect(header().doesNotExist("X-Total-Count"))
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$.[0].id").value(catalogItem.getId().intValue()))
+            .andExpect(jsonPath("$.[0].name").value(DEFAULT_NAME))
+            .andExpect(header().string(HttpHeaders.LINK, containsString("rel=\"next\"")))
+            .andReturn()
+            .getResponse()
+            .getHeader(HttpHeaders.LINK);
+
+        // Follow the next link
+        String nextUrl = next.substring(next.indexOf('<') + 1, next.indexOf('>'));
+        restCatalogItemMockMvc
+            .perform(get(nextUrl))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[0].id").value(otherCatalogItem.getId().intValue()))
+            .andExpect(jsonPath("$.[0].name").value(UPDATED_NAME));
+    }
+
+    @Test
+    @Transactional
+    void getAllCatalogItemsAfterCursorSortedByName() throws Exception {
+        // Initialize the database
+        CatalogItem otherCatalogItem = catalogItemRepository.saveAndFlush(createOtherEntity(3));
+        catalogItemRepository.saveAndFlush(catalogItem);
+        String after = cursorBefore(CatalogItemCursor.SortKey.NAME, catalogItem);
+
+        restCatalogItemMockMvc
+            .perform(get(ENTITY_API_URL).param("after", after).param("size", "2"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[0].id").value(catalogItem.getId().intValue()))
+            .andExpect(jsonPath("$.[1].id").value(otherCatalogItem.getId().intValue()));
+    }
+
+    @Test
+    @Transactional
+    void getAllCatalogItemsWithInvalidCursor() throws Exception {
+        restCatalogItemMockMvc.perform(get(ENTITY_API_URL).param("after", "not-a-cursor")).andExpect(status().isBadRequest());
+        restCatalogItemMockMvc.perform(get(ENTITY_API_URL).param("after", "").param("sort", "price")).andExpect(status().isBadRequest());
+        restCatalogItemMockMvc.perform(get(ENTITY_API_URL).param("after", "").param("size", "0")).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Transactional
+    void getAllCatalogItemsAfterCursorRejectsFiltersAndIds() throws Exception {
+        catalogItemRepository.saveAndFlush(catalogItem);
+
+        restCatalogItemMockMvc
+            .perform(get(ENTITY_API_URL).param("after", "").param("name.equals", DEFAULT_NAME))
+            .andExpect(status().isBadRequest())
+            .andExpect(jsonPath("$.message").value("error.cursorFiltered"));
+        restCatalogItemMockMvc
+            .perform(get(ENTITY_API_URL).param("after", "").param("ids", catalogItem.getId().toString()))
+            .andExpect(status().isBadRequest())
+            .andExpect(jsonPath("$.message").value("error.cursorFiltered"));
+    }
+
     @Test
     @Transactional
     void getCatalogItem() throws Exception {
@@ -405,7 +753,9 @@ class CatalogItemResourceIT {
             .andExpect(jsonPath("$.availableStock").value(DEFAULT_AVAILABLE_STOCK))
             .andExpect(jsonPath("$.restockThreshold").value(DEFAULT_RESTOCK_THRESHOLD))
             .andExpect(jsonPath("$.maxStockThreshold").value(DEFAULT_MAX_STOCK_THRESHOLD))
-            .andExpect(jsonPath("$.onReorder").value(DEFAULT_ON_REORDER.booleanValue()));
+            .andExpect(jsonPath("$.onReorder").value(DEFAULT_ON_REORDER.booleanValue()))
+            .andExpect(jsonPath("$.version").value(0))
+            .andExpect(header().string(HttpHeaders.ETAG, "\"0\""));
     }
 
     @Test
@@ -415,6 +765,163 @@ class CatalogItemResourceIT {
         restCatalogItemMockMvc.perform(get(ENTITY_API_URL_ID, Long.MAX_VALUE)).andExpect(status().isNotFound());
     }
 
+    @Test
+    @Transactional
+    void getAllCatalogItemsIfNoneMatch() throws Exception {
+        // Initialize the database
+        catalogItemRepository.saveAndFlush(catalogItem);
+
+        String eTag = restCatalogItemMockMvc
+            .perform(get(ENTITY_API_URL + "?sort=id,desc"))
+            .andExpect(status().isOk())
+            .andExpect(header().exists(HttpHeaders.ETAG))
+            .andReturn()
+            .getResponse()
+            .getHeader(HttpHeaders.ETAG);
+
+        // The version does not depend on the page or the filters
+        restCatalogItemMockMvc
+            .perform(get(ENTITY_API_URL + "?sort=id,desc&name.equals=" + UPDATED_NAME).header(HttpHeaders.IF_NONE_MATCH, eTag))
+            .andExpect(status().isNotModified())
+            .andExpect(header().string(HttpHeaders.ETAG, eTag))
+            .andExpect(content().string(""));
+        restCatalogItemMockMvc
+            .perform(get(ENTITY_API_URL + "?after=&size=10").header(HttpHeaders.IF_NONE_MATCH, eTag))
+            .andExpect(status().isNotModified());
+        restCatalogItemMockMvc
+            .perform(get(ENTITY_API_URL).param("ids", catalogItem.getId().toString()).header(HttpHeaders.IF_NONE_MATCH, eTag))
+            .andExpect(status().isNotModified());
+
+        restCatalogItemMockMvc
+            .perform(get(ENTITY_API_URL + "?sort=id,desc").header(HttpHeaders.IF_NONE_MATCH, "\"0\""))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, eTag))
+            .andExpect(jsonPath("$.[*].id").value(hasItem(catalogItem.getId().intValue())));
+    }
+
+    @Test
+    @Transactional
+    void getCatalogItemsByIds() throws Exception {
+        // Initialize the database
+        catalogItemRepository.saveAndFlush(catalogItem);
+        CatalogItem otherCatalogItem = catalogItemRepository.saveAndFlush(createOtherEntity(3));
+
+        // In the order of the ids, without the unknown ones
+        restCatalogItemMockMvc
+            .perform(get(ENTITY_API_URL).param("ids", otherCatalogItem.getId() + "," + Long.MAX_VALUE + "," + catalogItem.getId()))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_VALUE))
+            .andExpect(jsonPath("$.length()").value(2))
+            .andExpect(jsonPath("$.[0].id").value(otherCatalogItem.getId().intValue()))
+            .andExpect(jsonPath("$.[0].availableStock").value(3))
+            .andExpect(jsonPath("$.[1].id").value(catalogItem.getId().intValue()))
+            .andExpect(jsonPath("$.[1].name").value(DEFAULT_NAME))
+            .andExpect(jsonPath("$.[1].catalogBrand.id").value(catalogItem.getCatalogBrand().getId().intValue()));
+
+        restCatalogItemMockMvc
+            .perform(
+                post(ENTITY_API_URL + "/_batch")
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(List.of(catalogItem.getId(), otherCatalogItem.getId(), catalogItem.getId())))
+            )
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].id").value(contains(catalogItem.getId().intValue(), otherCatalogItem.getId().intValue())));
+
+        restCatalogItemMockMvc.perform(get(ENTITY_API_URL).param("ids", "")).andExpect(status().isBadRequest());
+        restCatalogItemMockMvc
+            .perform(
+                post(ENTITY_API_URL + "/_batch")
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(LongStream.rangeClosed(1, 1001).boxed().collect(Collectors.toList())))
+            )
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Transactional
+    void exportCatalogItems() throws Exception {
+        // Initialize the database
+        catalogItemRepository.saveAndFlush(catalogItem);
+        CatalogItem otherCatalogItem = catalogItemRepository.saveAndFlush(createOtherEntity(3));
+        assertThat(catalogItem.getLastModifiedDate()).isNotNull();
+
+        // One catalogItem per line, ordered by id
+        String export = restCatalogItemMockMvc
+            .perform(get(ENTITY_API_URL + "/_export"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentTypeCompatibleWith("application/x-ndjson"))
+            .andExpect(header().exists(HttpHeaders.DATE))
+            .andExpect(header().exists("X-Next-Modified-Since"))
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+        assertThat(export).endsWith("\n");
+        List<String> lines = Arrays.asList(export.split("\n"));
+        List<Long> ids = lines.stream().map(line -> JsonPath.<Number>read(line, "$.id").longValue()).collect(Collectors.toList());
+        assertThat(ids).isSorted().contains(catalogItem.getId(), otherCatalogItem.getId());
+        String line = lines.get(ids.indexOf(catalogItem.getId()));
+        assertThat(JsonPath.<String>read(line, "$.name")).isEqualTo(DEFAULT_NAME);
+        assertThat(JsonPath.<Integer>read(line, "$.availableStock")).isEqualTo(DEFAULT_AVAILABLE_STOCK);
+        assertThat(JsonPath.<Number>read(line, "$.catalogBrand.id").longValue()).isEqualTo(catalogItem.getCatalogBrand().getId());
+
+        // Only the catalogItems modified since the date, given to the second like the Date header of the last export
+        Instant modifiedSince = catalogItem.getLastModifiedDate().truncatedTo(ChronoUnit.SECONDS);
+        restCatalogItemMockMvc
+            .perform(get(ENTITY_API_URL + "/_export").param("modifiedSince", modifiedSince.toString()))
+            .andExpect(status().isOk())
+            .andExpect(content().string(containsString("\"id\":" + catalogItem.getId() + ",")))
+            .andExpect(content().string(containsString("\"id\":" + otherCatalogItem.getId() + ",")));
+        restCatalogItemMockMvc
+            .perform(get(ENTITY_API_URL + "/_export").param("modifiedSince", Instant.now().plus(1, ChronoUnit.HOURS).toString()))
+            .andExpect(status().isOk())
+            .andExpect(content().string(""));
+
+        // The next export resumes before this one started, rows dated before their transaction committed are not missed
+        Instant before = Instant.now();
+        String nextModifiedSince = restCatalogItemMockMvc
+            .perform(get(ENTITY_API_URL + "/_export").param("modifiedSince", modifiedSince.toString()))
+            .andReturn()
+            .getResponse()
+            .getHeader("X-Next-Modified-Since");
+        assertThat(Instant.parse(nextModifiedSince)).isBefore(before);
+
+        // The catalogItems deleted since the date follow as tombstones
+        restCatalogItemMockMvc.perform(delete(ENTITY_API_URL_ID, otherCatalogItem.getId()).with(csrf())).andExpect(status().isNoContent());
+        String tombstone = "{\"id\":" + otherCatalogItem.getId() + ",\"deleted\":true}\n";
+        restCatalogItemMockMvc
+            .perform(get(ENTITY_API_URL + "/_export").param("modifiedSince", modifiedSince.toString()))
+            .andExpect(status().isOk())
+            .andExpect(content().string(containsString("\"id\":" + catalogItem.getId() + ",")))
+            .andExpect(content().string(containsString(tombstone)));
+        restCatalogItemMockMvc
+            .perform(get(ENTITY_API_URL + "/_export"))
+            .andExpect(status().isOk())
+            .andExpect(content().string(not(containsString(tombstone))));
+        restCatalogItemMockMvc.perform(get(ENTITY_API_URL + "/_export").param("modifiedSince", "yesterday")).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Transactional
+    @WithMockUser(authorities = AuthoritiesConstants.ADMIN)
+    void snapshotCatalogItems() throws Exception {
+        // Initialize the database
+        catalogItemRepository.saveAndFlush(catalogItem);
+
+        // Nothing is written while the change events are disabled
+        restCatalogItemMockMvc
+            .perform(post(ENTITY_API_URL + "/_snapshot").with(csrf()))
+            .andExpect(status().isOk())
+            .andExpect(content().string("0"));
+    }
+
+    @Test
+    @Transactional
+    void snapshotCatalogItemsIsForAdmins() throws Exception {
+        restCatalogItemMockMvc.perform(post(ENTITY_API_URL + "/_snapshot").with(csrf())).andExpect(status().isForbidden());
+    }
+
     @Test
     @Transactional
     void putNewCatalogItem() throws Exception {
@@ -697,6 +1204,107 @@ class CatalogItemResourceIT {
         assertThat(catalogItemList).hasSize(databaseSizeBeforeUpdate);
     }
 
+    @Test
+    @Transactional
+    void putCatalogItemWithIfMatch() throws Exception {
+        // Initialize the database
+        catalogItemRepository.saveAndFlush(catalogItem);
+
+        CatalogItemDTO catalogItemDTO = catalogItemMapper.toDto(catalogItem);
+        catalogItemDTO.version(null).name(UPDATED_NAME);
+
+        restCatalogItemMockMvc
+            .perform(
+                put(ENTITY_API_URL_ID, catalogItemDTO.getId())
+                    .header(HttpHeaders.IF_MATCH, "\"0\"")
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(catalogItemDTO))
+            )
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.version").value(1))
+            .andExpect(header().string(HttpHeaders.ETAG, "\"1\""));
+
+        // The same precondition no longer matches
+        restCatalogItemMockMvc
+            .perform(
+                put(ENTITY_API_URL_ID, catalogItemDTO.getId())
+                    .header(HttpHeaders.IF_MATCH, "\"0\"")
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(catalogItemDTO.version(null).name(DEFAULT_NAME)))
+            )
+            .andExpect(status().isPreconditionFailed());
+
+        assertThat(catalogItemRepository.findById(catalogItem.getId()).orElseThrow().getName()).isEqualTo(UPDATED_NAME);
+    }
+
+    @Test
+    @Transactional
+    void putCatalogItemWithStaleVersion() throws Exception {
+        // Initialize the database
+        catalogItemRepository.saveAndFlush(catalogItem);
+
+        CatalogItemDTO catalogItemDTO = catalogItemMapper.toDto(catalogItem);
+        catalogItemDTO.version(catalogItem.getVersion() + 1).name(UPDATED_NAME);
+
+        restCatalogItemMockMvc
+            .perform(
+                put(ENTITY_API_URL_ID, catalogItemDTO.getId())
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(catalogItemDTO))
+            )
+            .andExpect(status().isConflict());
+
+        assertThat(catalogItemRepository.findById(catalogItem.getId()).orElseThrow().getName()).isEqualTo(DEFAULT_NAME);
+    }
+
+    @Test
+    @Transactional
+    void patchCatalogItemWithStaleIfMatch() throws Exception {
+        // Initialize the database
+        catalogItemRepository.saveAndFlush(catalogItem);
+        int version = catalogItem.getVersion();
+
+        CatalogItemDTO partialUpdatedCatalogItem = new CatalogItemDTO();
+        partialUpdatedCatalogItem.setId(catalogItem.getId());
+        partialUpdatedCatalogItem.name(UPDATED_NAME);
+
+        restCatalogItemMockMvc
+            .perform(
+                patch(ENTITY_API_URL_ID, partialUpdatedCatalogItem.getId())
+                    .header(HttpHeaders.IF_MATCH, "\"" + (version + 1) + "\"")
+                    .with(csrf())
+                    .contentType("application/merge-patch+json")
+                    .content(TestUtil.convertObjectToJsonBytes(partialUpdatedCatalogItem))
+            )
+            .andExpect(status().isPreconditionFailed());
+
+        restCatalogItemMockMvc
+            .perform(
+                patch(ENTITY_API_URL_ID, partialUpdatedCatalogItem.getId())
+                    .header(HttpHeaders.IF_MATCH, "W/\"" + version + "\"")
+                    .with(csrf())
+                    .contentType("application/merge-patch+json")
+                    .content(TestUtil.convertObjectToJsonBytes(partialUpdatedCatalogItem))
+            )
+            .andExpect(status().isPreconditionFailed());
+
+        assertThat(catalogItemRepository.findById(catalogItem.getId()).orElseThrow().getName()).isEqualTo(DEFAULT_NAME);
+
+        restCatalogItemMockMvc
+            .perform(
+                patch(ENTITY_API_URL_ID, partialUpdatedCatalogItem.getId())
+                    .header(HttpHeaders.IF_MATCH, "\"" + version + "\"")
+                    .with(csrf())
+                    .contentType("application/merge-patch+json")
+                    .content(TestUtil.convertObjectToJsonBytes(partialUpdatedCatalogItem))
+            )
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, "\"" + (version + 1) + "\""));
+    }
+
     @Test
     @Transactional
     void deleteCatalogItem() throws Exception {
@@ -970,4 +1578,275 @@ class CatalogItemResourceIT {
         assertThat(testCatalogItem.getId()).isEqualTo(catalogItem.getId());
         assertThat(testCatalogItem.getAvailableStock()).isEqualTo(0);
     }
+
+    @Test
+    @Transactional
+    void removeStockForSeveralItems() throws Exception {
+        // Initialize the database
+        catalogItemRepository.saveAndFlush(catalogItem);
+        CatalogItem otherCatalogItem = catalogItemRepository.saveAndFlush(createOtherEntity(3));
+
+        List<StockLineDTO> lines = List.of(new StockLineDTO(otherCatalogItem.getId(), 2), new StockLineDTO(catalogItem.getId(), 1));
+
+        restCatalogItemMockMvc
+            .perform(
+                patch(ENTITY_API_URL_REMOVE_STOCK)
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(lines))
+            )
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[0].itemId").value(otherCatalogItem.getId().intValue()))
+            .andExpect(jsonPath("$.[0].removed").value(2))
+            .andExpect(jsonPath("$.[1].itemId").value(catalogItem.getId().intValue()))
+            .andExpect(jsonPath("$.[1].removed").value(1));
+
+        assertThat(catalogItemRepository.findById(catalogItem.getId()).orElseThrow().getAvailableStock()).isZero();
+        assertThat(catalogItemRepository.findById(otherCatalogItem.getId()).orElseThrow().getAvailableStock()).isEqualTo(1);
+    }
+
+    @Test
+    @Transactional
+    void removeStockForSeveralItemsAllOrNothingWithInsufficientStock() throws Exception {
+        // Initialize the database
+        catalogItemRepository.saveAndFlush(catalogItem);
+        CatalogItem otherCatalogItem = catalogItemRepository.saveAndFlush(createOtherEntity(3));
+
+        List<StockLineDTO> lines = List.of(
+            new StockLineDTO(otherCatalogItem.getId(), 2),
+            new StockLineDTO(catalogItem.getId(), DEFAULT_AVAILABLE_STOCK + 1)
+        );
+
+        restCatalogItemMockMvc
+            .perform(
+                patch(ENTITY_API_URL_REMOVE_STOCK)
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(lines))
+            )
+            .andExpect(status().isBadRequest());
+
+        // Validate that nothing was removed
+        assertThat(catalogItemRepository.findById(catalogItem.getId()).orElseThrow().getAvailableStock())
+            .isEqualTo(DEFAULT_AVAILABLE_STOCK);
+        assertThat(catalogItemRepository.findById(otherCatalogItem.getId()).orElseThrow().getAvailableStock()).isEqualTo(3);
+    }
+
+    @Test
+    @Transactional
+    void removeStockForSeveralItemsBestEffort() throws Exception {
+        // Initialize the database
+        catalogItemRepository.saveAndFlush(catalogItem);
+
+        List<StockLineDTO> lines = List.of(
+            new StockLineDTO(catalogItem.getId(), DEFAULT_AVAILABLE_STOCK + 1),
+            new StockLineDTO(count.incrementAndGet(), 1)
+        );
+
+        restCatalogItemMockMvc
+            .perform(
+                patch(ENTITY_API_URL_REMOVE_STOCK)
+                    .param("allOrNothing", "false")
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(lines))
+            )
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[0].removed").value(DEFAULT_AVAILABLE_STOCK))
+            .andExpect(jsonPath("$.[1].removed").value(0));
+
+        assertThat(catalogItemRepository.findById(catalogItem.getId()).orElseThrow().getAvailableStock()).isZero();
+    }
+
+    @Test
+    @Transactional
+    void removeStockForSeveralItemsWithZeroQuantity() throws Exception {
+        // Initialize the database
+        catalogItemRepository.saveAndFlush(catalogItem);
+
+        List<StockLineDTO> lines = List.of(new StockLineDTO(catalogItem.getId(), 0));
+
+        restCatalogItemMockMvc
+            .perform(
+                patch(ENTITY_API_URL_REMOVE_STOCK)
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(lines))
+            )
+            .andExpect(status().isBadRequest());
+
+        assertThat(catalogItemRepository.findById(catalogItem.getId()).orElseThrow().getAvailableStock())
+            .isEqualTo(DEFAULT_AVAILABLE_STOCK);
+    }
+
+    @Test
+    @Transactional
+    void removeStockWithIdempotencyKeyIsAppliedOnce() throws Exception {
+        // Initialize the database
+        CatalogItem otherCatalogItem = catalogItemRepository.saveAndFlush(createOtherEntity(3));
+        CatalogItemDTO catalogItemDTO = catalogItemMapper.toDto(otherCatalogItem);
+        String idempotencyKey = UUID.randomUUID().toString();
+
+        for (int i = 0; i < 2; i++) {
+            restCatalogItemMockMvc
+                .perform(
+                    patch(ENTITY_API_URL_ID_REMOVE_STOCK, 1)
+                        .header("Idempotency-Key", idempotencyKey)
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(TestUtil.convertObjectToJsonBytes(catalogItemDTO))
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.availableStock").value(2));
+        }
+        assertThat(catalogItemRepository.findById(otherCatalogItem.getId()).orElseThrow().getAvailableStock()).isEqualTo(2);
+
+        // The same key cannot be used for another request
+        restCatalogItemMockMvc
+            .perform(
+                patch(ENTITY_API_URL_ID_REMOVE_STOCK, 2)
+                    .header("Idempotency-Key", idempotencyKey)
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(catalogItemDTO))
+            )
+            .andExpect(status().isUnprocessableEntity());
+        assertThat(catalogItemRepository.findById(otherCatalogItem.getId()).orElseThrow().getAvailableStock()).isEqualTo(2);
+
+        // Without a key every request is applied
+        restCatalogItemMockMvc
+            .perform(
+                patch(ENTITY_API_URL_ID_REMOVE_STOCK, 1)
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(catalogItemDTO))
+            )
+            .andExpect(status().isOk());
+        assertThat(catalogItemRepository.findById(otherCatalogItem.getId()).orElseThrow().getAvailableStock()).isEqualTo(1);
+    }
+
+    @Test
+    @Transactional
+    void getStockMovements() throws Exception {
+        // Initialize the database
+        CatalogItem otherCatalogItem = catalogItemRepository.saveAndFlush(createOtherEntity(3));
+        CatalogItemDTO catalogItemDTO = catalogItemMapper.toDto(otherCatalogItem);
+        String idempotencyKey = UUID.randomUUID().toString();
+        // movements are only recorded by the journal
+        applicationProperties.getStockJournal().setEnabled(true);
+        try {
+            restCatalogItemMockMvc
+                .perform(
+                    patch(ENTITY_API_URL_ID_REMOVE_STOCK, 2)
+                        .header("Idempotency-Key", idempotencyKey)
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(TestUtil.convertObjectToJsonBytes(catalogItemDTO))
+                )
+                .andExpect(status().isOk());
+            restCatalogItemMockMvc
+                .perform(
+                    patch(ENTITY_API_URL_ID_ADD_STOCK, 1)
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(TestUtil.convertObjectToJsonBytes(catalogItemDTO))
+                )
+                .andExpect(status().isOk());
+
+            // Most recent first
+            restCatalogItemMockMvc
+                .perform(get(ENTITY_API_URL_ID_STOCK_MOVEMENTS, otherCatalogItem.getId()))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON_VALUE))
+                .andExpect(header().string("X-Total-Count", "2"))
+                .andExpect(jsonPath("$.[0].catalogItemId").value(otherCatalogItem.getId().intValue()))
+                .andExpect(jsonPath("$.[0].delta").value(1))
+                .andExpect(jsonPath("$.[0].reason").value("ADD_STOCK"))
+                .andExpect(jsonPath("$.[1].delta").value(-2))
+                .andExpect(jsonPath("$.[1].reason").value("REMOVE_STOCK"))
+                .andExpect(jsonPath("$.[1].correlationId").value(idempotencyKey))
+                .andExpect(jsonPath("$.[1].compacted").value(false));
+        } finally {
+            applicationProperties.getStockJournal().setEnabled(false);
+            stockJournalService.evict(otherCatalogItem.getId());
+        }
+    }
+
+    @Test
+    @Transactional
+    void addStockWithFailedIdempotencyKeyCanBeRetried() throws Exception {
+        CatalogItemDTO catalogItemDTO = catalogItemMapper.toDto(catalogItem);
+        catalogItemDTO.setId(count.incrementAndGet());
+        String idempotencyKey = UUID.randomUUID().toString();
+
+        for (int i = 0; i < 2; i++) {
+            restCatalogItemMockMvc
+                .perform(
+                    patch(ENTITY_API_URL_ID_ADD_STOCK, 1)
+                        .header("Idempotency-Key", idempotencyKey)
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(TestUtil.convertObjectToJsonBytes(catalogItemDTO))
+                )
+                .andExpect(status().isBadRequest());
+        }
+    }
+
+    @Test
+    @Transactional
+    void removeStockForSeveralItemsWithIdempotencyKeyIsAppliedOnce() throws Exception {
+        // Initialize the database
+        CatalogItem otherCatalogItem = catalogItemRepository.saveAndFlush(createOtherEntity(3));
+        List<StockLineDTO> lines = List.of(new StockLineDTO(otherCatalogItem.getId(), 1));
+        String idempotencyKey = UUID.randomUUID().toString();
+
+        for (int i = 0; i < 2; i++) {
+            restCatalogItemMockMvc
+                .perform(
+                    patch(ENTITY_API_URL_REMOVE_STOCK)
+                        .header("Idempotency-Key", idempotencyKey)
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(TestUtil.convertObjectToJsonBytes(lines))
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.[0].removed").value(1));
+        }
+
+        assertThat(catalogItemRepository.findById(otherCatalogItem.getId()).orElseThrow().getAvailableStock()).isEqualTo(2);
+    }
+
+    private static String cursorBefore(CatalogItemCursor.SortKey sortKey, CatalogItem catalogItem) {
+        CatalogItemDTO previous = new CatalogItemDTO();
+        previous.setId(catalogItem.getId() - 1);
+        previous.setName(catalogItem.getName());
+        return CatalogItemCursor.after(sortKey, previous).encode();
+    }
+
+    /**
+     * Create a second entity with its own brand and type, as an item requires a unique brand and type.
+     */
+    private CatalogItem createOtherEntity(int availableStock) {
+        CatalogBrand catalogBrand = CatalogBrandResourceIT.createUpdatedEntity(em);
+        em.persist(catalogBrand);
+        CatalogType catalogType = CatalogTypeResourceIT.createUpdatedEntity(em);
+        em.persist(catalogType);
+        em.flush();
+
+        CatalogItemDTO otherCatalogItem = new CatalogItemDTO(
+            null,
+            UPDATED_NAME,
+            UPDATED_DESCRIPTION,
+            UPDATED_PRICE,
+            UPDATED_PICTURE_FILE_NAME,
+            UPDATED_PICTURE_URL,
+            availableStock,
+            0,
+            availableStock,
+            UPDATED_ON_REORDER,
+            catalogBrandMapper.toDto(catalogBrand),
+            catalogTypeMapper.toDto(catalogType)
+        );
+        return new CatalogItemDomain.CatalogItemBuilder().withCatalogItemDTO(otherCatalogItem).build().getCatalogItem();
+    }
 }
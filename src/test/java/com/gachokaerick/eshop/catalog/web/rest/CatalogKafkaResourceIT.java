@@ -6,7 +6,9 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
+import com.gachokaerick.eshop.catalog.config.ApplicationProperties;
 import com.gachokaerick.eshop.catalog.config.KafkaProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.time.Duration;
 import java.util.Collections;
 import java.util.HashMap;
@@ -58,7 +60,8 @@ class CatalogKafkaResourceIT {
         consumerProps.put("client.id", "default-client");
         kafkaProperties.setConsumer(consumerProps);
 
-        CatalogKafkaResource kafkaResource = new CatalogKafkaResource(kafkaProperties);
+        KafkaSseHub kafkaSseHub = new KafkaSseHub(new ApplicationProperties(), new SimpleMeterRegistry());
+        CatalogKafkaResource kafkaResource = new CatalogKafkaResource(kafkaProperties, kafkaSseHub);
 
         restMockMvc = MockMvcBuilders.standaloneSetup(kafkaResource).build();
     }
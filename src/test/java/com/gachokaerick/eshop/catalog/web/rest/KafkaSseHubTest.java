@@ -0,0 +1,194 @@
+package com.gachokaerick.eshop.catalog.web.rest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import com.gachokaerick.eshop.catalog.config.ApplicationProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Test class for the {@link KafkaSseHub}, consuming {@link MockConsumer}s.
+ */
+class KafkaSseHubTest {
+
+    private final ApplicationProperties applicationProperties = new ApplicationProperties();
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final List<MockConsumer<String, String>> consumers = new CopyOnWriteArrayList<>();
+
+    private KafkaSseHub kafkaSseHub;
+
+    @AfterEach
+    public void stop() {
+        if (kafkaSseHub != null) {
+            kafkaSseHub.stop();
+        }
+    }
+
+    @Test
+    void subscribersOfTheSameTopicsShareOneConsumer() {
+        start();
+        RecordingEmitter first = subscribe("topic-a");
+        RecordingEmitter second = subscribe("topic-a");
+        RecordingEmitter other = subscribe("topic-b");
+        awaitConsumers(2);
+        assertThat(meterRegistry.get("catalog.kafka.sse.subscribers").gauge().value()).isEqualTo(3);
+
+        publish("topic-a", "value-1", "value-2");
+
+        await(() -> first.data().size() == 2 && second.data().size() == 2);
+        assertThat(first.data()).containsExactly("value-1", "value-2");
+        assertThat(second.data()).containsExactly("value-1", "value-2");
+        assertThat(other.data()).isEmpty();
+    }
+
+    @Test
+    void subscriberFallingBehindTheBufferIsDropped() {
+        applicationProperties.getKafkaSse().setBufferSize(4);
+        applicationProperties.getKafkaSse().setSlowSubscriberPolicy(ApplicationProperties.KafkaSse.SlowSubscriberPolicy.DROP);
+        start();
+        RecordingEmitter emitter = subscribe("topic-a");
+        awaitConsumers(1);
+
+        publish("topic-a", values(10));
+
+        await(() -> emitter.completed);
+        assertThat(emitter.data()).isEmpty();
+        assertThat(meterRegistry.get("catalog.kafka.sse.dropped").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void subscriberFallingBehindTheBufferIsSampled() {
+        applicationProperties.getKafkaSse().setBufferSize(4);
+        applicationProperties.getKafkaSse().setSlowSubscriberPolicy(ApplicationProperties.KafkaSse.SlowSubscriberPolicy.SAMPLE);
+        start();
+        RecordingEmitter emitter = subscribe("topic-a");
+        awaitConsumers(1);
+
+        publish("topic-a", values(10));
+
+        await(() -> emitter.data().size() == 2);
+        assertThat(emitter.data()).containsExactly("value-8", "value-9");
+        assertThat(emitter.completed).isFalse();
+        assertThat(meterRegistry.get("catalog.kafka.sse.skipped").counter().count()).isEqualTo(8);
+    }
+
+    private void start() {
+        applicationProperties.getKafkaSse().setPollTimeout(Duration.ofMillis(10));
+        kafkaSseHub =
+            new KafkaSseHub(applicationProperties, meterRegistry) {
+                @Override
+                Consumer<String, String> createConsumer(Map<String, Object> consumerProps) {
+                    MockConsumer<String, String> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST) {
+                        @Override
+                        public synchronized ConsumerRecords<String, String> poll(Duration timeout) {
+                            ConsumerRecords<String, String> records = super.poll(timeout);
+                            if (records.isEmpty()) {
+                                // a mock consumer does not wait for records
+                                KafkaSseHubTest.pause(timeout);
+                            }
+                            return records;
+                        }
+                    };
+                    consumers.add(consumer);
+                    return consumer;
+                }
+            };
+    }
+
+    private RecordingEmitter subscribe(String topic) {
+        RecordingEmitter emitter = new RecordingEmitter();
+        kafkaSseHub.subscribe(List.of(topic), Map.of("group.id", "test"), emitter);
+        return emitter;
+    }
+
+    private void publish(String topic, String... values) {
+        MockConsumer<String, String> consumer = consumers
+            .stream()
+            .filter(candidate -> candidate.subscription().contains(topic))
+            .findFirst()
+            .orElseThrow();
+        TopicPartition partition = new TopicPartition(topic, 0);
+        consumer.schedulePollTask(() -> {
+            consumer.rebalance(List.of(partition));
+            consumer.updateBeginningOffsets(Map.of(partition, 0L));
+            for (int i = 0; i < values.length; i++) {
+                consumer.addRecord(new ConsumerRecord<>(topic, 0, i, null, values[i]));
+            }
+        });
+    }
+
+    private void awaitConsumers(int count) {
+        await(() -> consumers.size() == count && consumers.stream().noneMatch(consumer -> consumer.subscription().isEmpty()));
+    }
+
+    private static String[] values(int count) {
+        String[] values = new String[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = "value-" + i;
+        }
+        return values;
+    }
+
+    private static void await(BooleanSupplier condition) {
+        for (int i = 0; i < 100; i++) {
+            if (condition.getAsBoolean()) {
+                return;
+            }
+            pause(Duration.ofMillis(50));
+        }
+        fail("Condition not met");
+    }
+
+    private static void pause(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * An emitter recording what is sent to it, without a response to write to.
+     */
+    private static class RecordingEmitter extends SseEmitter {
+
+        private final List<String> sent = new CopyOnWriteArrayList<>();
+        private volatile boolean completed;
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            sent.add(builder.build().stream().map(data -> data.getData().toString()).collect(Collectors.joining()));
+        }
+
+        @Override
+        public synchronized void complete() {
+            completed = true;
+        }
+
+        private List<String> data() {
+            return sent
+                .stream()
+                .filter(event -> event.startsWith("data:"))
+                .map(event -> event.substring("data:".length()).trim())
+                .collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package com.gachokaerick.eshop.catalog.web.rest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gachokaerick.eshop.catalog.IntegrationTest;
+import com.gachokaerick.eshop.catalog.domain.catalogItem.CatalogItem;
+import com.gachokaerick.eshop.catalog.model.enumeration.StockMovementReason;
+import com.gachokaerick.eshop.catalog.repository.CatalogItemRepository;
+import com.gachokaerick.eshop.catalog.service.CatalogItemService;
+import com.gachokaerick.eshop.catalog.service.CollectionVersionService;
+import com.gachokaerick.eshop.catalog.service.StockHoldService;
+import com.gachokaerick.eshop.catalog.service.StockMutationService;
+import com.gachokaerick.eshop.catalog.service.dto.StockHoldDTO;
+import com.gachokaerick.eshop.catalog.service.dto.StockLineDTO;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import javax.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Integration tests for the {@link StockHoldResource} REST controller.
+ * <p>
+ * A hold is only registered once its reservation commits, so these tests commit their data and are not
+ * {@link org.springframework.transaction.annotation.Transactional}.
+ */
+@IntegrationTest
+@AutoConfigureMockMvc
+@WithMockUser
+class StockHoldResourceIT {
+
+    private static final String ENTITY_API_URL = "/api/stock-holds";
+    private static final String ENTITY_API_URL_ID = ENTITY_API_URL + "/{id}";
+    private static final String ENTITY_API_URL_ID_COMMIT = ENTITY_API_URL_ID + "/commit";
+    private static final String CATALOG_ITEM_API_URL_ID = "/api/catalog-items/{id}";
+    private static final String CATALOG_ITEM_API_URL_REMOVE_STOCK = "/api/catalog-items/remove";
+
+    @Autowired
+    private CatalogItemRepository catalogItemRepository;
+
+    @Autowired
+    private StockHoldService stockHoldService;
+
+    @Autowired
+    private StockMutationService stockMutationService;
+
+    @Autowired
+    private CatalogItemService catalogItemService;
+
+    @Autowired
+    private CollectionVersionService collectionVersionService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private EntityManager em;
+
+    @Autowired
+    private MockMvc restStockHoldMockMvc;
+
+    private CatalogItem catalogItem;
+
+    @BeforeEach
+    public void initTest() {
+        catalogItem = new TransactionTemplate(transactionManager).execute(status -> CatalogItemResourceIT.createEntity(em));
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        if (catalogItem.getId() != null) {
+            new TransactionTemplate(transactionManager)
+                .executeWithoutResult(status -> {
+                    jdbcTemplate.update("delete from stock_movement where catalog_item_id = ?", catalogItem.getId());
+                    jdbcTemplate.update("delete from restock_alert where catalog_item_id = ?", catalogItem.getId());
+                });
+            catalogItemService.delete(catalogItem.getId());
+        }
+    }
+
+    @Test
+    void createStockHold() throws Exception {
+        // Initialize the database
+        catalogItemRepository.saveAndFlush(catalogItem);
+
+        StockHoldDTO stockHoldDTO = createStockHold(catalogItem.getAvailableStock());
+
+        assertThat(stockHoldDTO.getId()).isNotNull();
+        assertThat(stockHoldDTO.getExpiresAt()).isAfter(Instant.now());
+        restStockHoldMockMvc
+            .perform(get(CATALOG_ITEM_API_URL_ID, catalogItem.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.availableStock").value(catalogItem.getAvailableStock()))
+            .andExpect(jsonPath("$.availableToSell").value(0));
+        restStockHoldMockMvc.perform(get(ENTITY_API_URL_ID, stockHoldDTO.getId())).andExpect(status().isOk());
+    }
+
+    @Test
+    void createStockHoldWithInsufficientStock() throws Exception {
+        // Initialize the database
+        catalogItemRepository.saveAndFlush(catalogItem);
+        createStockHold(catalogItem.getAvailableStock());
+
+        restStockHoldMockMvc
+            .perform(
+                post(ENTITY_API_URL)
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(new StockHoldDTO(null, catalogItem.getId(), 1, null)))
+            )
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void createStockHoldForNonExistingItem() throws Exception {
+        restStockHoldMockMvc
+            .perform(
+                post(ENTITY_API_URL)
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(new StockHoldDTO(null, Long.MAX_VALUE, 1, null)))
+            )
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void rolledBackStockHoldIsNotRegistered() {
+        // Initialize the database
+        catalogItemRepository.saveAndFlush(catalogItem);
+
+        StockHoldDTO stockHoldDTO = new TransactionTemplate(transactionManager)
+            .execute(status -> {
+                StockHoldDTO reserved = stockHoldService.reserve(catalogItem.getId(), 1, null).orElseThrow();
+                // counted at once, under the lock on the stock
+                assertThat(stockHoldService.heldQuantity(catalogItem.getId())).isEqualTo(1);
+                status.setRollbackOnly();
+                return reserved;
+            });
+
+        assertThat(stockHoldService.heldQuantity(catalogItem.getId())).isZero();
+        assertThat(stockHoldService.findOne(stockHoldDTO.getId())).isEmpty();
+    }
+
+    @Test
+    void commitStockHold() throws Exception {
+        // Initialize the database
+        catalogItemRepository.saveAndFlush(catalogItem);
+        int availableStock = catalogItem.getAvailableStock();
+        StockHoldDTO stockHoldDTO = createStockHold(availableStock);
+
+        restStockHoldMockMvc
+            .perform(post(ENTITY_API_URL_ID_COMMIT, stockHoldDTO.getId()).with(csrf()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.itemId").value(catalogItem.getId().intValue()))
+            .andExpect(jsonPath("$.removed").value(availableStock));
+
+        assertThat(catalogItemRepository.findById(catalogItem.getId()).orElseThrow().getAvailableStock()).isZero();
+        assertThat(stockHoldService.heldQuantity(catalogItem.getId())).isZero();
+        restStockHoldMockMvc.perform(get(ENTITY_API_URL_ID, stockHoldDTO.getId())).andExpect(status().isNotFound());
+        restStockHoldMockMvc.perform(post(ENTITY_API_URL_ID_COMMIT, stockHoldDTO.getId()).with(csrf())).andExpect(status().isNotFound());
+    }
+
+    @Test
+    void commitStockHoldChangesTheCatalogItems() throws Exception {
+        // Initialize the database
+        catalogItemRepository.saveAndFlush(catalogItem);
+        long version = collectionVersionService.version(CollectionVersionService.CatalogCollection.ITEMS);
+        StockHoldDTO stockHoldDTO = createStockHold(catalogItem.getAvailableStock());
+
+        restStockHoldMockMvc.perform(post(ENTITY_API_URL_ID_COMMIT, stockHoldDTO.getId()).with(csrf())).andExpect(status().isOk());
+
+        assertThat(collectionVersionService.version(CollectionVersionService.CatalogCollection.ITEMS)).isGreaterThan(version);
+    }
+
+    @Test
+    void heldStockIsNotRemoved() throws Exception {
+        // Initialize the database
+        catalogItemRepository.saveAndFlush(catalogItem);
+        int availableStock = catalogItem.getAvailableStock();
+        StockHoldDTO stockHoldDTO = createStockHold(availableStock);
+
+        restStockHoldMockMvc
+            .perform(
+                patch(CATALOG_ITEM_API_URL_REMOVE_STOCK)
+                    .param("allOrNothing", "false")
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(List.of(new StockLineDTO(catalogItem.getId(), 1))))
+            )
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[0].removed").value(0));
+        StockMutationService.Operation operation = new StockMutationService.Operation(StockMovementReason.REMOVE_STOCK, 1, null);
+        stockMutationService.applyAll(Map.of(catalogItem.getId(), List.of(operation)));
+        assertThat(operation.getApplied()).isNull();
+        assertThat(operation.getFailure()).isNotNull();
+
+        restStockHoldMockMvc
+            .perform(post(ENTITY_API_URL_ID_COMMIT, stockHoldDTO.getId()).with(csrf()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.removed").value(availableStock));
+        assertThat(catalogItemRepository.findById(catalogItem.getId()).orElseThrow().getAvailableStock()).isZero();
+    }
+
+    @Test
+    void commitStockHoldWithStockOverwritten() throws Exception {
+        // Initialize the database
+        catalogItemRepository.saveAndFlush(catalogItem);
+        StockHoldDTO stockHoldDTO = createStockHold(catalogItem.getAvailableStock());
+        new TransactionTemplate(transactionManager)
+            .executeWithoutResult(status ->
+                em
+                    .createQuery("update CatalogItem c set c.availableStock = 0 where c.id = :id")
+                    .setParameter("id", catalogItem.getId())
+                    .executeUpdate()
+            );
+
+        restStockHoldMockMvc.perform(post(ENTITY_API_URL_ID_COMMIT, stockHoldDTO.getId()).with(csrf())).andExpect(status().isBadRequest());
+
+        assertThat(stockHoldService.heldQuantity(catalogItem.getId())).isZero();
+        restStockHoldMockMvc.perform(get(ENTITY_API_URL_ID, stockHoldDTO.getId())).andExpect(status().isNotFound());
+    }
+
+    @Test
+    void deleteStockHold() throws Exception {
+        // Initialize the database
+        catalogItemRepository.saveAndFlush(catalogItem);
+        StockHoldDTO stockHoldDTO = createStockHold(catalogItem.getAvailableStock());
+
+        restStockHoldMockMvc.perform(delete(ENTITY_API_URL_ID, stockHoldDTO.getId()).with(csrf())).andExpect(status().isNoContent());
+
+        assertThat(stockHoldService.heldQuantity(catalogItem.getId())).isZero();
+        assertThat(catalogItemRepository.findById(catalogItem.getId()).orElseThrow().getAvailableStock())
+            .isEqualTo(catalogItem.getAvailableStock());
+        restStockHoldMockMvc
+            .perform(get(CATALOG_ITEM_API_URL_ID, catalogItem.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.availableToSell").value(catalogItem.getAvailableStock()));
+    }
+
+    @Test
+    void expiredStockHoldIsReleased() throws Exception {
+        // Initialize the database
+        catalogItemRepository.saveAndFlush(catalogItem);
+        StockHoldDTO stockHoldDTO = createStockHold(catalogItem.getAvailableStock());
+
+        stockHoldService.expireHolds(stockHoldDTO.getExpiresAt().minus(Duration.ofSeconds(30)));
+        assertThat(stockHoldService.heldQuantity(catalogItem.getId())).isEqualTo(catalogItem.getAvailableStock());
+
+        stockHoldService.expireHolds(stockHoldDTO.getExpiresAt().plus(Duration.ofSeconds(2)));
+        assertThat(stockHoldService.heldQuantity(catalogItem.getId())).isZero();
+        restStockHoldMockMvc.perform(get(ENTITY_API_URL_ID, stockHoldDTO.getId())).andExpect(status().isNotFound());
+    }
+
+    private StockHoldDTO createStockHold(int quantity) throws Exception {
+        byte[] response = restStockHoldMockMvc
+            .perform(
+                post(ENTITY_API_URL)
+                    .param("ttlMinutes", "1")
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(new StockHoldDTO(null, catalogItem.getId(), quantity, null)))
+            )
+            .andExpect(status().isCreated())
+            .andReturn()
+            .getResponse()
+            .getContentAsByteArray();
+        return objectMapper.readValue(response, StockHoldDTO.class);
+    }
+}
@@ -36,6 +36,15 @@ class ExceptionTranslatorIT {
             .andExpect(jsonPath("$.message").value(ErrorConstants.ERR_CONCURRENCY_FAILURE));
     }
 
+    @Test
+    void testStockQueueTimeout() throws Exception {
+        mockMvc
+            .perform(get("/api/exception-translator-test/stock-queue-timeout").with(csrf()))
+            .andExpect(status().isServiceUnavailable())
+            .andExpect(content().contentType(MediaType.APPLICATION_PROBLEM_JSON))
+            .andExpect(jsonPath("$.message").value(ErrorConstants.ERR_STOCK_QUEUE_TIMEOUT));
+    }
+
     @Test
     void testMethodArgumentNotValid() throws Exception {
         mockMvc
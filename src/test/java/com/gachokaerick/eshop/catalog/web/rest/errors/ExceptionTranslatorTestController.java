@@ -1,5 +1,6 @@
 package com.gachokaerick.eshop.catalog.web.rest.errors;
 
+import com.gachokaerick.eshop.catalog.exception.StockQueueTimeoutException;
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
 import org.springframework.dao.ConcurrencyFailureException;
@@ -17,6 +18,11 @@ public class ExceptionTranslatorTestController {
         throw new ConcurrencyFailureException("test concurrency failure");
     }
 
+    @GetMapping("/stock-queue-timeout")
+    public void stockQueueTimeout() {
+        throw new StockQueueTimeoutException(1L, false);
+    }
+
     @PostMapping("/method-argument")
     public void methodArgument(@Valid @RequestBody TestDTO testDTO) {}
 